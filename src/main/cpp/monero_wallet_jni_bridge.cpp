@@ -35,6 +35,8 @@
  */
 
 #include <iostream>
+#include <chrono>
+#include <atomic>
 #include "chacha.h" // TODO: explicitly include because wallet2.h #include "crypto/chacha.h" is ignored
 #include "monero_wallet_jni_bridge.h"
 #include "wallet/monero_wallet_full.h"
@@ -114,6 +116,200 @@ string strip_last_char(const string& str) {
   return str.substr(0, str.size() - 1);
 }
 
+// ---------------------------- BINARY RESULTS --------------------------------
+
+// field numbers and wire types must match monero.wallet.MoneroBlocksBinaryCodec
+static const char BINARY_BLOCKS_MAGIC[] = { 'M', 'N', 'R', 'B' };
+static const uint8_t BINARY_BLOCKS_VERSION = 1;
+static const uint32_t BINARY_VARINT = 0;
+static const uint32_t BINARY_LEN = 2;
+
+/**
+ * Writes fields of the compact binary encoding of blocks, omitting absent values.
+ */
+struct binary_writer {
+  string m_buf;
+
+  void write_raw_varint(uint64_t value) {
+    while (value >= 0x80) {
+      m_buf.push_back((char) ((value & 0x7f) | 0x80));
+      value >>= 7;
+    }
+    m_buf.push_back((char) value);
+  }
+
+  void write_varint(uint32_t field, uint64_t value) {
+    write_raw_varint(field << 3 | BINARY_VARINT);
+    write_raw_varint(value);
+  }
+
+  template <class T>
+  void write_varint(uint32_t field, const boost::optional<T>& value) {
+    if (value != boost::none) write_varint(field, (uint64_t) *value);
+  }
+
+  void write_bool(uint32_t field, const boost::optional<bool>& value) {
+    if (value != boost::none) write_varint(field, *value ? 1 : 0);
+  }
+
+  void write_bytes(uint32_t field, const char* bytes, size_t length) {
+    write_raw_varint(field << 3 | BINARY_LEN);
+    write_raw_varint(length);
+    m_buf.append(bytes, length);
+  }
+
+  void write_string(uint32_t field, const string& value) {
+    write_bytes(field, value.data(), value.size());
+  }
+
+  void write_string(uint32_t field, const boost::optional<string>& value) {
+    if (value != boost::none) write_string(field, *value);
+  }
+
+  void write_object(uint32_t field, const binary_writer& writer) {
+    write_bytes(field, writer.m_buf.data(), writer.m_buf.size());
+  }
+};
+
+binary_writer encode_binary_output(const shared_ptr<monero_output>& output) {
+  binary_writer writer;
+  if (output->m_key_image != boost::none) {
+    writer.write_string(1, (*output->m_key_image)->m_hex);
+    writer.write_string(2, (*output->m_key_image)->m_signature);
+  }
+  writer.write_varint(3, output->m_amount);
+  writer.write_varint(4, output->m_index);
+  for (uint64_t ring_output_idx : output->m_ring_output_indices) writer.write_varint(5, ring_output_idx);
+  writer.write_string(6, output->m_stealth_public_key);
+  shared_ptr<monero_output_wallet> output_wallet = dynamic_pointer_cast<monero_output_wallet>(output);
+  if (output_wallet != nullptr) {
+    writer.write_varint(7, output_wallet->m_account_index);
+    writer.write_varint(8, output_wallet->m_subaddress_index);
+    writer.write_bool(9, output_wallet->m_is_spent);
+    writer.write_bool(10, output_wallet->m_is_frozen);
+  }
+  return writer;
+}
+
+binary_writer encode_binary_tx(const shared_ptr<monero_tx_wallet>& tx) {
+  binary_writer writer;
+  writer.write_string(1, tx->m_hash);
+  writer.write_varint(2, tx->m_version);
+  writer.write_bool(3, tx->m_is_miner_tx);
+  writer.write_string(4, tx->m_payment_id);
+  writer.write_varint(5, tx->m_fee);
+  writer.write_varint(6, tx->m_ring_size);
+  writer.write_bool(7, tx->m_relay);
+  writer.write_bool(8, tx->m_is_relayed);
+  writer.write_bool(9, tx->m_is_confirmed);
+  writer.write_bool(10, tx->m_in_tx_pool);
+  writer.write_varint(11, tx->m_num_confirmations);
+  writer.write_varint(12, tx->m_unlock_height);
+  writer.write_varint(13, tx->m_last_relayed_timestamp);
+  writer.write_varint(14, tx->m_received_timestamp);
+  writer.write_bool(15, tx->m_is_double_spend_seen);
+  writer.write_string(16, tx->m_key);
+  writer.write_string(17, tx->m_full_hex);
+  writer.write_string(18, tx->m_metadata);
+  writer.write_bool(19, tx->m_is_failed);
+  for (const shared_ptr<monero_output>& input : tx->m_inputs) writer.write_object(20, encode_binary_output(input));
+  for (const shared_ptr<monero_output>& output : tx->m_outputs) writer.write_object(21, encode_binary_output(output));
+  writer.write_bool(22, tx->m_is_incoming);
+  writer.write_bool(23, tx->m_is_outgoing);
+  for (const shared_ptr<monero_incoming_transfer>& transfer : tx->m_incoming_transfers) {
+    binary_writer transfer_writer;
+    transfer_writer.write_varint(1, transfer->m_amount);
+    transfer_writer.write_varint(2, transfer->m_account_index);
+    transfer_writer.write_varint(3, transfer->m_subaddress_index);
+    transfer_writer.write_string(4, transfer->m_address);
+    transfer_writer.write_varint(5, transfer->m_num_suggested_confirmations);
+    writer.write_object(24, transfer_writer);
+  }
+  if (tx->m_outgoing_transfer != boost::none) {
+    const shared_ptr<monero_outgoing_transfer>& transfer = *tx->m_outgoing_transfer;
+    binary_writer transfer_writer;
+    transfer_writer.write_varint(1, transfer->m_amount);
+    transfer_writer.write_varint(2, transfer->m_account_index);
+    for (uint32_t subaddress_idx : transfer->m_subaddress_indices) transfer_writer.write_varint(3, subaddress_idx);
+    for (const string& address : transfer->m_addresses) transfer_writer.write_string(4, address);
+    for (const shared_ptr<monero_destination>& destination : transfer->m_destinations) {
+      binary_writer destination_writer;
+      destination_writer.write_string(1, destination->m_address);
+      destination_writer.write_varint(2, destination->m_amount);
+      transfer_writer.write_object(5, destination_writer);
+    }
+    writer.write_object(25, transfer_writer);
+  }
+  writer.write_string(26, tx->m_note);
+  writer.write_bool(27, tx->m_is_locked);
+  writer.write_varint(28, tx->m_input_sum);
+  writer.write_varint(29, tx->m_output_sum);
+  writer.write_string(30, tx->m_change_address);
+  writer.write_varint(31, tx->m_change_amount);
+  writer.write_varint(32, tx->m_num_dummy_outputs);
+  writer.write_string(33, tx->m_extra_hex);
+  writer.write_varint(34, tx->m_size);
+  writer.write_varint(35, tx->m_weight);
+  if (!tx->m_extra.empty()) writer.write_bytes(36, (const char*) tx->m_extra.data(), tx->m_extra.size());
+  writer.write_varint(37, tx->m_last_failed_height);
+  writer.write_string(38, tx->m_last_failed_hash);
+  return writer;
+}
+
+// encode blocks of wallet txs and missing tx hashes to the compact binary format
+string encode_binary_blocks(const vector<shared_ptr<monero_block>>& blocks, const vector<string>& missing_tx_hashes) {
+  binary_writer writer;
+  writer.m_buf.append(BINARY_BLOCKS_MAGIC, sizeof(BINARY_BLOCKS_MAGIC));
+  writer.m_buf.push_back((char) BINARY_BLOCKS_VERSION);
+  for (const shared_ptr<monero_block>& block : blocks) {
+    binary_writer block_writer;
+    block_writer.write_string(1, block->m_hash);
+    block_writer.write_varint(2, block->m_height);
+    block_writer.write_varint(3, block->m_timestamp);
+    for (const shared_ptr<monero_tx>& tx : block->m_txs) block_writer.write_object(4, encode_binary_tx(static_pointer_cast<monero_tx_wallet>(tx)));
+    writer.write_object(1, block_writer);
+  }
+  for (const string& missing_tx_hash : missing_tx_hashes) writer.write_string(2, missing_tx_hash);
+  return writer.m_buf;
+}
+
+// copy bytes to a new jbyteArray in one copy
+jbyteArray string_to_jbyte_array(JNIEnv* env, const string& bytes) {
+  jbyteArray result = env->NewByteArray(bytes.size());
+  if (result == NULL) return NULL; // out of memory error thrown
+  env->SetByteArrayRegion(result, 0, bytes.size(), (const jbyte*) bytes.data());
+  return result;
+}
+
+// copy a jbyteArray to a string of bytes in one copy
+string jbyte_array_to_string(JNIEnv* env, jbyteArray jbytes) {
+  if (jbytes == NULL) return string();
+  jsize length = env->GetArrayLength(jbytes);
+  string bytes(length, '\0');
+  if (length > 0) env->GetByteArrayRegion(jbytes, 0, length, (jbyte*) &bytes[0]);
+  return bytes;
+}
+
+// return unique blocks of the given txs to preserve model relationships as tree, adding unconfirmed txs to a placeholder block
+vector<shared_ptr<monero_block>> get_unique_blocks(const vector<shared_ptr<monero_tx_wallet>>& txs) {
+  shared_ptr<monero_block> unconfirmed_block = nullptr; // placeholder to store unconfirmed txs
+  vector<shared_ptr<monero_block>> blocks;
+  unordered_set<shared_ptr<monero_block>> seen_block_ptrs;
+  for (const shared_ptr<monero_tx_wallet>& tx : txs) {
+    if (tx->m_block == boost::none) {
+      if (unconfirmed_block == nullptr) unconfirmed_block = make_shared<monero_block>();
+      tx->m_block = unconfirmed_block;
+      unconfirmed_block->m_txs.push_back(tx);
+    }
+    unordered_set<shared_ptr<monero_block>>::const_iterator got = seen_block_ptrs.find(tx->m_block.get());
+    if (got == seen_block_ptrs.end()) {
+      seen_block_ptrs.insert(tx->m_block.get());
+      blocks.push_back(tx->m_block.get());
+    }
+  }
+  return blocks;
+}
+
 // ---------------------------- WALLET LISTENER -------------------------------
 
 #ifdef __cplusplus
@@ -124,6 +320,11 @@ extern "C"
 static JavaVM *cachedJVM;
 //static jclass class_ArrayList;
 static jclass class_WalletListener;
+static jmethodID method_WalletListener_onSyncProgress; // method ids are cached once since looking them up per notification is slow
+static jmethodID method_WalletListener_onNewBlock;
+static jmethodID method_WalletListener_onBalancesChanged;
+static jmethodID method_WalletListener_onOutputReceived;
+static jmethodID method_WalletListener_onOutputSpent;
 //static jclass class_TransactionInfo;
 //static jclass class_Transfer;
 //static jclass class_Ledger;
@@ -139,6 +340,11 @@ JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM *jvm, void *reserved) {
 //  class_TransactionInfo = static_cast<jclass>(env->NewGlobalRef(env->FindClass("com/m2049r/xmrwallet/model/TransactionInfo")));
 //  class_Transfer = static_cast<jclass>(env->NewGlobalRef(env->FindClass("com/m2049r/xmrwallet/model/Transfer")));
   class_WalletListener = static_cast<jclass>(env->NewGlobalRef(env->FindClass("monero/wallet/MoneroWalletFull$WalletJniListener")));
+  method_WalletListener_onSyncProgress = env->GetMethodID(class_WalletListener, "onSyncProgress", "(JJJDLjava/lang/String;)V");
+  method_WalletListener_onNewBlock = env->GetMethodID(class_WalletListener, "onNewBlock", "(J)V");
+  method_WalletListener_onBalancesChanged = env->GetMethodID(class_WalletListener, "onBalancesChanged", "(JJ)V");
+  method_WalletListener_onOutputReceived = env->GetMethodID(class_WalletListener, "onOutputReceived", "(JLjava/lang/String;JIIIJZ)V");
+  method_WalletListener_onOutputSpent = env->GetMethodID(class_WalletListener, "onOutputSpent", "(JLjava/lang/String;JIIIJZ)V");
 //  class_Ledger = static_cast<jclass>(env->NewGlobalRef(env->FindClass("com/m2049r/xmrwallet/ledger/Ledger")));
   return JNI_VERSION_1_6;
 }
@@ -176,6 +382,19 @@ struct wallet_jni_listener : public monero_wallet_listener {
   JNIEnv* m_env;
   std::mutex _listenerMutex;
 
+  // sync progress policy, set without the listener mutex which is held while notifying Java
+  std::atomic<uint64_t> m_progress_min_interval_ms{0};
+  std::atomic<double> m_progress_min_percent_delta{0};
+  std::atomic<uint64_t> m_progress_block_stride{1};
+
+  // last reported progress, guarded by its own mutex which is not held while notifying Java
+  std::mutex m_progress_mutex;
+  bool m_progress_reported = false;
+  uint64_t m_progress_height = 0;
+  uint64_t m_progress_start_height = 0;
+  double m_progress_percent_done = 0;
+  std::chrono::steady_clock::time_point m_progress_time;
+
   // TODO: use this env instead of attaching each time? performance improvement?
   wallet_jni_listener(JNIEnv* env, jobject listener) {
     jlistener = env->NewGlobalRef(listener);
@@ -188,7 +407,33 @@ struct wallet_jni_listener : public monero_wallet_listener {
     jlistener = nullptr;
   };
 
+  void set_sync_progress_policy(uint64_t min_interval_ms, double min_percent_delta, uint64_t block_stride) {
+    m_progress_min_interval_ms = min_interval_ms;
+    m_progress_min_percent_delta = min_percent_delta;
+    m_progress_block_stride = block_stride;
+  }
+
+  // indicates if sync progress passes the policy's thresholds since the last reported progress, recording it if so
+  bool is_sync_progress_reported(uint64_t height, uint64_t start_height, uint64_t end_height, double percent_done) {
+    std::lock_guard<std::mutex> lock(m_progress_mutex);
+    std::chrono::steady_clock::time_point now = std::chrono::steady_clock::now();
+    bool is_new_sync = !m_progress_reported || start_height != m_progress_start_height || height < m_progress_height;
+    bool is_done = percent_done >= 1.0 || height + 1 >= end_height;
+    if (!is_new_sync && !is_done) {
+      if (height - m_progress_height < m_progress_block_stride.load()) return false;
+      if (percent_done - m_progress_percent_done < m_progress_min_percent_delta.load()) return false;
+      if (std::chrono::duration_cast<std::chrono::milliseconds>(now - m_progress_time).count() < (int64_t) m_progress_min_interval_ms.load()) return false;
+    }
+    m_progress_reported = true;
+    m_progress_height = height;
+    m_progress_start_height = start_height;
+    m_progress_percent_done = percent_done;
+    m_progress_time = now;
+    return true;
+  }
+
   void on_sync_progress(uint64_t height, uint64_t start_height, uint64_t end_height, double percent_done, const string& message) override {
+    if (!is_sync_progress_reported(height, start_height, end_height, percent_done)) return; // throttled before attaching to the JVM
     std::lock_guard<std::mutex> lock(_listenerMutex);
     if (jlistener == nullptr) return;
     JNIEnv *env;
@@ -203,8 +448,7 @@ struct wallet_jni_listener : public monero_wallet_listener {
     jstring jmessage = env->NewStringUTF(message.c_str());
 
     // invoke Java listener's onSyncProgress()
-    jmethodID listenerClass_onSyncProgress = env->GetMethodID(class_WalletListener, "onSyncProgress", "(JJJDLjava/lang/String;)V");
-    env->CallVoidMethod(jlistener, listenerClass_onSyncProgress, jheight, jstart_height, jend_height, jpercent_done, jmessage);
+    env->CallVoidMethod(jlistener, method_WalletListener_onSyncProgress, jheight, jstart_height, jend_height, jpercent_done, jmessage);
     env->DeleteLocalRef(jmessage);
 
     // check for and rethrow Java exception
@@ -223,8 +467,7 @@ struct wallet_jni_listener : public monero_wallet_listener {
 
     // invoke Java listener's onNewBlock()
     jlong jheight = static_cast<jlong>(height);
-    jmethodID listenerClass_onNewBlock = env->GetMethodID(class_WalletListener, "onNewBlock", "(J)V");
-    env->CallVoidMethod(jlistener, listenerClass_onNewBlock, jheight);
+    env->CallVoidMethod(jlistener, method_WalletListener_onNewBlock, jheight);
 
     // check for and rethrow Java exception
     jthrowable jexception = env->ExceptionOccurred();
@@ -240,11 +483,10 @@ struct wallet_jni_listener : public monero_wallet_listener {
     int envStat = attachJVM(&env);
     if (envStat == JNI_ERR) return;
 
-    // invoke Java listener's onBalancesChanged()
-    jstring jbalance_str = env->NewStringUTF(to_string(new_balance).c_str());
-    jstring junlocked_balance_str = env->NewStringUTF(to_string(new_unlocked_balance).c_str());
-    jmethodID listenerClass_onBalanceChanged = env->GetMethodID(class_WalletListener, "onBalancesChanged", "(Ljava/lang/String;Ljava/lang/String;)V");
-    env->CallVoidMethod(jlistener, listenerClass_onBalanceChanged, jbalance_str, junlocked_balance_str);
+    // invoke Java listener's onBalancesChanged() with unsigned amounts as longs
+    jlong jbalance = static_cast<jlong>(new_balance);
+    jlong junlocked_balance = static_cast<jlong>(new_unlocked_balance);
+    env->CallVoidMethod(jlistener, method_WalletListener_onBalancesChanged, jbalance, junlocked_balance);
 
     // check for and rethrow Java exception
     jthrowable jexception = env->ExceptionOccurred();
@@ -263,13 +505,13 @@ struct wallet_jni_listener : public monero_wallet_listener {
     // prepare parameters to invoke Java listener
     boost::optional<uint64_t> height = output.m_tx->get_height();
     jstring jtx_hash = env->NewStringUTF(output.m_tx->m_hash.get().c_str());
-    jstring jamount_str = env->NewStringUTF(to_string(*output.m_amount).c_str());
+    jlong jamount = static_cast<jlong>(*output.m_amount); // unsigned amount as long
     int version = output.m_tx->m_version == boost::none ? 2 : *output.m_tx->m_version; // TODO: version not present in unlocked output notification, defaulting to 2
     bool is_locked = std::static_pointer_cast<monero_tx_wallet>(output.m_tx)->m_is_locked.get();
 
     // invoke Java listener's onOutputReceived()
-    jmethodID listenerClass_onOutputReceived = env->GetMethodID(class_WalletListener, "onOutputReceived", "(JLjava/lang/String;Ljava/lang/String;IIIJZ)V");
-    env->CallVoidMethod(jlistener, listenerClass_onOutputReceived, height == boost::none ? 0 : *height, jtx_hash, jamount_str, *output.m_account_index, *output.m_subaddress_index, version, *output.m_tx->m_unlock_height, is_locked);
+    env->CallVoidMethod(jlistener, method_WalletListener_onOutputReceived, static_cast<jlong>(height == boost::none ? 0 : *height), jtx_hash, jamount, static_cast<jint>(*output.m_account_index), static_cast<jint>(*output.m_subaddress_index), static_cast<jint>(version), static_cast<jlong>(*output.m_tx->m_unlock_height), static_cast<jboolean>(is_locked));
+    env->DeleteLocalRef(jtx_hash);
 
     // check for and rethrow Java exception
     jthrowable jexception = env->ExceptionOccurred();
@@ -288,15 +530,15 @@ struct wallet_jni_listener : public monero_wallet_listener {
     // prepare parameters to invoke Java listener
     boost::optional<uint64_t> height = output.m_tx->get_height();
     jstring jtx_hash = env->NewStringUTF(output.m_tx->m_hash.get().c_str());
-    jstring jamount_str = env->NewStringUTF(to_string(*output.m_amount).c_str());
-    jstring jaccount_idx_str = env->NewStringUTF(output.m_account_index == boost::none ? "" : to_string(*output.m_account_index).c_str()); // TODO: subaddress indices not known for some inputs (e.g. after tx creation)
-    jstring jsubaddress_idx_str = env->NewStringUTF(output.m_subaddress_index == boost::none ? "" : to_string(*output.m_subaddress_index).c_str());
+    jlong jamount = static_cast<jlong>(*output.m_amount); // unsigned amount as long
+    jint jaccount_idx = output.m_account_index == boost::none ? -1 : static_cast<jint>(*output.m_account_index); // TODO: subaddress indices not known for some inputs (e.g. after tx creation)
+    jint jsubaddress_idx = output.m_subaddress_index == boost::none ? -1 : static_cast<jint>(*output.m_subaddress_index);
     int version = output.m_tx->m_version == boost::none ? 2 : *output.m_tx->m_version; // TODO: version not present in unlocked output notification, defaulting to 2
     bool is_locked = std::static_pointer_cast<monero_tx_wallet>(output.m_tx)->m_is_locked.get();
 
     // invoke Java listener's onOutputSpent()
-    jmethodID listenerClass_onOutputSpent = env->GetMethodID(class_WalletListener, "onOutputSpent", "(JLjava/lang/String;Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;IJZ)V");
-    env->CallVoidMethod(jlistener, listenerClass_onOutputSpent, height == boost::none ? 0 : *height, jtx_hash, jamount_str, jaccount_idx_str, jsubaddress_idx_str, version, *output.m_tx->m_unlock_height, is_locked);
+    env->CallVoidMethod(jlistener, method_WalletListener_onOutputSpent, static_cast<jlong>(height == boost::none ? 0 : *height), jtx_hash, jamount, jaccount_idx, jsubaddress_idx, static_cast<jint>(version), static_cast<jlong>(*output.m_tx->m_unlock_height), static_cast<jboolean>(is_locked));
+    env->DeleteLocalRef(jtx_hash);
 
     // check for and rethrow Java exception
     jthrowable jexception = env->ExceptionOccurred();
@@ -341,6 +583,24 @@ JNIEXPORT jlong JNICALL Java_monero_wallet_MoneroWalletFull_openWalletJni(JNIEnv
   }
 }
 
+JNIEXPORT jlong JNICALL Java_monero_wallet_MoneroWalletFull_openWalletDataJni(JNIEnv *env, jclass clazz, jstring jpassword, jint jnetwork_type, jbyteArray jkeys_data, jbyteArray jcache_data) {
+  MTRACE("Java_monero_wallet_MoneroWalletFull_openWalletDataJni");
+  const char* _password = jpassword ? env->GetStringUTFChars(jpassword, NULL) : nullptr;
+  string password = string(_password ? _password : "");
+  if (jpassword) env->ReleaseStringUTFChars(jpassword, _password);
+  string keys_data = jbyte_array_to_string(env, jkeys_data);
+  string cache_data = jbyte_array_to_string(env, jcache_data);
+
+  // load wallet from buffers
+  try {
+    monero_wallet* wallet = monero_wallet_full::open_wallet_data(password, static_cast<monero_network_type>(jnetwork_type), keys_data, cache_data);
+    return reinterpret_cast<jlong>(wallet);
+  } catch (...) {
+    rethrow_cpp_exception_as_java_exception(env);
+    return 0;
+  }
+}
+
 JNIEXPORT jlong JNICALL Java_monero_wallet_MoneroWalletFull_createWalletRandomJni(JNIEnv *env, jclass clazz, jstring jpath, jstring jpassword, jint jnetwork_type, jstring jdaemon_uri, jstring jdaemon_username, jstring jdaemon_password, jstring jlanguage) {
   MTRACE("Java_monero_wallet_MoneroWalletFull_createWalletRandomJni");
 
@@ -646,6 +906,13 @@ JNIEXPORT jlong JNICALL Java_monero_wallet_MoneroWalletFull_setListenerJni(JNIEn
   return reinterpret_cast<jlong>(listener);
 }
 
+JNIEXPORT void JNICALL Java_monero_wallet_MoneroWalletFull_setSyncProgressPolicyJni(JNIEnv *env, jobject instance, jlong jmin_interval_ms, jdouble jmin_percent_delta, jlong jblock_stride) {
+  MTRACE("Java_monero_wallet_MoneroWalletFull_setSyncProgressPolicyJni");
+  wallet_jni_listener* listener = get_handle<wallet_jni_listener>(env, instance, JNI_LISTENER_HANDLE);
+  if (listener == nullptr) return;
+  listener->set_sync_progress_policy(static_cast<uint64_t>(jmin_interval_ms), static_cast<double>(jmin_percent_delta), static_cast<uint64_t>(jblock_stride));
+}
+
 JNIEXPORT jstring JNICALL Java_monero_wallet_MoneroWalletFull_getIntegratedAddressJni(JNIEnv *env, jobject instance, jstring jstandard_address, jstring jpayment_id) {
   MTRACE("Java_monero_wallet_MoneroWalletFull_getIntegratedAddressJni");
   monero_wallet* wallet = get_handle<monero_wallet>(env, instance, JNI_WALLET_HANDLE);
@@ -960,21 +1227,7 @@ JNIEXPORT jstring JNICALL Java_monero_wallet_MoneroWalletFull_getTxsJni(JNIEnv*
     MTRACE("Got " << txs.size() << " txs");
 
     // return unique blocks to preserve model relationships as tree
-    shared_ptr<monero_block> unconfirmed_block = nullptr; // placeholder to store unconfirmed txs in return json
-    vector<shared_ptr<monero_block>> blocks;
-    unordered_set<shared_ptr<monero_block>> seen_block_ptrs;
-    for (const shared_ptr<monero_tx_wallet>& tx : txs) {
-      if (tx->m_block == boost::none) {
-        if (unconfirmed_block == nullptr) unconfirmed_block = make_shared<monero_block>();
-        tx->m_block = unconfirmed_block;
-        unconfirmed_block->m_txs.push_back(tx);
-      }
-      unordered_set<shared_ptr<monero_block>>::const_iterator got = seen_block_ptrs.find(tx->m_block.get());
-      if (got == seen_block_ptrs.end()) {
-        seen_block_ptrs.insert(tx->m_block.get());
-        blocks.push_back(tx->m_block.get());
-      }
-    }
+    vector<shared_ptr<monero_block>> blocks = get_unique_blocks(txs);
     MTRACE("Returning " << blocks.size() << " blocks");
 
     // wrap and serialize blocks
@@ -1010,23 +1263,10 @@ JNIEXPORT jstring JNICALL Java_monero_wallet_MoneroWalletFull_getTransfersJni(JN
     // get transfers
     vector<shared_ptr<monero_transfer>> transfers = wallet->get_transfers(*transfer_query);
 
-    // return unique blocks to preserve model relationships as tree
-    shared_ptr<monero_block> unconfirmed_block = nullptr; // placeholder to store unconfirmed txs in return json
-    vector<shared_ptr<monero_block>> blocks;
-    unordered_set<shared_ptr<monero_block>> seen_block_ptrs;
-    for (auto const& transfer : transfers) {
-      shared_ptr<monero_tx_wallet> tx = transfer->m_tx;
-      if (tx->m_block == boost::none) {
-        if (unconfirmed_block == nullptr) unconfirmed_block = make_shared<monero_block>();
-        tx->m_block = unconfirmed_block;
-        unconfirmed_block->m_txs.push_back(tx);
-      }
-      unordered_set<shared_ptr<monero_block>>::const_iterator got = seen_block_ptrs.find(tx->m_block.get());
-      if (got == seen_block_ptrs.end()) {
-        seen_block_ptrs.insert(tx->m_block.get());
-        blocks.push_back(tx->m_block.get());
-      }
-    }
+    // return unique blocks of transfer txs to preserve model relationships as tree
+    vector<shared_ptr<monero_tx_wallet>> txs;
+    for (auto const& transfer : transfers) txs.push_back(transfer->m_tx);
+    vector<shared_ptr<monero_block>> blocks = get_unique_blocks(txs);
 
     // wrap and serialize blocks
     rapidjson::Document doc;
@@ -1056,18 +1296,14 @@ JNIEXPORT jstring JNICALL Java_monero_wallet_MoneroWalletFull_getOutputsJni(JNIE
     vector<shared_ptr<monero_output_wallet>> outputs = wallet->get_outputs(*output_query);
     MTRACE("Got " << outputs.size() << " outputs");
 
-    // return unique blocks to preserve model relationships as tree
-    vector<monero_block> blocks;
-    unordered_set<shared_ptr<monero_block>> seen_block_ptrs;
+    // return unique blocks of output txs to preserve model relationships as tree
+    vector<shared_ptr<monero_tx_wallet>> txs;
     for (auto const& output : outputs) {
       shared_ptr<monero_tx_wallet> tx = static_pointer_cast<monero_tx_wallet>(output->m_tx);
       if (tx->m_block == boost::none) throw runtime_error("Need to handle unconfirmed output");
-      unordered_set<shared_ptr<monero_block>>::const_iterator got = seen_block_ptrs.find(*tx->m_block);
-      if (got == seen_block_ptrs.end()) {
-        seen_block_ptrs.insert(*tx->m_block);
-        blocks.push_back(**tx->m_block);
-      }
+      txs.push_back(tx);
     }
+    vector<shared_ptr<monero_block>> blocks = get_unique_blocks(txs);
     MTRACE("Returning " << blocks.size() << " blocks");
 
     // wrap and serialize blocks
@@ -1082,6 +1318,83 @@ JNIEXPORT jstring JNICALL Java_monero_wallet_MoneroWalletFull_getOutputsJni(JNIE
   }
 }
 
+JNIEXPORT jbyteArray JNICALL Java_monero_wallet_MoneroWalletFull_getTxsBinaryJni(JNIEnv* env, jobject instance, jstring jtx_query) {
+  MTRACE("Java_monero_wallet_MoneroWalletFull_getTxsBinaryJni");
+  monero_wallet* wallet = get_handle<monero_wallet>(env, instance, JNI_WALLET_HANDLE);
+  const char* _tx_query = jtx_query ? env->GetStringUTFChars(jtx_query, NULL) : nullptr;
+  string tx_query_json = string(_tx_query ? _tx_query : "");
+  env->ReleaseStringUTFChars(jtx_query, _tx_query);
+  try {
+
+    // deserialize tx query
+    shared_ptr<monero_tx_query> tx_query = monero_tx_query::deserialize_from_block(tx_query_json);
+
+    // get txs
+    vector<string> missing_tx_hashes;
+    vector<shared_ptr<monero_tx_wallet>> txs = wallet->get_txs(*tx_query, missing_tx_hashes);
+    MTRACE("Got " << txs.size() << " txs");
+
+    // encode unique blocks
+    return string_to_jbyte_array(env, encode_binary_blocks(get_unique_blocks(txs), missing_tx_hashes));
+  } catch (...) {
+    rethrow_cpp_exception_as_java_exception(env);
+    return 0;
+  }
+}
+
+JNIEXPORT jbyteArray JNICALL Java_monero_wallet_MoneroWalletFull_getTransfersBinaryJni(JNIEnv* env, jobject instance, jstring jtransfer_query) {
+  MTRACE("Java_monero_wallet_MoneroWalletFull_getTransfersBinaryJni");
+  monero_wallet* wallet = get_handle<monero_wallet>(env, instance, JNI_WALLET_HANDLE);
+  const char* _transfer_query = jtransfer_query ? env->GetStringUTFChars(jtransfer_query, NULL) : nullptr;
+  string transfer_query_json = string(_transfer_query ? _transfer_query : "");
+  env->ReleaseStringUTFChars(jtransfer_query, _transfer_query);
+  try {
+
+    // deserialize transfer query
+    shared_ptr<monero_transfer_query> transfer_query = monero_transfer_query::deserialize_from_block(transfer_query_json);
+
+    // get transfers
+    vector<shared_ptr<monero_transfer>> transfers = wallet->get_transfers(*transfer_query);
+
+    // encode unique blocks of transfer txs
+    vector<shared_ptr<monero_tx_wallet>> txs;
+    for (auto const& transfer : transfers) txs.push_back(transfer->m_tx);
+    return string_to_jbyte_array(env, encode_binary_blocks(get_unique_blocks(txs), vector<string>()));
+  } catch (...) {
+    rethrow_cpp_exception_as_java_exception(env);
+    return 0;
+  }
+}
+
+JNIEXPORT jbyteArray JNICALL Java_monero_wallet_MoneroWalletFull_getOutputsBinaryJni(JNIEnv* env, jobject instance, jstring joutput_query) {
+  MTRACE("Java_monero_wallet_MoneroWalletFull_getOutputsBinaryJni");
+  monero_wallet* wallet = get_handle<monero_wallet>(env, instance, JNI_WALLET_HANDLE);
+  const char* _output_query = joutput_query ? env->GetStringUTFChars(joutput_query, NULL) : nullptr;
+  string output_query_json = string(_output_query ? _output_query : "");
+  env->ReleaseStringUTFChars(joutput_query, _output_query);
+  try {
+
+    // deserialize output query
+    shared_ptr<monero_output_query> output_query = monero_output_query::deserialize_from_block(output_query_json);
+
+    // get outputs
+    vector<shared_ptr<monero_output_wallet>> outputs = wallet->get_outputs(*output_query);
+    MTRACE("Got " << outputs.size() << " outputs");
+
+    // encode unique blocks of output txs
+    vector<shared_ptr<monero_tx_wallet>> txs;
+    for (auto const& output : outputs) {
+      shared_ptr<monero_tx_wallet> tx = static_pointer_cast<monero_tx_wallet>(output->m_tx);
+      if (tx->m_block == boost::none) throw runtime_error("Need to handle unconfirmed output");
+      txs.push_back(tx);
+    }
+    return string_to_jbyte_array(env, encode_binary_blocks(get_unique_blocks(txs), vector<string>()));
+  } catch (...) {
+    rethrow_cpp_exception_as_java_exception(env);
+    return 0;
+  }
+}
+
 JNIEXPORT jstring JNICALL Java_monero_wallet_MoneroWalletFull_exportOutputsJni(JNIEnv* env, jobject instance, jboolean all) {
   MTRACE("Java_monero_wallet_MoneroWalletFull_exportOutputsJni()");
   monero_wallet* wallet = get_handle<monero_wallet>(env, instance, JNI_WALLET_HANDLE);
@@ -1834,6 +2147,35 @@ JNIEXPORT void JNICALL Java_monero_wallet_MoneroWalletFull_moveToJni(JNIEnv* env
   }
 }
 
+JNIEXPORT jbyteArray JNICALL Java_monero_wallet_MoneroWalletFull_getKeysFileBufferJni(JNIEnv* env, jobject instance, jstring jpassword, jboolean jview_only) {
+  MTRACE("Java_monero_wallet_MoneroWalletFull_getKeysFileBufferJni(password, view_only)");
+  const char* _password = jpassword ? env->GetStringUTFChars(jpassword, NULL) : nullptr;
+  string password = string(_password ? _password : "");
+  if (jpassword) env->ReleaseStringUTFChars(jpassword, _password);
+
+  // serialize keys without writing to disk
+  monero_wallet_full* wallet = static_cast<monero_wallet_full*>(get_handle<monero_wallet>(env, instance, JNI_WALLET_HANDLE));
+  try {
+    return string_to_jbyte_array(env, wallet->get_keys_file_buffer(password, jview_only));
+  } catch (...) {
+    rethrow_cpp_exception_as_java_exception(env);
+    return 0;
+  }
+}
+
+JNIEXPORT jbyteArray JNICALL Java_monero_wallet_MoneroWalletFull_getCacheFileBufferJni(JNIEnv* env, jobject instance) {
+  MTRACE("Java_monero_wallet_MoneroWalletFull_getCacheFileBufferJni()");
+
+  // serialize cache without writing to disk
+  monero_wallet_full* wallet = static_cast<monero_wallet_full*>(get_handle<monero_wallet>(env, instance, JNI_WALLET_HANDLE));
+  try {
+    return string_to_jbyte_array(env, wallet->get_cache_file_buffer());
+  } catch (...) {
+    rethrow_cpp_exception_as_java_exception(env);
+    return 0;
+  }
+}
+
 JNIEXPORT void JNICALL Java_monero_wallet_MoneroWalletFull_closeJni(JNIEnv* env, jobject instance, jboolean save) {
   MTRACE("Java_monero_wallet_MoneroWalletFull_CloseJni");
   monero_wallet* wallet = get_handle<monero_wallet>(env, instance, JNI_WALLET_HANDLE);
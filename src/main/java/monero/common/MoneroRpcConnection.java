@@ -219,6 +219,43 @@ public class MoneroRpcConnection {
     }
   }
   
+  /**
+   * Sends a RPC request to the given path and returns the undecoded response body.
+   *
+   * Used when the response cannot be decoded as UTF-8, e.g. when monerod embeds
+   * binary blobs in string fields of a JSON response.
+   *
+   * @param path is the url path of the request to invoke
+   * @param params are request parameters sent in the body
+   * @return byte[] is the raw response body
+   */
+  public byte[] sendPathRequestRaw(String path, Map<String, Object> params) {
+    CloseableHttpResponse resp = null;
+    try {
+
+      // send http request
+      HttpPost post = new HttpPost(uri.toString() + "/" + path);
+      if (params != null) {
+        HttpEntity entity = new StringEntity(JsonUtils.serialize(params));
+        post.setEntity(entity);
+      }
+      resp = client.execute(post);
+
+      // validate response
+      validateHttpResponse(resp);
+
+      // return raw response
+      return EntityUtils.toByteArray(resp.getEntity());
+    } catch (MoneroRpcError e1) {
+      throw e1;
+    } catch (Exception e2) {
+      throw new MoneroError(e2);
+    } finally {
+      try { resp.close(); }
+      catch (Exception e) {}
+    }
+  }
+
   /**
    * Sends a binary RPC request.
    * 
@@ -43,6 +43,10 @@ public class MoneroUtils {
   
   public static final int RING_SIZE = 12; // network-enforced ring size
   
+  private static final long DEFAULT_SPENDABLE_AGE = 10; // number of confirmations before a tx output can be spent
+  private static final long MAX_BLOCK_NUMBER = 500000000; // unlock times at or above this value are timestamps
+  private static final long LOCKED_TX_ALLOWED_DELTA_SECONDS = 120; // leeway when comparing timestamp unlock times to the local clock
+  
   private static long AU_PER_XMR = 1000000000000l;
   private static final int NUM_MNEMONIC_WORDS = 25;
   private static final int VIEW_KEY_LENGTH = 64;
@@ -348,6 +352,34 @@ public class MoneroUtils {
     return quotientAndRemainder[0].doubleValue() + quotientAndRemainder[1].doubleValue() / MoneroUtils.AU_PER_XMR;
   }
   
+  /**
+   * Convert an unsigned 64-bit amount in atomic units, e.g. from native code,
+   * to a BigInteger.
+   * 
+   * @param amount is the unsigned amount, negative as a signed long if 2^63 or more
+   * @return the amount as a non-negative BigInteger
+   */
+  public static BigInteger toUnsignedBigInteger(long amount) {
+    if (amount >= 0) return BigInteger.valueOf(amount);
+    return BigInteger.valueOf(amount & Long.MAX_VALUE).setBit(63); // high bit set
+  }
+  
+  /**
+   * Determine if a confirmed tx is unlocked per wallet2::is_transfer_unlocked().
+   * 
+   * @param txHeight is the height of the block the tx is confirmed in
+   * @param unlockTime is the tx's unlock time as a height or a timestamp in seconds, null or 0 if none
+   * @param height is the wallet's height
+   * @param timestamp is the current time in seconds
+   * @return true if the tx is unlocked at the height and time, false otherwise
+   */
+  public static boolean isUnlocked(long txHeight, Long unlockTime, long height, long timestamp) {
+    if (txHeight + DEFAULT_SPENDABLE_AGE > height) return false;
+    if (unlockTime == null || unlockTime == 0) return true;
+    if (unlockTime < MAX_BLOCK_NUMBER) return height >= unlockTime;
+    return timestamp + LOCKED_TX_ALLOWED_DELTA_SECONDS >= unlockTime;
+  }
+  
   // ---------------------------- PRIVATE HELPERS -----------------------------
   
   private native static byte[] jsonToBinaryJni(String json);
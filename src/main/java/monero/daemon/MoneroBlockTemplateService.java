@@ -0,0 +1,419 @@
+/**
+ * Copyright (c) woodser
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package monero.daemon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import org.zeromq.SocketType;
+import org.zeromq.ZContext;
+import org.zeromq.ZMQ;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import common.utils.GenUtils;
+import common.utils.JsonUtils;
+import monero.common.MoneroError;
+import monero.common.MoneroRpcConnection;
+import monero.daemon.model.MoneroBlockTemplate;
+import monero.daemon.model.MoneroDaemonInfo;
+
+/**
+ * Serves block templates from memory for mining pools.
+ * 
+ * Keeps the current template per wallet address and reserve size, and refreshes
+ * all templates as soon as a new block is added to the chain or the transaction
+ * pool grows by a threshold number of transactions.  New blocks and pool growth
+ * are received from the daemon's ZMQ publisher if its connection has a ZMQ URI,
+ * otherwise the daemon is polled.
+ * 
+ * Every refresh increments a generation counter which is recorded with each
+ * template.  Refreshes for a new block also mark the generation at which the
+ * chain tip changed, so work built on a template from before the tip changed
+ * is detected as stale while work on a template refreshed for pool growth is
+ * still current.  Templates are shared between callers and must not be modified.
+ * 
+ * Concurrent requests for the same template share one fetch from the daemon,
+ * and a fetch never replaces a template of a newer generation.
+ */
+public class MoneroBlockTemplateService {
+  
+  private static final Logger LOGGER = Logger.getLogger(MoneroBlockTemplateService.class.getName());
+  private static final long DEFAULT_POLL_PERIOD_MS = 1000;
+  private static final int DEFAULT_POOL_GROWTH_THRESHOLD = 10;
+  private static final int ZMQ_POLL_TIMEOUT_MS = 250; // max time to notice the service is stopped
+  
+  private MoneroDaemonRpc daemon;
+  private long pollPeriodMs;
+  private int poolGrowthThreshold;
+  private Map<String, Entry> entries;
+  private Map<String, Fetch> fetches;   // fetches in flight by key
+  private AtomicLong generation;
+  private volatile long tipGeneration;  // generation of the last refresh for a new block
+  private volatile boolean isRunning;
+  private boolean isPolling;
+  private Thread thread;
+  private String lastTopBlockHash;  // last top block hash when polling
+  private int numPoolTxsAtRefresh;  // pool size at last refresh when polling
+  private int numPoolTxsAdded;      // txs added to the pool since last refresh per zmq
+  
+  public MoneroBlockTemplateService(MoneroDaemonRpc daemon) {
+    this(daemon, DEFAULT_POLL_PERIOD_MS, DEFAULT_POOL_GROWTH_THRESHOLD);
+  }
+  
+  /**
+   * Construct the service.
+   * 
+   * @param daemon is the daemon to fetch templates from
+   * @param pollPeriodMs is the period to poll the daemon if it has no ZMQ URI
+   * @param poolGrowthThreshold is the number of txs added to the pool which triggers a refresh
+   */
+  public MoneroBlockTemplateService(MoneroDaemonRpc daemon, long pollPeriodMs, int poolGrowthThreshold) {
+    GenUtils.assertNotNull(daemon);
+    GenUtils.assertTrue("Poll period must be > 0 ms", pollPeriodMs > 0);
+    GenUtils.assertTrue("Pool growth threshold must be > 0", poolGrowthThreshold > 0);
+    this.daemon = daemon;
+    this.pollPeriodMs = pollPeriodMs;
+    this.poolGrowthThreshold = poolGrowthThreshold;
+    this.entries = new ConcurrentHashMap<String, Entry>();
+    this.fetches = new ConcurrentHashMap<String, Fetch>();
+    this.generation = new AtomicLong();
+  }
+  
+  /**
+   * Start listening for new blocks and pool growth to refresh templates.
+   */
+  public synchronized void start() {
+    if (isRunning) return;
+    isRunning = true;
+    final String zmqUri = daemon.getRpcConnection().getZmqUri();
+    isPolling = zmqUri == null;
+    if (isPolling) initPolling();
+    thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        if (zmqUri == null) poll();
+        else subscribe(zmqUri);
+      }
+    });
+    thread.setDaemon(true); // daemon thread does not prevent JVM from halting
+    thread.start();
+  }
+  
+  /**
+   * Stop listening for new blocks and pool growth.
+   * 
+   * Templates are still served but only refreshed on submission or when requested.
+   */
+  public synchronized void stop() {
+    if (!isRunning) return;
+    isRunning = false;
+    if (isPolling) thread.interrupt(); // zmq thread stops within its poll timeout
+    thread = null;
+  }
+  
+  /**
+   * Get the current block template and its generation.
+   * 
+   * Returns from memory unless no current template is cached for the address
+   * and reserve size, in which case it is fetched from the daemon.
+   * 
+   * @param walletAddress is the address of the wallet to receive miner transactions
+   * @param reserveSize is the reserve size
+   * @return the current template with its generation
+   */
+  public Entry getEntry(String walletAddress, Integer reserveSize) {
+    long currentGeneration = generation.get();
+    Entry entry = entries.get(getKey(walletAddress, reserveSize));
+    if (entry != null && entry.getGeneration() >= currentGeneration) return entry;
+    return fetch(walletAddress, reserveSize, currentGeneration);
+  }
+  
+  /**
+   * Get the current block template.
+   * 
+   * @param walletAddress is the address of the wallet to receive miner transactions
+   * @param reserveSize is the reserve size
+   * @return the current template
+   */
+  public MoneroBlockTemplate getBlockTemplate(String walletAddress, Integer reserveSize) {
+    return getEntry(walletAddress, reserveSize).getTemplate();
+  }
+  
+  /**
+   * Get the current generation of templates.
+   * 
+   * @return the current generation
+   */
+  public long getGeneration() {
+    return generation.get();
+  }
+  
+  /**
+   * Indicates if work from a template of the given generation is current.
+   * 
+   * Templates refreshed only because the pool grew build on the same block,
+   * so work from their generation stays current until the chain tip changes.
+   * 
+   * @param generation is the generation of the template
+   * @return true if the template builds on the current chain tip, false if it is stale
+   */
+  public boolean isCurrent(long generation) {
+    return generation >= tipGeneration && generation <= this.generation.get();
+  }
+  
+  /**
+   * Submit a mined block to the network and refresh templates.
+   * 
+   * @param blockBlob is the mined block to submit
+   */
+  public void submitBlock(String blockBlob) {
+    submitBlocks(Arrays.asList(blockBlob));
+  }
+  
+  /**
+   * Submit mined blocks to the network and refresh templates if accepted.
+   * 
+   * Templates are not refreshed if the daemon rejects the blocks, so work on
+   * the current templates is not made stale by an invalid submission.
+   * 
+   * @param blockBlobs are the mined blocks to submit
+   */
+  public void submitBlocks(Collection<String> blockBlobs) {
+    daemon.submitBlocks(blockBlobs);
+    refresh();
+  }
+  
+  /**
+   * Increment the generation and refetch all cached templates, making work
+   * from previous generations stale, e.g. when a new block is learned of from
+   * a source other than the daemon.
+   */
+  public void refresh() {
+    refresh(true);
+  }
+  
+  // ------------------------------ PRIVATE HELPERS ---------------------------
+  
+  /**
+   * Start a new generation under the monitor, then fetch its templates outside
+   * of it so daemon requests do not block other refreshes or notifications.
+   * Fetched templates are stored atomically and never replace a newer generation.
+   */
+  private void refresh(boolean isNewTip) {
+    long refreshGeneration;
+    List<Entry> refreshEntries;
+    synchronized (this) {
+      if (isNewTip) tipGeneration = generation.get() + 1; // before increment so new templates are never stale
+      refreshGeneration = generation.incrementAndGet();
+      numPoolTxsAdded = 0;
+      refreshEntries = new ArrayList<Entry>(entries.values());
+    }
+    for (Entry entry : refreshEntries) {
+      try {
+        fetch(entry.getWalletAddress(), entry.getReserveSize(), refreshGeneration);
+      } catch (MoneroError e) {
+        LOGGER.warning("Failed to refresh block template, will fetch on next request: " + e.getMessage());
+      }
+    }
+  }
+  
+  private static String getKey(String walletAddress, Integer reserveSize) {
+    return walletAddress + ":" + reserveSize;
+  }
+  
+  /**
+   * Fetch a template of at least the given generation, joining a fetch in
+   * flight for the same key if it is of at least that generation.
+   */
+  private Entry fetch(final String walletAddress, final Integer reserveSize, final long fetchGeneration) {
+    final String key = getKey(walletAddress, reserveSize);
+    Fetch fetch;
+    while (true) {
+      Fetch inFlight = fetches.get(key);
+      if (inFlight != null && inFlight.generation >= fetchGeneration) {
+        fetch = inFlight;
+        break;
+      }
+      Fetch newFetch = new Fetch(fetchGeneration, new Callable<Entry>() {
+        @Override
+        public Entry call() {
+          return store(key, new Entry(walletAddress, reserveSize, daemon.getBlockTemplate(walletAddress, reserveSize), fetchGeneration));
+        }
+      });
+      if (inFlight == null ? fetches.putIfAbsent(key, newFetch) == null : fetches.replace(key, inFlight, newFetch)) {
+        fetch = newFetch;
+        try {
+          fetch.run();
+        } finally {
+          fetches.remove(key, fetch);
+        }
+        break;
+      }
+    }
+    try {
+      return fetch.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof MoneroError) throw (MoneroError) e.getCause();
+      throw new MoneroError(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MoneroError(e);
+    }
+  }
+  
+  /**
+   * Store an entry unless an entry of a newer generation is stored.
+   * 
+   * @return the stored entry
+   */
+  private Entry store(String key, Entry entry) {
+    while (true) {
+      Entry stored = entries.putIfAbsent(key, entry);
+      if (stored == null) return entry;
+      if (stored.getGeneration() >= entry.getGeneration()) return stored;
+      if (entries.replace(key, stored, entry)) return entry;
+    }
+  }
+  
+  private void initPolling() {
+    MoneroDaemonInfo info = daemon.getInfo();
+    lastTopBlockHash = info.getTopBlockHash();
+    numPoolTxsAtRefresh = info.getNumTxsPool();
+  }
+  
+  private void poll() {
+    while (isRunning) {
+      try {
+        TimeUnit.MILLISECONDS.sleep(pollPeriodMs);
+      } catch (InterruptedException e) {
+        return;
+      }
+      try {
+        MoneroDaemonInfo info = daemon.getInfo();
+        boolean isNewBlock = !info.getTopBlockHash().equals(lastTopBlockHash);
+        if (isNewBlock || info.getNumTxsPool() - numPoolTxsAtRefresh >= poolGrowthThreshold) {
+          lastTopBlockHash = info.getTopBlockHash();
+          numPoolTxsAtRefresh = info.getNumTxsPool();
+          refresh(isNewBlock);
+        } else if (info.getNumTxsPool() < numPoolTxsAtRefresh) {
+          numPoolTxsAtRefresh = info.getNumTxsPool(); // pool shrank without a new block, e.g. flushed
+        }
+      } catch (Exception e) {
+        LOGGER.warning("Failed to poll daemon for block template refresh: " + e.getMessage());
+      }
+    }
+  }
+  
+  private void subscribe(String zmqUri) {
+    try (ZContext context = new ZContext()) {
+      ZMQ.Socket subscriber = context.createSocket(SocketType.SUB);
+      subscriber.connect(zmqUri);
+      subscriber.subscribe("json-minimal-chain_main".getBytes());
+      subscriber.subscribe("json-minimal-txpool_add".getBytes());
+      ZMQ.Poller poller = context.createPoller(1);
+      poller.register(subscriber, ZMQ.Poller.POLLIN);
+      while (isRunning) {
+        try {
+          if (poller.poll(ZMQ_POLL_TIMEOUT_MS) > 0 && poller.pollin(0)) processZmqNotification(subscriber.recvStr());
+        } catch (Exception e) {
+          if (isRunning) LOGGER.warning("Failed to process ZMQ notification for block template refresh: " + e.getMessage());
+        }
+      }
+    }
+  }
+  
+  private void processZmqNotification(String notification) {
+    int bodyIdx = notification.indexOf(':');
+    String topic = notification.substring(0, bodyIdx);
+    if (topic.equals("json-minimal-chain_main")) refresh(true);
+    else if (topic.equals("json-minimal-txpool_add")) {
+      List<Map<String, Object>> txs = JsonUtils.deserialize(MoneroRpcConnection.MAPPER, notification.substring(bodyIdx + 1), new TypeReference<List<Map<String, Object>>>(){});
+      boolean isRefreshNeeded;
+      synchronized (this) {
+        numPoolTxsAdded += txs.size();
+        isRefreshNeeded = numPoolTxsAdded >= poolGrowthThreshold;
+      }
+      if (isRefreshNeeded) refresh(false);
+    }
+  }
+  
+  /**
+   * Fetch of a template in flight, which concurrent requests of at most its
+   * generation wait for instead of fetching the same template.
+   */
+  private static class Fetch extends FutureTask<Entry> {
+    
+    private final long generation;
+    
+    public Fetch(long generation, Callable<Entry> callable) {
+      super(callable);
+      this.generation = generation;
+    }
+  }
+  
+  /**
+   * Block template with the generation it was fetched in.
+   */
+  public static class Entry {
+    
+    private final String walletAddress;
+    private final Integer reserveSize;
+    private final MoneroBlockTemplate template;
+    private final long generation;
+    
+    public Entry(String walletAddress, Integer reserveSize, MoneroBlockTemplate template, long generation) {
+      this.walletAddress = walletAddress;
+      this.reserveSize = reserveSize;
+      this.template = template;
+      this.generation = generation;
+    }
+    
+    public String getWalletAddress() {
+      return walletAddress;
+    }
+    
+    public Integer getReserveSize() {
+      return reserveSize;
+    }
+    
+    public MoneroBlockTemplate getTemplate() {
+      return template;
+    }
+    
+    public long getGeneration() {
+      return generation;
+    }
+  }
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright (c) woodser
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package monero.daemon;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadFactory;
+
+import common.utils.GenUtils;
+import monero.common.MoneroError;
+import monero.daemon.model.MoneroBlock;
+import monero.daemon.model.MoneroBlockchainVisitor;
+import monero.daemon.model.MoneroOutput;
+import monero.daemon.model.MoneroTx;
+
+/**
+ * Scans a range of the blockchain with a visitor.
+ * 
+ * Blocks are fetched in batches through the daemon's chunked binary path, with
+ * the next batch fetched while the current batch is visited.  Transactions and
+ * outputs are visited in parallel on a ForkJoinPool while blocks are visited in
+ * height order, and the visitor is notified of a checkpoint after each batch so
+ * an interrupted scan can be resumed.
+ */
+public class MoneroBlockchainScanner {
+  
+  private static final long DEFAULT_BATCH_SIZE = 100; // number of blocks to fetch per batch
+  
+  private MoneroDaemon daemon;
+  private ForkJoinPool pool;
+  private long batchSize;
+  
+  public MoneroBlockchainScanner(MoneroDaemon daemon) {
+    this(daemon, ForkJoinPool.commonPool(), DEFAULT_BATCH_SIZE);
+  }
+  
+  /**
+   * Construct the scanner.
+   * 
+   * @param daemon is the daemon to fetch blocks from
+   * @param pool is the pool to visit transactions and outputs on
+   * @param batchSize is the number of blocks to fetch per batch
+   */
+  public MoneroBlockchainScanner(MoneroDaemon daemon, ForkJoinPool pool, long batchSize) {
+    GenUtils.assertNotNull(daemon);
+    GenUtils.assertNotNull(pool);
+    GenUtils.assertTrue("Batch size must be > 0", batchSize > 0);
+    this.daemon = daemon;
+    this.pool = pool;
+    this.batchSize = batchSize;
+  }
+  
+  /**
+   * Scan blocks within a range.
+   * 
+   * Stops after the current batch if the calling thread is interrupted.
+   * 
+   * @param startHeight is the first height to scan
+   * @param endHeight is the last height to scan (defaults to the last block)
+   * @param visitor visits the scanned blocks, transactions, and outputs
+   * @return the last scanned height, or startHeight - 1 if no blocks were scanned
+   */
+  public long scan(long startHeight, Long endHeight, final MoneroBlockchainVisitor visitor) {
+    GenUtils.assertNotNull(visitor);
+    if (endHeight == null) endHeight = daemon.getHeight() - 1;
+    long lastHeight = startHeight - 1;
+    if (startHeight > endHeight) return lastHeight;
+    
+    // fetch batches on a separate thread to overlap fetching with visiting
+    ExecutorService fetcher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable);
+        thread.setDaemon(true); // daemon thread does not prevent JVM from halting
+        return thread;
+      }
+    });
+    try {
+      Future<List<MoneroBlock>> nextBatch = fetchBatch(fetcher, startHeight, endHeight);
+      while (nextBatch != null) {
+        List<MoneroBlock> batch = nextBatch.get();
+        long batchEndHeight = batch.get(batch.size() - 1).getHeight();
+        nextBatch = batchEndHeight < endHeight && !Thread.currentThread().isInterrupted() ? fetchBatch(fetcher, batchEndHeight + 1, endHeight) : null;
+        
+        // visit txs and outputs in parallel
+        List<ForkJoinTask<Void>> blockTasks = new ArrayList<ForkJoinTask<Void>>();
+        for (MoneroBlock block : batch) blockTasks.add(pool.submit(new VisitTxsAction(getTxs(block), visitor)));
+        
+        // visit blocks in order as their txs complete
+        for (int i = 0; i < batch.size(); i++) {
+          blockTasks.get(i).join();
+          visitor.visitBlock(batch.get(i));
+        }
+        lastHeight = batchEndHeight;
+        visitor.onCheckpoint(batch.get(batch.size() - 1));
+      }
+      return lastHeight;
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof MoneroError) throw (MoneroError) e.getCause();
+      throw new MoneroError(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return lastHeight;
+    } finally {
+      fetcher.shutdownNow();
+    }
+  }
+  
+  // ------------------------------ PRIVATE HELPERS ---------------------------
+  
+  private Future<List<MoneroBlock>> fetchBatch(ExecutorService fetcher, final long startHeight, long endHeight) {
+    final long batchEndHeight = Math.min(endHeight, startHeight + batchSize - 1);
+    return fetcher.submit(new Callable<List<MoneroBlock>>() {
+      @Override
+      public List<MoneroBlock> call() {
+        List<MoneroBlock> blocks = daemon.getBlocksByRangeChunked(startHeight, batchEndHeight);
+        if (blocks.isEmpty()) throw new MoneroError("No blocks returned from height " + startHeight + " to " + batchEndHeight);
+        return blocks;
+      }
+    });
+  }
+  
+  /**
+   * Get all txs in a block including the miner tx, linked to the block.
+   */
+  private static List<MoneroTx> getTxs(MoneroBlock block) {
+    List<MoneroTx> txs = new ArrayList<MoneroTx>();
+    if (block.getMinerTx() != null) {
+      if (block.getMinerTx().getBlock() == null) block.getMinerTx().setBlock(block);
+      txs.add(block.getMinerTx());
+    }
+    if (block.getTxs() != null) txs.addAll(block.getTxs());
+    return txs;
+  }
+  
+  /**
+   * Visits a block's txs and their outputs in parallel.
+   */
+  @SuppressWarnings("serial")
+  private static class VisitTxsAction extends RecursiveAction {
+    
+    private List<MoneroTx> txs;
+    private MoneroBlockchainVisitor visitor;
+    
+    public VisitTxsAction(List<MoneroTx> txs, MoneroBlockchainVisitor visitor) {
+      this.txs = txs;
+      this.visitor = visitor;
+    }
+    
+    @Override
+    protected void compute() {
+      if (txs.size() > 1) {
+        int mid = txs.size() / 2;
+        invokeAll(new VisitTxsAction(txs.subList(0, mid), visitor), new VisitTxsAction(txs.subList(mid, txs.size()), visitor));
+        return;
+      }
+      for (MoneroTx tx : txs) {
+        visitor.visitTx(tx);
+        if (tx.getOutputs() != null) {
+          for (MoneroOutput output : tx.getOutputs()) visitor.visitOutput(output);
+        }
+      }
+    }
+  }
+}
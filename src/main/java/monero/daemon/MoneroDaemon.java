@@ -49,6 +49,7 @@ import monero.daemon.model.MoneroOutputHistogramEntry;
 import monero.daemon.model.MoneroSubmitTxResult;
 import monero.daemon.model.MoneroTx;
 import monero.daemon.model.MoneroTxBacklogEntry;
+import monero.daemon.model.MoneroTxPoolHistogramEntry;
 import monero.daemon.model.MoneroTxPoolStats;
 import monero.daemon.model.MoneroVersion;
 
@@ -364,6 +365,17 @@ public interface MoneroDaemon {
    */
   public MoneroTxPoolStats getTxPoolStats();
   
+  /**
+   * Get a histogram of transactions in the pool bucketed by age.
+   * 
+   * Derived from the pool statistics so it is cheap to poll, e.g. once per block
+   * to feed fee estimation, without fetching the transactions in the pool.  The
+   * average fee per byte of the pool is available from MoneroTxPoolStats.getFeePerByte().
+   * 
+   * @return the pool's age histogram, empty if the pool has fewer than 2 transactions
+   */
+  public List<MoneroTxPoolHistogramEntry> getTxPoolHistogram();
+  
   /**
    * Flushes all transactions from the tx pool.
    */
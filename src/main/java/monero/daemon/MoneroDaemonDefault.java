@@ -23,6 +23,7 @@
 package monero.daemon;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
@@ -35,6 +36,8 @@ import monero.daemon.model.MoneroKeyImageSpentStatus;
 import monero.daemon.model.MoneroOutputDistributionEntry;
 import monero.daemon.model.MoneroSubmitTxResult;
 import monero.daemon.model.MoneroTx;
+import monero.daemon.model.MoneroTxPoolHistogramEntry;
+import monero.daemon.model.MoneroTxPoolStats;
 
 /**
  * Abstract default implementation of a Monero daemon.
@@ -96,6 +99,12 @@ public abstract class MoneroDaemonDefault implements MoneroDaemon {
     relayTxsByHash(Arrays.asList(txHash));
   }
   
+  @Override
+  public List<MoneroTxPoolHistogramEntry> getTxPoolHistogram() {
+    MoneroTxPoolStats stats = getTxPoolStats();
+    return stats.getHisto() == null ? new ArrayList<MoneroTxPoolHistogramEntry>() : stats.getHisto();
+  }
+  
   @Override
   public MoneroKeyImageSpentStatus getKeyImageSpentStatus(String keyImage) {
     return getKeyImageSpentStatuses(Arrays.asList(keyImage)).get(0);
@@ -0,0 +1,390 @@
+/**
+ * Copyright (c) woodser
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package monero.daemon;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.hc.client5.http.auth.AuthScope;
+import org.apache.hc.client5.http.auth.UsernamePasswordCredentials;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.client5.http.impl.auth.BasicCredentialsProvider;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import common.utils.GenUtils;
+import monero.common.MoneroError;
+import monero.common.MoneroRpcConnection;
+
+/**
+ * Local HTTP proxy to a daemon which fetches each block request once for many clients.
+ * 
+ * Clients such as full wallets connect to the proxy instead of the daemon.
+ * Requests for blocks, block hashes, and output indices with the same path and
+ * body are fetched from the daemon once: concurrent requests wait for the
+ * request in flight and later requests are served from memory for a retention
+ * period, up to a maximum number of cached bytes.  Wallets syncing the same
+ * range therefore share the block data downloaded from the daemon.  All other
+ * requests are forwarded.
+ * 
+ * Shared responses may be up to the retention period old, so a client at the
+ * chain tip can see new blocks up to that period late.
+ */
+public class MoneroDaemonProxy {
+  
+  private static final Logger LOGGER = Logger.getLogger(MoneroDaemonProxy.class.getName());
+  private static final long DEFAULT_RETENTION_MS = 60000;
+  private static final long DEFAULT_MAX_CACHE_BYTES = 256 * 1024 * 1024;
+  private static final int MAX_UPSTREAM_CONNECTIONS = 64;
+  private static final Set<String> SHARED_PATHS = new HashSet<String>(Arrays.asList("/getblocks.bin", "/getblocks_by_height.bin", "/gethashes.bin", "/get_o_indexes.bin"));
+  
+  private MoneroRpcConnection daemonConnection;
+  private long retentionMs;
+  private long maxCacheBytes;
+  private CloseableHttpClient client;
+  private HttpServer server;
+  private ExecutorService executor;
+  private Map<String, FutureTask<Response>> inFlight;
+  private LinkedHashMap<String, Response> cache; // least recently used first
+  private long cacheBytes;
+  
+  // metrics
+  private AtomicLong numRequests;
+  private AtomicLong numDaemonRequests;
+  private AtomicLong numSharedResponses;
+  private AtomicLong numDaemonBytes;
+  private AtomicLong numServedBytes;
+  
+  public MoneroDaemonProxy(MoneroRpcConnection daemonConnection) {
+    this(daemonConnection, DEFAULT_RETENTION_MS, DEFAULT_MAX_CACHE_BYTES);
+  }
+  
+  /**
+   * Construct the proxy.
+   * 
+   * @param daemonConnection is the connection to the daemon
+   * @param retentionMs is the time to keep shared responses in memory after they are fetched
+   * @param maxCacheBytes is the maximum number of bytes of shared responses to keep in memory
+   */
+  public MoneroDaemonProxy(MoneroRpcConnection daemonConnection, long retentionMs, long maxCacheBytes) {
+    GenUtils.assertNotNull("Must provide daemon connection", daemonConnection);
+    GenUtils.assertNotNull("Daemon connection must have a uri", daemonConnection.getUri());
+    GenUtils.assertTrue("Retention must be >= 0 ms", retentionMs >= 0);
+    GenUtils.assertTrue("Max cache bytes must be >= 0", maxCacheBytes >= 0);
+    this.daemonConnection = daemonConnection;
+    this.retentionMs = retentionMs;
+    this.maxCacheBytes = maxCacheBytes;
+    this.inFlight = new ConcurrentHashMap<String, FutureTask<Response>>();
+    this.cache = new LinkedHashMap<String, Response>(16, 0.75f, true);
+    this.numRequests = new AtomicLong();
+    this.numDaemonRequests = new AtomicLong();
+    this.numSharedResponses = new AtomicLong();
+    this.numDaemonBytes = new AtomicLong();
+    this.numServedBytes = new AtomicLong();
+  }
+  
+  /**
+   * Start the proxy on a free local port.
+   */
+  public synchronized void start() {
+    if (server != null) return;
+    
+    // create client to daemon
+    HttpClientBuilder builder = HttpClients.custom().setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+        .setMaxConnTotal(MAX_UPSTREAM_CONNECTIONS)
+        .setMaxConnPerRoute(MAX_UPSTREAM_CONNECTIONS)
+        .build());
+    if (daemonConnection.getUsername() != null) {
+      URI uri = URI.create(daemonConnection.getUri());
+      BasicCredentialsProvider creds = new BasicCredentialsProvider();
+      creds.setCredentials(new AuthScope(uri.getHost(), uri.getPort()), new UsernamePasswordCredentials(daemonConnection.getUsername(), daemonConnection.getPassword().toCharArray()));
+      builder.setDefaultCredentialsProvider(creds);
+    }
+    client = builder.build();
+    
+    // serve requests
+    try {
+      server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    } catch (IOException e) {
+      throw new MoneroError(e);
+    }
+    executor = Executors.newCachedThreadPool(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "MoneroDaemonProxy");
+        thread.setDaemon(true); // daemon thread does not prevent JVM from halting
+        return thread;
+      }
+    });
+    server.setExecutor(executor);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        try {
+          handleRequest(exchange);
+        } catch (Exception e) {
+          LOGGER.log(Level.WARNING, "Failed to proxy request to " + exchange.getRequestURI(), e);
+          exchange.sendResponseHeaders(502, -1);
+        } finally {
+          exchange.close();
+        }
+      }
+    });
+    server.start();
+  }
+  
+  /**
+   * Stop the proxy and release cached responses.
+   */
+  public synchronized void stop() {
+    if (server == null) return;
+    server.stop(0);
+    server = null;
+    executor.shutdownNow();
+    try { client.close(); }
+    catch (IOException e) { throw new MoneroError(e); }
+    synchronized (cache) {
+      cache.clear();
+      cacheBytes = 0;
+    }
+  }
+  
+  /**
+   * Get the uri to connect to the proxy.
+   * 
+   * @return the proxy's uri
+   */
+  public synchronized String getUri() {
+    if (server == null) throw new MoneroError("Proxy is not started");
+    return "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+  
+  /**
+   * Get a connection to the proxy.
+   * 
+   * @return a connection to the proxy
+   */
+  public MoneroRpcConnection getConnection() {
+    return new MoneroRpcConnection(getUri());
+  }
+  
+  public long getNumRequests() {
+    return numRequests.get();
+  }
+  
+  public long getNumDaemonRequests() {
+    return numDaemonRequests.get();
+  }
+  
+  /**
+   * Get the number of responses served without a request to the daemon.
+   * 
+   * @return the number of responses shared with an earlier request
+   */
+  public long getNumSharedResponses() {
+    return numSharedResponses.get();
+  }
+  
+  public long getNumDaemonBytes() {
+    return numDaemonBytes.get();
+  }
+  
+  public long getNumServedBytes() {
+    return numServedBytes.get();
+  }
+  
+  // ------------------------------ PRIVATE -----------------------------------
+  
+  private void handleRequest(HttpExchange exchange) throws IOException {
+    numRequests.incrementAndGet();
+    final String method = exchange.getRequestMethod();
+    final String path = exchange.getRequestURI().getRawPath();
+    final String query = exchange.getRequestURI().getRawQuery();
+    final String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+    final byte[] body = readAll(exchange.getRequestBody());
+    
+    // get shared or forwarded response
+    Response resp;
+    if (!SHARED_PATHS.contains(path)) resp = forward(method, path, query, contentType, body);
+    else {
+      Callable<Response> request = new Callable<Response>() {
+        @Override
+        public Response call() throws Exception {
+          return forward(method, path, query, contentType, body);
+        }
+      };
+      resp = getShared(method + " " + path + (query == null ? "" : "?" + query) + " " + sha256(body), request);
+    }
+    
+    // send response
+    if (resp.contentType != null) exchange.getResponseHeaders().set("Content-Type", resp.contentType);
+    exchange.sendResponseHeaders(resp.status, resp.body.length == 0 ? -1 : resp.body.length);
+    if (resp.body.length > 0) {
+      OutputStream out = exchange.getResponseBody();
+      out.write(resp.body);
+      out.flush();
+    }
+    numServedBytes.addAndGet(resp.body.length);
+  }
+  
+  /**
+   * Get a response from memory, from the same request in flight, or by making the request.
+   */
+  private Response getShared(String key, Callable<Response> request) throws IOException {
+    
+    // serve from memory if retained
+    synchronized (cache) {
+      Response resp = cache.get(key);
+      if (resp != null) {
+        if (System.currentTimeMillis() - resp.timestamp <= retentionMs) {
+          numSharedResponses.incrementAndGet();
+          return resp;
+        }
+        cache.remove(key);
+        cacheBytes -= resp.body.length;
+      }
+    }
+    
+    // join request in flight or make request
+    FutureTask<Response> task = new FutureTask<Response>(request);
+    FutureTask<Response> existingTask = inFlight.putIfAbsent(key, task);
+    try {
+      if (existingTask != null) {
+        Response resp = existingTask.get();
+        numSharedResponses.incrementAndGet();
+        return resp;
+      }
+      task.run();
+      Response resp = task.get();
+      if (resp.status == 200) cache(key, resp);
+      return resp;
+    } catch (InterruptedException e) {
+      throw new MoneroError(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+      throw new MoneroError(e.getCause());
+    } finally {
+      if (existingTask == null) inFlight.remove(key);
+    }
+  }
+  
+  private void cache(String key, Response resp) {
+    if (resp.body.length > maxCacheBytes) return;
+    synchronized (cache) {
+      Response prevResp = cache.put(key, resp);
+      if (prevResp != null) cacheBytes -= prevResp.body.length;
+      cacheBytes += resp.body.length;
+      Iterator<Response> iter = cache.values().iterator();
+      while (cacheBytes > maxCacheBytes && iter.hasNext()) {
+        cacheBytes -= iter.next().body.length;
+        iter.remove();
+      }
+    }
+  }
+  
+  private Response forward(String method, String path, String query, String contentType, byte[] body) throws IOException {
+    numDaemonRequests.incrementAndGet();
+    HttpUriRequestBase req = new HttpUriRequestBase(method, URI.create(daemonConnection.getUri() + path + (query == null ? "" : "?" + query)));
+    if (body.length > 0) req.setEntity(new ByteArrayEntity(body, contentType == null ? ContentType.DEFAULT_BINARY : ContentType.parse(contentType)));
+    CloseableHttpResponse resp = client.execute(req);
+    try {
+      byte[] respBody = resp.getEntity() == null ? new byte[0] : EntityUtils.toByteArray(resp.getEntity());
+      numDaemonBytes.addAndGet(respBody.length);
+      Header respContentType = resp.getFirstHeader("Content-Type");
+      return new Response(resp.getCode(), respContentType == null ? null : respContentType.getValue(), respBody);
+    } finally {
+      resp.close();
+    }
+  }
+  
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buf = new byte[8192];
+    int n;
+    while ((n = in.read(buf)) != -1) out.write(buf, 0, n);
+    return out.toByteArray();
+  }
+  
+  private static String sha256(byte[] bytes) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+      StringBuilder sb = new StringBuilder();
+      for (byte b : digest) sb.append(String.format("%02x", b));
+      return sb.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new MoneroError(e);
+    }
+  }
+  
+  /**
+   * Response from the daemon.
+   */
+  private static class Response {
+    
+    private final int status;
+    private final String contentType;
+    private final byte[] body;
+    private final long timestamp;
+    
+    public Response(int status, String contentType, byte[] body) {
+      this.status = status;
+      this.contentType = contentType;
+      this.body = body;
+      this.timestamp = System.currentTimeMillis();
+    }
+  }
+}
@@ -22,15 +22,21 @@
 
 package monero.daemon;
 
+import java.io.ByteArrayOutputStream;
 import java.math.BigInteger;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 import com.fasterxml.jackson.core.type.TypeReference;
@@ -67,6 +73,7 @@ import monero.daemon.model.MoneroOutputHistogramEntry;
 import monero.daemon.model.MoneroSubmitTxResult;
 import monero.daemon.model.MoneroTx;
 import monero.daemon.model.MoneroTxBacklogEntry;
+import monero.daemon.model.MoneroTxPoolHistogramEntry;
 import monero.daemon.model.MoneroTxPoolStats;
 import monero.daemon.model.MoneroVersion;
 
@@ -82,11 +89,23 @@ public class MoneroDaemonRpc extends MoneroDaemonDefault {
   private static final String DEFAULT_ID = "0000000000000000000000000000000000000000000000000000000000000000";
   private static long MAX_REQ_SIZE = 3000000;  // max request size when fetching blocks from daemon
   private static int NUM_HEADERS_PER_REQ = 750;
+  private static long MINER_TX_SUM_SEGMENT_SIZE = 10000;  // number of blocks per get_coinbase_tx_sum request
+  private static int MINER_TX_SUM_MAX_PARALLELISM = 4;    // max concurrent get_coinbase_tx_sum requests
+  private static int MINER_TX_SUM_MAX_ATTEMPTS = 3;       // max attempts per get_coinbase_tx_sum request
+  private static long REORG_SAFE_DEPTH = 10;              // blocks below this depth are not expected to reorg
+  private static int TX_POOL_HISTO_NUM_BINS = 10;         // number of entries in the daemon's tx pool histogram
+  private static int TX_POOL_HISTO_ENTRY_SIZE = 16;       // size of a padded txpool_histo struct
+  private static int TX_POOL_HISTO_PACKED_ENTRY_SIZE = 12; // size of a packed txpool_histo struct
   
   // instance variables
   private MoneroRpcConnection rpc;
   private MoneroDaemonPoller daemonPoller;
   private Map<Long, MoneroBlockHeader> cachedHeaders;
+  private Map<String, CachedResult> cachedResults;
+  private AtomicLong cacheGeneration;
+  private volatile long cacheMaxStalenessMs;
+  private MoneroDaemonListener cacheListener;
+  private MoneroRangeAggregator<MoneroMinerTxSum> minerTxSumAggregator;
   
   public MoneroDaemonRpc(URI uri) {
     this(new MoneroRpcConnection(uri));
@@ -109,6 +128,21 @@ public class MoneroDaemonRpc extends MoneroDaemonDefault {
     this.rpc = rpc;
     this.daemonPoller = new MoneroDaemonPoller(this);
     this.cachedHeaders = new HashMap<Long, MoneroBlockHeader>();
+    this.cachedResults = new ConcurrentHashMap<String, CachedResult>();
+    this.cacheGeneration = new AtomicLong();
+    this.minerTxSumAggregator = new MoneroRangeAggregator<MoneroMinerTxSum>(MINER_TX_SUM_SEGMENT_SIZE, MINER_TX_SUM_MAX_PARALLELISM, MINER_TX_SUM_MAX_ATTEMPTS) {
+      @Override
+      protected MoneroMinerTxSum aggregateSegment(long startHeight, long numBlocks) {
+        return getMinerTxSumSegment(startHeight, numBlocks);
+      }
+      @Override
+      protected MoneroMinerTxSum merge(MoneroMinerTxSum sum1, MoneroMinerTxSum sum2) {
+        MoneroMinerTxSum sum = new MoneroMinerTxSum();
+        sum.setEmissionSum(sum1.getEmissionSum().add(sum2.getEmissionSum()));
+        sum.setFeeSum(sum1.getFeeSum().add(sum2.getFeeSum()));
+        return sum;
+      }
+    };
   }
   
   /**
@@ -120,6 +154,62 @@ public class MoneroDaemonRpc extends MoneroDaemonDefault {
     return this.rpc;
   }
   
+  /**
+   * Start caching idempotent reads which only change when a block is added
+   * to the chain: the fee estimate, daemon info, hard fork info, and sync info.
+   * 
+   * Cached results are invalidated when a new block is detected or when they
+   * are older than the given maximum staleness, whichever comes first.  Reads
+   * from the cache do not lock.
+   * 
+   * @param maxStalenessMs is the maximum age in milliseconds of a cached result
+   */
+  public void startCaching(long maxStalenessMs) {
+    if (maxStalenessMs <= 0) throw new MoneroError("Maximum cache staleness must be greater than 0 ms");
+    synchronized (cachedResults) {
+      clearCache();
+      cacheMaxStalenessMs = maxStalenessMs;
+      if (cacheListener == null) {
+        cacheListener = new MoneroDaemonListener(); // keeps the poller running which clears the cache on new blocks
+        daemonPoller.addListener(cacheListener);
+      }
+    }
+  }
+  
+  /**
+   * Stop caching idempotent reads.
+   */
+  public void stopCaching() {
+    synchronized (cachedResults) {
+      cacheMaxStalenessMs = 0;
+      if (cacheListener != null) {
+        daemonPoller.removeListener(cacheListener);
+        cacheListener = null;
+      }
+      clearCache();
+    }
+  }
+  
+  /**
+   * Invalidate all cached results, e.g. when a new block is learned of
+   * from a source other than this daemon's listeners.
+   */
+  public void clearCache() {
+    cacheGeneration.incrementAndGet();
+    cachedResults.clear();
+  }
+  
+  /**
+   * Forget miner tx sums memoized for blocks below the reorg-safe depth, e.g.
+   * after a reorg deeper than the safe depth.
+   * 
+   * Memoized sums are also forgotten when a listener is registered and the
+   * daemon is polled onto a chain which does not extend the last block seen.
+   */
+  public void clearMinerTxSumCache() {
+    minerTxSumAggregator.clear();
+  }
+  
   /**
    * Indicates if the client is connected to the daemon via RPC.
    * 
@@ -384,30 +474,21 @@ public class MoneroDaemonRpc extends MoneroDaemonDefault {
     return hexes;
   }
 
-  @SuppressWarnings("unchecked")
   @Override
   public MoneroMinerTxSum getMinerTxSum(long height, Long numBlocks) {
     GenUtils.assertTrue("Height must be an integer >= 0", height >= 0);
-    if (numBlocks == null) numBlocks = getHeight();
+    long chainHeight = getHeight();
+    if (numBlocks == null) numBlocks = chainHeight;
     else GenUtils.assertTrue("Count must be an integer >= 0", numBlocks >= 0);
-    Map<String, Object> params = new HashMap<String, Object>();
-    params.put("height", height);
-    params.put("count", numBlocks);
-    Map<String, Object> respMap = rpc.sendJsonRequest("get_coinbase_tx_sum", params);
-    Map<String, Object> resultMap = (Map<String, Object>) respMap.get("result");
-    checkResponseStatus(resultMap);
-    MoneroMinerTxSum txSum = new MoneroMinerTxSum();
-    txSum.setEmissionSum((BigInteger) resultMap.get("emission_amount"));
-    txSum.setFeeSum((BigInteger) resultMap.get("fee_amount"));
-    return txSum;
+    
+    // sum range in concurrent segments up to the chain height, memoizing segments below the reorg-safe depth
+    if (height >= chainHeight) return getMinerTxSumSegment(height, numBlocks);
+    return minerTxSumAggregator.aggregate(height, Math.min(numBlocks, chainHeight - height), chainHeight - REORG_SAFE_DEPTH);
   }
 
-  @SuppressWarnings("unchecked")
   @Override
   public BigInteger getFeeEstimate(Integer graceBlocks) {
-    Map<String, Object> resp = rpc.sendJsonRequest("get_fee_estimate");
-    Map<String, Object> result = (Map<String, Object>) resp.get("result");
-    checkResponseStatus(result);
+    Map<String, Object> result = sendCachedJsonRequest("get_fee_estimate");
     return (BigInteger) result.get("fee");
   }
 
@@ -474,26 +555,37 @@ public class MoneroDaemonRpc extends MoneroDaemonDefault {
     throw new RuntimeException("MoneroDaemonRpc.getTxPoolBacklog() not implemented");
   }
 
+  @SuppressWarnings("unchecked")
   @Override
   public MoneroTxPoolStats getTxPoolStats() {
-    throw new MoneroError("Response contains field 'histo' which is binary'");
-//    let resp = await this.config.rpc.sendPathRequest("get_transaction_pool_stats");
-//    MoneroDaemonRpc._checkResponseStatus(resp);
-//    let stats = MoneroDaemonRpc._convertRpcTxPoolStats(resp.pool_stats);
-//    
-//    // uninitialize some stats if not applicable
-//    if (stats.getHisto98pc() === 0) stats.setHisto98pc(undefined);
-//    if (stats.getNumTxs() === 0) {
-//      stats.setBytesMin(undefined);
-//      stats.setBytesMed(undefined);
-//      stats.setBytesMax(undefined);
-//      stats.setHisto98pc(undefined);
-//      stats.setOldestTimestamp(undefined);
-//    }
-//    
-//    return stats;
+    
+    // send rpc request and decode as latin-1 so binary string fields are preserved byte for byte
+    byte[] respBytes = rpc.sendPathRequestRaw("get_transaction_pool_stats", null);
+    StringBuilder respStr = new StringBuilder(new String(respBytes, StandardCharsets.ISO_8859_1));
+    
+    // extract binary histogram which is not valid json
+    byte[] histoBin = extractBinaryStringField(respStr, "histo");
+    
+    // parse remaining response
+    Map<String, Object> resp = JsonUtils.toMap(MoneroRpcConnection.MAPPER, respStr.toString());
+    checkResponseStatus(resp);
+    MoneroTxPoolStats stats = convertRpcTxPoolStats((Map<String, Object>) resp.get("pool_stats"), histoBin);
+    
+    // uninitialize some stats if not applicable
+    if (stats.getHisto98pc() != null && stats.getHisto98pc() == 0) stats.setHisto98pc(null);
+    if (stats.getNumTxs() == 0) {
+      stats.setBytesMin(null);
+      stats.setBytesMed(null);
+      stats.setBytesMax(null);
+      stats.setHisto98pc(null);
+      stats.setOldestTimestamp(null);
+    }
+    if (stats.getHisto() != null && stats.getHisto().isEmpty()) stats.setHisto(null);
+    if (stats.getHisto() != null) setHistogramAges(stats, System.currentTimeMillis() / 1000);
+    
+    return stats;
   }
-
+  
   @Override
   public void flushTxPool() {
     flushTxPool(new String[0]);
@@ -592,31 +684,19 @@ public class MoneroDaemonRpc extends MoneroDaemonDefault {
 //  return entries;
   }
 
-  @SuppressWarnings("unchecked")
   @Override
   public MoneroDaemonInfo getInfo() {
-    Map<String, Object> resp = rpc.sendJsonRequest("get_info");
-    Map<String, Object> result = (Map<String, Object>) resp.get("result");
-    checkResponseStatus(result);
-    return convertRpcInfo(result);
+    return convertRpcInfo(sendCachedJsonRequest("get_info"));
   }
 
-  @SuppressWarnings("unchecked")
   @Override
   public MoneroDaemonSyncInfo getSyncInfo() {
-    Map<String, Object> resp = rpc.sendJsonRequest("sync_info");
-    Map<String, Object> result = (Map<String, Object>) resp.get("result");
-    checkResponseStatus(result);
-    return convertRpcSyncInfo(result);
+    return convertRpcSyncInfo(sendCachedJsonRequest("sync_info"));
   }
 
-  @SuppressWarnings("unchecked")
   @Override
   public MoneroHardForkInfo getHardForkInfo() {
-    Map<String, Object> resp = rpc.sendJsonRequest("hard_fork_info");
-    Map<String, Object> result = (Map<String, Object>) resp.get("result");
-    checkResponseStatus(result);
-    return convertRpcHardForkInfo(result);
+    return convertRpcHardForkInfo(sendCachedJsonRequest("hard_fork_info"));
   }
 
   @SuppressWarnings("unchecked")
@@ -830,6 +910,7 @@ public class MoneroDaemonRpc extends MoneroDaemonDefault {
     if (blockBlobs.isEmpty()) throw new MoneroError("Must provide an array of mined block blobs to submit");
     Map<String, Object> resp = rpc.sendJsonRequest("submit_block", blockBlobs);
     checkResponseStatus((Map<String, Object>) resp.get("result"));
+    clearCache();
   }
 
   @Override
@@ -893,6 +974,50 @@ public class MoneroDaemonRpc extends MoneroDaemonDefault {
   
   // ------------------------------- PRIVATE INSTANCE  ----------------------------
   
+  @SuppressWarnings("unchecked")
+  private MoneroMinerTxSum getMinerTxSumSegment(long height, long numBlocks) {
+    Map<String, Object> params = new HashMap<String, Object>();
+    params.put("height", height);
+    params.put("count", numBlocks);
+    Map<String, Object> respMap = rpc.sendJsonRequest("get_coinbase_tx_sum", params);
+    Map<String, Object> resultMap = (Map<String, Object>) respMap.get("result");
+    checkResponseStatus(resultMap);
+    MoneroMinerTxSum txSum = new MoneroMinerTxSum();
+    txSum.setEmissionSum((BigInteger) resultMap.get("emission_amount"));
+    txSum.setFeeSum((BigInteger) resultMap.get("fee_amount"));
+    return txSum;
+  }
+  
+  /**
+   * Sends a JSON request without parameters and returns its checked result,
+   * served from the cache if caching is enabled and the cached result is valid.
+   * 
+   * Results are cached as unmodified RPC maps which are converted to new models
+   * on every call, so callers never share model instances.
+   * 
+   * @param method is the JSON RPC method to invoke
+   * @return the result of the request
+   */
+  @SuppressWarnings("unchecked")
+  private Map<String, Object> sendCachedJsonRequest(String method) {
+    
+    // return cached result if valid
+    long maxStalenessMs = cacheMaxStalenessMs;
+    if (maxStalenessMs > 0) {
+      CachedResult cached = cachedResults.get(method);
+      if (cached != null && cached.generation == cacheGeneration.get() && System.currentTimeMillis() - cached.timestamp <= maxStalenessMs) return cached.result;
+    }
+    
+    // fetch result, capturing generation first so results fetched across a new block are not cached as current
+    long generation = cacheGeneration.get();
+    long timestamp = System.currentTimeMillis();
+    Map<String, Object> resp = rpc.sendJsonRequest(method);
+    Map<String, Object> result = (Map<String, Object>) resp.get("result");
+    checkResponseStatus(result);
+    if (maxStalenessMs > 0 && generation == cacheGeneration.get()) cachedResults.put(method, new CachedResult(result, generation, timestamp));
+    return result;
+  }
+  
   private int[] getBandwidthLimits() {
     Map<String, Object> resp = rpc.sendPathRequest("get_limit");
     checkResponseStatus(resp);
@@ -1340,6 +1465,94 @@ public class MoneroDaemonRpc extends MoneroDaemonDefault {
     return entry;
   }
   
+  @SuppressWarnings("unchecked")
+  private static MoneroTxPoolStats convertRpcTxPoolStats(Map<String, Object> rpcStats, byte[] histoBin) {
+    MoneroTxPoolStats stats = new MoneroTxPoolStats();
+    for (String key : rpcStats.keySet()) {
+      Object val = rpcStats.get(key);
+      if (key.equals("bytes_max")) stats.setBytesMax(((BigInteger) val).longValue());
+      else if (key.equals("bytes_med")) stats.setBytesMed(((BigInteger) val).longValue());
+      else if (key.equals("bytes_min")) stats.setBytesMin(((BigInteger) val).longValue());
+      else if (key.equals("bytes_total")) stats.setBytesTotal(((BigInteger) val).longValue());
+      else if (key.equals("fee_total")) stats.setFeeTotal(((BigInteger) val).longValue());
+      else if (key.equals("histo_98pc")) stats.setHisto98pc(((BigInteger) val).longValue());
+      else if (key.equals("num_10m")) stats.setNum10m(((BigInteger) val).intValue());
+      else if (key.equals("num_double_spends")) stats.setNumDoubleSpends(((BigInteger) val).intValue());
+      else if (key.equals("num_failing")) stats.setNumFailing(((BigInteger) val).intValue());
+      else if (key.equals("num_not_relayed")) stats.setNumNotRelayed(((BigInteger) val).intValue());
+      else if (key.equals("oldest")) stats.setOldestTimestamp(((BigInteger) val).longValue());
+      else if (key.equals("txs_total")) stats.setNumTxs(((BigInteger) val).intValue());
+      else if (key.equals("histo")) {
+        if (histoBin != null) stats.setHisto(convertBinaryTxPoolHisto(histoBin));
+        else if (val != null) { // newer daemons serialize the histogram as a json array
+          List<MoneroTxPoolHistogramEntry> histo = new ArrayList<MoneroTxPoolHistogramEntry>();
+          for (Map<String, Object> rpcEntry : (List<Map<String, Object>>) val) {
+            MoneroTxPoolHistogramEntry entry = new MoneroTxPoolHistogramEntry();
+            entry.setNumTxs(((BigInteger) rpcEntry.get("txs")).intValue());
+            entry.setNumBytes(((BigInteger) rpcEntry.get("bytes")).longValue());
+            histo.add(entry);
+          }
+          stats.setHisto(histo);
+        }
+      }
+      else LOGGER.warning("ignoring unexpected field in tx pool stats: " + key + ": " + val);
+    }
+    return stats;
+  }
+  
+  /**
+   * Converts the binary tx pool histogram to entries.
+   * 
+   * The histogram is a contiguous array of txpool_histo structs, each a little-endian
+   * uint32 tx count and uint64 byte count with 4 bytes of alignment padding between,
+   * or without padding if the daemon was built with packed structs.  The daemon always
+   * buckets the pool into TX_POOL_HISTO_NUM_BINS entries, so the entry size is derived
+   * from the length rather than guessed from its divisors.
+   * 
+   * @param histoBin is the binary histogram
+   * @return the histogram entries
+   */
+  private static List<MoneroTxPoolHistogramEntry> convertBinaryTxPoolHisto(byte[] histoBin) {
+    List<MoneroTxPoolHistogramEntry> histo = new ArrayList<MoneroTxPoolHistogramEntry>();
+    if (histoBin.length == 0) return histo;
+    if (histoBin.length % TX_POOL_HISTO_NUM_BINS != 0) throw new MoneroError("Invalid binary tx pool histogram length: " + histoBin.length + ", expected " + TX_POOL_HISTO_NUM_BINS + " entries");
+    int entrySize = histoBin.length / TX_POOL_HISTO_NUM_BINS;
+    if (entrySize != TX_POOL_HISTO_ENTRY_SIZE && entrySize != TX_POOL_HISTO_PACKED_ENTRY_SIZE) throw new MoneroError("Invalid binary tx pool histogram entry size: " + entrySize);
+    ByteBuffer buf = ByteBuffer.wrap(histoBin).order(ByteOrder.LITTLE_ENDIAN);
+    for (int offset = 0; offset < histoBin.length; offset += entrySize) {
+      MoneroTxPoolHistogramEntry entry = new MoneroTxPoolHistogramEntry();
+      entry.setNumTxs(buf.getInt(offset));
+      entry.setNumBytes(buf.getLong(offset + entrySize - 8));
+      histo.add(entry);
+    }
+    return histo;
+  }
+  
+  /**
+   * Assigns approximate age bounds to tx pool histogram entries.
+   * 
+   * Mirrors the daemon's bucketing: if the 98th percentile age is known, the first
+   * n - 1 buckets evenly divide ages up to it and the last bucket holds the oldest
+   * 2% of txs, otherwise all buckets evenly divide ages up to the oldest tx.
+   * 
+   * @param stats are the stats with histogram entries to update
+   * @param now is the current time in seconds
+   */
+  private static void setHistogramAges(MoneroTxPoolStats stats, long now) {
+    List<MoneroTxPoolHistogramEntry> histo = stats.getHisto();
+    long oldestAge = stats.getOldestTimestamp() == null ? 0 : Math.max(0, now - stats.getOldestTimestamp());
+    int factor = stats.getHisto98pc() == null ? histo.size() : histo.size() - 1;
+    long delta = Math.max(1, stats.getHisto98pc() == null ? oldestAge : stats.getHisto98pc());
+    for (int i = 0; i < factor; i++) {
+      histo.get(i).setMinAge(i * delta / factor);
+      histo.get(i).setMaxAge((i + 1) * delta / factor);
+    }
+    if (factor < histo.size()) {
+      histo.get(factor).setMinAge(delta);
+      histo.get(factor).setMaxAge(Math.max(delta, oldestAge));
+    }
+  }
+  
   private static MoneroDaemonInfo convertRpcInfo(Map<String, Object> rpcInfo) {
     if (rpcInfo == null) return null;
     MoneroDaemonInfo info = new MoneroDaemonInfo();
@@ -1512,6 +1725,55 @@ public class MoneroDaemonRpc extends MoneroDaemonDefault {
     return chain;
   }
   
+  /**
+   * Extracts a binary string field from a latin-1 decoded JSON response and replaces
+   * its value with null so the remaining response can be parsed.
+   * 
+   * monerod embeds binary blobs in JSON strings with its own escape sequences (e.g. \v)
+   * and unescaped control characters, so the field is unescaped here byte for byte.
+   * 
+   * @param json is the latin-1 decoded JSON response to extract the field from
+   * @param field is the name of the field to extract
+   * @return the field's bytes or null if the field is not present as a string
+   */
+  private static byte[] extractBinaryStringField(StringBuilder json, String field) {
+    
+    // find start of string value
+    int keyIdx = json.indexOf("\"" + field + "\"");
+    if (keyIdx < 0) return null;
+    int idx = keyIdx + field.length() + 2;
+    while (idx < json.length() && (Character.isWhitespace(json.charAt(idx)) || json.charAt(idx) == ':')) idx++;
+    if (idx >= json.length() || json.charAt(idx) != '"') return null;
+    int valueStart = idx++;
+    
+    // unescape until closing quote
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    while (true) {
+      if (idx >= json.length()) throw new MoneroError("Unterminated string field in response: " + field);
+      char c = json.charAt(idx++);
+      if (c == '"') break;
+      if (c != '\\') {
+        bytes.write(c);
+        continue;
+      }
+      char escaped = json.charAt(idx++);
+      switch (escaped) {
+        case 'b': bytes.write('\b'); break;
+        case 'f': bytes.write('\f'); break;
+        case 'n': bytes.write('\n'); break;
+        case 'r': bytes.write('\r'); break;
+        case 't': bytes.write('\t'); break;
+        case 'v': bytes.write(0x0b); break;
+        case 'u': bytes.write(Integer.parseInt(json.substring(idx, idx + 4), 16)); idx += 4; break;
+        default: bytes.write(escaped); // quote, backslash, slash, apostrophe
+      }
+    }
+    
+    // replace value with null
+    json.replace(valueStart, idx, "null");
+    return bytes.toByteArray();
+  }
+  
   /**
    * Converts a '0x' prefixed hexidecimal string to a BigInteger.
    * 
@@ -1523,6 +1785,22 @@ public class MoneroDaemonRpc extends MoneroDaemonDefault {
     return new BigInteger(hex.substring(2), 16);
   }
   
+  /**
+   * Result of a JSON request cached until its generation is invalidated or it becomes stale.
+   */
+  private static class CachedResult {
+    
+    private final Map<String, Object> result;
+    private final long generation;
+    private final long timestamp;
+    
+    public CachedResult(Map<String, Object> result, long generation, long timestamp) {
+      this.result = result;
+      this.generation = generation;
+      this.timestamp = timestamp;
+    }
+  }
+  
   /**
    * Polls a Monero daemon for updates and notifies listeners as they occur.
    */
@@ -1597,7 +1875,9 @@ public class MoneroDaemonRpc extends MoneroDaemonDefault {
           // fetch and compare latest block header
           MoneroBlockHeader header = daemon.getLastBlockHeader();
           if (!header.getHash().equals(lastHeader.getHash())) {
+            if (isReorg(lastHeader, header)) clearMinerTxSumCache(); // reorg depth is unknown so memoized sums may be invalid
             lastHeader = header;
+            clearCache(); // invalidate cached results before listeners can read them
             synchronized(listeners) {
               for (MoneroDaemonListener listener : listeners) {
                 listener.onBlockHeader(header); // notify listener
@@ -1610,6 +1890,12 @@ public class MoneroDaemonRpc extends MoneroDaemonDefault {
       public void terminate() {
         isTerminated = true;
       }
+      
+      private boolean isReorg(MoneroBlockHeader lastHeader, MoneroBlockHeader header) {
+        if (header.getHeight() <= lastHeader.getHeight()) return true;
+        if (header.getHeight() == lastHeader.getHeight() + 1) return !lastHeader.getHash().equals(header.getPrevHash());
+        return !lastHeader.getHash().equals(daemon.getBlockHash(lastHeader.getHeight()));
+      }
     }
   }
 }
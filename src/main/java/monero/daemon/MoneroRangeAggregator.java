@@ -0,0 +1,193 @@
+/**
+ * Copyright (c) woodser
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package monero.daemon;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import common.utils.GenUtils;
+import monero.common.MoneroError;
+
+/**
+ * Aggregates a value over a range of blocks by splitting the range into
+ * segments which are fetched concurrently and merged in order.
+ * 
+ * Segments are aligned to multiples of the segment size so that repeated
+ * aggregates over overlapping ranges share segments.  Full segments which end
+ * at or below the reorg-safe height are memoized, so repeated aggregates only
+ * fetch new segments, and failed segments are retried independently so one
+ * failure does not discard the segments already fetched.
+ * 
+ * Segments are fetched on a pool of at most maxParallelism threads which is
+ * shared by concurrent aggregates and whose idle threads time out.
+ * 
+ * @param <T> is the type of the aggregated value
+ */
+public abstract class MoneroRangeAggregator<T> {
+  
+  private static final Logger LOGGER = Logger.getLogger(MoneroRangeAggregator.class.getName());
+  private static final long THREAD_KEEP_ALIVE_MS = 60000; // idle time before pool threads exit
+  
+  private long segmentSize;
+  private int maxParallelism;
+  private int maxAttempts;
+  private Map<Long, T> memoizedSegments; // full segments by start height
+  private ExecutorService pool;
+  
+  /**
+   * Construct the aggregator.
+   * 
+   * @param segmentSize is the maximum number of blocks per segment
+   * @param maxParallelism is the maximum number of segments to fetch concurrently
+   * @param maxAttempts is the maximum number of attempts to fetch a segment
+   */
+  public MoneroRangeAggregator(long segmentSize, int maxParallelism, int maxAttempts) {
+    GenUtils.assertTrue("Segment size must be > 0", segmentSize > 0);
+    GenUtils.assertTrue("Max parallelism must be > 0", maxParallelism > 0);
+    GenUtils.assertTrue("Max attempts must be > 0", maxAttempts > 0);
+    this.segmentSize = segmentSize;
+    this.maxParallelism = maxParallelism;
+    this.maxAttempts = maxAttempts;
+    this.memoizedSegments = new ConcurrentHashMap<Long, T>();
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(maxParallelism, maxParallelism, THREAD_KEEP_ALIVE_MS, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "MoneroRangeAggregator");
+        thread.setDaemon(true); // daemon thread does not prevent JVM from halting
+        return thread;
+      }
+    });
+    pool.allowCoreThreadTimeOut(true);
+    this.pool = pool;
+  }
+  
+  /**
+   * Fetch the aggregate value of a single segment.
+   * 
+   * @param startHeight is the start height of the segment
+   * @param numBlocks is the number of blocks in the segment
+   * @return the aggregate value of the segment
+   */
+  protected abstract T aggregateSegment(long startHeight, long numBlocks);
+  
+  /**
+   * Merge the aggregate values of two adjacent ranges without modifying them,
+   * since segment values may be memoized.
+   * 
+   * @param value1 is the aggregate value of the lower range
+   * @param value2 is the aggregate value of the upper range
+   * @return the aggregate value of both ranges
+   */
+  protected abstract T merge(T value1, T value2);
+  
+  /**
+   * Aggregate a value over a range of blocks.
+   * 
+   * @param startHeight is the start height of the range
+   * @param numBlocks is the number of blocks in the range
+   * @param safeHeight is the height below which segments are safe from reorgs and can be memoized
+   * @return the aggregate value of the range
+   */
+  public T aggregate(long startHeight, long numBlocks, long safeHeight) {
+    if (numBlocks == 0) return aggregateSegment(startHeight, 0);
+    
+    // split range into segments aligned to the segment size
+    List<long[]> segments = new ArrayList<long[]>();
+    long endHeight = startHeight + numBlocks;
+    for (long height = startHeight; height < endHeight; ) {
+      long segmentEnd = Math.min(endHeight, (height / segmentSize + 1) * segmentSize);
+      segments.add(new long[] { height, segmentEnd - height });
+      height = segmentEnd;
+    }
+    
+    // fetch segments concurrently
+    List<Future<T>> futures = new ArrayList<Future<T>>();
+    try {
+      for (final long[] segment : segments) {
+        futures.add(pool.submit(new Callable<T>() {
+          @Override
+          public T call() {
+            return getSegment(segment[0], segment[1], safeHeight);
+          }
+        }));
+      }
+      
+      // merge segments in order
+      T aggregate = null;
+      for (Future<T> future : futures) {
+        T value = future.get();
+        aggregate = aggregate == null ? value : merge(aggregate, value);
+      }
+      return aggregate;
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof MoneroError) throw (MoneroError) e.getCause();
+      throw new MoneroError(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MoneroError(e);
+    } finally {
+      for (Future<T> future : futures) future.cancel(true); // no-op if done
+    }
+  }
+  
+  /**
+   * Clear memoized segments, e.g. after a reorg deeper than the safe depth.
+   */
+  public void clear() {
+    memoizedSegments.clear();
+  }
+  
+  private T getSegment(long startHeight, long numBlocks, long safeHeight) {
+    
+    // get memoized segment
+    boolean isMemoizable = numBlocks == segmentSize && startHeight + numBlocks <= safeHeight;
+    if (isMemoizable) {
+      T memoized = memoizedSegments.get(startHeight);
+      if (memoized != null) return memoized;
+    }
+    
+    // fetch segment with retries
+    for (int attempt = 1; ; attempt++) {
+      try {
+        T value = aggregateSegment(startHeight, numBlocks);
+        if (isMemoizable) memoizedSegments.put(startHeight, value);
+        return value;
+      } catch (MoneroError e) {
+        if (attempt >= maxAttempts) throw e;
+        LOGGER.warning("Failed to aggregate blocks " + startHeight + " to " + (startHeight + numBlocks - 1) + " on attempt " + attempt + ", retrying: " + e.getMessage());
+      }
+    }
+  }
+}
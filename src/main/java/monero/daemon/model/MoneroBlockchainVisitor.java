@@ -0,0 +1,43 @@
+package monero.daemon.model;
+
+/**
+ * Visits blocks, transactions, and outputs as a blockchain is scanned.
+ * 
+ * Transactions and outputs are visited concurrently, so their callbacks must be
+ * thread-safe.  Blocks are visited in height order on the scanning thread once
+ * all of their transactions and outputs have been visited.
+ */
+public class MoneroBlockchainVisitor {
+  
+  /**
+   * Called for every transaction including miner transactions, concurrently
+   * with other transactions.
+   * 
+   * @param tx is the transaction to visit, linked to its block
+   */
+  public void visitTx(MoneroTx tx) { }
+  
+  /**
+   * Called for every output after its transaction is visited, concurrently
+   * with outputs of other transactions.
+   * 
+   * @param output is the output to visit, linked to its transaction
+   */
+  public void visitOutput(MoneroOutput output) { }
+  
+  /**
+   * Called in height order after the block's transactions and outputs are visited.
+   * 
+   * @param block is the block to visit
+   */
+  public void visitBlock(MoneroBlock block) { }
+  
+  /**
+   * Called after all blocks up to and including the given block are visited.
+   * 
+   * A scan interrupted after a checkpoint can resume from the next height.
+   * 
+   * @param lastBlock is the last visited block
+   */
+  public void onCheckpoint(MoneroBlock lastBlock) { }
+}
@@ -0,0 +1,59 @@
+package monero.daemon.model;
+
+/**
+ * Entry in the transaction pool histogram which buckets pooled transactions by
+ * their age (see get_transaction_pool_stats of Daemon RPC documentation).
+ *
+ * Ages are in seconds and approximate since the daemon does not report the
+ * bucket bounds, so they are derived from the pool's oldest timestamp and
+ * 98th percentile age relative to the local clock.
+ */
+public class MoneroTxPoolHistogramEntry {
+
+  private Integer numTxs;
+  private Long numBytes;
+  private Long minAge;
+  private Long maxAge;
+
+  public Integer getNumTxs() {
+    return numTxs;
+  }
+
+  public void setNumTxs(Integer numTxs) {
+    this.numTxs = numTxs;
+  }
+
+  public Long getNumBytes() {
+    return numBytes;
+  }
+
+  public void setNumBytes(Long numBytes) {
+    this.numBytes = numBytes;
+  }
+
+  /**
+   * Get the lower bound of the age of transactions in this bucket.
+   *
+   * @return the minimum age in seconds
+   */
+  public Long getMinAge() {
+    return minAge;
+  }
+
+  public void setMinAge(Long minAge) {
+    this.minAge = minAge;
+  }
+
+  /**
+   * Get the upper bound of the age of transactions in this bucket.
+   *
+   * @return the maximum age in seconds
+   */
+  public Long getMaxAge() {
+    return maxAge;
+  }
+
+  public void setMaxAge(Long maxAge) {
+    this.maxAge = maxAge;
+  }
+}
@@ -1,5 +1,7 @@
 package monero.daemon.model;
 
+import java.util.List;
+
 /**
  * Models transaction pool statistics.
  */
@@ -15,7 +17,7 @@ public class MoneroTxPoolStats {
   private Long bytesMed;
   private Long bytesMin;
   private Long bytesTotal;
-  private Object histo;
+  private List<MoneroTxPoolHistogramEntry> histo;
   private Long histo98pc;
   private Long oldestTimestamp;
   
@@ -99,11 +101,16 @@ public class MoneroTxPoolStats {
     this.bytesTotal = bytesTotal;
   }
   
-  public Object getHisto() {
+  /**
+   * Get the histogram of pooled transactions bucketed by age, oldest last.
+   * 
+   * @return the age histogram or null if the pool has fewer than 2 transactions
+   */
+  public List<MoneroTxPoolHistogramEntry> getHisto() {
     return histo;
   }
   
-  public void setHisto(Object histo) {
+  public void setHisto(List<MoneroTxPoolHistogramEntry> histo) {
     this.histo = histo;
   }
   
@@ -122,4 +129,14 @@ public class MoneroTxPoolStats {
   public void setOldestTimestamp(Long oldestTimestamp) {
     this.oldestTimestamp = oldestTimestamp;
   }
+  
+  /**
+   * Get the average fee per byte of transactions in the pool.
+   * 
+   * @return the total fee divided by the total bytes in the pool or null if the pool is empty
+   */
+  public Long getFeePerByte() {
+    if (feeTotal == null || bytesTotal == null || bytesTotal == 0) return null;
+    return feeTotal / bytesTotal;
+  }
 }
@@ -0,0 +1,642 @@
+/**
+ * Copyright (c) woodser
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package monero.wallet;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import monero.common.MoneroError;
+import monero.daemon.model.MoneroBlock;
+import monero.daemon.model.MoneroKeyImage;
+import monero.daemon.model.MoneroOutput;
+import monero.daemon.model.MoneroTx;
+import monero.wallet.model.MoneroDestination;
+import monero.wallet.model.MoneroIncomingTransfer;
+import monero.wallet.model.MoneroOutgoingTransfer;
+import monero.wallet.model.MoneroOutputWallet;
+import monero.wallet.model.MoneroTxWallet;
+
+/**
+ * Encodes and decodes blocks of wallet txs in the compact binary format
+ * returned from the native wallet as an alternative to JSON.
+ * 
+ * The format is a 4 byte magic "MNRB" and a 1 byte version followed by the
+ * fields of the root object. Each object is a sequence of fields whose key is
+ * a varint of (field number &lt;&lt; 3 | wire type). The wire type is either
+ * VARINT, an unsigned LEB128 integer which also encodes booleans, or LEN, a
+ * varint length followed by that many bytes of a UTF-8 string, raw bytes, or a
+ * nested object. Absent fields are omitted, repeated fields are repeated, and
+ * unknown fields are skipped, so fields can be added without a new version.
+ * 
+ * The field numbers below must match the encoder in monero_wallet_jni_bridge.cpp.
+ */
+public class MoneroBlocksBinaryCodec {
+  
+  // header
+  private static final byte[] MAGIC = new byte[] { 'M', 'N', 'R', 'B' };
+  private static final int VERSION = 1;
+  
+  // wire types
+  private static final int VARINT = 0;
+  private static final int LEN = 2;
+  
+  // root fields
+  private static final int ROOT_BLOCK = 1;
+  private static final int ROOT_MISSING_TX_HASH = 2;
+  
+  // block fields
+  private static final int BLOCK_HASH = 1;
+  private static final int BLOCK_HEIGHT = 2;
+  private static final int BLOCK_TIMESTAMP = 3;
+  private static final int BLOCK_TX = 4;
+  
+  // tx fields
+  private static final int TX_HASH = 1;
+  private static final int TX_VERSION = 2;
+  private static final int TX_IS_MINER_TX = 3;
+  private static final int TX_PAYMENT_ID = 4;
+  private static final int TX_FEE = 5;
+  private static final int TX_RING_SIZE = 6;
+  private static final int TX_RELAY = 7;
+  private static final int TX_IS_RELAYED = 8;
+  private static final int TX_IS_CONFIRMED = 9;
+  private static final int TX_IN_TX_POOL = 10;
+  private static final int TX_NUM_CONFIRMATIONS = 11;
+  private static final int TX_UNLOCK_HEIGHT = 12;
+  private static final int TX_LAST_RELAYED_TIMESTAMP = 13;
+  private static final int TX_RECEIVED_TIMESTAMP = 14;
+  private static final int TX_IS_DOUBLE_SPEND_SEEN = 15;
+  private static final int TX_KEY = 16;
+  private static final int TX_FULL_HEX = 17;
+  private static final int TX_METADATA = 18;
+  private static final int TX_IS_FAILED = 19;
+  private static final int TX_INPUT = 20;
+  private static final int TX_OUTPUT = 21;
+  private static final int TX_IS_INCOMING = 22;
+  private static final int TX_IS_OUTGOING = 23;
+  private static final int TX_INCOMING_TRANSFER = 24;
+  private static final int TX_OUTGOING_TRANSFER = 25;
+  private static final int TX_NOTE = 26;
+  private static final int TX_IS_LOCKED = 27;
+  private static final int TX_INPUT_SUM = 28;
+  private static final int TX_OUTPUT_SUM = 29;
+  private static final int TX_CHANGE_ADDRESS = 30;
+  private static final int TX_CHANGE_AMOUNT = 31;
+  private static final int TX_NUM_DUMMY_OUTPUTS = 32;
+  private static final int TX_EXTRA_HEX = 33;
+  private static final int TX_SIZE = 34;
+  private static final int TX_WEIGHT = 35;
+  private static final int TX_EXTRA = 36;
+  private static final int TX_LAST_FAILED_HEIGHT = 37;
+  private static final int TX_LAST_FAILED_HASH = 38;
+  
+  // incoming transfer fields
+  private static final int INCOMING_AMOUNT = 1;
+  private static final int INCOMING_ACCOUNT_INDEX = 2;
+  private static final int INCOMING_SUBADDRESS_INDEX = 3;
+  private static final int INCOMING_ADDRESS = 4;
+  private static final int INCOMING_NUM_SUGGESTED_CONFIRMATIONS = 5;
+  
+  // outgoing transfer fields
+  private static final int OUTGOING_AMOUNT = 1;
+  private static final int OUTGOING_ACCOUNT_INDEX = 2;
+  private static final int OUTGOING_SUBADDRESS_INDEX = 3;
+  private static final int OUTGOING_ADDRESS = 4;
+  private static final int OUTGOING_DESTINATION = 5;
+  
+  // destination fields
+  private static final int DESTINATION_ADDRESS = 1;
+  private static final int DESTINATION_AMOUNT = 2;
+  
+  // output fields
+  private static final int OUTPUT_KEY_IMAGE_HEX = 1;
+  private static final int OUTPUT_KEY_IMAGE_SIGNATURE = 2;
+  private static final int OUTPUT_AMOUNT = 3;
+  private static final int OUTPUT_INDEX = 4;
+  private static final int OUTPUT_RING_OUTPUT_INDEX = 5;
+  private static final int OUTPUT_STEALTH_PUBLIC_KEY = 6;
+  private static final int OUTPUT_ACCOUNT_INDEX = 7;
+  private static final int OUTPUT_SUBADDRESS_INDEX = 8;
+  private static final int OUTPUT_IS_SPENT = 9;
+  private static final int OUTPUT_IS_FROZEN = 10;
+  
+  private static final BigInteger TWO_64 = BigInteger.ONE.shiftLeft(64);
+  
+  /**
+   * Decode blocks of wallet txs.
+   * 
+   * @param bytes are the encoded blocks
+   * @param missingTxHashes collects hashes of requested txs which are missing from the wallet
+   * @return the decoded blocks whose txs are MoneroTxWallets
+   * @throws MoneroError if the bytes are not validly encoded
+   */
+  public static List<MoneroBlock> decode(byte[] bytes, Collection<String> missingTxHashes) {
+    Reader reader = new Reader(bytes);
+    for (int i = 0; i < MAGIC.length; i++) if (reader.readByte() != MAGIC[i]) throw new MoneroError("Invalid binary blocks header");
+    int version = reader.readByte();
+    if (version != VERSION) throw new MoneroError("Unsupported binary blocks version: " + version);
+    List<MoneroBlock> blocks = new ArrayList<MoneroBlock>();
+    while (reader.pos < reader.end) {
+      int key = reader.readKey();
+      switch (key) {
+        case ROOT_BLOCK << 3 | LEN: blocks.add(decodeBlock(reader)); break;
+        case ROOT_MISSING_TX_HASH << 3 | LEN: missingTxHashes.add(reader.readString()); break;
+        default: reader.skip(key);
+      }
+    }
+    return blocks;
+  }
+  
+  /**
+   * Encode blocks of wallet txs.
+   * 
+   * @param blocks are the blocks whose txs are MoneroTxWallets to encode
+   * @param missingTxHashes are hashes of requested txs which are missing from the wallet (optional)
+   * @return the encoded blocks
+   */
+  public static byte[] encode(List<MoneroBlock> blocks, Collection<String> missingTxHashes) {
+    Writer writer = new Writer();
+    writer.write(MAGIC, 0, MAGIC.length);
+    writer.write(VERSION);
+    for (MoneroBlock block : blocks) {
+      Writer blockWriter = new Writer();
+      encodeBlock(blockWriter, block);
+      writer.writeBytes(ROOT_BLOCK, blockWriter);
+    }
+    if (missingTxHashes != null) for (String missingTxHash : missingTxHashes) writer.writeString(ROOT_MISSING_TX_HASH, missingTxHash);
+    return writer.toByteArray();
+  }
+  
+  // ------------------------------- DECODING ---------------------------------
+  
+  private static MoneroBlock decodeBlock(Reader reader) {
+    MoneroBlock block = new MoneroBlock();
+    int prevEnd = reader.pushLimit();
+    List<MoneroTx> txs = null;
+    while (reader.pos < reader.end) {
+      int key = reader.readKey();
+      switch (key) {
+        case BLOCK_HASH << 3 | LEN: block.setHash(reader.readString()); break;
+        case BLOCK_HEIGHT << 3 | VARINT: block.setHeight(reader.readVarint()); break;
+        case BLOCK_TIMESTAMP << 3 | VARINT: block.setTimestamp(reader.readVarint()); break;
+        case BLOCK_TX << 3 | LEN:
+          if (txs == null) txs = new ArrayList<MoneroTx>();
+          txs.add(decodeTx(reader, block));
+          break;
+        default: reader.skip(key);
+      }
+    }
+    reader.popLimit(prevEnd);
+    block.setTxs(txs == null ? new ArrayList<MoneroTx>() : txs);
+    return block;
+  }
+  
+  private static MoneroTxWallet decodeTx(Reader reader, MoneroBlock block) {
+    MoneroTxWallet tx = new MoneroTxWallet();
+    tx.setBlock(block);
+    int prevEnd = reader.pushLimit();
+    List<MoneroOutput> inputs = null;
+    List<MoneroOutput> outputs = null;
+    List<MoneroIncomingTransfer> incomingTransfers = null;
+    while (reader.pos < reader.end) {
+      int key = reader.readKey();
+      switch (key) {
+        case TX_HASH << 3 | LEN: tx.setHash(reader.readString()); break;
+        case TX_VERSION << 3 | VARINT: tx.setVersion(reader.readInt()); break;
+        case TX_IS_MINER_TX << 3 | VARINT: tx.setIsMinerTx(reader.readBoolean()); break;
+        case TX_PAYMENT_ID << 3 | LEN: tx.setPaymentId(reader.readString()); break;
+        case TX_FEE << 3 | VARINT: tx.setFee(reader.readAmount()); break;
+        case TX_RING_SIZE << 3 | VARINT: tx.setRingSize(reader.readInt()); break;
+        case TX_RELAY << 3 | VARINT: tx.setRelay(reader.readBoolean()); break;
+        case TX_IS_RELAYED << 3 | VARINT: tx.setIsRelayed(reader.readBoolean()); break;
+        case TX_IS_CONFIRMED << 3 | VARINT: tx.setIsConfirmed(reader.readBoolean()); break;
+        case TX_IN_TX_POOL << 3 | VARINT: tx.setInTxPool(reader.readBoolean()); break;
+        case TX_NUM_CONFIRMATIONS << 3 | VARINT: tx.setNumConfirmations(reader.readVarint()); break;
+        case TX_UNLOCK_HEIGHT << 3 | VARINT: tx.setUnlockHeight(reader.readVarint()); break;
+        case TX_LAST_RELAYED_TIMESTAMP << 3 | VARINT: tx.setLastRelayedTimestamp(reader.readVarint()); break;
+        case TX_RECEIVED_TIMESTAMP << 3 | VARINT: tx.setReceivedTimestamp(reader.readVarint()); break;
+        case TX_IS_DOUBLE_SPEND_SEEN << 3 | VARINT: tx.setIsDoubleSpendSeen(reader.readBoolean()); break;
+        case TX_KEY << 3 | LEN: tx.setKey(reader.readString()); break;
+        case TX_FULL_HEX << 3 | LEN: tx.setFullHex(reader.readString()); break;
+        case TX_METADATA << 3 | LEN: tx.setMetadata(reader.readString()); break;
+        case TX_IS_FAILED << 3 | VARINT: tx.setIsFailed(reader.readBoolean()); break;
+        case TX_INPUT << 3 | LEN:
+          if (inputs == null) inputs = new ArrayList<MoneroOutput>();
+          inputs.add(decodeOutput(reader, tx));
+          break;
+        case TX_OUTPUT << 3 | LEN:
+          if (outputs == null) outputs = new ArrayList<MoneroOutput>();
+          outputs.add(decodeOutput(reader, tx));
+          break;
+        case TX_IS_INCOMING << 3 | VARINT: tx.setIsIncoming(reader.readBoolean()); break;
+        case TX_IS_OUTGOING << 3 | VARINT: tx.setIsOutgoing(reader.readBoolean()); break;
+        case TX_INCOMING_TRANSFER << 3 | LEN:
+          if (incomingTransfers == null) incomingTransfers = new ArrayList<MoneroIncomingTransfer>();
+          incomingTransfers.add(decodeIncomingTransfer(reader, tx));
+          break;
+        case TX_OUTGOING_TRANSFER << 3 | LEN: tx.setOutgoingTransfer(decodeOutgoingTransfer(reader, tx)); break;
+        case TX_NOTE << 3 | LEN: tx.setNote(reader.readString()); break;
+        case TX_IS_LOCKED << 3 | VARINT: tx.setIsLocked(reader.readBoolean()); break;
+        case TX_INPUT_SUM << 3 | VARINT: tx.setInputSum(reader.readAmount()); break;
+        case TX_OUTPUT_SUM << 3 | VARINT: tx.setOutputSum(reader.readAmount()); break;
+        case TX_CHANGE_ADDRESS << 3 | LEN: tx.setChangeAddress(reader.readString()); break;
+        case TX_CHANGE_AMOUNT << 3 | VARINT: tx.setChangeAmount(reader.readAmount()); break;
+        case TX_NUM_DUMMY_OUTPUTS << 3 | VARINT: tx.setNumDummyOutputs(reader.readInt()); break;
+        case TX_EXTRA_HEX << 3 | LEN: tx.setExtraHex(reader.readString()); break;
+        case TX_SIZE << 3 | VARINT: tx.setSize(reader.readVarint()); break;
+        case TX_WEIGHT << 3 | VARINT: tx.setWeight(reader.readVarint()); break;
+        case TX_EXTRA << 3 | LEN: tx.setExtra(reader.readUnsignedBytes()); break;
+        case TX_LAST_FAILED_HEIGHT << 3 | VARINT: tx.setLastFailedHeight(reader.readVarint()); break;
+        case TX_LAST_FAILED_HASH << 3 | LEN: tx.setLastFailedHash(reader.readString()); break;
+        default: reader.skip(key);
+      }
+    }
+    reader.popLimit(prevEnd);
+    if (inputs != null) tx.setInputs(inputs);
+    if (outputs != null) tx.setOutputs(outputs);
+    if (incomingTransfers != null) tx.setIncomingTransfers(incomingTransfers);
+    return tx;
+  }
+  
+  private static MoneroIncomingTransfer decodeIncomingTransfer(Reader reader, MoneroTxWallet tx) {
+    MoneroIncomingTransfer transfer = new MoneroIncomingTransfer();
+    transfer.setTx(tx);
+    int prevEnd = reader.pushLimit();
+    while (reader.pos < reader.end) {
+      int key = reader.readKey();
+      switch (key) {
+        case INCOMING_AMOUNT << 3 | VARINT: transfer.setAmount(reader.readAmount()); break;
+        case INCOMING_ACCOUNT_INDEX << 3 | VARINT: transfer.setAccountIndex(reader.readInt()); break;
+        case INCOMING_SUBADDRESS_INDEX << 3 | VARINT: transfer.setSubaddressIndex(reader.readInt()); break;
+        case INCOMING_ADDRESS << 3 | LEN: transfer.setAddress(reader.readString()); break;
+        case INCOMING_NUM_SUGGESTED_CONFIRMATIONS << 3 | VARINT: transfer.setNumSuggestedConfirmations(reader.readVarint()); break;
+        default: reader.skip(key);
+      }
+    }
+    reader.popLimit(prevEnd);
+    return transfer;
+  }
+  
+  private static MoneroOutgoingTransfer decodeOutgoingTransfer(Reader reader, MoneroTxWallet tx) {
+    MoneroOutgoingTransfer transfer = new MoneroOutgoingTransfer();
+    transfer.setTx(tx);
+    int prevEnd = reader.pushLimit();
+    List<Integer> subaddressIndices = null;
+    List<String> addresses = null;
+    List<MoneroDestination> destinations = null;
+    while (reader.pos < reader.end) {
+      int key = reader.readKey();
+      switch (key) {
+        case OUTGOING_AMOUNT << 3 | VARINT: transfer.setAmount(reader.readAmount()); break;
+        case OUTGOING_ACCOUNT_INDEX << 3 | VARINT: transfer.setAccountIndex(reader.readInt()); break;
+        case OUTGOING_SUBADDRESS_INDEX << 3 | VARINT:
+          if (subaddressIndices == null) subaddressIndices = new ArrayList<Integer>();
+          subaddressIndices.add(reader.readInt());
+          break;
+        case OUTGOING_ADDRESS << 3 | LEN:
+          if (addresses == null) addresses = new ArrayList<String>();
+          addresses.add(reader.readString());
+          break;
+        case OUTGOING_DESTINATION << 3 | LEN:
+          if (destinations == null) destinations = new ArrayList<MoneroDestination>();
+          destinations.add(decodeDestination(reader));
+          break;
+        default: reader.skip(key);
+      }
+    }
+    reader.popLimit(prevEnd);
+    if (subaddressIndices != null) transfer.setSubaddressIndices(subaddressIndices);
+    if (addresses != null) transfer.setAddresses(addresses);
+    if (destinations != null) transfer.setDestinations(destinations);
+    return transfer;
+  }
+  
+  private static MoneroDestination decodeDestination(Reader reader) {
+    MoneroDestination destination = new MoneroDestination();
+    int prevEnd = reader.pushLimit();
+    while (reader.pos < reader.end) {
+      int key = reader.readKey();
+      switch (key) {
+        case DESTINATION_ADDRESS << 3 | LEN: destination.setAddress(reader.readString()); break;
+        case DESTINATION_AMOUNT << 3 | VARINT: destination.setAmount(reader.readAmount()); break;
+        default: reader.skip(key);
+      }
+    }
+    reader.popLimit(prevEnd);
+    return destination;
+  }
+  
+  private static MoneroOutputWallet decodeOutput(Reader reader, MoneroTxWallet tx) {
+    MoneroOutputWallet output = new MoneroOutputWallet();
+    output.setTx(tx);
+    int prevEnd = reader.pushLimit();
+    List<Integer> ringOutputIndices = null;
+    while (reader.pos < reader.end) {
+      int key = reader.readKey();
+      switch (key) {
+        case OUTPUT_KEY_IMAGE_HEX << 3 | LEN:
+          if (output.getKeyImage() == null) output.setKeyImage(new MoneroKeyImage());
+          output.getKeyImage().setHex(reader.readString());
+          break;
+        case OUTPUT_KEY_IMAGE_SIGNATURE << 3 | LEN:
+          if (output.getKeyImage() == null) output.setKeyImage(new MoneroKeyImage());
+          output.getKeyImage().setSignature(reader.readString());
+          break;
+        case OUTPUT_AMOUNT << 3 | VARINT: output.setAmount(reader.readAmount()); break;
+        case OUTPUT_INDEX << 3 | VARINT: output.setIndex(reader.readInt()); break;
+        case OUTPUT_RING_OUTPUT_INDEX << 3 | VARINT:
+          if (ringOutputIndices == null) ringOutputIndices = new ArrayList<Integer>();
+          ringOutputIndices.add(reader.readInt());
+          break;
+        case OUTPUT_STEALTH_PUBLIC_KEY << 3 | LEN: output.setStealthPublicKey(reader.readString()); break;
+        case OUTPUT_ACCOUNT_INDEX << 3 | VARINT: output.setAccountIndex(reader.readInt()); break;
+        case OUTPUT_SUBADDRESS_INDEX << 3 | VARINT: output.setSubaddressIndex(reader.readInt()); break;
+        case OUTPUT_IS_SPENT << 3 | VARINT: output.setIsSpent(reader.readBoolean()); break;
+        case OUTPUT_IS_FROZEN << 3 | VARINT: output.setIsFrozen(reader.readBoolean()); break;
+        default: reader.skip(key);
+      }
+    }
+    reader.popLimit(prevEnd);
+    if (ringOutputIndices != null) output.setRingOutputIndices(ringOutputIndices);
+    return output;
+  }
+  
+  /**
+   * Reads fields from bytes, bounding reads by the end of the current object.
+   */
+  private static class Reader {
+    
+    private final byte[] bytes;
+    private int pos;
+    private int end;
+    
+    Reader(byte[] bytes) {
+      if (bytes == null) throw new MoneroError("Binary blocks are null");
+      this.bytes = bytes;
+      this.pos = 0;
+      this.end = bytes.length;
+    }
+    
+    int readByte() {
+      if (pos >= end) throw new MoneroError("Truncated binary blocks at " + pos);
+      return bytes[pos++] & 0xff;
+    }
+    
+    long readVarint() {
+      long value = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        int b = readByte();
+        if (shift == 63 && b > 1) throw new MoneroError("Varint overflows 64 bits at " + pos);
+        value |= (long) (b & 0x7f) << shift;
+        if ((b & 0x80) == 0) return value;
+      }
+      throw new MoneroError("Varint overflows 64 bits at " + pos);
+    }
+    
+    int readKey() {
+      long key = readVarint();
+      if (key < 0 || key > Integer.MAX_VALUE) throw new MoneroError("Invalid field key at " + pos);
+      return (int) key;
+    }
+    
+    int readInt() {
+      long value = readVarint();
+      if (value < 0 || value > Integer.MAX_VALUE) throw new MoneroError("Integer out of range at " + pos + ": " + value);
+      return (int) value;
+    }
+    
+    boolean readBoolean() {
+      long value = readVarint();
+      if (value != 0 && value != 1) throw new MoneroError("Invalid boolean at " + pos + ": " + value);
+      return value == 1;
+    }
+    
+    BigInteger readAmount() {
+      long value = readVarint();
+      return value >= 0 ? BigInteger.valueOf(value) : BigInteger.valueOf(value).add(TWO_64);
+    }
+    
+    int readLength() {
+      long length = readVarint();
+      if (length < 0 || length > end - pos) throw new MoneroError("Invalid length at " + pos + ": " + length);
+      return (int) length;
+    }
+    
+    String readString() {
+      int length = readLength();
+      String str = new String(bytes, pos, length, StandardCharsets.UTF_8);
+      pos += length;
+      return str;
+    }
+    
+    int[] readUnsignedBytes() {
+      int length = readLength();
+      int[] values = new int[length];
+      for (int i = 0; i < length; i++) values[i] = bytes[pos++] & 0xff;
+      return values;
+    }
+    
+    /**
+     * Read the length of a nested object and bound reads to its end.
+     * 
+     * @return the end of the enclosing object to restore with popLimit()
+     */
+    int pushLimit() {
+      int length = readLength();
+      int prevEnd = end;
+      end = pos + length;
+      return prevEnd;
+    }
+    
+    void popLimit(int prevEnd) {
+      pos = end;
+      end = prevEnd;
+    }
+    
+    void skip(int key) {
+      switch (key & 0x7) {
+        case VARINT: readVarint(); break;
+        case LEN:
+          int length = readLength();
+          pos += length;
+          break;
+        default: throw new MoneroError("Unknown wire type " + (key & 0x7) + " at " + pos);
+      }
+    }
+  }
+  
+  // ------------------------------- ENCODING ---------------------------------
+  
+  private static void encodeBlock(Writer writer, MoneroBlock block) {
+    writer.writeString(BLOCK_HASH, block.getHash());
+    writer.writeVarint(BLOCK_HEIGHT, block.getHeight());
+    writer.writeVarint(BLOCK_TIMESTAMP, block.getTimestamp());
+    if (block.getTxs() != null) {
+      for (MoneroTx tx : block.getTxs()) {
+        Writer txWriter = new Writer();
+        encodeTx(txWriter, (MoneroTxWallet) tx);
+        writer.writeBytes(BLOCK_TX, txWriter);
+      }
+    }
+  }
+  
+  private static void encodeTx(Writer writer, MoneroTxWallet tx) {
+    writer.writeString(TX_HASH, tx.getHash());
+    writer.writeVarint(TX_VERSION, tx.getVersion());
+    writer.writeBoolean(TX_IS_MINER_TX, tx.isMinerTx());
+    writer.writeString(TX_PAYMENT_ID, tx.getPaymentId());
+    writer.writeAmount(TX_FEE, tx.getFee());
+    writer.writeVarint(TX_RING_SIZE, tx.getRingSize());
+    writer.writeBoolean(TX_RELAY, tx.getRelay());
+    writer.writeBoolean(TX_IS_RELAYED, tx.isRelayed());
+    writer.writeBoolean(TX_IS_CONFIRMED, tx.isConfirmed());
+    writer.writeBoolean(TX_IN_TX_POOL, tx.inTxPool());
+    writer.writeVarint(TX_NUM_CONFIRMATIONS, tx.getNumConfirmations());
+    writer.writeVarint(TX_UNLOCK_HEIGHT, tx.getUnlockHeight());
+    writer.writeVarint(TX_LAST_RELAYED_TIMESTAMP, tx.getLastRelayedTimestamp());
+    writer.writeVarint(TX_RECEIVED_TIMESTAMP, tx.getReceivedTimestamp());
+    writer.writeBoolean(TX_IS_DOUBLE_SPEND_SEEN, tx.isDoubleSpendSeen());
+    writer.writeString(TX_KEY, tx.getKey());
+    writer.writeString(TX_FULL_HEX, tx.getFullHex());
+    writer.writeString(TX_METADATA, tx.getMetadata());
+    writer.writeBoolean(TX_IS_FAILED, tx.isFailed());
+    if (tx.getInputs() != null) for (MoneroOutput input : tx.getInputs()) writer.writeBytes(TX_INPUT, encodeOutput((MoneroOutputWallet) input));
+    if (tx.getOutputs() != null) for (MoneroOutput output : tx.getOutputs()) writer.writeBytes(TX_OUTPUT, encodeOutput((MoneroOutputWallet) output));
+    writer.writeBoolean(TX_IS_INCOMING, tx.isIncoming());
+    writer.writeBoolean(TX_IS_OUTGOING, tx.isOutgoing());
+    if (tx.getIncomingTransfers() != null) {
+      for (MoneroIncomingTransfer transfer : tx.getIncomingTransfers()) {
+        Writer transferWriter = new Writer();
+        transferWriter.writeAmount(INCOMING_AMOUNT, transfer.getAmount());
+        transferWriter.writeVarint(INCOMING_ACCOUNT_INDEX, transfer.getAccountIndex());
+        transferWriter.writeVarint(INCOMING_SUBADDRESS_INDEX, transfer.getSubaddressIndex());
+        transferWriter.writeString(INCOMING_ADDRESS, transfer.getAddress());
+        transferWriter.writeVarint(INCOMING_NUM_SUGGESTED_CONFIRMATIONS, transfer.getNumSuggestedConfirmations());
+        writer.writeBytes(TX_INCOMING_TRANSFER, transferWriter);
+      }
+    }
+    if (tx.getOutgoingTransfer() != null) {
+      MoneroOutgoingTransfer transfer = tx.getOutgoingTransfer();
+      Writer transferWriter = new Writer();
+      transferWriter.writeAmount(OUTGOING_AMOUNT, transfer.getAmount());
+      transferWriter.writeVarint(OUTGOING_ACCOUNT_INDEX, transfer.getAccountIndex());
+      if (transfer.getSubaddressIndices() != null) for (Integer subaddressIdx : transfer.getSubaddressIndices()) transferWriter.writeVarint(OUTGOING_SUBADDRESS_INDEX, subaddressIdx);
+      if (transfer.getAddresses() != null) for (String address : transfer.getAddresses()) transferWriter.writeString(OUTGOING_ADDRESS, address);
+      if (transfer.getDestinations() != null) {
+        for (MoneroDestination destination : transfer.getDestinations()) {
+          Writer destinationWriter = new Writer();
+          destinationWriter.writeString(DESTINATION_ADDRESS, destination.getAddress());
+          destinationWriter.writeAmount(DESTINATION_AMOUNT, destination.getAmount());
+          transferWriter.writeBytes(OUTGOING_DESTINATION, destinationWriter);
+        }
+      }
+      writer.writeBytes(TX_OUTGOING_TRANSFER, transferWriter);
+    }
+    writer.writeString(TX_NOTE, tx.getNote());
+    writer.writeBoolean(TX_IS_LOCKED, tx.isLocked());
+    writer.writeAmount(TX_INPUT_SUM, tx.getInputSum());
+    writer.writeAmount(TX_OUTPUT_SUM, tx.getOutputSum());
+    writer.writeString(TX_CHANGE_ADDRESS, tx.getChangeAddress());
+    writer.writeAmount(TX_CHANGE_AMOUNT, tx.getChangeAmount());
+    writer.writeVarint(TX_NUM_DUMMY_OUTPUTS, tx.getNumDummyOutputs());
+    writer.writeString(TX_EXTRA_HEX, tx.getExtraHex());
+    writer.writeVarint(TX_SIZE, tx.getSize());
+    writer.writeVarint(TX_WEIGHT, tx.getWeight());
+    if (tx.getExtra() != null) {
+      Writer extraWriter = new Writer();
+      for (int b : tx.getExtra()) extraWriter.write(b);
+      writer.writeBytes(TX_EXTRA, extraWriter);
+    }
+    writer.writeVarint(TX_LAST_FAILED_HEIGHT, tx.getLastFailedHeight());
+    writer.writeString(TX_LAST_FAILED_HASH, tx.getLastFailedHash());
+  }
+  
+  private static Writer encodeOutput(MoneroOutputWallet output) {
+    Writer writer = new Writer();
+    if (output.getKeyImage() != null) {
+      writer.writeString(OUTPUT_KEY_IMAGE_HEX, output.getKeyImage().getHex());
+      writer.writeString(OUTPUT_KEY_IMAGE_SIGNATURE, output.getKeyImage().getSignature());
+    }
+    writer.writeAmount(OUTPUT_AMOUNT, output.getAmount());
+    writer.writeVarint(OUTPUT_INDEX, output.getIndex());
+    if (output.getRingOutputIndices() != null) for (Integer ringOutputIdx : output.getRingOutputIndices()) writer.writeVarint(OUTPUT_RING_OUTPUT_INDEX, ringOutputIdx);
+    writer.writeString(OUTPUT_STEALTH_PUBLIC_KEY, output.getStealthPublicKey());
+    writer.writeVarint(OUTPUT_ACCOUNT_INDEX, output.getAccountIndex());
+    writer.writeVarint(OUTPUT_SUBADDRESS_INDEX, output.getSubaddressIndex());
+    writer.writeBoolean(OUTPUT_IS_SPENT, output.isSpent());
+    writer.writeBoolean(OUTPUT_IS_FROZEN, output.isFrozen());
+    return writer;
+  }
+  
+  /**
+   * Writes fields to a growable buffer, omitting null values.
+   */
+  private static class Writer extends ByteArrayOutputStream {
+    
+    void writeRawVarint(long value) {
+      while ((value & ~0x7fL) != 0) {
+        write((int) ((value & 0x7f) | 0x80));
+        value >>>= 7;
+      }
+      write((int) value);
+    }
+    
+    void writeVarint(int field, Number value) {
+      if (value == null) return;
+      writeRawVarint(field << 3 | VARINT);
+      writeRawVarint(value.longValue());
+    }
+    
+    void writeBoolean(int field, Boolean value) {
+      if (value == null) return;
+      writeRawVarint(field << 3 | VARINT);
+      write(value ? 1 : 0);
+    }
+    
+    void writeAmount(int field, BigInteger value) {
+      if (value == null) return;
+      if (value.signum() < 0 || value.bitLength() > 64) throw new MoneroError("Amount out of range: " + value);
+      writeRawVarint(field << 3 | VARINT);
+      writeRawVarint(value.longValue());
+    }
+    
+    void writeString(int field, String value) {
+      if (value == null) return;
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      writeRawVarint(field << 3 | LEN);
+      writeRawVarint(bytes.length);
+      write(bytes, 0, bytes.length);
+    }
+    
+    void writeBytes(int field, Writer value) {
+      writeRawVarint(field << 3 | LEN);
+      writeRawVarint(value.size());
+      write(value.buf, 0, value.count);
+    }
+  }
+}
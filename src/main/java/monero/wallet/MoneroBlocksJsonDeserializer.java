@@ -0,0 +1,374 @@
+/**
+ * Copyright (c) woodser
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package monero.wallet;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import monero.common.MoneroError;
+import monero.common.MoneroRpcConnection;
+import monero.daemon.model.MoneroBlock;
+import monero.daemon.model.MoneroKeyImage;
+import monero.daemon.model.MoneroOutput;
+import monero.daemon.model.MoneroTx;
+import monero.wallet.model.MoneroDestination;
+import monero.wallet.model.MoneroIncomingTransfer;
+import monero.wallet.model.MoneroOutgoingTransfer;
+import monero.wallet.model.MoneroOutputWallet;
+import monero.wallet.model.MoneroTxWallet;
+
+/**
+ * Deserializes blocks of wallet txs returned from the native wallet as JSON.
+ * 
+ * Builds the final MoneroBlock, MoneroTxWallet, transfer, and output graph in a
+ * single streaming pass, setting references to each parent as it is parsed.
+ * Integers are read into the model's types without intermediate BigIntegers,
+ * and unknown fields are skipped.
+ * 
+ * The expected JSON is {"blocks": [...], "missingTxHashes": [...]} with fields
+ * named as in the models' JSON serialization.
+ */
+public class MoneroBlocksJsonDeserializer {
+  
+  private static final JsonFactory FACTORY = MoneroRpcConnection.MAPPER.getFactory();
+  
+  /**
+   * Deserialize blocks of wallet txs.
+   * 
+   * @param json is the JSON of blocks and missing tx hashes
+   * @param missingTxHashes collects hashes of requested txs which are missing from the wallet
+   * @return the deserialized blocks whose txs are MoneroTxWallets
+   */
+  public static List<MoneroBlock> deserialize(String json, Collection<String> missingTxHashes) {
+    List<MoneroBlock> blocks = new ArrayList<MoneroBlock>();
+    try {
+      JsonParser p = FACTORY.createParser(json);
+      try {
+        expect(p, p.nextToken(), JsonToken.START_OBJECT);
+        String field;
+        while ((field = p.nextFieldName()) != null) {
+          JsonToken token = p.nextToken();
+          if (field.equals("blocks") && token == JsonToken.START_ARRAY) {
+            while (p.nextToken() == JsonToken.START_OBJECT) blocks.add(readBlock(p));
+          } else if (field.equals("missingTxHashes") && token == JsonToken.START_ARRAY) {
+            while (p.nextToken() != JsonToken.END_ARRAY) missingTxHashes.add(p.getText());
+          } else {
+            p.skipChildren();
+          }
+        }
+      } finally {
+        p.close();
+      }
+    } catch (IOException e) {
+      throw new MoneroError(e);
+    }
+    return blocks;
+  }
+  
+  // ------------------------------ PRIVATE -----------------------------------
+  
+  private static MoneroBlock readBlock(JsonParser p) throws IOException {
+    MoneroBlock block = new MoneroBlock();
+    String field;
+    while ((field = p.nextFieldName()) != null) {
+      JsonToken token = p.nextToken();
+      if (token == JsonToken.VALUE_NULL) continue;
+      switch (field) {
+        case "hash": block.setHash(p.getText()); break;
+        case "height": block.setHeight(readLong(p, token)); break;
+        case "timestamp": block.setTimestamp(readLong(p, token)); break;
+        case "size": block.setSize(readLong(p, token)); break;
+        case "weight": block.setWeight(readLong(p, token)); break;
+        case "longTermWeight": block.setLongTermWeight(readLong(p, token)); break;
+        case "depth": block.setDepth(readLong(p, token)); break;
+        case "difficulty": block.setDifficulty(readBigInteger(p, token)); break;
+        case "cumulativeDifficulty": block.setCumulativeDifficulty(readBigInteger(p, token)); break;
+        case "majorVersion": block.setMajorVersion(readInt(p, token)); break;
+        case "minorVersion": block.setMinorVersion(readInt(p, token)); break;
+        case "nonce": block.setNonce(readLong(p, token)); break;
+        case "minerTxHash": block.setMinerTxHash(p.getText()); break;
+        case "numTxs": block.setNumTxs(readInt(p, token)); break;
+        case "orphanStatus": block.setOrphanStatus(readBoolean(token)); break;
+        case "prevHash": block.setPrevHash(p.getText()); break;
+        case "reward": block.setReward(readBigInteger(p, token)); break;
+        case "powHash": block.setPowHash(p.getText()); break;
+        case "hex": block.setHex(p.getText()); break;
+        case "txHashes": block.setTxHashes(readStrings(p, token)); break;
+        case "minerTx":
+          expect(p, token, JsonToken.START_OBJECT);
+          block.setMinerTx(readTx(p, new MoneroTx(), null));
+          break;
+        case "txs":
+          expect(p, token, JsonToken.START_ARRAY);
+          List<MoneroTx> txs = new ArrayList<MoneroTx>();
+          while (p.nextToken() == JsonToken.START_OBJECT) txs.add(readTx(p, new MoneroTxWallet(), block));
+          block.setTxs(txs);
+          break;
+        default: p.skipChildren();
+      }
+    }
+    return block;
+  }
+  
+  private static MoneroTx readTx(JsonParser p, MoneroTx tx, MoneroBlock block) throws IOException {
+    tx.setBlock(block);
+    MoneroTxWallet txWallet = tx instanceof MoneroTxWallet ? (MoneroTxWallet) tx : null;
+    String field;
+    while ((field = p.nextFieldName()) != null) {
+      JsonToken token = p.nextToken();
+      if (token == JsonToken.VALUE_NULL) continue;
+      switch (field) {
+        case "hash": tx.setHash(p.getText()); break;
+        case "version": tx.setVersion(readInt(p, token)); break;
+        case "isMinerTx": tx.setIsMinerTx(readBoolean(token)); break;
+        case "paymentId": tx.setPaymentId(p.getText()); break;
+        case "fee": tx.setFee(readBigInteger(p, token)); break;
+        case "ringSize": tx.setRingSize(readInt(p, token)); break;
+        case "relay": tx.setRelay(readBoolean(token)); break;
+        case "isRelayed": tx.setIsRelayed(readBoolean(token)); break;
+        case "isConfirmed": tx.setIsConfirmed(readBoolean(token)); break;
+        case "inTxPool": tx.setInTxPool(readBoolean(token)); break;
+        case "numConfirmations": tx.setNumConfirmations(readLong(p, token)); break;
+        case "unlockHeight": tx.setUnlockHeight(readLong(p, token)); break;
+        case "lastRelayedTimestamp": tx.setLastRelayedTimestamp(readLong(p, token)); break;
+        case "receivedTimestamp": tx.setReceivedTimestamp(readLong(p, token)); break;
+        case "isDoubleSpendSeen": tx.setIsDoubleSpendSeen(readBoolean(token)); break;
+        case "key": tx.setKey(p.getText()); break;
+        case "fullHex": tx.setFullHex(p.getText()); break;
+        case "prunedHex": tx.setPrunedHex(p.getText()); break;
+        case "prunableHex": tx.setPrunableHex(p.getText()); break;
+        case "prunableHash": tx.setPrunableHash(p.getText()); break;
+        case "size": tx.setSize(readLong(p, token)); break;
+        case "weight": tx.setWeight(readLong(p, token)); break;
+        case "outputIndices": tx.setOutputIndices(readInts(p, token)); break;
+        case "metadata": tx.setMetadata(p.getText()); break;
+        case "extra": tx.setExtra(readIntArray(p, token)); break;
+        case "rctSignatures": tx.setRctSignatures(p.readValueAs(Object.class)); break;
+        case "rctSigPrunable": tx.setRctSigPrunable(p.readValueAs(Object.class)); break;
+        case "isKeptByBlock": tx.setIsKeptByBlock(readBoolean(token)); break;
+        case "isFailed": tx.setIsFailed(readBoolean(token)); break;
+        case "lastFailedHeight": tx.setLastFailedHeight(readLong(p, token)); break;
+        case "lastFailedHash": tx.setLastFailedHash(p.getText()); break;
+        case "maxUsedBlockHeight": tx.setMaxUsedBlockHeight(readLong(p, token)); break;
+        case "maxUsedBlockHash": tx.setMaxUsedBlockHash(p.getText()); break;
+        case "signatures": tx.setSignatures(readStrings(p, token)); break;
+        case "inputs":
+          if (txWallet == null) p.skipChildren();
+          else tx.setInputs(readOutputs(p, token, txWallet));
+          break;
+        case "outputs":
+          if (txWallet == null) p.skipChildren();
+          else tx.setOutputs(readOutputs(p, token, txWallet));
+          break;
+        default:
+          if (txWallet == null || !readTxWalletField(p, token, field, txWallet)) p.skipChildren();
+      }
+    }
+    return tx;
+  }
+  
+  private static boolean readTxWalletField(JsonParser p, JsonToken token, String field, MoneroTxWallet tx) throws IOException {
+    switch (field) {
+      case "isIncoming": tx.setIsIncoming(readBoolean(token)); return true;
+      case "isOutgoing": tx.setIsOutgoing(readBoolean(token)); return true;
+      case "isLocked": tx.setIsLocked(readBoolean(token)); return true;
+      case "note": tx.setNote(p.getText()); return true;
+      case "inputSum": tx.setInputSum(readBigInteger(p, token)); return true;
+      case "outputSum": tx.setOutputSum(readBigInteger(p, token)); return true;
+      case "changeAddress": tx.setChangeAddress(p.getText()); return true;
+      case "changeAmount": tx.setChangeAmount(readBigInteger(p, token)); return true;
+      case "numDummyOutputs": tx.setNumDummyOutputs(readInt(p, token)); return true;
+      case "extraHex": tx.setExtraHex(p.getText()); return true;
+      case "incomingTransfers":
+        expect(p, token, JsonToken.START_ARRAY);
+        List<MoneroIncomingTransfer> transfers = new ArrayList<MoneroIncomingTransfer>();
+        while (p.nextToken() == JsonToken.START_OBJECT) transfers.add(readIncomingTransfer(p, tx));
+        tx.setIncomingTransfers(transfers);
+        return true;
+      case "outgoingTransfer":
+        expect(p, token, JsonToken.START_OBJECT);
+        tx.setOutgoingTransfer(readOutgoingTransfer(p, tx));
+        return true;
+      default: return false;
+    }
+  }
+  
+  private static MoneroIncomingTransfer readIncomingTransfer(JsonParser p, MoneroTxWallet tx) throws IOException {
+    MoneroIncomingTransfer transfer = new MoneroIncomingTransfer();
+    transfer.setTx(tx);
+    String field;
+    while ((field = p.nextFieldName()) != null) {
+      JsonToken token = p.nextToken();
+      if (token == JsonToken.VALUE_NULL) continue;
+      switch (field) {
+        case "amount": transfer.setAmount(readBigInteger(p, token)); break;
+        case "accountIndex": transfer.setAccountIndex(readInt(p, token)); break;
+        case "subaddressIndex": transfer.setSubaddressIndex(readInt(p, token)); break;
+        case "address": transfer.setAddress(p.getText()); break;
+        case "numSuggestedConfirmations": transfer.setNumSuggestedConfirmations(readLong(p, token)); break;
+        default: p.skipChildren();
+      }
+    }
+    return transfer;
+  }
+  
+  private static MoneroOutgoingTransfer readOutgoingTransfer(JsonParser p, MoneroTxWallet tx) throws IOException {
+    MoneroOutgoingTransfer transfer = new MoneroOutgoingTransfer();
+    transfer.setTx(tx);
+    String field;
+    while ((field = p.nextFieldName()) != null) {
+      JsonToken token = p.nextToken();
+      if (token == JsonToken.VALUE_NULL) continue;
+      switch (field) {
+        case "amount": transfer.setAmount(readBigInteger(p, token)); break;
+        case "accountIndex": transfer.setAccountIndex(readInt(p, token)); break;
+        case "subaddressIndices": transfer.setSubaddressIndices(readInts(p, token)); break;
+        case "addresses": transfer.setAddresses(readStrings(p, token)); break;
+        case "destinations":
+          expect(p, token, JsonToken.START_ARRAY);
+          List<MoneroDestination> destinations = new ArrayList<MoneroDestination>();
+          while (p.nextToken() == JsonToken.START_OBJECT) destinations.add(readDestination(p));
+          transfer.setDestinations(destinations);
+          break;
+        default: p.skipChildren();
+      }
+    }
+    return transfer;
+  }
+  
+  private static MoneroDestination readDestination(JsonParser p) throws IOException {
+    MoneroDestination destination = new MoneroDestination();
+    String field;
+    while ((field = p.nextFieldName()) != null) {
+      JsonToken token = p.nextToken();
+      if (token == JsonToken.VALUE_NULL) continue;
+      switch (field) {
+        case "address": destination.setAddress(p.getText()); break;
+        case "amount": destination.setAmount(readBigInteger(p, token)); break;
+        default: p.skipChildren();
+      }
+    }
+    return destination;
+  }
+  
+  private static List<MoneroOutput> readOutputs(JsonParser p, JsonToken token, MoneroTxWallet tx) throws IOException {
+    expect(p, token, JsonToken.START_ARRAY);
+    List<MoneroOutput> outputs = new ArrayList<MoneroOutput>();
+    while (p.nextToken() == JsonToken.START_OBJECT) outputs.add(readOutput(p, tx));
+    return outputs;
+  }
+  
+  private static MoneroOutputWallet readOutput(JsonParser p, MoneroTxWallet tx) throws IOException {
+    MoneroOutputWallet output = new MoneroOutputWallet();
+    output.setTx(tx);
+    String field;
+    while ((field = p.nextFieldName()) != null) {
+      JsonToken token = p.nextToken();
+      if (token == JsonToken.VALUE_NULL) continue;
+      switch (field) {
+        case "keyImage":
+          expect(p, token, JsonToken.START_OBJECT);
+          output.setKeyImage(readKeyImage(p));
+          break;
+        case "amount": output.setAmount(readBigInteger(p, token)); break;
+        case "index": output.setIndex(readInt(p, token)); break;
+        case "ringOutputIndices": output.setRingOutputIndices(readInts(p, token)); break;
+        case "stealthPublicKey": output.setStealthPublicKey(p.getText()); break;
+        case "accountIndex": output.setAccountIndex(readInt(p, token)); break;
+        case "subaddressIndex": output.setSubaddressIndex(readInt(p, token)); break;
+        case "isSpent": output.setIsSpent(readBoolean(token)); break;
+        case "isFrozen": output.setIsFrozen(readBoolean(token)); break;
+        default: p.skipChildren();
+      }
+    }
+    return output;
+  }
+  
+  private static MoneroKeyImage readKeyImage(JsonParser p) throws IOException {
+    MoneroKeyImage keyImage = new MoneroKeyImage();
+    String field;
+    while ((field = p.nextFieldName()) != null) {
+      JsonToken token = p.nextToken();
+      if (token == JsonToken.VALUE_NULL) continue;
+      switch (field) {
+        case "hex": keyImage.setHex(p.getText()); break;
+        case "signature": keyImage.setSignature(p.getText()); break;
+        default: p.skipChildren();
+      }
+    }
+    return keyImage;
+  }
+  
+  private static Long readLong(JsonParser p, JsonToken token) throws IOException {
+    if (token == JsonToken.VALUE_STRING) return Long.parseLong(p.getText());
+    return p.getLongValue();
+  }
+  
+  private static Integer readInt(JsonParser p, JsonToken token) throws IOException {
+    if (token == JsonToken.VALUE_STRING) return Integer.parseInt(p.getText());
+    return p.getIntValue();
+  }
+  
+  private static BigInteger readBigInteger(JsonParser p, JsonToken token) throws IOException {
+    if (token == JsonToken.VALUE_STRING) return new BigInteger(p.getText());
+    if (p.getNumberType() == JsonParser.NumberType.BIG_INTEGER) return p.getBigIntegerValue();
+    return BigInteger.valueOf(p.getLongValue());
+  }
+  
+  private static Boolean readBoolean(JsonToken token) {
+    return token == JsonToken.VALUE_TRUE;
+  }
+  
+  private static List<Integer> readInts(JsonParser p, JsonToken token) throws IOException {
+    expect(p, token, JsonToken.START_ARRAY);
+    List<Integer> ints = new ArrayList<Integer>();
+    while ((token = p.nextToken()) != JsonToken.END_ARRAY) ints.add(token == JsonToken.VALUE_NULL ? null : readInt(p, token));
+    return ints;
+  }
+  
+  private static int[] readIntArray(JsonParser p, JsonToken token) throws IOException {
+    List<Integer> ints = readInts(p, token);
+    int[] array = new int[ints.size()];
+    for (int i = 0; i < array.length; i++) array[i] = ints.get(i);
+    return array;
+  }
+  
+  private static List<String> readStrings(JsonParser p, JsonToken token) throws IOException {
+    expect(p, token, JsonToken.START_ARRAY);
+    List<String> strings = new ArrayList<String>();
+    while ((token = p.nextToken()) != JsonToken.END_ARRAY) strings.add(token == JsonToken.VALUE_NULL ? null : p.getText());
+    return strings;
+  }
+  
+  private static void expect(JsonParser p, JsonToken actual, JsonToken expected) {
+    if (actual != expected) throw new MoneroError("Expected " + expected + " but got " + actual + " at " + p.currentLocation());
+  }
+}
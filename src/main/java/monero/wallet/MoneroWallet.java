@@ -32,6 +32,8 @@ import monero.daemon.model.MoneroVersion;
 import monero.wallet.model.MoneroAccount;
 import monero.wallet.model.MoneroAccountTag;
 import monero.wallet.model.MoneroAddressBookEntry;
+import monero.wallet.model.MoneroAutoSavePolicy;
+import monero.wallet.model.MoneroBalances;
 import monero.wallet.model.MoneroCheckReserve;
 import monero.wallet.model.MoneroCheckTx;
 import monero.wallet.model.MoneroIncomingTransfer;
@@ -45,7 +47,10 @@ import monero.wallet.model.MoneroMultisigSignResult;
 import monero.wallet.model.MoneroOutgoingTransfer;
 import monero.wallet.model.MoneroOutputQuery;
 import monero.wallet.model.MoneroOutputWallet;
+import monero.wallet.model.MoneroPage;
+import monero.wallet.model.MoneroSaveMetrics;
 import monero.wallet.model.MoneroSubaddress;
+import monero.wallet.model.MoneroSyncProgressPolicy;
 import monero.wallet.model.MoneroSyncResult;
 import monero.wallet.model.MoneroTransfer;
 import monero.wallet.model.MoneroTransferQuery;
@@ -83,6 +88,22 @@ public interface MoneroWallet {
    */
   public Set<MoneroWalletListenerI> getListeners();
   
+  /**
+   * Set the dispatcher which delivers notifications to the wallet's listeners
+   * asynchronously and in order, or null to notify listeners on the thread
+   * which observes the event (default).
+   * 
+   * @param dispatcher delivers the wallet's notifications (optional)
+   */
+  public void setListenerDispatcher(MoneroWalletListenerDispatcher dispatcher);
+  
+  /**
+   * Get the dispatcher which delivers notifications to the wallet's listeners.
+   * 
+   * @return the wallet's listener dispatcher or null if listeners are notified directly
+   */
+  public MoneroWalletListenerDispatcher getListenerDispatcher();
+  
   /**
    * Indicates if the wallet is view-only, meaning it does not have the private
    * spend key and can therefore only observe incoming outputs.
@@ -307,6 +328,22 @@ public interface MoneroWallet {
    */
   public void stopSyncing();
   
+  /**
+   * Set the policy which throttles sync progress reported to listeners
+   * during sync() and background synchronizing, e.g. to update a progress
+   * bar without a notification per block.
+   * 
+   * @param policy configures how often sync progress is reported (default reports all progress)
+   */
+  public void setSyncProgressPolicy(MoneroSyncProgressPolicy policy);
+  
+  /**
+   * Get the policy which throttles sync progress reported to listeners.
+   * 
+   * @return the wallet's sync progress policy
+   */
+  public MoneroSyncProgressPolicy getSyncProgressPolicy();
+  
   /**
    * Rescan the blockchain for spent outputs.
    *
@@ -375,6 +412,17 @@ public interface MoneroWallet {
    */
   public BigInteger getUnlockedBalance(Integer accountIdx, Integer subaddressIdx);
   
+  /**
+   * Get the wallet's balance and unlocked balance in one call.
+   * 
+   * The balances may be served from a snapshot which is kept while the wallet
+   * is notified of balance changes and invalidated by wallet events, so
+   * repeated calls between blocks do not query the wallet.
+   * 
+   * @return the wallet's balance and unlocked balance
+   */
+  public MoneroBalances getBalances();
+  
   /**
    * Get all accounts.
    * 
@@ -605,6 +653,24 @@ public interface MoneroWallet {
    */
   public List<MoneroTxWallet> getTxs(MoneroTxQuery query, Collection<String> missingTxHashes);
   
+  /**
+   * <p>Get a page of wallet transactions that meet a query.</p>
+   * 
+   * <p>Transactions are ordered by ascending height and then by position
+   * within their block, followed by unconfirmed transactions.  Each page only
+   * fetches the range of heights needed to fill it.</p>
+   * 
+   * <p>A cursor is only valid for the same query.  Unconfirmed transactions
+   * may be skipped or repeated across pages if the pool changes between
+   * requests.</p>
+   * 
+   * @param query specifies properties of the transactions to get (see getTxs(query))
+   * @param cursor is the cursor returned with the previous page or null to get the first page
+   * @param limit is the maximum number of transactions to return
+   * @return the page of transactions and the cursor of the next page
+   */
+  public MoneroPage<MoneroTxWallet> getTxsPage(MoneroTxQuery query, String cursor, int limit);
+  
   /**
    * Get all incoming and outgoing transfers to and from this wallet.  An
    * outgoing transfer represents a total amount sent from one or more
@@ -668,6 +734,17 @@ public interface MoneroWallet {
    */
   public List<MoneroTransfer> getTransfers(MoneroTransferQuery query);
   
+  /**
+   * Get a page of transfers that meet a query, ordered by the height and
+   * position of their transactions as in getTxsPage().
+   * 
+   * @param query specifies attributes of transfers to get (see getTransfers(query))
+   * @param cursor is the cursor returned with the previous page or null to get the first page
+   * @param limit is the maximum number of transfers to return
+   * @return the page of transfers and the cursor of the next page
+   */
+  public MoneroPage<MoneroTransfer> getTransfersPage(MoneroTransferQuery query, String cursor, int limit);
+  
   /**
    * Get all of the wallet's incoming transfers.
    * 
@@ -754,6 +831,17 @@ public interface MoneroWallet {
    */
   public List<MoneroOutputWallet> getOutputs(MoneroOutputQuery query);
   
+  /**
+   * Get a page of outputs that meet a query, ordered by the height and
+   * position of their transactions as in getTxsPage().
+   * 
+   * @param query specifies attributes of outputs to get (see getOutputs(query))
+   * @param cursor is the cursor returned with the previous page or null to get the first page
+   * @param limit is the maximum number of outputs to return
+   * @return the page of outputs and the cursor of the next page
+   */
+  public MoneroPage<MoneroOutputWallet> getOutputsPage(MoneroOutputQuery query, String cursor, int limit);
+  
   /**
    * Export outputs since the last export.
    * 
@@ -1331,6 +1419,31 @@ public interface MoneroWallet {
    */
   public void save();
   
+  /**
+   * Set the policy to save the wallet in the background after it changes, or
+   * null to only save when save() is called (default).
+   * 
+   * Changes within the policy's interval are coalesced into one save, which
+   * runs off the thread which changed the wallet.
+   * 
+   * @param policy configures saving the wallet in the background (optional)
+   */
+  public void setAutoSavePolicy(MoneroAutoSavePolicy policy);
+  
+  /**
+   * Get the policy to save the wallet in the background after it changes.
+   * 
+   * @return the wallet's auto-save policy or null if not saved in the background
+   */
+  public MoneroAutoSavePolicy getAutoSavePolicy();
+  
+  /**
+   * Get metrics of the wallet's saves, including their latency.
+   * 
+   * @return the wallet's save metrics
+   */
+  public MoneroSaveMetrics getSaveMetrics();
+  
   /**
    * Close the wallet (does not save).
    */
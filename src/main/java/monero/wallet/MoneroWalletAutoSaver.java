@@ -0,0 +1,231 @@
+/**
+ * Copyright (c) woodser
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package monero.wallet;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import common.utils.GenUtils;
+import monero.wallet.model.MoneroAutoSavePolicy;
+import monero.wallet.model.MoneroSaveMetrics;
+
+/**
+ * Tracks a wallet's unsaved changes and saves it in the background per its
+ * auto-save policy.
+ * 
+ * Background saves of all wallets run on a small shared pool of daemon threads,
+ * so a wallet's save never runs on the thread which changed it.  At most one
+ * save of a wallet is scheduled or running at a time.
+ */
+class MoneroWalletAutoSaver {
+  
+  private static final Logger LOGGER = Logger.getLogger(MoneroWalletAutoSaver.class.getName());
+  private static final int NUM_SAVE_THREADS = 2;
+  private static ScheduledThreadPoolExecutor executor;
+  
+  private final MoneroWallet wallet;
+  private MoneroAutoSavePolicy policy;
+  private long numChanges;       // incremented on each change
+  private long numChangesSaved;  // number of changes when the last successful save started
+  private long firstDirtyTime;   // time of the first unsaved change
+  private long lastChangeTime;
+  private long lastSaveTime;     // time the last save or save attempt completed
+  private long epoch;            // incremented on reset to discard saves of a previous wallet
+  private ScheduledFuture<?> scheduledSave;
+  private boolean isSaving;
+  private MoneroSaveMetrics metrics;
+  
+  MoneroWalletAutoSaver(MoneroWallet wallet) {
+    this.wallet = wallet;
+    this.metrics = new MoneroSaveMetrics();
+  }
+  
+  synchronized void setPolicy(MoneroAutoSavePolicy policy) {
+    if (policy != null) {
+      GenUtils.assertTrue("Auto-save minimum interval must be >= 0 ms", policy.getMinIntervalMs() >= 0);
+      GenUtils.assertTrue("Auto-save maximum dirty time must be >= minimum interval", policy.getMaxDirtyMs() >= policy.getMinIntervalMs());
+    }
+    this.policy = policy == null ? null : policy.copy();
+    cancelScheduledSave();
+    if (isDirty()) scheduleSave();
+  }
+  
+  synchronized MoneroAutoSavePolicy getPolicy() {
+    return policy == null ? null : policy.copy();
+  }
+  
+  synchronized MoneroSaveMetrics getMetrics() {
+    return metrics.copy().setIsDirty(isDirty());
+  }
+  
+  /**
+   * Record a change to the wallet and schedule a save per the policy.
+   */
+  synchronized void markDirty() {
+    long now = System.currentTimeMillis();
+    if (!isDirty()) firstDirtyTime = now;
+    lastChangeTime = now;
+    numChanges++;
+    scheduleSave();
+  }
+  
+  /**
+   * Get the number of changes to the wallet, recorded before saving to mark
+   * the changes which are saved.
+   * 
+   * @return the number of changes to the wallet
+   */
+  synchronized long getNumChanges() {
+    return numChanges;
+  }
+  
+  /**
+   * Record a successful save.
+   * 
+   * @param numChangesAtStart is the number of changes when the save started
+   * @param latencyMs is the duration of the save
+   */
+  synchronized void markSaved(long numChangesAtStart, long latencyMs) {
+    long now = System.currentTimeMillis();
+    metrics.setNumSaves(metrics.getNumSaves() + 1);
+    metrics.setNumChangesSaved(metrics.getNumChangesSaved() + Math.max(0, numChangesAtStart - numChangesSaved));
+    metrics.setLastSaveTime(now);
+    metrics.setLastSaveLatencyMs(latencyMs);
+    metrics.setMaxSaveLatencyMs(Math.max(metrics.getMaxSaveLatencyMs(), latencyMs));
+    metrics.setTotalSaveLatencyMs(metrics.getTotalSaveLatencyMs() + latencyMs);
+    numChangesSaved = Math.max(numChangesSaved, numChangesAtStart);
+    lastSaveTime = now;
+    if (isDirty()) firstDirtyTime = lastChangeTime; // changed while saving
+    else cancelScheduledSave();
+  }
+  
+  /**
+   * Indicates if unsaved changes should be saved when the wallet is closed.
+   * 
+   * @return true if the wallet is dirty and the policy saves on close
+   */
+  synchronized boolean isSaveOnClose() {
+    return policy != null && policy.getSaveOnClose() && isDirty();
+  }
+  
+  /**
+   * Discard unsaved changes and cancel the scheduled save, e.g. when the
+   * wallet is closed.  The policy and metrics are kept.
+   */
+  synchronized void reset() {
+    epoch++;
+    cancelScheduledSave();
+    numChangesSaved = numChanges;
+  }
+  
+  // --------------------------------- PRIVATE --------------------------------
+  
+  private boolean isDirty() {
+    return numChanges > numChangesSaved;
+  }
+  
+  /**
+   * Get the time a save is due: once the wallet has not changed for the
+   * minimum interval or has been dirty for the maximum time, and at least the
+   * minimum interval after the last save.
+   */
+  private long getSaveDueTime() {
+    long dueTime = Math.min(lastChangeTime + policy.getMinIntervalMs(), firstDirtyTime + policy.getMaxDirtyMs());
+    return Math.max(dueTime, lastSaveTime + policy.getMinIntervalMs());
+  }
+  
+  private void scheduleSave() {
+    if (policy == null || isSaving || scheduledSave != null) return;
+    scheduleSave(getSaveDueTime() - System.currentTimeMillis());
+  }
+  
+  private void scheduleSave(long delayMs) {
+    final long scheduledEpoch = epoch;
+    scheduledSave = getExecutor().schedule(new Runnable() {
+      @Override
+      public void run() {
+        save(scheduledEpoch);
+      }
+    }, Math.max(0, delayMs), TimeUnit.MILLISECONDS);
+  }
+  
+  private void cancelScheduledSave() {
+    if (scheduledSave == null) return;
+    scheduledSave.cancel(false);
+    scheduledSave = null;
+  }
+  
+  private void save(long scheduledEpoch) {
+    
+    // save if due, otherwise reschedule since changes postponed the save
+    synchronized (this) {
+      if (scheduledEpoch != epoch || policy == null) return;
+      scheduledSave = null;
+      if (!isDirty()) return;
+      long delayMs = getSaveDueTime() - System.currentTimeMillis();
+      if (delayMs > 0) {
+        scheduleSave(delayMs);
+        return;
+      }
+      isSaving = true;
+    }
+    
+    // save outside of lock, recording success in markSaved()
+    try {
+      wallet.save();
+    } catch (Exception e) {
+      synchronized (this) {
+        if (scheduledEpoch == epoch) {
+          LOGGER.log(Level.WARNING, "Failed to auto-save wallet", e);
+          metrics.setNumFailures(metrics.getNumFailures() + 1);
+          lastSaveTime = System.currentTimeMillis(); // retry after minimum interval
+        }
+      }
+    } finally {
+      synchronized (this) {
+        isSaving = false;
+        if (scheduledEpoch == epoch && isDirty()) scheduleSave();
+      }
+    }
+  }
+  
+  private static synchronized ScheduledThreadPoolExecutor getExecutor() {
+    if (executor == null) {
+      executor = new ScheduledThreadPoolExecutor(NUM_SAVE_THREADS, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "MoneroWalletAutoSaver");
+          thread.setDaemon(true); // daemon thread does not prevent JVM from halting
+          return thread;
+        }
+      });
+      executor.setRemoveOnCancelPolicy(true);
+    }
+    return executor;
+  }
+}
@@ -27,21 +27,29 @@ import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 import monero.common.MoneroError;
 import monero.common.MoneroRpcConnection;
 import monero.daemon.model.MoneroKeyImage;
+import monero.daemon.model.MoneroTx;
 import monero.wallet.model.MoneroAccount;
 import monero.wallet.model.MoneroAddressBookEntry;
+import monero.wallet.model.MoneroAutoSavePolicy;
+import monero.wallet.model.MoneroBalances;
 import monero.wallet.model.MoneroIncomingTransfer;
 import monero.wallet.model.MoneroIntegratedAddress;
 import monero.wallet.model.MoneroMessageSignatureType;
 import monero.wallet.model.MoneroOutgoingTransfer;
+import monero.wallet.model.MoneroOutputQuery;
 import monero.wallet.model.MoneroOutputWallet;
+import monero.wallet.model.MoneroPage;
+import monero.wallet.model.MoneroSaveMetrics;
 import monero.wallet.model.MoneroSubaddress;
+import monero.wallet.model.MoneroSyncProgressPolicy;
 import monero.wallet.model.MoneroSyncResult;
 import monero.wallet.model.MoneroTransfer;
 import monero.wallet.model.MoneroTransferQuery;
@@ -55,19 +63,67 @@ import monero.wallet.model.MoneroWalletListenerI;
  */
 abstract class MoneroWalletDefault implements MoneroWallet {
   
-  protected Set<MoneroWalletListenerI> listeners = new LinkedHashSet<MoneroWalletListenerI>();
+  private static final long PAGE_INITIAL_HEIGHT_WINDOW = 1000; // number of blocks fetched first to fill a page
+  private static final String PAGE_CURSOR_POOL = "pool";       // cursor height of unconfirmed txs
+  
+  private static final MoneroWalletListenerI[] NO_LISTENERS = new MoneroWalletListenerI[0];
+  
+  private final Object listenersLock = new Object();
+  private volatile MoneroWalletListenerI[] listeners = NO_LISTENERS; // replaced on change so notifications iterate without copying
+  private volatile MoneroWalletListenerDispatcher listenerDispatcher;
+  private final MoneroWalletAutoSaver autoSaver = new MoneroWalletAutoSaver(this);
+  private volatile MoneroSyncProgressPolicy syncProgressPolicy = new MoneroSyncProgressPolicy();
+  private final Object balancesLock = new Object();
+  private MoneroBalances balancesSnapshot; // balances until invalidated by wallet events
+  private long balancesGeneration;         // incremented when balances change to discard stale fetches
   
   public void addListener(MoneroWalletListenerI listener) {
-    listeners.add(listener);
+    synchronized (listenersLock) {
+      if (Arrays.asList(listeners).contains(listener)) return;
+      MoneroWalletListenerI[] newListeners = Arrays.copyOf(listeners, listeners.length + 1);
+      newListeners[listeners.length] = listener;
+      listeners = newListeners;
+    }
   }
   
   public void removeListener(MoneroWalletListenerI listener) {
-    if (!listeners.contains(listener)) throw new MoneroError("Listener is not registered with wallet");
-    listeners.remove(listener);
+    synchronized (listenersLock) {
+      int idx = Arrays.asList(listeners).indexOf(listener);
+      if (idx < 0) throw new MoneroError("Listener is not registered with wallet");
+      MoneroWalletListenerI[] newListeners = new MoneroWalletListenerI[listeners.length - 1];
+      System.arraycopy(listeners, 0, newListeners, 0, idx);
+      System.arraycopy(listeners, idx + 1, newListeners, idx, newListeners.length - idx);
+      listeners = newListeners;
+    }
   }
   
   public Set<MoneroWalletListenerI> getListeners() {
-    return new HashSet<MoneroWalletListenerI>(listeners);
+    return new HashSet<MoneroWalletListenerI>(Arrays.asList(listeners));
+  }
+  
+  public void setListenerDispatcher(MoneroWalletListenerDispatcher dispatcher) {
+    synchronized (listenersLock) {
+      if (dispatcher == listenerDispatcher) return;
+      if (dispatcher != null) dispatcher.attach(this);
+      if (listenerDispatcher != null) listenerDispatcher.detach();
+      listenerDispatcher = dispatcher;
+    }
+  }
+  
+  public MoneroWalletListenerDispatcher getListenerDispatcher() {
+    return listenerDispatcher;
+  }
+  
+  public void setAutoSavePolicy(MoneroAutoSavePolicy policy) {
+    autoSaver.setPolicy(policy);
+  }
+  
+  public MoneroAutoSavePolicy getAutoSavePolicy() {
+    return autoSaver.getPolicy();
+  }
+  
+  public MoneroSaveMetrics getSaveMetrics() {
+    return autoSaver.getMetrics();
   }
   
   public void setDaemonConnection(String uri) {
@@ -114,9 +170,23 @@ abstract class MoneroWalletDefault implements MoneroWallet {
     startSyncing(null);
   }
   
+  @Override
+  public void setSyncProgressPolicy(MoneroSyncProgressPolicy policy) {
+    if (policy == null) policy = new MoneroSyncProgressPolicy();
+    GenUtils.assertTrue("Sync progress minimum interval must be >= 0 ms", policy.getMinIntervalMs() >= 0);
+    GenUtils.assertTrue("Sync progress minimum percent delta must be between 0 and 1", policy.getMinPercentDelta() >= 0 && policy.getMinPercentDelta() <= 1);
+    GenUtils.assertTrue("Sync progress block stride must be >= 1", policy.getBlockStride() >= 1);
+    syncProgressPolicy = policy.copy();
+  }
+  
+  @Override
+  public MoneroSyncProgressPolicy getSyncProgressPolicy() {
+    return syncProgressPolicy.copy();
+  }
+  
   @Override
   public BigInteger getBalance() {
-    return getBalance(null, null);
+    return getBalances().getBalance();
   }
 
   @Override
@@ -126,7 +196,216 @@ abstract class MoneroWalletDefault implements MoneroWallet {
   
   @Override
   public BigInteger getUnlockedBalance() {
-    return getUnlockedBalance(null, null);
+    return getBalances().getUnlockedBalance();
+  }
+  
+  @Override
+  public MoneroBalances getBalances() {
+    
+    // get snapshot if available
+    long generation;
+    synchronized (balancesLock) {
+      if (balancesSnapshot != null) return balancesSnapshot.copy();
+      generation = balancesGeneration;
+    }
+    
+    // fetch balances and snapshot unless invalidated while fetching
+    MoneroBalances balances = fetchBalances();
+    synchronized (balancesLock) {
+      if (generation == balancesGeneration && isSnapshottingBalances()) balancesSnapshot = balances.copy();
+    }
+    return balances;
+  }
+  
+  /**
+   * Indicates if listeners are registered with the wallet.
+   * 
+   * @return true if listeners are registered, false otherwise
+   */
+  protected boolean hasListeners() {
+    return listeners.length > 0;
+  }
+  
+  /**
+   * Indicates if the current thread may wait for queued notifications to be
+   * delivered, which it must not while it holds a lock that listeners need to
+   * call the wallet.
+   * 
+   * @return true if the current thread may wait for listeners, false otherwise
+   */
+  protected boolean isWaitingForListenersAllowed() {
+    return true;
+  }
+  
+  /**
+   * Record a change to the wallet which is persisted when saved, scheduling a
+   * save per the auto-save policy.
+   */
+  protected void markDirty() {
+    autoSaver.markDirty();
+  }
+  
+  /**
+   * Get the number of changes to the wallet, which is recorded before saving
+   * and passed to markSaved() after saving.
+   * 
+   * @return the number of changes to the wallet
+   */
+  protected long getNumChanges() {
+    return autoSaver.getNumChanges();
+  }
+  
+  /**
+   * Record a successful save of the wallet.
+   * 
+   * @param numChangesAtStart is the number of changes to the wallet when the save started
+   * @param latencyMs is the duration of the save in milliseconds
+   */
+  protected void markSaved(long numChangesAtStart, long latencyMs) {
+    autoSaver.markSaved(numChangesAtStart, latencyMs);
+  }
+  
+  /**
+   * Indicates if the wallet should be saved when closed because it has unsaved
+   * changes and its auto-save policy saves on close.
+   * 
+   * @return true if the wallet should be saved on close, false otherwise
+   */
+  protected boolean isSaveOnClose() {
+    return autoSaver.isSaveOnClose();
+  }
+  
+  /**
+   * Discard unsaved changes and cancel the scheduled save when the wallet is closed.
+   */
+  protected void resetAutoSave() {
+    autoSaver.reset();
+  }
+  
+  /**
+   * Unregister all listeners.
+   */
+  protected void clearListeners() {
+    synchronized (listenersLock) {
+      listeners = NO_LISTENERS;
+    }
+  }
+  
+  /**
+   * Announce sync progress to listeners, directly or through the listener dispatcher.
+   * 
+   * @param height - height of the synced block
+   * @param startHeight - starting height of the sync request
+   * @param endHeight - ending height of the sync request
+   * @param percentDone - sync progress as a percentage
+   * @param message is a human-readable description of the current progress
+   */
+  protected void announceSyncProgress(long height, long startHeight, long endHeight, double percentDone, String message) {
+    MoneroWalletListenerI[] listeners = this.listeners;
+    MoneroWalletListenerDispatcher dispatcher = listenerDispatcher;
+    if (dispatcher != null) dispatcher.submitSyncProgress(listeners, height, startHeight, endHeight, percentDone, message);
+    else for (MoneroWalletListenerI listener : listeners) listener.onSyncProgress(height, startHeight, endHeight, percentDone, message);
+  }
+  
+  /**
+   * Announce a new block to listeners, directly or through the listener dispatcher.
+   * 
+   * @param height - the height of the new block
+   */
+  protected void announceNewBlock(long height) {
+    MoneroWalletListenerI[] listeners = this.listeners;
+    MoneroWalletListenerDispatcher dispatcher = listenerDispatcher;
+    if (dispatcher != null) dispatcher.submitNewBlock(listeners, height);
+    else for (MoneroWalletListenerI listener : listeners) listener.onNewBlock(height);
+  }
+  
+  /**
+   * Announce changed balances to listeners, directly or through the listener dispatcher.
+   * 
+   * @param newBalance - new wallet balance
+   * @param newUnlockedBalance - new unlocked wallet balance
+   */
+  protected void announceBalancesChanged(BigInteger newBalance, BigInteger newUnlockedBalance) {
+    MoneroWalletListenerI[] listeners = this.listeners;
+    MoneroWalletListenerDispatcher dispatcher = listenerDispatcher;
+    if (dispatcher != null) dispatcher.submitBalancesChanged(listeners, newBalance, newUnlockedBalance);
+    else for (MoneroWalletListenerI listener : listeners) listener.onBalancesChanged(newBalance, newUnlockedBalance);
+  }
+  
+  /**
+   * Announce a received output to listeners, directly or through the listener dispatcher.
+   * 
+   * @param output - the received output
+   */
+  protected void announceOutputReceived(MoneroOutputWallet output) {
+    announceOutputsReceived(Arrays.asList(output));
+  }
+  
+  /**
+   * Announce received outputs to listeners, directly or through the listener dispatcher.
+   * 
+   * @param outputs - the received outputs
+   */
+  protected void announceOutputsReceived(List<MoneroOutputWallet> outputs) {
+    MoneroWalletListenerI[] listeners = this.listeners;
+    MoneroWalletListenerDispatcher dispatcher = listenerDispatcher;
+    if (dispatcher != null) for (MoneroOutputWallet output : outputs) dispatcher.submitOutputReceived(listeners, output);
+    else for (MoneroWalletListenerI listener : listeners) MoneroWalletListenerDispatcher.notifyOutputsReceived(listener, outputs);
+  }
+  
+  /**
+   * Announce a spent output to listeners, directly or through the listener dispatcher.
+   * 
+   * @param output - the spent output
+   */
+  protected void announceOutputSpent(MoneroOutputWallet output) {
+    MoneroWalletListenerI[] listeners = this.listeners;
+    MoneroWalletListenerDispatcher dispatcher = listenerDispatcher;
+    if (dispatcher != null) dispatcher.submitOutputSpent(listeners, output);
+    else for (MoneroWalletListenerI listener : listeners) listener.onOutputSpent(output);
+  }
+  
+  /**
+   * Fetch the wallet's balance and unlocked balance from the wallet,
+   * bypassing the balance snapshot.
+   * 
+   * @return the wallet's balance and unlocked balance
+   */
+  protected MoneroBalances fetchBalances() {
+    return new MoneroBalances(getBalance(null, null), getUnlockedBalance(null, null));
+  }
+  
+  /**
+   * Indicates if balances can be snapshotted, i.e. the wallet is notified of
+   * events which change its balances.
+   * 
+   * @return true if balances can be snapshotted, false otherwise
+   */
+  protected boolean isSnapshottingBalances() {
+    return false;
+  }
+  
+  /**
+   * Replace the balance snapshot with balances announced by a wallet event.
+   * 
+   * @param balance is the wallet's new balance
+   * @param unlockedBalance is the wallet's new unlocked balance
+   */
+  protected void setBalancesSnapshot(BigInteger balance, BigInteger unlockedBalance) {
+    synchronized (balancesLock) {
+      balancesGeneration++;
+      balancesSnapshot = isSnapshottingBalances() ? new MoneroBalances(balance, unlockedBalance) : null;
+    }
+  }
+  
+  /**
+   * Invalidate the balance snapshot, e.g. after syncing or sending.
+   */
+  protected void invalidateBalancesSnapshot() {
+    synchronized (balancesLock) {
+      balancesGeneration++;
+      balancesSnapshot = null;
+    }
   }
 
   @Override
@@ -205,6 +484,26 @@ abstract class MoneroWalletDefault implements MoneroWallet {
     return getTxs(query, null);
   }
   
+  @Override
+  public MoneroPage<MoneroTxWallet> getTxsPage(final MoneroTxQuery query, String cursor, int limit) {
+    return getPage(query, cursor, limit, new PageFetcher<MoneroTxWallet>() {
+      @Override
+      public List<MoneroTxWallet> fetch(Long minHeight, Long maxHeight, boolean isConfirmed) {
+        MoneroTxQuery txQuery = query == null ? new MoneroTxQuery() : query.copy();
+        setPageBounds(txQuery, minHeight, maxHeight, isConfirmed);
+        return getTxs(txQuery, new ArrayList<String>());
+      }
+      @Override
+      public MoneroTx getTx(MoneroTxWallet tx) {
+        return tx;
+      }
+      @Override
+      public boolean hasUnconfirmed() {
+        return true;
+      }
+    });
+  }
+  
   @Override
   public List<MoneroTransfer> getTransfers() {
     return getTransfers(null);
@@ -222,6 +521,27 @@ abstract class MoneroWalletDefault implements MoneroWallet {
     return getTransfers(query);
   }
   
+  @Override
+  public MoneroPage<MoneroTransfer> getTransfersPage(final MoneroTransferQuery query, String cursor, int limit) {
+    return getPage(query == null ? null : query.getTxQuery(), cursor, limit, new PageFetcher<MoneroTransfer>() {
+      @Override
+      public List<MoneroTransfer> fetch(Long minHeight, Long maxHeight, boolean isConfirmed) {
+        MoneroTransferQuery transferQuery = query == null ? new MoneroTransferQuery() : query.copy();
+        transferQuery.setTxQuery(query == null || query.getTxQuery() == null ? new MoneroTxQuery() : query.getTxQuery().copy());
+        setPageBounds(transferQuery.getTxQuery(), minHeight, maxHeight, isConfirmed);
+        return getTransfers(transferQuery);
+      }
+      @Override
+      public MoneroTx getTx(MoneroTransfer transfer) {
+        return transfer.getTx();
+      }
+      @Override
+      public boolean hasUnconfirmed() {
+        return true;
+      }
+    });
+  }
+  
 
   @Override
   public List<MoneroIncomingTransfer> getIncomingTransfers() {
@@ -278,6 +598,27 @@ abstract class MoneroWalletDefault implements MoneroWallet {
     return getOutputs(null);
   }
   
+  @Override
+  public MoneroPage<MoneroOutputWallet> getOutputsPage(final MoneroOutputQuery query, String cursor, int limit) {
+    return getPage(query == null ? null : query.getTxQuery(), cursor, limit, new PageFetcher<MoneroOutputWallet>() {
+      @Override
+      public List<MoneroOutputWallet> fetch(Long minHeight, Long maxHeight, boolean isConfirmed) {
+        MoneroOutputQuery outputQuery = query == null ? new MoneroOutputQuery() : query.copy();
+        outputQuery.setTxQuery(query == null || query.getTxQuery() == null ? new MoneroTxQuery() : query.getTxQuery().copy());
+        setPageBounds(outputQuery.getTxQuery(), minHeight, maxHeight, isConfirmed);
+        return getOutputs(outputQuery);
+      }
+      @Override
+      public MoneroTx getTx(MoneroOutputWallet output) {
+        return output.getTx();
+      }
+      @Override
+      public boolean hasUnconfirmed() {
+        return false; // wallet outputs are confirmed
+      }
+    });
+  }
+  
   @Override
   public String exportOutputs() {
     return exportOutputs(false);
@@ -359,4 +700,130 @@ abstract class MoneroWalletDefault implements MoneroWallet {
   public void close() {
     close(false); // close without saving
   }
+  
+  // ------------------------------- PAGING -----------------------------------
+  
+  /**
+   * Compares two transactions by their height.
+   */
+  protected static class TxHeightComparator implements Comparator<MoneroTx> {
+    @Override
+    public int compare(MoneroTx tx1, MoneroTx tx2) {
+      if (tx1.getHeight() == null && tx2.getHeight() == null) return 0; // both unconfirmed
+      else if (tx1.getHeight() == null) return 1;   // tx1 is unconfirmed
+      else if (tx2.getHeight() == null) return -1;  // tx2 is unconfirmed
+      int diff = tx1.getHeight().compareTo(tx2.getHeight());
+      if (diff != 0) return diff;
+      return tx1.getBlock().getTxs().indexOf(tx1) - tx2.getBlock().getTxs().indexOf(tx2); // txs are in the same block so retain their original order
+    }
+  }
+  
+  /**
+   * Fetches items of a page within a range of heights or from the pool.
+   */
+  private interface PageFetcher<T> {
+    
+    /**
+     * Fetch items whose txs are confirmed within a range of heights or unconfirmed.
+     * 
+     * @param minHeight is the minimum height of confirmed txs, null if unconfirmed
+     * @param maxHeight is the maximum height of confirmed txs, null if unconfirmed
+     * @param isConfirmed specifies whether to fetch items of confirmed or unconfirmed txs
+     * @return the fetched items
+     */
+    List<T> fetch(Long minHeight, Long maxHeight, boolean isConfirmed);
+    
+    MoneroTx getTx(T item);
+    
+    boolean hasUnconfirmed();
+  }
+  
+  private static void setPageBounds(MoneroTxQuery txQuery, Long minHeight, Long maxHeight, boolean isConfirmed) {
+    txQuery.setIsConfirmed(isConfirmed);
+    txQuery.setMinHeight(minHeight);
+    txQuery.setMaxHeight(maxHeight);
+  }
+  
+  /**
+   * Get a page of items ordered by the height and position of their txs.
+   * 
+   * Confirmed items are fetched by windows of heights which are sized by the
+   * density of items in the previous window, followed by unconfirmed items.
+   * The cursor is the height of the next item and the number of items at
+   * that height which were already returned, or "pool" and the number of
+   * unconfirmed items already returned.
+   */
+  private <T> MoneroPage<T> getPage(MoneroTxQuery txQuery, String cursor, int limit, final PageFetcher<T> fetcher) {
+    if (limit <= 0) throw new MoneroError("Page limit must be greater than 0 but was " + limit);
+    
+    // parse cursor
+    Long cursorHeight = 0l; // null if in pool
+    int cursorOffset = 0;
+    if (cursor != null) {
+      String[] parts = cursor.split(":");
+      try {
+        if (parts.length != 2) throw new NumberFormatException();
+        cursorHeight = PAGE_CURSOR_POOL.equals(parts[0]) ? null : Long.parseLong(parts[0]);
+        cursorOffset = Integer.parseInt(parts[1]);
+        if ((cursorHeight != null && cursorHeight < 0) || cursorOffset < 0) throw new NumberFormatException();
+      } catch (NumberFormatException e) {
+        throw new MoneroError("Invalid page cursor: " + cursor);
+      }
+    }
+    Long minHeight = txQuery == null ? null : txQuery.getMinHeight();
+    Long maxHeight = txQuery == null ? null : txQuery.getMaxHeight();
+    Boolean isConfirmed = txQuery == null ? null : txQuery.isConfirmed();
+    Comparator<T> comparator = new Comparator<T>() {
+      private final TxHeightComparator txComparator = new TxHeightComparator();
+      @Override
+      public int compare(T item1, T item2) {
+        return txComparator.compare(fetcher.getTx(item1), fetcher.getTx(item2));
+      }
+    };
+    
+    // fetch one more item than the limit to determine the next cursor
+    List<T> items = new ArrayList<T>();
+    if (cursorHeight != null && !Boolean.FALSE.equals(isConfirmed)) {
+      long fromHeight = Math.max(cursorHeight, minHeight == null ? 0 : minHeight);
+      long toHeight = getHeight() - 1;
+      if (maxHeight != null) toHeight = Math.min(toHeight, maxHeight);
+      long window = PAGE_INITIAL_HEIGHT_WINDOW;
+      int numSkipped = 0;
+      while (fromHeight <= toHeight && items.size() <= limit) {
+        long windowEnd = window > toHeight - fromHeight ? toHeight : fromHeight + window - 1;
+        List<T> windowItems = fetcher.fetch(fromHeight, windowEnd, true);
+        Collections.sort(windowItems, comparator); // stable
+        int numItems = 0;
+        for (T item : windowItems) {
+          if (cursorHeight.equals(fetcher.getTx(item).getHeight()) && numSkipped < cursorOffset) {
+            numSkipped++;
+            continue;
+          }
+          items.add(item);
+          numItems++;
+        }
+        
+        // size next window to the expected number of blocks to fill the page
+        long maxWindow = window * 4;
+        window = numItems == 0 ? maxWindow : Math.max(1, Math.min(maxWindow, window * (limit + 1 - items.size()) / numItems + 1));
+        fromHeight = windowEnd + 1;
+      }
+    }
+    if (items.size() <= limit && fetcher.hasUnconfirmed() && !Boolean.TRUE.equals(isConfirmed) && minHeight == null && maxHeight == null) {
+      List<T> poolItems = fetcher.fetch(null, null, false);
+      Collections.sort(poolItems, comparator);
+      for (int i = cursorHeight == null ? cursorOffset : 0; i < poolItems.size() && items.size() <= limit; i++) items.add(poolItems.get(i));
+    }
+    
+    // build page with cursor to the next item
+    if (items.size() <= limit) return new MoneroPage<T>(items, null);
+    Long nextHeight = fetcher.getTx(items.get(limit)).getHeight();
+    int nextOffset = 0;
+    for (int i = 0; i < limit; i++) {
+      Long height = fetcher.getTx(items.get(i)).getHeight();
+      if (nextHeight == null ? height == null : nextHeight.equals(height)) nextOffset++;
+    }
+    if (nextHeight == null ? cursorHeight == null : nextHeight.equals(cursorHeight)) nextOffset += cursorOffset;
+    return new MoneroPage<T>(new ArrayList<T>(items.subList(0, limit)), (nextHeight == null ? PAGE_CURSOR_POOL : nextHeight.toString()) + ":" + nextOffset);
+  }
 }
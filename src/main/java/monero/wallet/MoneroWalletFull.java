@@ -22,7 +22,6 @@
 
 package monero.wallet;
 
-import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.type.TypeReference;
 import common.utils.GenUtils;
 import common.utils.JsonUtils;
@@ -31,12 +30,16 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Logger;
 import monero.common.MoneroError;
 import monero.common.MoneroRpcConnection;
+import monero.common.MoneroUtils;
 import monero.daemon.model.MoneroBlock;
 import monero.daemon.model.MoneroKeyImage;
 import monero.daemon.model.MoneroNetworkType;
@@ -45,6 +48,8 @@ import monero.daemon.model.MoneroVersion;
 import monero.wallet.model.MoneroAccount;
 import monero.wallet.model.MoneroAccountTag;
 import monero.wallet.model.MoneroAddressBookEntry;
+import monero.wallet.model.MoneroBalances;
+import monero.wallet.model.MoneroAutoSavePolicy;
 import monero.wallet.model.MoneroCheckReserve;
 import monero.wallet.model.MoneroCheckTx;
 import monero.wallet.model.MoneroIncomingTransfer;
@@ -57,7 +62,9 @@ import monero.wallet.model.MoneroMultisigInitResult;
 import monero.wallet.model.MoneroMultisigSignResult;
 import monero.wallet.model.MoneroOutputQuery;
 import monero.wallet.model.MoneroOutputWallet;
+import monero.wallet.model.MoneroResultEncoding;
 import monero.wallet.model.MoneroSubaddress;
+import monero.wallet.model.MoneroSyncProgressPolicy;
 import monero.wallet.model.MoneroSyncResult;
 import monero.wallet.model.MoneroTransfer;
 import monero.wallet.model.MoneroTransferQuery;
@@ -67,9 +74,35 @@ import monero.wallet.model.MoneroTxSet;
 import monero.wallet.model.MoneroTxWallet;
 import monero.wallet.model.MoneroWalletConfig;
 import monero.wallet.model.MoneroWalletListenerI;
+import monero.wallet.model.MoneroWalletPrimitiveListenerI;
 
 /**
  * Implements a Monero wallet using fully client-side JNI bindings to monero-project's wallet2 in C++.
+ * 
+ * <p>The wallet is thread-safe.  Calls which only read the wallet (e.g. heights,
+ * keys, addresses, balances, txs, transfers, outputs, exports, and proofs) hold
+ * a shared lock and run concurrently.  Calls which change the wallet (e.g.
+ * syncing, creating, relaying, and sweeping txs, imports, notes, address book,
+ * accounts, attributes, multisig, saving, and closing) hold an exclusive lock.
+ * The lock is fair, so a waiting exclusive call is not starved by later shared
+ * calls, which wait for it.</p>
+ * 
+ * <p>Listeners are notified on the thread which syncs the wallet: the caller of
+ * sync(), which holds the exclusive lock and may call the wallet from its
+ * listeners, or the native background sync thread after startSyncing(),
+ * which holds no lock.  Like the background sync itself, listeners notified
+ * on the background sync thread read the wallet without the lock, because
+ * sync() holds the exclusive lock while the native wallet waits for the
+ * background sync to finish.  They cannot change the wallet.  Starting and
+ * stopping background syncing do not take the lock, and closing the wallet
+ * stops background syncing before taking it.</p>
+ * 
+ * <p>Adding and removing listeners does not take the lock, except to register
+ * or unregister the native listener when the wallet starts or stops
+ * listening.</p>
+ * 
+ * <p>Calls on a closed wallet fail with "Wallet is closed", including calls
+ * which were waiting for the lock when the wallet was closed.</p>
  */
 public class MoneroWalletFull extends MoneroWalletDefault {
   
@@ -83,12 +116,23 @@ public class MoneroWalletFull extends MoneroWalletDefault {
   // class variables 
   private static final Logger LOGGER = Logger.getLogger(MoneroWalletFull.class.getName());
   private static final long DEFAULT_SYNC_PERIOD_IN_MS = 10000; // default period betweeen syncs in ms
+  private static volatile boolean isBinaryResultsSupported = true; // whether the native library returns binary results
+  private static final MoneroWalletPrimitiveListenerI[] NO_PRIMITIVE_LISTENERS = new MoneroWalletPrimitiveListenerI[0];
   
   // instance variables
   private long jniWalletHandle;                 // memory address of the wallet in c++; this variable is read directly by name in c++
   private long jniListenerHandle;               // memory address of the wallet listener in c++; this variable is read directly by name in c++
   private WalletJniListener jniListener;        // receives notifications from jni c++
-  private boolean isClosed;                     // whether or not wallet is closed
+  private volatile boolean isListening;         // whether the c++ wallet announces balance changes
+  private volatile MoneroWalletPrimitiveListenerI[] primitiveListeners = NO_PRIMITIVE_LISTENERS; // replaced on change under the listening lock
+  private final Object listeningLock = new Object(); // serializes changes to listeners and the native listener
+  private final ThreadLocal<Boolean> isNotifying = new ThreadLocal<Boolean>(); // true while the native wallet notifies the listener on the current thread
+  private volatile boolean isClosed;            // whether or not wallet is closed
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(true); // shared by calls which read the wallet, exclusive to calls which change it
+  private final AtomicInteger numSyncs = new AtomicInteger(); // number of sync() calls in progress
+  private volatile boolean isSyncingInBackground; // whether the wallet syncs periodically in c++
+  private final Object syncingLock = new Object(); // serializes starting and stopping background syncing with closing
+  private boolean isClosing;                    // whether background syncing is stopped to close the wallet, guarded by syncingLock
   
   /**
    * Private constructor with a handle to the memory address of the wallet in c++.
@@ -133,6 +177,29 @@ public class MoneroWalletFull extends MoneroWalletDefault {
   public static MoneroWalletFull openWallet(String path, String password, MoneroNetworkType networkType) { return openWallet(path, password, networkType, (MoneroRpcConnection) null); }
   public static MoneroWalletFull openWallet(String path, String password, MoneroNetworkType networkType, String daemonUri) { return openWallet(path, password, networkType, daemonUri == null ? null : new MoneroRpcConnection(daemonUri)); }
   
+  /**
+   * Open an existing wallet from the contents of its keys and cache files
+   * without reading the filesystem.
+   * 
+   * The opened wallet is in-memory, so it has no path and is not saved to
+   * disk.  Use getKeysData() and getCacheData() to get its current data.
+   * 
+   * @param password is the password of the wallet to open
+   * @param networkType is the wallet's network type
+   * @param keysData is the contents of the wallet's keys file
+   * @param cacheData is the contents of the wallet's cache file (optional, syncs from the restore height if not given)
+   * @param daemonConnection is connection configuration to a daemon (default = an unconnected wallet)
+   * @return the opened wallet
+   */
+  public static MoneroWalletFull openWalletData(String password, MoneroNetworkType networkType, byte[] keysData, byte[] cacheData, MoneroRpcConnection daemonConnection) {
+    if (keysData == null || keysData.length == 0) throw new MoneroError("Must provide keys data to open wallet");
+    if (networkType == null) throw new MoneroError("Must provide a network type");
+    long jniWalletHandle = openWalletDataJni(password, networkType.ordinal(), keysData, cacheData == null ? new byte[0] : cacheData);
+    MoneroWalletFull wallet = new MoneroWalletFull(jniWalletHandle);
+    if (daemonConnection != null) wallet.setDaemonConnection(daemonConnection);
+    return wallet;
+  }
+  
   /**
    * <p>Open an existing wallet using JNI bindings to wallet2.h.</p>
    * 
@@ -148,13 +215,15 @@ public class MoneroWalletFull extends MoneroWalletDefault {
    * 
    * <p>
    * All supported configuration:<br>
-   * &nbsp;&nbsp; path - path of the wallet to open<br>
+   * &nbsp;&nbsp; path - path of the wallet to open (optional if keysData given)<br>
    * &nbsp;&nbsp; password - password of the wallet to open<br>
    * &nbsp;&nbsp; networkType - network type of the wallet to open (one of MoneroNetworkType.MAINNET|TESTNET|STAGENET)<br>
    * &nbsp;&nbsp; serverUri - uri of the wallet's daemon (optional)<br>
    * &nbsp;&nbsp; serverUsername - username to authenticate with the daemon (optional)<br>
    * &nbsp;&nbsp; serverPassword - password to authenticate with the daemon (optional)<br>
    * &nbsp;&nbsp; server - MoneroRpcConnection providing server configuration (optional)<br>
+   * &nbsp;&nbsp; keysData - contents of the wallet's keys file to open the wallet in-memory instead of from path (optional)<br>
+   * &nbsp;&nbsp; cacheData - contents of the wallet's cache file to open the wallet in-memory (optional)<br>
    * </p>
    * 
    * @param config configures the wallet to open
@@ -164,7 +233,8 @@ public class MoneroWalletFull extends MoneroWalletDefault {
     
     // validate config
     if (config == null) throw new MoneroError("Must specify config to open wallet");
-    if (config.getPath() == null) throw new MoneroError("Must specify path to open wallet");
+    if (config.getPath() == null && config.getKeysData() == null) throw new MoneroError("Must specify path or keys data to open wallet");
+    if (config.getPath() != null && (config.getKeysData() != null || config.getCacheData() != null)) throw new MoneroError("Cannot specify both path and keys or cache data to open wallet");
     if (config.getPassword() == null) throw new MoneroError("Must specify password to decrypt wallet");
     if (config.getNetworkType() == null) throw new MoneroError("Must specify a network type: 'mainnet', 'testnet' or 'stagenet'");
     if (config.getMnemonic() != null) throw new MoneroError("Cannot specify mnemonic when opening wallet");
@@ -177,6 +247,7 @@ public class MoneroWalletFull extends MoneroWalletDefault {
     if (Boolean.TRUE.equals(config.getSaveCurrent())) throw new MoneroError("Cannot save current wallet when opening full wallet");
     
     // open wallet
+    if (config.getKeysData() != null) return openWalletData(config.getPassword(), config.getNetworkType(), config.getKeysData(), config.getCacheData(), config.getServer());
     return openWallet(config.getPath(), config.getPassword(), config.getNetworkType(), config.getServer());
   }
   
@@ -237,6 +308,7 @@ public class MoneroWalletFull extends MoneroWalletDefault {
       throw new MoneroError("Wallet may be initialized with a mnemonic or keys but not both");
     }
     if (Boolean.TRUE.equals(config.getSaveCurrent() != null)) throw new MoneroError("Cannot save current wallet when creating full wallet");
+    if (config.getKeysData() != null || config.getCacheData() != null) throw new MoneroError("Cannot specify keys or cache data when creating wallet; use openWallet() instead");
     
     // create wallet
     if (config.getMnemonic() != null) {
@@ -340,11 +412,15 @@ public class MoneroWalletFull extends MoneroWalletDefault {
    * @return the maximum height of the peers the wallet's daemon is connected to
    */
   public long getDaemonMaxPeerHeight() {
-    assertNotClosed();
+    lockRead();
     try {
-      return getDaemonMaxPeerHeightJni();
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      try {
+        return getDaemonMaxPeerHeightJni();
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      }
+    } finally {
+      unlockRead();
     }
   }
   
@@ -354,11 +430,15 @@ public class MoneroWalletFull extends MoneroWalletDefault {
    * @return true if the daemon is synced with the network, false otherwise
    */
   public boolean isDaemonSynced() {
-    assertNotClosed();
+    lockRead();
     try {
-      return isDaemonSyncedJni();
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      try {
+        return isDaemonSyncedJni();
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      }
+    } finally {
+      unlockRead();
     }
   }
   
@@ -368,11 +448,15 @@ public class MoneroWalletFull extends MoneroWalletDefault {
    * @return true if the wallet is synced with the daemon, false otherwise
    */
   public boolean isSynced() {
-    assertNotClosed();
+    lockRead();
     try {
-      return isSyncedJni();
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      try {
+        return isSyncedJni();
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      }
+    } finally {
+      unlockRead();
     }
   }
   
@@ -382,8 +466,12 @@ public class MoneroWalletFull extends MoneroWalletDefault {
    * @return the wallet's network type
    */
   public MoneroNetworkType getNetworkType() {
-    assertNotClosed();
-    return MoneroNetworkType.values()[getNetworkTypeJni()];
+    lockRead();
+    try {
+      return MoneroNetworkType.values()[getNetworkTypeJni()];
+    } finally {
+      unlockRead();
+    }
   }
   
   /**
@@ -392,8 +480,12 @@ public class MoneroWalletFull extends MoneroWalletDefault {
    * @return the height of the first block that the wallet scans
    */
   public long getSyncHeight() {
-    assertNotClosed();
-    return getSyncHeightJni();
+    lockRead();
+    try {
+      return getSyncHeightJni();
+    } finally {
+      unlockRead();
+    }
   }
   
   /**
@@ -402,8 +494,13 @@ public class MoneroWalletFull extends MoneroWalletDefault {
    * @param syncHeight is the height of the first block that the wallet scans
    */
   public void setSyncHeight(long syncHeight) {
-    assertNotClosed();
-    setSyncHeightJni(syncHeight);
+    lockWrite();
+    try {
+      setSyncHeightJni(syncHeight);
+      markDirty();
+    } finally {
+      unlockWrite();
+    }
   }
   
   /**
@@ -413,8 +510,101 @@ public class MoneroWalletFull extends MoneroWalletDefault {
    * @param password is the new wallet's password
    */
   public void moveTo(String path, String password) {
+    lockWrite();
+    try {
+      moveToJni(path, password);
+    } finally {
+      unlockWrite();
+    }
+  }
+  
+  /**
+   * Get the current contents of the wallet's keys file without writing to the
+   * filesystem, e.g. to persist an in-memory wallet elsewhere and open it
+   * later with openWalletData() or MoneroWalletConfig.setKeysData().
+   * 
+   * @param password is the password to encrypt the keys data
+   * @return the wallet's keys data
+   */
+  public byte[] getKeysData(String password) {
+    lockRead();
+    try {
+      try {
+        return getKeysFileBufferJni(password, false);
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      }
+    } finally {
+      unlockRead();
+    }
+  }
+  
+  /**
+   * Get the current contents of the wallet's cache file without writing to
+   * the filesystem, to open with the keys data from getKeysData().
+   * 
+   * The cache is encrypted with a key derived from the wallet's keys rather
+   * than its password.
+   * 
+   * @return the wallet's cache data
+   */
+  public byte[] getCacheData() {
+    lockRead();
+    try {
+      try {
+        return getCacheFileBufferJni();
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      }
+    } finally {
+      unlockRead();
+    }
+  }
+  
+  /**
+   * Register a listener which receives notifications as primitive values
+   * without building model objects, e.g. to track outputs while restoring
+   * a busy wallet.
+   * 
+   * Primitive listeners are notified directly on the thread which syncs the
+   * wallet, before any other listeners and bypassing the listener dispatcher.
+   * 
+   * @param listener is the primitive listener to receive wallet notifications
+   */
+  public void addPrimitiveListener(MoneroWalletPrimitiveListenerI listener) {
+    assertNotClosed();
+    synchronized (listeningLock) {
+      if (Arrays.asList(primitiveListeners).contains(listener)) return;
+      MoneroWalletPrimitiveListenerI[] newListeners = Arrays.copyOf(primitiveListeners, primitiveListeners.length + 1);
+      newListeners[primitiveListeners.length] = listener;
+      primitiveListeners = newListeners;
+    }
+    updateIsListening();
+  }
+  
+  /**
+   * Unregister a primitive listener.
+   * 
+   * @param listener is the primitive listener to unregister
+   */
+  public void removePrimitiveListener(MoneroWalletPrimitiveListenerI listener) {
+    assertNotClosed();
+    synchronized (listeningLock) {
+      List<MoneroWalletPrimitiveListenerI> newListeners = new ArrayList<MoneroWalletPrimitiveListenerI>(Arrays.asList(primitiveListeners));
+      if (!newListeners.remove(listener)) throw new MoneroError("Listener is not registered with wallet");
+      primitiveListeners = newListeners.toArray(new MoneroWalletPrimitiveListenerI[newListeners.size()]);
+    }
+    updateIsListening();
+  }
+  
+  /**
+   * Get the registered primitive listeners.
+   * 
+   * @return the registered primitive listeners
+   */
+  public Set<MoneroWalletPrimitiveListenerI> getPrimitiveListeners() {
     assertNotClosed();
-    moveToJni(path, password);
+    return new HashSet<MoneroWalletPrimitiveListenerI>(Arrays.asList(primitiveListeners));
   }
   
   // -------------------------- COMMON WALLET METHODS -------------------------
@@ -422,13 +612,26 @@ public class MoneroWalletFull extends MoneroWalletDefault {
   public void addListener(MoneroWalletListenerI listener) {
     assertNotClosed();
     super.addListener(listener);
-    setIsListening(true);
+    updateIsListening();
   }
   
   public void removeListener(MoneroWalletListenerI listener) {
     assertNotClosed();
     super.removeListener(listener);
-    if (listeners.isEmpty()) setIsListening(false);
+    updateIsListening();
+  }
+  
+  /**
+   * {@inheritDoc}
+   * 
+   * The wallet listens to the c++ wallet while an auto-save policy is set, so
+   * blocks and balance changes synced in the background mark it dirty.
+   */
+  @Override
+  public void setAutoSavePolicy(MoneroAutoSavePolicy policy) {
+    assertNotClosed();
+    super.setAutoSavePolicy(policy);
+    updateIsListening();
   }
   
   public Set<MoneroWalletListenerI> getListeners() {
@@ -437,863 +640,1425 @@ public class MoneroWalletFull extends MoneroWalletDefault {
   }
   
   public boolean isViewOnly() {
-    assertNotClosed();
-    return isViewOnlyJni();
+    lockRead();
+    try {
+      return isViewOnlyJni();
+    } finally {
+      unlockRead();
+    }
   }
   
   public void setDaemonConnection(MoneroRpcConnection daemonConnection) {
-    assertNotClosed();
-    if (daemonConnection == null) setDaemonConnectionJni("", "", "");
-    else {
-      try {
-        setDaemonConnectionJni(daemonConnection.getUri() == null ? "" : daemonConnection.getUri().toString(), daemonConnection.getUsername(), daemonConnection.getPassword());
-      } catch (Exception e) {
-        throw new MoneroError(e.getMessage());
+    lockWrite();
+    try {
+      if (daemonConnection == null) setDaemonConnectionJni("", "", "");
+      else {
+        try {
+          setDaemonConnectionJni(daemonConnection.getUri() == null ? "" : daemonConnection.getUri().toString(), daemonConnection.getUsername(), daemonConnection.getPassword());
+        } catch (Exception e) {
+          throw new MoneroError(e.getMessage());
+        }
       }
+    } finally {
+      unlockWrite();
     }
   }
   
   public MoneroRpcConnection getDaemonConnection() {
-    assertNotClosed();
+    lockRead();
     try {
-      String[] vals = getDaemonConnectionJni();
-      return vals == null ? null : new MoneroRpcConnection(vals[0], vals[1], vals[2]);
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      try {
+        String[] vals = getDaemonConnectionJni();
+        return vals == null ? null : new MoneroRpcConnection(vals[0], vals[1], vals[2]);
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      }
+    } finally {
+      unlockRead();
     }
   }
   
   public boolean isConnected() {
-    assertNotClosed();
+    lockRead();
     try {
-      return isConnectedJni();
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      try {
+        return isConnectedJni();
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      }
+    } finally {
+      unlockRead();
     }
   }
   
   @Override
   public MoneroVersion getVersion() {
-    assertNotClosed();
+    lockRead();
     try {
-      String versionJson = getVersionJni();
-      return JsonUtils.deserialize(MoneroRpcConnection.MAPPER, versionJson, MoneroVersion.class);
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      try {
+        String versionJson = getVersionJni();
+        return JsonUtils.deserialize(MoneroRpcConnection.MAPPER, versionJson, MoneroVersion.class);
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      }
+    } finally {
+      unlockRead();
     }
   }
   
   @Override
   public String getPath() {
-    assertNotClosed();
-    String path = getPathJni();
-    return path.isEmpty() ? null : path;
+    lockRead();
+    try {
+      String path = getPathJni();
+      return path.isEmpty() ? null : path;
+    } finally {
+      unlockRead();
+    }
   }
 
   @Override
   public String getMnemonic() {
-    assertNotClosed();
-    String mnemonic = getMnemonicJni();
-    if ("".equals(mnemonic)) return null;
-    return mnemonic;
+    lockRead();
+    try {
+      String mnemonic = getMnemonicJni();
+      if ("".equals(mnemonic)) return null;
+      return mnemonic;
+    } finally {
+      unlockRead();
+    }
   }
   
   @Override
   public String getMnemonicLanguage() {
-    assertNotClosed();
-    String mnemonicLanguage = getMnemonicLanguageJni();
-    if ("".equals(mnemonicLanguage)) return null;
-    return mnemonicLanguage;
+    lockRead();
+    try {
+      String mnemonicLanguage = getMnemonicLanguageJni();
+      if ("".equals(mnemonicLanguage)) return null;
+      return mnemonicLanguage;
+    } finally {
+      unlockRead();
+    }
   }
 
   @Override
   public String getPrivateViewKey() {
-    assertNotClosed();
-    return getPrivateViewKeyJni();
+    lockRead();
+    try {
+      return getPrivateViewKeyJni();
+    } finally {
+      unlockRead();
+    }
   }
   
   @Override
   public String getPrivateSpendKey() {
-    assertNotClosed();
-    String privateSpendKey = getPrivateSpendKeyJni();
-    if ("".equals(privateSpendKey)) return null;
-    return privateSpendKey;
+    lockRead();
+    try {
+      String privateSpendKey = getPrivateSpendKeyJni();
+      if ("".equals(privateSpendKey)) return null;
+      return privateSpendKey;
+    } finally {
+      unlockRead();
+    }
   }
   
   @Override
   public String getPublicViewKey() {
-    assertNotClosed();
-    return getPublicViewKeyJni();
+    lockRead();
+    try {
+      return getPublicViewKeyJni();
+    } finally {
+      unlockRead();
+    }
   }
   
   @Override
   public String getPublicSpendKey() {
-    assertNotClosed();
-    return getPublicSpendKeyJni();
+    lockRead();
+    try {
+      return getPublicSpendKeyJni();
+    } finally {
+      unlockRead();
+    }
   }
 
   @Override
   public MoneroIntegratedAddress getIntegratedAddress(String paymentId) {
-    assertNotClosed();
+    lockRead();
     try {
-      String integratedAddressJson = getIntegratedAddressJni("", paymentId);
-      return JsonUtils.deserialize(MoneroRpcConnection.MAPPER, integratedAddressJson, MoneroIntegratedAddress.class);
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      try {
+        String integratedAddressJson = getIntegratedAddressJni("", paymentId);
+        return JsonUtils.deserialize(MoneroRpcConnection.MAPPER, integratedAddressJson, MoneroIntegratedAddress.class);
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      }
+    } finally {
+      unlockRead();
     }
   }
 
   @Override
   public MoneroIntegratedAddress decodeIntegratedAddress(String integratedAddress) {
-    assertNotClosed();
+    lockRead();
     try {
-      String integratedAddressJson = decodeIntegratedAddressJni(integratedAddress);
-      return JsonUtils.deserialize(MoneroRpcConnection.MAPPER, integratedAddressJson, MoneroIntegratedAddress.class);
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      try {
+        String integratedAddressJson = decodeIntegratedAddressJni(integratedAddress);
+        return JsonUtils.deserialize(MoneroRpcConnection.MAPPER, integratedAddressJson, MoneroIntegratedAddress.class);
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      }
+    } finally {
+      unlockRead();
     }
   }
 
   @Override
   public long getHeight() {
-    assertNotClosed();
-    return getHeightJni();
+    lockRead();
+    try {
+      return getHeightJni();
+    } finally {
+      unlockRead();
+    }
   }
 
   @Override
   public long getDaemonHeight() {
-    assertNotClosed();
+    lockRead();
     try {
-      return getDaemonHeightJni();
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      try {
+        return getDaemonHeightJni();
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      }
+    } finally {
+      unlockRead();
     }
   }
   
   @Override
   public long getHeightByDate(int year, int month, int day) {
-    assertNotClosed();
+    lockRead();
     try {
-      return getHeightByDateJni(year, month ,day);
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      try {
+        return getHeightByDateJni(year, month ,day);
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      }
+    } finally {
+      unlockRead();
     }
   }
 
   @Override
   public MoneroSyncResult sync(Long startHeight, MoneroWalletListenerI listener) {
-    assertNotClosed();
-    if (startHeight == null) startHeight = Math.max(getHeight(), getSyncHeight());
-    
-    // register listener if given
-    if (listener != null) addListener(listener);
-    
-    // sync wallet and handle exception
+    lockWrite();
     try {
-      Object[] results = syncJni(startHeight);
-      return new MoneroSyncResult((long) results[0], (boolean) results[1]);
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      if (startHeight == null) startHeight = Math.max(getHeight(), getSyncHeight());
+      
+      // register listener if given
+      if (listener != null) addListener(listener);
+      
+      // sync wallet and handle exception
+      numSyncs.incrementAndGet();
+      try {
+        Object[] results = syncJni(startHeight);
+        MoneroSyncResult result = new MoneroSyncResult((long) results[0], (boolean) results[1]);
+        if (result.getNumBlocksFetched() > 0) markDirty();
+        return result;
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      } finally {
+        numSyncs.decrementAndGet();
+        if (listener != null) removeListener(listener); // unregister listener
+        invalidateBalancesSnapshot();
+      }
     } finally {
-      if (listener != null) removeListener(listener); // unregister listener
+      unlockWrite();
     }
   }
   
   @Override
   public void startSyncing(Long syncPeriodInMs) {
-    assertNotClosed();
-    try {
-      startSyncingJni(syncPeriodInMs == null ? DEFAULT_SYNC_PERIOD_IN_MS : syncPeriodInMs);
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+    synchronized (syncingLock) {
+      if (isClosing) throw new MoneroError("Wallet is closed");
+      try {
+        startSyncingJni(syncPeriodInMs == null ? DEFAULT_SYNC_PERIOD_IN_MS : syncPeriodInMs);
+        isSyncingInBackground = true;
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      }
     }
   }
   
+  /**
+   * Stop syncing the wallet in the background.
+   * 
+   * Does not take the wallet's lock, so listeners on the background sync
+   * thread can read the wallet while it stops.
+   */
   public void stopSyncing() {
-    assertNotClosed();
+    synchronized (syncingLock) {
+      if (isClosing) throw new MoneroError("Wallet is closed");
+      stopSyncingAux();
+    }
+  }
+  
+  /**
+   * {@inheritDoc}
+   * 
+   * Progress is throttled in native code before crossing into Java, so
+   * skipped progress costs no JNI call.  Primitive listeners are throttled too.
+   */
+  @Override
+  public void setSyncProgressPolicy(MoneroSyncProgressPolicy policy) {
+    lockRead(); // configures notifications without changing the wallet
     try {
-      stopSyncingJni();
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      synchronized (listeningLock) {
+        super.setSyncProgressPolicy(policy);
+        if (isListening) applySyncProgressPolicy();
+      }
+    } finally {
+      unlockRead();
     }
   }
   
+  /**
+   * Indicates if the wallet is syncing, either in a call to sync() or
+   * periodically in the background after startSyncing().
+   * 
+   * @return true if the wallet is syncing, false otherwise
+   */
+  public boolean isSyncInProgress() {
+    return numSyncs.get() > 0 || isSyncingInBackground;
+  }
+  
   @Override
   public void rescanSpent() {
-    assertNotClosed();
+    lockWrite();
     try {
-      rescanSpentJni();
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      try {
+        rescanSpentJni();
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      } finally {
+        invalidateBalancesSnapshot();
+      }
+      markDirty();
+    } finally {
+      unlockWrite();
     }
   }
 
   @Override
   public void rescanBlockchain() {
-    assertNotClosed();
+    lockWrite();
     try {
-      rescanBlockchainJni();
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
-    }
+      try {
+        rescanBlockchainJni();
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      } finally {
+        invalidateBalancesSnapshot();
+      }
+      markDirty();
+    } finally {
+      unlockWrite();
+    }
   }
 
   @Override
   public List<MoneroAccount> getAccounts(boolean includeSubaddresses, String tag) {
-    assertNotClosed();
-    String accountsJson = getAccountsJni(includeSubaddresses, tag);
-    List<MoneroAccount> accounts = JsonUtils.deserialize(MoneroRpcConnection.MAPPER, accountsJson, AccountsContainer.class).accounts;
-    for (MoneroAccount account : accounts) sanitizeAccount(account);
-    return accounts;
+    lockRead();
+    try {
+      String accountsJson = getAccountsJni(includeSubaddresses, tag);
+      List<MoneroAccount> accounts = JsonUtils.deserialize(MoneroRpcConnection.MAPPER, accountsJson, AccountsContainer.class).accounts;
+      for (MoneroAccount account : accounts) sanitizeAccount(account);
+      return accounts;
+    } finally {
+      unlockRead();
+    }
   }
   
   @Override
   public MoneroAccount getAccount(int accountIdx, boolean includeSubaddresses) {
-    assertNotClosed();
-    String accountJson = getAccountJni(accountIdx, includeSubaddresses);
-    MoneroAccount account = JsonUtils.deserialize(MoneroRpcConnection.MAPPER, accountJson, MoneroAccount.class);
-    sanitizeAccount(account);
-    return account;
+    lockRead();
+    try {
+      String accountJson = getAccountJni(accountIdx, includeSubaddresses);
+      MoneroAccount account = JsonUtils.deserialize(MoneroRpcConnection.MAPPER, accountJson, MoneroAccount.class);
+      sanitizeAccount(account);
+      return account;
+    } finally {
+      unlockRead();
+    }
   }
 
   @Override
   public MoneroAccount createAccount(String label) {
-    assertNotClosed();
-    String accountJson = createAccountJni(label);
-    MoneroAccount account = JsonUtils.deserialize(MoneroRpcConnection.MAPPER, accountJson, MoneroAccount.class);
-    sanitizeAccount(account);
-    return account;
+    lockWrite();
+    try {
+      String accountJson = createAccountJni(label);
+      MoneroAccount account = JsonUtils.deserialize(MoneroRpcConnection.MAPPER, accountJson, MoneroAccount.class);
+      sanitizeAccount(account);
+      markDirty();
+      return account;
+    } finally {
+      unlockWrite();
+    }
   }
 
   @Override
   public List<MoneroSubaddress> getSubaddresses(int accountIdx, List<Integer> subaddressIndices) {
-    assertNotClosed();
-    String subaddresses_json = getSubaddressesJni(accountIdx, GenUtils.listToIntArray(subaddressIndices));
-    List<MoneroSubaddress> subaddresses = JsonUtils.deserialize(MoneroRpcConnection.MAPPER, subaddresses_json, SubaddressesContainer.class).subaddresses;
-    for (MoneroSubaddress subaddress : subaddresses) sanitizeSubaddress(subaddress);
-    return subaddresses;
+    lockRead();
+    try {
+      String subaddresses_json = getSubaddressesJni(accountIdx, GenUtils.listToIntArray(subaddressIndices));
+      List<MoneroSubaddress> subaddresses = JsonUtils.deserialize(MoneroRpcConnection.MAPPER, subaddresses_json, SubaddressesContainer.class).subaddresses;
+      for (MoneroSubaddress subaddress : subaddresses) sanitizeSubaddress(subaddress);
+      return subaddresses;
+    } finally {
+      unlockRead();
+    }
   }
 
   @Override
   public MoneroSubaddress createSubaddress(int accountIdx, String label) {
-    assertNotClosed();
-    String subaddressJson = createSubaddressJni(accountIdx, label);
-    MoneroSubaddress subaddress = JsonUtils.deserialize(MoneroRpcConnection.MAPPER, subaddressJson, MoneroSubaddress.class);
-    sanitizeSubaddress(subaddress);
-    return subaddress;
+    lockWrite();
+    try {
+      String subaddressJson = createSubaddressJni(accountIdx, label);
+      MoneroSubaddress subaddress = JsonUtils.deserialize(MoneroRpcConnection.MAPPER, subaddressJson, MoneroSubaddress.class);
+      sanitizeSubaddress(subaddress);
+      markDirty();
+      return subaddress;
+    } finally {
+      unlockWrite();
+    }
   }
 
   @Override
   public String getAddress(int accountIdx, int subaddressIdx) {
-    assertNotClosed();
-    return getAddressJni(accountIdx, subaddressIdx);
+    lockRead();
+    try {
+      return getAddressJni(accountIdx, subaddressIdx);
+    } finally {
+      unlockRead();
+    }
   }
 
   @Override
   public MoneroSubaddress getAddressIndex(String address) {
-    assertNotClosed();
+    lockRead();
     try {
-      String subaddressJson = getAddressIndexJni(address);
-      MoneroSubaddress subaddress = JsonUtils.deserialize(MoneroRpcConnection.MAPPER, subaddressJson, MoneroSubaddress.class);
-      return sanitizeSubaddress(subaddress);
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      try {
+        String subaddressJson = getAddressIndexJni(address);
+        MoneroSubaddress subaddress = JsonUtils.deserialize(MoneroRpcConnection.MAPPER, subaddressJson, MoneroSubaddress.class);
+        return sanitizeSubaddress(subaddress);
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      }
+    } finally {
+      unlockRead();
     }
   }
 
   @Override
   public BigInteger getBalance(Integer accountIdx, Integer subaddressIdx) {
-    assertNotClosed();
+    lockRead();
     try {
-      if (accountIdx == null) {
-        if (subaddressIdx != null) throw new MoneroError("Must provide account index with subaddress index");
-        return new BigInteger(getBalanceWalletJni());
-      } else {
-        if (subaddressIdx == null) return new BigInteger(getBalanceAccountJni(accountIdx));
-        else return new BigInteger(getBalanceSubaddressJni(accountIdx, subaddressIdx));
+      try {
+        if (accountIdx == null) {
+          if (subaddressIdx != null) throw new MoneroError("Must provide account index with subaddress index");
+          return new BigInteger(getBalanceWalletJni());
+        } else {
+          if (subaddressIdx == null) return new BigInteger(getBalanceAccountJni(accountIdx));
+          else return new BigInteger(getBalanceSubaddressJni(accountIdx, subaddressIdx));
+        }
+      } catch (MoneroError e) {
+        throw new MoneroError(e.getMessage());
       }
-    } catch (MoneroError e) {
-      throw new MoneroError(e.getMessage());
+    } finally {
+      unlockRead();
     }
   }
   
+  @Override
+  public MoneroBalances getBalances() {
+    lockRead();
+    try {
+      return super.getBalances();
+    } finally {
+      unlockRead();
+    }
+  }
+  
+  /**
+   * {@inheritDoc}
+   * 
+   * Listeners wait for the lock while the current thread holds it, or while
+   * another thread holds the exclusive lock and waits for the background sync
+   * which notifies the current thread.
+   */
+  @Override
+  protected boolean isWaitingForListenersAllowed() {
+    if (lock.isWriteLockedByCurrentThread() || lock.getReadHoldCount() > 0) return false;
+    return !(isNotifyingThread() && lock.isWriteLocked());
+  }
+  
+  @Override
+  protected boolean isSnapshottingBalances() {
+    return isListening;
+  }
+  
   @Override
   public BigInteger getUnlockedBalance(Integer accountIdx, Integer subaddressIdx) {
-    assertNotClosed();
+    lockRead();
     try {
-      if (accountIdx == null) {
-        if (subaddressIdx != null) throw new MoneroError("Must provide account index with subaddress index");
-        return new BigInteger(getUnlockedBalanceWalletJni());
-      } else {
-        if (subaddressIdx == null) return new BigInteger(getUnlockedBalanceAccountJni(accountIdx));
-        else return new BigInteger(getUnlockedBalanceSubaddressJni(accountIdx, subaddressIdx));
+      try {
+        if (accountIdx == null) {
+          if (subaddressIdx != null) throw new MoneroError("Must provide account index with subaddress index");
+          return new BigInteger(getUnlockedBalanceWalletJni());
+        } else {
+          if (subaddressIdx == null) return new BigInteger(getUnlockedBalanceAccountJni(accountIdx));
+          else return new BigInteger(getUnlockedBalanceSubaddressJni(accountIdx, subaddressIdx));
+        }
+      } catch (MoneroError e) {
+        throw new MoneroError(e.getMessage());
       }
-    } catch (MoneroError e) {
-      throw new MoneroError(e.getMessage());
+    } finally {
+      unlockRead();
     }
   }
   
   @Override
   public List<MoneroTxWallet> getTxs(MoneroTxQuery query, Collection<String> missingTxHashes) {
-    assertNotClosed();
-    
-    // copy and normalize tx query up to block
-    query = query == null ? new MoneroTxQuery() : query.copy();
-    if (query.getBlock() == null) query.setBlock(new MoneroBlock().setTxs(query));
-    
-    // serialize query from block and fetch txs from jni
-    String blocksJson;
+    return getTxs(query, missingTxHashes, MoneroResultEncoding.JSON);
+  }
+  
+  /**
+   * Get wallet transactions, selecting how results are encoded from the native wallet.
+   * 
+   * Binary results avoid building and parsing a JSON string for large wallets
+   * and fall back to JSON if the native library does not support them.
+   * 
+   * @param query specifies attributes of transactions to get
+   * @param missingTxHashes are populated with requested tx hashes which are not found in the wallet (optional)
+   * @param encoding is the encoding of results returned from the native wallet
+   * @return wallet transactions per the query
+   */
+  public List<MoneroTxWallet> getTxs(MoneroTxQuery query, Collection<String> missingTxHashes, MoneroResultEncoding encoding) {
+    lockRead();
     try {
-      blocksJson = getTxsJni(JsonUtils.serialize(query.getBlock()));
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      // copy and normalize tx query up to block
+      query = query == null ? new MoneroTxQuery() : query.copy();
+      if (query.getBlock() == null) query.setBlock(new MoneroBlock().setTxs(query));
+      
+      // serialize query from block and fetch txs from jni
+      DeserializedBlocksContainer blocks;
+      try {
+        String queryJson = JsonUtils.serialize(query.getBlock());
+        if (isBinaryResults(encoding)) {
+          try {
+            blocks = decodeBlocks(getTxsBinaryJni(queryJson));
+          } catch (UnsatisfiedLinkError e) {
+            disableBinaryResults(e);
+            blocks = deserializeBlocks(getTxsJni(queryJson));
+          }
+        } else {
+          blocks = deserializeBlocks(getTxsJni(queryJson));
+        }
+      } catch (MoneroError e) {
+        throw e;
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      }
+      
+      // collect and return txs
+      return collectTxs(query, blocks, missingTxHashes);
+    } finally {
+      unlockRead();
     }
-    
-    // deserialize and return txs
-    return deserializeTxs(query, blocksJson, missingTxHashes);
   }
 
   @Override
   public List<MoneroTransfer> getTransfers(MoneroTransferQuery query) {
-    assertNotClosed();
-    
-    // copy and normalize query up to block
-    if (query == null) query = new MoneroTransferQuery();
-    else {
-      if (query.getTxQuery() == null) query = query.copy();
+    return getTransfers(query, MoneroResultEncoding.JSON);
+  }
+  
+  /**
+   * Get incoming and outgoing transfers, selecting how results are encoded from the native wallet.
+   * 
+   * @param query specifies attributes of transfers to get
+   * @param encoding is the encoding of results returned from the native wallet
+   * @return wallet transfers that meet the query
+   */
+  public List<MoneroTransfer> getTransfers(MoneroTransferQuery query, MoneroResultEncoding encoding) {
+    lockRead();
+    try {
+      // copy and normalize query up to block
+      if (query == null) query = new MoneroTransferQuery();
       else {
-        MoneroTxQuery txQuery = query.getTxQuery().copy();
-        if (query.getTxQuery().getTransferQuery() == query) query = txQuery.getTransferQuery();
+        if (query.getTxQuery() == null) query = query.copy();
         else {
-          GenUtils.assertNull("Transfer query's tx query must be circular reference or null", query.getTxQuery().getTransferQuery());
-          query = query.copy();
-          query.setTxQuery(txQuery);
+          MoneroTxQuery txQuery = query.getTxQuery().copy();
+          if (query.getTxQuery().getTransferQuery() == query) query = txQuery.getTransferQuery();
+          else {
+            GenUtils.assertNull("Transfer query's tx query must be circular reference or null", query.getTxQuery().getTransferQuery());
+            query = query.copy();
+            query.setTxQuery(txQuery);
+          }
         }
       }
+      if (query.getTxQuery() == null) query.setTxQuery(new MoneroTxQuery());
+      query.getTxQuery().setTransferQuery(query);
+      if (query.getTxQuery().getBlock() == null) query.getTxQuery().setBlock(new MoneroBlock().setTxs(query.getTxQuery()));
+      
+      // serialize query from block and fetch transfers from jni
+      DeserializedBlocksContainer blocks;
+      try {
+        String queryJson = JsonUtils.serialize(query.getTxQuery().getBlock());
+        if (isBinaryResults(encoding)) {
+          try {
+            blocks = decodeBlocks(getTransfersBinaryJni(queryJson));
+          } catch (UnsatisfiedLinkError e) {
+            disableBinaryResults(e);
+            blocks = deserializeBlocks(getTransfersJni(queryJson));
+          }
+        } else {
+          blocks = deserializeBlocks(getTransfersJni(queryJson));
+        }
+      } catch (MoneroError e) {
+        throw e;
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      }
+      
+      // collect and return transfers
+      return collectTransfers(query, blocks);
+    } finally {
+      unlockRead();
     }
-    if (query.getTxQuery() == null) query.setTxQuery(new MoneroTxQuery());
-    query.getTxQuery().setTransferQuery(query);
-    if (query.getTxQuery().getBlock() == null) query.getTxQuery().setBlock(new MoneroBlock().setTxs(query.getTxQuery()));
-    
-    // serialize query from block and fetch transfers from jni
-    String blocksJson;
-    try {
-      blocksJson = getTransfersJni(JsonUtils.serialize(query.getTxQuery().getBlock()));
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
-    }
-    
-    // deserialize and return transfers
-    return deserializeTransfers(query, blocksJson);
   }
 
   @Override
   public List<MoneroOutputWallet> getOutputs(MoneroOutputQuery query) {
-    assertNotClosed();
-    
-    // copy and normalize query up to block
-    if (query == null) query = new MoneroOutputQuery();
-    else {
-      if (query.getTxQuery() == null) query = query.copy();
+    return getOutputs(query, MoneroResultEncoding.JSON);
+  }
+  
+  /**
+   * Get outputs, selecting how results are encoded from the native wallet.
+   * 
+   * @param query specifies attributes of outputs to get
+   * @param encoding is the encoding of results returned from the native wallet
+   * @return the queried outputs
+   */
+  public List<MoneroOutputWallet> getOutputs(MoneroOutputQuery query, MoneroResultEncoding encoding) {
+    lockRead();
+    try {
+      // copy and normalize query up to block
+      if (query == null) query = new MoneroOutputQuery();
       else {
-        MoneroTxQuery txQuery = query.getTxQuery().copy();
-        if (query.getTxQuery().getOutputQuery() == query) query = txQuery.getOutputQuery();
+        if (query.getTxQuery() == null) query = query.copy();
         else {
-          GenUtils.assertNull("Output query's tx query must be circular reference or null", query.getTxQuery().getOutputQuery());
-          query = query.copy();
-          query.setTxQuery(txQuery);
+          MoneroTxQuery txQuery = query.getTxQuery().copy();
+          if (query.getTxQuery().getOutputQuery() == query) query = txQuery.getOutputQuery();
+          else {
+            GenUtils.assertNull("Output query's tx query must be circular reference or null", query.getTxQuery().getOutputQuery());
+            query = query.copy();
+            query.setTxQuery(txQuery);
+          }
         }
       }
+      if (query.getTxQuery() == null) query.setTxQuery(new MoneroTxQuery());
+      query.getTxQuery().setOutputQuery(query);
+      if (query.getTxQuery().getBlock() == null) query.getTxQuery().setBlock(new MoneroBlock().setTxs(query.getTxQuery()));
+      
+      // serialize query from block and fetch outputs from jni
+      DeserializedBlocksContainer blocks;
+      String queryJson = JsonUtils.serialize(query.getTxQuery().getBlock());
+      if (isBinaryResults(encoding)) {
+        try {
+          blocks = decodeBlocks(getOutputsBinaryJni(queryJson));
+        } catch (UnsatisfiedLinkError e) {
+          disableBinaryResults(e);
+          blocks = deserializeBlocks(getOutputsJni(queryJson));
+        }
+      } else {
+        blocks = deserializeBlocks(getOutputsJni(queryJson));
+      }
+      
+      // collect and return outputs
+      return collectOutputs(query, blocks);
+    } finally {
+      unlockRead();
     }
-    if (query.getTxQuery() == null) query.setTxQuery(new MoneroTxQuery());
-    query.getTxQuery().setOutputQuery(query);
-    if (query.getTxQuery().getBlock() == null) query.getTxQuery().setBlock(new MoneroBlock().setTxs(query.getTxQuery()));
-    
-    // serialize query from block and fetch outputs from jni
-    String blocksJson = getOutputsJni(JsonUtils.serialize(query.getTxQuery().getBlock()));
-    
-    // deserialize and return outputs
-    return deserializeOutputs(query, blocksJson);
   }
   
   @Override
   public String exportOutputs(boolean all) {
-    assertNotClosed();
-    String outputsHex = exportOutputsJni(all);
-    return outputsHex.isEmpty() ? null : outputsHex;
+    lockRead();
+    try {
+      String outputsHex = exportOutputsJni(all);
+      return outputsHex.isEmpty() ? null : outputsHex;
+    } finally {
+      unlockRead();
+    }
   }
 
   @Override
   public int importOutputs(String outputsHex) {
-    assertNotClosed();
-    return importOutputsJni(outputsHex);
+    lockWrite();
+    try {
+      int numImported;
+      try {
+        numImported = importOutputsJni(outputsHex);
+      } finally {
+        invalidateBalancesSnapshot();
+      }
+      markDirty();
+      return numImported;
+    } finally {
+      unlockWrite();
+    }
   }
 
   @Override
   public List<MoneroKeyImage> exportKeyImages(boolean all) {
-    assertNotClosed();
-    String keyImagesJson = exportKeyImagesJni(all);
-    List<MoneroKeyImage> keyImages = JsonUtils.deserialize(MoneroRpcConnection.MAPPER, keyImagesJson, KeyImagesContainer.class).keyImages;
-    return keyImages;
+    lockRead();
+    try {
+      String keyImagesJson = exportKeyImagesJni(all);
+      List<MoneroKeyImage> keyImages = JsonUtils.deserialize(MoneroRpcConnection.MAPPER, keyImagesJson, KeyImagesContainer.class).keyImages;
+      return keyImages;
+    } finally {
+      unlockRead();
+    }
   }
 
   @Override
   public MoneroKeyImageImportResult importKeyImages(List<MoneroKeyImage> keyImages) {
-    assertNotClosed();
-    
-    // wrap and serialize key images in container for jni
-    KeyImagesContainer keyImageContainer = new KeyImagesContainer(keyImages);
-    String importResultJson = importKeyImagesJni(JsonUtils.serialize(keyImageContainer));
-    
-    // deserialize response
-    return JsonUtils.deserialize(MoneroRpcConnection.MAPPER, importResultJson, MoneroKeyImageImportResult.class);
+    lockWrite();
+    try {
+      // wrap and serialize key images in container for jni
+      KeyImagesContainer keyImageContainer = new KeyImagesContainer(keyImages);
+      String importResultJson = importKeyImagesJni(JsonUtils.serialize(keyImageContainer));
+      invalidateBalancesSnapshot();
+      markDirty();
+      
+      // deserialize response
+      return JsonUtils.deserialize(MoneroRpcConnection.MAPPER, importResultJson, MoneroKeyImageImportResult.class);
+    } finally {
+      unlockWrite();
+    }
   }
 
   @Override
   public List<MoneroKeyImage> getNewKeyImagesFromLastImport() {
-    assertNotClosed();
-    throw new RuntimeException("MoneroWalletFull.getNewKeyImagesFromLastImport() not implemented");
+    lockRead();
+    try {
+      throw new RuntimeException("MoneroWalletFull.getNewKeyImagesFromLastImport() not implemented");
+    } finally {
+      unlockRead();
+    }
   }
   
   @Override
   public List<String> relayTxs(Collection<String> txMetadatas) {
-    assertNotClosed();
-    String[] txMetadatasArr = txMetadatas.toArray(new String[txMetadatas.size()]);  // convert to array for jni
+    lockWrite();
     try {
-      return Arrays.asList(relayTxsJni(txMetadatasArr));
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      String[] txMetadatasArr = txMetadatas.toArray(new String[txMetadatas.size()]);  // convert to array for jni
+      List<String> txHashes;
+      try {
+        txHashes = Arrays.asList(relayTxsJni(txMetadatasArr));
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      } finally {
+        invalidateBalancesSnapshot();
+      }
+      markDirty();
+      return txHashes;
+    } finally {
+      unlockWrite();
     }
   }
   
   @Override
   public List<MoneroTxWallet> createTxs(MoneroTxConfig config) {
-    assertNotClosed();
-    LOGGER.fine("java createTxs(request)");
-    LOGGER.fine("Tx config: " + JsonUtils.serialize(config));
-    
-    // validate request
-    if (config == null) throw new MoneroError("Tx config cannot be null");
-    
-    // submit tx config to JNI and get response as json rooted at tx set
-    String txSetJson;
+    lockWrite();
     try {
-      txSetJson = createTxsJni(JsonUtils.serialize(config));
-      LOGGER.fine("Received createTxs() response from JNI: " + txSetJson.substring(0, Math.min(5000, txSetJson.length())) + "...");
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      LOGGER.fine("java createTxs(request)");
+      LOGGER.fine("Tx config: " + JsonUtils.serialize(config));
+      
+      // validate request
+      if (config == null) throw new MoneroError("Tx config cannot be null");
+      
+      // submit tx config to JNI and get response as json rooted at tx set
+      String txSetJson;
+      try {
+        txSetJson = createTxsJni(JsonUtils.serialize(config));
+        LOGGER.fine("Received createTxs() response from JNI: " + txSetJson.substring(0, Math.min(5000, txSetJson.length())) + "...");
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      } finally {
+        invalidateBalancesSnapshot();
+      }
+      markDirty();
+      
+      // deserialize and return txs
+      MoneroTxSet txSet = JsonUtils.deserialize(txSetJson, MoneroTxSet.class);
+      return txSet.getTxs();
+    } finally {
+      unlockWrite();
     }
-    
-    // deserialize and return txs
-    MoneroTxSet txSet = JsonUtils.deserialize(txSetJson, MoneroTxSet.class);
-    return txSet.getTxs();
   }
   
   @Override
   public MoneroTxWallet sweepOutput(MoneroTxConfig config) {
-    assertNotClosed();
+    lockWrite();
     try {
-      String txSetJson = sweepOutputJni(JsonUtils.serialize(config));
-      MoneroTxSet txSet = JsonUtils.deserialize(txSetJson, MoneroTxSet.class);
-      return txSet.getTxs().get(0);
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      try {
+        String txSetJson = sweepOutputJni(JsonUtils.serialize(config));
+        markDirty();
+        MoneroTxSet txSet = JsonUtils.deserialize(txSetJson, MoneroTxSet.class);
+        return txSet.getTxs().get(0);
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      } finally {
+        invalidateBalancesSnapshot();
+      }
+    } finally {
+      unlockWrite();
     }
   }
   
   @Override
   public List<MoneroTxWallet> sweepUnlocked(MoneroTxConfig config) {
-    assertNotClosed();
-    
-    // validate request
-    if (config == null) throw new MoneroError("Send request cannot be null");
-    
-    // submit send request to JNI and get response as json rooted at tx set
-    String txSetsJson;
+    lockWrite();
     try {
-      txSetsJson = sweepUnlockedJni(JsonUtils.serialize(config));
-      LOGGER.fine("Received sweepUnlocked() response from JNI: " + txSetsJson.substring(0, Math.min(5000, txSetsJson.length())) + "...");
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      // validate request
+      if (config == null) throw new MoneroError("Send request cannot be null");
+      
+      // submit send request to JNI and get response as json rooted at tx set
+      String txSetsJson;
+      try {
+        txSetsJson = sweepUnlockedJni(JsonUtils.serialize(config));
+        LOGGER.fine("Received sweepUnlocked() response from JNI: " + txSetsJson.substring(0, Math.min(5000, txSetsJson.length())) + "...");
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      } finally {
+        invalidateBalancesSnapshot();
+      }
+      markDirty();
+      
+      // deserialize tx sets
+      List<MoneroTxSet> txSets = JsonUtils.deserialize(MoneroRpcConnection.MAPPER, txSetsJson, TxSetsContainer.class).txSets;
+      
+      // return txs
+      List<MoneroTxWallet> txs = new ArrayList<MoneroTxWallet>();
+      for (MoneroTxSet txSet : txSets) txs.addAll(txSet.getTxs());
+      return txs;
+    } finally {
+      unlockWrite();
     }
-    
-    // deserialize tx sets
-    List<MoneroTxSet> txSets = JsonUtils.deserialize(MoneroRpcConnection.MAPPER, txSetsJson, TxSetsContainer.class).txSets;
-    
-    // return txs
-    List<MoneroTxWallet> txs = new ArrayList<MoneroTxWallet>();
-    for (MoneroTxSet txSet : txSets) txs.addAll(txSet.getTxs());
-    return txs;
   }
 
   @Override
   public List<MoneroTxWallet> sweepDust(boolean relay) {
-    assertNotClosed();
-    String txSetJson;
-    try { txSetJson = sweepDustJni(relay); }
-    catch (Exception e) { throw new MoneroError(e.getMessage()); }
-    MoneroTxSet txSet = JsonUtils.deserialize(txSetJson, MoneroTxSet.class);
-    return txSet.getTxs();
+    lockWrite();
+    try {
+      String txSetJson;
+      try { txSetJson = sweepDustJni(relay); }
+      catch (Exception e) { throw new MoneroError(e.getMessage()); }
+      finally { invalidateBalancesSnapshot(); }
+      markDirty();
+      MoneroTxSet txSet = JsonUtils.deserialize(txSetJson, MoneroTxSet.class);
+      return txSet.getTxs();
+    } finally {
+      unlockWrite();
+    }
   }
   
   @Override
   public MoneroTxSet describeTxSet(MoneroTxSet txSet) {
-    assertNotClosed();
-    String describedTxSetJson;
+    lockRead();
     try {
-      describedTxSetJson = describeTxSetJni(JsonUtils.serialize(txSet));
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      String describedTxSetJson;
+      try {
+        describedTxSetJson = describeTxSetJni(JsonUtils.serialize(txSet));
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      }
+      return JsonUtils.deserialize(describedTxSetJson, MoneroTxSet.class);
+    } finally {
+      unlockRead();
     }
-    return JsonUtils.deserialize(describedTxSetJson, MoneroTxSet.class);
   }
   
   @Override
   public String signTxs(String unsignedTxHex) {
-    assertNotClosed();
+    lockWrite();
     try {
-      return signTxsJni(unsignedTxHex);
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      try {
+        String signedTxHex = signTxsJni(unsignedTxHex);
+        markDirty();
+        return signedTxHex;
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      }
+    } finally {
+      unlockWrite();
     }
   }
 
   @Override
   public List<String> submitTxs(String signedTxHex) {
-    assertNotClosed();
+    lockWrite();
     try {
-      return Arrays.asList(submitTxsJni(signedTxHex));
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      List<String> txHashes;
+      try {
+        txHashes = Arrays.asList(submitTxsJni(signedTxHex));
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      } finally {
+        invalidateBalancesSnapshot();
+      }
+      markDirty();
+      return txHashes;
+    } finally {
+      unlockWrite();
     }
   }
 
   @Override
   public MoneroCheckTx checkTxKey(String txHash, String txKey, String address) {
-    assertNotClosed();
+    lockRead();
     try {
-      String checkStr = checkTxKeyJni(txHash, txKey, address);
-      return JsonUtils.deserialize(MoneroRpcConnection.MAPPER, checkStr, MoneroCheckTx.class);
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      try {
+        String checkStr = checkTxKeyJni(txHash, txKey, address);
+        return JsonUtils.deserialize(MoneroRpcConnection.MAPPER, checkStr, MoneroCheckTx.class);
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      }
+    } finally {
+      unlockRead();
     }
   }
 
   @Override
   public String getTxProof(String txHash, String address, String message) {
-    assertNotClosed();
+    lockRead();
     try {
-      return getTxProofJni(txHash, address, message);
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      try {
+        return getTxProofJni(txHash, address, message);
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      }
+    } finally {
+      unlockRead();
     }
   }
 
   @Override
   public MoneroCheckTx checkTxProof(String txHash, String address, String message, String signature) {
-    assertNotClosed();
+    lockRead();
     try {
-      String checkStr = checkTxProofJni(txHash, address, message, signature);
-      return JsonUtils.deserialize(MoneroRpcConnection.MAPPER, checkStr, MoneroCheckTx.class);
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      try {
+        String checkStr = checkTxProofJni(txHash, address, message, signature);
+        return JsonUtils.deserialize(MoneroRpcConnection.MAPPER, checkStr, MoneroCheckTx.class);
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      }
+    } finally {
+      unlockRead();
     }
   }
 
   @Override
   public String getSpendProof(String txHash, String message) {
-    assertNotClosed();
+    lockRead();
     try {
-      return getSpendProofJni(txHash, message);
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      try {
+        return getSpendProofJni(txHash, message);
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      }
+    } finally {
+      unlockRead();
     }
   }
 
   @Override
   public boolean checkSpendProof(String txHash, String message, String signature) {
-    assertNotClosed();
+    lockRead();
     try {
-      return checkSpendProofJni(txHash, message, signature);
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      try {
+        return checkSpendProofJni(txHash, message, signature);
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      }
+    } finally {
+      unlockRead();
     }
   }
 
   @Override
   public String getReserveProofWallet(String message) {
+    lockRead();
     try {
-      return getReserveProofWalletJni(message);
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      try {
+        return getReserveProofWalletJni(message);
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      }
+    } finally {
+      unlockRead();
     }
   }
 
   @Override
   public String getReserveProofAccount(int accountIdx, BigInteger amount, String message) {
-    assertNotClosed();
+    lockRead();
     try {
-      return getReserveProofAccountJni(accountIdx, amount.toString(), message);
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage(), -1);
+      try {
+        return getReserveProofAccountJni(accountIdx, amount.toString(), message);
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage(), -1);
+      }
+    } finally {
+      unlockRead();
     }
   }
 
   @Override
   public MoneroCheckReserve checkReserveProof(String address, String message, String signature) {
-    assertNotClosed();
+    lockRead();
     try {
-      String checkStr = checkReserveProofJni(address, message, signature);
-      return JsonUtils.deserialize(MoneroRpcConnection.MAPPER, checkStr, MoneroCheckReserve.class);
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage(), -1);
+      try {
+        String checkStr = checkReserveProofJni(address, message, signature);
+        return JsonUtils.deserialize(MoneroRpcConnection.MAPPER, checkStr, MoneroCheckReserve.class);
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage(), -1);
+      }
+    } finally {
+      unlockRead();
     }
   }
 
   @Override
   public String signMessage(String msg, MoneroMessageSignatureType signatureType, int accountIdx, int subaddressIdx) {
-    assertNotClosed();
-    return signMessageJni(msg, signatureType.ordinal(), accountIdx, subaddressIdx);
+    lockRead();
+    try {
+      return signMessageJni(msg, signatureType.ordinal(), accountIdx, subaddressIdx);
+    } finally {
+      unlockRead();
+    }
   }
 
   @Override
   public MoneroMessageSignatureResult verifyMessage(String msg, String address, String signature) {
-    assertNotClosed();
+    lockRead();
     try {
-      String resultJson = verifyMessageJni(msg, address, signature);
-      Map<String, Object> result = JsonUtils.deserialize(resultJson, new TypeReference<Map<String, Object>>(){});
-      boolean isGood = (boolean) result.get("isGood");
-      return new MoneroMessageSignatureResult(
-          isGood,
-          !isGood ? null : (Boolean) result.get("isOld"),
-          !isGood ? null : "spend".equals(result.get("signatureType")) ? MoneroMessageSignatureType.SIGN_WITH_SPEND_KEY : MoneroMessageSignatureType.SIGN_WITH_VIEW_KEY,
-          !isGood ? null : (Integer) result.get("version"));
-    } catch (Exception e) {
-      return new MoneroMessageSignatureResult(false, null, null, null); // jni can differentiate incorrect from invalid address, but rpc returns -2 for both, so returning bad result for consistency
+      try {
+        String resultJson = verifyMessageJni(msg, address, signature);
+        Map<String, Object> result = JsonUtils.deserialize(resultJson, new TypeReference<Map<String, Object>>(){});
+        boolean isGood = (boolean) result.get("isGood");
+        return new MoneroMessageSignatureResult(
+            isGood,
+            !isGood ? null : (Boolean) result.get("isOld"),
+            !isGood ? null : "spend".equals(result.get("signatureType")) ? MoneroMessageSignatureType.SIGN_WITH_SPEND_KEY : MoneroMessageSignatureType.SIGN_WITH_VIEW_KEY,
+            !isGood ? null : (Integer) result.get("version"));
+      } catch (Exception e) {
+        return new MoneroMessageSignatureResult(false, null, null, null); // jni can differentiate incorrect from invalid address, but rpc returns -2 for both, so returning bad result for consistency
+      }
+    } finally {
+      unlockRead();
     }
   }
 
   @Override
   public String getTxKey(String txHash) {
-    assertNotClosed();
+    lockRead();
     try {
-      return getTxKeyJni(txHash);
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      try {
+        return getTxKeyJni(txHash);
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      }
+    } finally {
+      unlockRead();
     }
   }
 
   @Override
   public List<String> getTxNotes(List<String> txHashes) {
-    assertNotClosed();
-    return Arrays.asList(getTxNotesJni(txHashes.toArray(new String[txHashes.size()])));  // convert to array for jni
+    lockRead();
+    try {
+      return Arrays.asList(getTxNotesJni(txHashes.toArray(new String[txHashes.size()])));  // convert to array for jni
+    } finally {
+      unlockRead();
+    }
   }
 
   @Override
   public void setTxNotes(List<String> txHashes, List<String> notes) {
-    assertNotClosed();
-    setTxNotesJni(txHashes.toArray(new String[txHashes.size()]), notes.toArray(new String[notes.size()]));
+    lockWrite();
+    try {
+      setTxNotesJni(txHashes.toArray(new String[txHashes.size()]), notes.toArray(new String[notes.size()]));
+      markDirty();
+    } finally {
+      unlockWrite();
+    }
   }
 
   @Override
   public List<MoneroAddressBookEntry> getAddressBookEntries(List<Integer> entryIndices) {
-    assertNotClosed();
-    if (entryIndices == null) entryIndices = new ArrayList<Integer>();
-    String entriesJson = getAddressBookEntriesJni(GenUtils.listToIntArray(entryIndices));
-    List<MoneroAddressBookEntry> entries = JsonUtils.deserialize(MoneroRpcConnection.MAPPER, entriesJson, AddressBookEntriesContainer.class).entries;
-    if (entries == null) entries = new ArrayList<MoneroAddressBookEntry>();
-    return entries;
+    lockRead();
+    try {
+      if (entryIndices == null) entryIndices = new ArrayList<Integer>();
+      String entriesJson = getAddressBookEntriesJni(GenUtils.listToIntArray(entryIndices));
+      List<MoneroAddressBookEntry> entries = JsonUtils.deserialize(MoneroRpcConnection.MAPPER, entriesJson, AddressBookEntriesContainer.class).entries;
+      if (entries == null) entries = new ArrayList<MoneroAddressBookEntry>();
+      return entries;
+    } finally {
+      unlockRead();
+    }
   }
 
   @Override
   public int addAddressBookEntry(String address, String description) {
-    assertNotClosed();
-    return addAddressBookEntryJni(address, description);
+    lockWrite();
+    try {
+      int result = addAddressBookEntryJni(address, description);
+      markDirty();
+      return result;
+    } finally {
+      unlockWrite();
+    }
   }
 
   @Override
   public void editAddressBookEntry(int index, boolean setAddress, String address, boolean setDescription, String description) {
-    assertNotClosed();
-    editAddressBookEntryJni(index, setAddress, address, setDescription, description);
+    lockWrite();
+    try {
+      editAddressBookEntryJni(index, setAddress, address, setDescription, description);
+      markDirty();
+    } finally {
+      unlockWrite();
+    }
   }
 
   @Override
   public void deleteAddressBookEntry(int entryIdx) {
-    assertNotClosed();
-    deleteAddressBookEntryJni(entryIdx);
+    lockWrite();
+    try {
+      deleteAddressBookEntryJni(entryIdx);
+      markDirty();
+    } finally {
+      unlockWrite();
+    }
   }
 
   @Override
   public void tagAccounts(String tag, Collection<Integer> accountIndices) {
-    assertNotClosed();
-    throw new RuntimeException("MoneroWalletFull.tagAccounts() not implemented");
+    lockWrite();
+    try {
+      throw new RuntimeException("MoneroWalletFull.tagAccounts() not implemented");
+    } finally {
+      unlockWrite();
+    }
   }
 
   @Override
   public void untagAccounts(Collection<Integer> accountIndices) {
-    assertNotClosed();
-    throw new RuntimeException("MoneroWalletFull.untagAccounts() not implemented");
+    lockWrite();
+    try {
+      throw new RuntimeException("MoneroWalletFull.untagAccounts() not implemented");
+    } finally {
+      unlockWrite();
+    }
   }
 
   @Override
   public List<MoneroAccountTag> getAccountTags() {
-    assertNotClosed();
-    throw new RuntimeException("MoneroWalletFull.getAccountTags() not implemented");
+    lockRead();
+    try {
+      throw new RuntimeException("MoneroWalletFull.getAccountTags() not implemented");
+    } finally {
+      unlockRead();
+    }
   }
 
   @Override
   public void setAccountTagLabel(String tag, String label) {
-    assertNotClosed();
-    throw new RuntimeException("MoneroWalletFull.setAccountTagLabel() not implemented");
+    lockWrite();
+    try {
+      throw new RuntimeException("MoneroWalletFull.setAccountTagLabel() not implemented");
+    } finally {
+      unlockWrite();
+    }
   }
 
   @Override
   public String createPaymentUri(MoneroTxConfig request) {
-    assertNotClosed();
+    lockRead();
     try {
-      return createPaymentUriJni(JsonUtils.serialize(request));
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      try {
+        return createPaymentUriJni(JsonUtils.serialize(request));
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      }
+    } finally {
+      unlockRead();
     }
   }
 
   @Override
   public MoneroTxConfig parsePaymentUri(String uri) {
-    assertNotClosed();
+    lockRead();
     try {
-      String sendRequestJson = parsePaymentUriJni(uri);
-      return JsonUtils.deserialize(MoneroRpcConnection.MAPPER, sendRequestJson, MoneroTxConfig.class);
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      try {
+        String sendRequestJson = parsePaymentUriJni(uri);
+        return JsonUtils.deserialize(MoneroRpcConnection.MAPPER, sendRequestJson, MoneroTxConfig.class);
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      }
+    } finally {
+      unlockRead();
     }
   }
   
   @Override
   public String getAttribute(String key) {
-    assertNotClosed();
-    return getAttributeJni(key);
+    lockRead();
+    try {
+      return getAttributeJni(key);
+    } finally {
+      unlockRead();
+    }
   }
 
   @Override
   public void setAttribute(String key, String val) {
-    assertNotClosed();
-    setAttributeJni(key, val);
+    lockWrite();
+    try {
+      setAttributeJni(key, val);
+      markDirty();
+    } finally {
+      unlockWrite();
+    }
   }
 
   @Override
   public void startMining(Long numThreads, Boolean backgroundMining, Boolean ignoreBattery) {
-    assertNotClosed();
+    lockRead();
     try {
-      startMiningJni(numThreads == null ? 0l : (long) numThreads, Boolean.TRUE.equals(backgroundMining), Boolean.TRUE.equals(ignoreBattery));
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      try {
+        startMiningJni(numThreads == null ? 0l : (long) numThreads, Boolean.TRUE.equals(backgroundMining), Boolean.TRUE.equals(ignoreBattery));
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      }
+    } finally {
+      unlockRead();
     }
   }
 
   @Override
   public void stopMining() {
-    assertNotClosed();
+    lockRead();
     try {
-      stopMiningJni();
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      try {
+        stopMiningJni();
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      }
+    } finally {
+      unlockRead();
     }
   }
   
   
   @Override
   public boolean isMultisigImportNeeded() {
-    assertNotClosed();
-    return isMultisigImportNeededJni();
+    lockRead();
+    try {
+      return isMultisigImportNeededJni();
+    } finally {
+      unlockRead();
+    }
   }
   
   @Override
   public MoneroMultisigInfo getMultisigInfo() {
+    lockRead();
     try {
-      String multisigInfoJson = getMultisigInfoJni();
-      return JsonUtils.deserialize(multisigInfoJson, MoneroMultisigInfo.class);
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      try {
+        String multisigInfoJson = getMultisigInfoJni();
+        return JsonUtils.deserialize(multisigInfoJson, MoneroMultisigInfo.class);
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      }
+    } finally {
+      unlockRead();
     }
   }
 
   @Override
   public String prepareMultisig() {
-    return prepareMultisigJni();
+    lockWrite();
+    try {
+      String result = prepareMultisigJni();
+      markDirty();
+      return result;
+    } finally {
+      unlockWrite();
+    }
   }
 
   @Override
   public MoneroMultisigInitResult makeMultisig(List<String> multisigHexes, int threshold, String password) {
+    lockWrite();
     try {
-      String initMultisigResultJson = makeMultisigJni(multisigHexes.toArray(new String[multisigHexes.size()]), threshold, password);
-      return JsonUtils.deserialize(initMultisigResultJson, MoneroMultisigInitResult.class);
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      try {
+        String initMultisigResultJson = makeMultisigJni(multisigHexes.toArray(new String[multisigHexes.size()]), threshold, password);
+        markDirty();
+        return JsonUtils.deserialize(initMultisigResultJson, MoneroMultisigInitResult.class);
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      }
+    } finally {
+      unlockWrite();
     }
   }
 
   @Override
   public MoneroMultisigInitResult exchangeMultisigKeys(List<String> multisigHexes, String password) {
+    lockWrite();
     try {
-      String initMultisigResultJson = exchangeMultisigKeysJni(multisigHexes.toArray(new String[multisigHexes.size()]), password);
-      return JsonUtils.deserialize(initMultisigResultJson, MoneroMultisigInitResult.class);
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      try {
+        String initMultisigResultJson = exchangeMultisigKeysJni(multisigHexes.toArray(new String[multisigHexes.size()]), password);
+        markDirty();
+        return JsonUtils.deserialize(initMultisigResultJson, MoneroMultisigInitResult.class);
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      }
+    } finally {
+      unlockWrite();
     }
   }
 
   @Override
   public String getMultisigHex() {
+    lockWrite();
     try {
-      return getMultisigHexJni();
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      try {
+        return getMultisigHexJni();
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      }
+    } finally {
+      unlockWrite();
     }
   }
   
   @Override
   public int importMultisigHex(List<String> multisigHexes) {
+    lockWrite();
     try {
-      return importMultisigHexJni(multisigHexes.toArray(new String[multisigHexes.size()]));
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      int numOutputs;
+      try {
+        numOutputs = importMultisigHexJni(multisigHexes.toArray(new String[multisigHexes.size()]));
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      } finally {
+        invalidateBalancesSnapshot();
+      }
+      markDirty();
+      return numOutputs;
+    } finally {
+      unlockWrite();
     }
   }
 
   @Override
   public MoneroMultisigSignResult signMultisigTxHex(String multisigTxHex) {
+    lockWrite();
     try {
-      String signMultisigResultJson = signMultisigTxHexJni(multisigTxHex);
-      return JsonUtils.deserialize(signMultisigResultJson, MoneroMultisigSignResult.class);
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      try {
+        String signMultisigResultJson = signMultisigTxHexJni(multisigTxHex);
+        markDirty();
+        return JsonUtils.deserialize(signMultisigResultJson, MoneroMultisigSignResult.class);
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      }
+    } finally {
+      unlockWrite();
     }
   }
 
   @Override
   public List<String> submitMultisigTxHex(String signedMultisigTxHex) {
+    lockWrite();
     try {
-      return Arrays.asList(submitMultisigTxHexJni(signedMultisigTxHex));
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      List<String> txHashes;
+      try {
+        txHashes = Arrays.asList(submitMultisigTxHexJni(signedMultisigTxHex));
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      } finally {
+        invalidateBalancesSnapshot();
+      }
+      markDirty();
+      return txHashes;
+    } finally {
+      unlockWrite();
     }
   }
   
   @Override
   public void save() {
-    assertNotClosed();
-    saveJni();
+    lockWrite();
+    try {
+      long numChanges = getNumChanges();
+      long startTime = System.currentTimeMillis();
+      saveJni();
+      markSaved(numChanges, System.currentTimeMillis() - startTime);
+    } finally {
+      unlockWrite();
+    }
   }
   
   @Override
   public void close(boolean save) {
-    if (isClosed) return; // closing a closed wallet has no effect
-    isClosed = true;
-    setIsListening(false);
+    if (isNotifyingThread()) throw new MoneroError("Cannot close wallet from its listener");
+    if (lock.getReadHoldCount() > 0 && !lock.isWriteLockedByCurrentThread()) throw new MoneroError("Cannot close wallet while reading it on the same thread");
+    
+    // stop background syncing without the lock so its listeners can finish
+    synchronized (syncingLock) {
+      if (!isClosing) {
+        isClosing = true;
+        if (isSyncingInBackground) stopSyncingAux();
+      }
+    }
+    
+    // close wallet
+    lock.writeLock().lock(); // wait for calls in progress
     try {
-      closeJni(save);
-    } catch (Exception e) {
-      throw new MoneroError(e.getMessage());
+      if (isClosed) return; // closing a closed wallet has no effect
+      isClosed = true;
+      setIsListening(false);
+      synchronized (listeningLock) { primitiveListeners = NO_PRIMITIVE_LISTENERS; }
+      invalidateBalancesSnapshot();
+      if (isSaveOnClose()) save = true;
+      long numChanges = getNumChanges();
+      long startTime = System.currentTimeMillis();
+      try {
+        closeJni(save);
+        if (save) markSaved(numChanges, System.currentTimeMillis() - startTime);
+      } catch (Exception e) {
+        throw new MoneroError(e.getMessage());
+      } finally {
+        resetAutoSave();
+      }
+    } finally {
+      lock.writeLock().unlock();
     }
   }
   
@@ -1308,6 +2073,8 @@ public class MoneroWalletFull extends MoneroWalletDefault {
   
   private native static long openWalletJni(String path, String password, int networkType);
   
+  private native static long openWalletDataJni(String password, int networkType, byte[] keysData, byte[] cacheData);
+  
   private native static long createWalletRandomJni(String path, String password, int networkType, String daemonUrl, String daemonUsername, String daemonPassword, String language);
   
   private native static long createWalletFromMnemonicJni(String path, String password, int networkType, String mnemonic, long restoreHeight, String seedOffset);
@@ -1368,6 +2135,8 @@ public class MoneroWalletFull extends MoneroWalletDefault {
   
   private native long setListenerJni(WalletJniListener listener);
   
+  private native void setSyncProgressPolicyJni(long minIntervalMs, double minPercentDelta, long blockStride);
+  
   private native Object[] syncJni(long startHeight);
   
   private native void startSyncingJni(long syncPeriodInMs);
@@ -1406,6 +2175,12 @@ public class MoneroWalletFull extends MoneroWalletDefault {
   
   private native String getOutputsJni(String outputQueryJson);
   
+  private native byte[] getTxsBinaryJni(String txQueryJson);
+  
+  private native byte[] getTransfersBinaryJni(String transferQueryJson);
+  
+  private native byte[] getOutputsBinaryJni(String outputQueryJson);
+  
   private native String exportOutputsJni(boolean all);
   
   private native int importOutputsJni(String outputsHex);
@@ -1498,146 +2273,140 @@ public class MoneroWalletFull extends MoneroWalletDefault {
   
   private native void moveToJni(String path, String password);
   
+  private native byte[] getKeysFileBufferJni(String password, boolean viewOnly);
+  
+  private native byte[] getCacheFileBufferJni();
+  
   private native void closeJni(boolean save);
   
   // -------------------------------- LISTENER --------------------------------
   
   /**
-   * Receives notifications directly from jni c++.
+   * Receives notifications directly from jni c++ on the thread which syncs
+   * the wallet.  Calls to the wallet while notified do not take the lock.
    */
   @SuppressWarnings("unused") // called directly from jni c++
   private class WalletJniListener {
     
     public void onSyncProgress(long height, long startHeight, long endHeight, double percentDone, String message) {
-      for (MoneroWalletListenerI listener : getListeners()) listener.onSyncProgress(height, startHeight, endHeight, percentDone, message);
+      Boolean wasNotifying = isNotifying.get();
+      isNotifying.set(true);
+      try {
+        for (MoneroWalletPrimitiveListenerI listener : primitiveListeners) listener.onSyncProgress(height, startHeight, endHeight, percentDone, message);
+        announceSyncProgress(height, startHeight, endHeight, percentDone, message);
+      } finally {
+        isNotifying.set(wasNotifying);
+      }
     }
     
     public void onNewBlock(long height) {
-      for (MoneroWalletListenerI listener : getListeners()) listener.onNewBlock(height);
+      Boolean wasNotifying = isNotifying.get();
+      isNotifying.set(true);
+      try {
+        markDirty(); // synced block is persisted when saved
+        for (MoneroWalletPrimitiveListenerI listener : primitiveListeners) listener.onNewBlock(height);
+        announceNewBlock(height);
+      } finally {
+        isNotifying.set(wasNotifying);
+      }
     }
     
-    public void onBalancesChanged(String newBalanceStr, String newUnlockedBalanceStr) {
-      for (MoneroWalletListenerI listener : getListeners()) listener.onBalancesChanged(new BigInteger(newBalanceStr), new BigInteger(newUnlockedBalanceStr));
+    public void onBalancesChanged(long newBalanceAtomic, long newUnlockedBalanceAtomic) {
+      Boolean wasNotifying = isNotifying.get();
+      isNotifying.set(true);
+      try {
+        markDirty();
+        for (MoneroWalletPrimitiveListenerI listener : primitiveListeners) listener.onBalancesChanged(newBalanceAtomic, newUnlockedBalanceAtomic);
+        BigInteger newBalance = MoneroUtils.toUnsignedBigInteger(newBalanceAtomic);
+        BigInteger newUnlockedBalance = MoneroUtils.toUnsignedBigInteger(newUnlockedBalanceAtomic);
+        setBalancesSnapshot(newBalance, newUnlockedBalance);
+        announceBalancesChanged(newBalance, newUnlockedBalance);
+      } finally {
+        isNotifying.set(wasNotifying);
+      }
     }
     
-    public void onOutputReceived(long height, String txHash, String amountStr, int accountIdx, int subaddressIdx, int version, long unlockHeight, boolean isLocked) {
+    public void onOutputReceived(long height, String txHash, long amount, int accountIdx, int subaddressIdx, int version, long unlockHeight, boolean isLocked) {
+      Boolean wasNotifying = isNotifying.get();
+      isNotifying.set(true);
+      try {
+        for (MoneroWalletPrimitiveListenerI listener : primitiveListeners) listener.onOutputReceived(height, txHash, amount, accountIdx, subaddressIdx, version, unlockHeight, isLocked);
+        if (!hasListeners()) return; // no model to build
       
-      // build output to announce
-      MoneroOutputWallet output = new MoneroOutputWallet();
-      output.setAmount(new BigInteger(amountStr));
-      output.setAccountIndex(accountIdx);
-      output.setSubaddressIndex(subaddressIdx);
-      MoneroTxWallet tx = new MoneroTxWallet();
-      tx.setHash(txHash);
-      tx.setVersion(version);
-      tx.setUnlockHeight(unlockHeight);
-      output.setTx(tx);
-      tx.setOutputs(Arrays.asList(output));
-      tx.setIsIncoming(true);
-      tx.setIsLocked(isLocked);
-      if (height > 0) {
-        MoneroBlock block = new MoneroBlock().setHeight(height);
-        block.setTxs(Arrays.asList(tx));
-        tx.setBlock(block);
-        tx.setIsConfirmed(true);
-        tx.setInTxPool(false);
-        tx.setIsFailed(false);
-      } else {
-        tx.setIsConfirmed(false);
-        tx.setInTxPool(true);
-      }
+        // build output to announce
+        MoneroOutputWallet output = new MoneroOutputWallet();
+        output.setAmount(MoneroUtils.toUnsignedBigInteger(amount));
+        output.setAccountIndex(accountIdx);
+        output.setSubaddressIndex(subaddressIdx);
+        MoneroTxWallet tx = new MoneroTxWallet();
+        tx.setHash(txHash);
+        tx.setVersion(version);
+        tx.setUnlockHeight(unlockHeight);
+        output.setTx(tx);
+        tx.setOutputs(Arrays.asList(output));
+        tx.setIsIncoming(true);
+        tx.setIsLocked(isLocked);
+        if (height > 0) {
+          MoneroBlock block = new MoneroBlock().setHeight(height);
+          block.setTxs(Arrays.asList(tx));
+          tx.setBlock(block);
+          tx.setIsConfirmed(true);
+          tx.setInTxPool(false);
+          tx.setIsFailed(false);
+        } else {
+          tx.setIsConfirmed(false);
+          tx.setInTxPool(true);
+        }
       
-      // announce output
-      for (MoneroWalletListenerI listener : getListeners()) listener.onOutputReceived((MoneroOutputWallet) tx.getOutputs().get(0));
+        // announce output
+        announceOutputReceived(output);
+      } finally {
+        isNotifying.set(wasNotifying);
+      }
     }
     
-    public void onOutputSpent(long height, String txHash, String amountStr, String accountIdxStr, String subaddressIdxStr, int version, long unlockHeight, boolean isLocked) {
+    public void onOutputSpent(long height, String txHash, long amount, int accountIdx, int subaddressIdx, int version, long unlockHeight, boolean isLocked) {
+      Boolean wasNotifying = isNotifying.get();
+      isNotifying.set(true);
+      try {
+        for (MoneroWalletPrimitiveListenerI listener : primitiveListeners) listener.onOutputSpent(height, txHash, amount, accountIdx, subaddressIdx, version, unlockHeight, isLocked);
+        if (!hasListeners()) return; // no model to build
       
-      // build spent output
-      MoneroOutputWallet output = new MoneroOutputWallet();
-      output.setAmount(new BigInteger(amountStr));
-      if (accountIdxStr.length() > 0) output.setAccountIndex(Integer.parseInt(accountIdxStr));
-      if (subaddressIdxStr.length() > 0) output.setSubaddressIndex(Integer.parseInt(subaddressIdxStr));
-      MoneroTxWallet tx = new MoneroTxWallet();
-      tx.setHash(txHash);
-      tx.setVersion(version);
-      tx.setUnlockHeight(unlockHeight);
-      tx.setIsLocked(isLocked);
-      output.setTx(tx);
-      tx.setInputs(Arrays.asList(output));
-      tx.setIsIncoming(false);
-      if (height > 0) {
-        MoneroBlock block = new MoneroBlock().setHeight(height);
-        block.setTxs(Arrays.asList(tx));
-        tx.setBlock(block);
-        tx.setIsConfirmed(true);
-        tx.setInTxPool(false);
-        tx.setIsFailed(false);
-      } else {
-        tx.setIsConfirmed(false);
-        tx.setInTxPool(true);
-      }
+        // build spent output
+        MoneroOutputWallet output = new MoneroOutputWallet();
+        output.setAmount(MoneroUtils.toUnsignedBigInteger(amount));
+        if (accountIdx >= 0) output.setAccountIndex(accountIdx);
+        if (subaddressIdx >= 0) output.setSubaddressIndex(subaddressIdx);
+        MoneroTxWallet tx = new MoneroTxWallet();
+        tx.setHash(txHash);
+        tx.setVersion(version);
+        tx.setUnlockHeight(unlockHeight);
+        tx.setIsLocked(isLocked);
+        output.setTx(tx);
+        tx.setInputs(Arrays.asList(output));
+        tx.setIsIncoming(false);
+        if (height > 0) {
+          MoneroBlock block = new MoneroBlock().setHeight(height);
+          block.setTxs(Arrays.asList(tx));
+          tx.setBlock(block);
+          tx.setIsConfirmed(true);
+          tx.setInTxPool(false);
+          tx.setIsFailed(false);
+        } else {
+          tx.setIsConfirmed(false);
+          tx.setInTxPool(true);
+        }
       
-      // announce output
-      for (MoneroWalletListenerI listener : getListeners()) listener.onOutputSpent((MoneroOutputWallet) tx.getInputs().get(0));
+        // announce output
+        announceOutputSpent(output);
+      } finally {
+        isNotifying.set(wasNotifying);
+      }
     }
   }
   
   // ------------------------ RESPONSE DESERIALIZATION ------------------------
   
-  /**
-   * Override MoneroBlock with wallet types for polymorphic deserialization.
-   */
-  private static class MoneroBlockWallet extends MoneroBlock {
-    
-    // default constructor necessary for serialization
-    @SuppressWarnings("unused")
-    public MoneroBlockWallet() {
-      super();
-    }
-    
-    @JsonProperty("txs")
-    public MoneroBlockWallet setTxWallets(List<MoneroTxWallet> txs) {
-      super.setTxs(new ArrayList<MoneroTx>(txs));
-      return this;
-    }
-    
-    /**
-     * Initializes a new MoneroBlock with direct references to this block.
-     * 
-     * TODO: more efficient way to deserialize directly into MoneroBlock?
-     * 
-     * @return MoneroBlock is the newly initialized block with direct references to this block
-     */
-    public MoneroBlock toBlock() {
-      MoneroBlock block = new MoneroBlock();
-      block.setHash(getHash());
-      block.setHeight(getHeight());
-      block.setTimestamp(getTimestamp());
-      block.setSize(getSize());
-      block.setWeight(getWeight());
-      block.setLongTermWeight(getLongTermWeight());
-      block.setDepth(getDepth());
-      block.setDifficulty(getDifficulty());
-      block.setCumulativeDifficulty(getCumulativeDifficulty());
-      block.setMajorVersion(getMajorVersion());
-      block.setMinorVersion(getMinorVersion());
-      block.setNonce(getNonce());
-      block.setMinerTxHash(getMinerTxHash());
-      block.setNumTxs(getNumTxs());
-      block.setOrphanStatus(getOrphanStatus());
-      block.setPrevHash(getPrevHash());
-      block.setReward(getReward());
-      block.setPowHash(getPowHash());
-      block.setHex(getHex());
-      block.setMinerTx(getMinerTx());
-      block.setTxs(getTxs());
-      block.setTxHashes(getTxHashes());
-      for (MoneroTx tx : getTxs()) tx.setBlock(block);  // re-assign tx block references
-      return block;
-    }
-  }
-  
   private static class AccountsContainer {
     public List<MoneroAccount> accounts;
   };
@@ -1646,11 +2415,6 @@ public class MoneroWalletFull extends MoneroWalletDefault {
     public List<MoneroSubaddress> subaddresses;
   };
   
-  private static class BlocksWalletContainer {
-    public List<MoneroBlockWallet> blocks;
-    public List<String> missingTxHashes;
-  }
-  
   private static class DeserializedBlocksContainer {
     public List<MoneroBlock> blocks;
     public List<String> missingTxHashes;
@@ -1668,18 +2432,30 @@ public class MoneroWalletFull extends MoneroWalletDefault {
   
   private static DeserializedBlocksContainer deserializeBlocks(String blocksJson) {
     DeserializedBlocksContainer deserializedBlocksContainer = new DeserializedBlocksContainer();
-    deserializedBlocksContainer.blocks = new ArrayList<MoneroBlock>();
     deserializedBlocksContainer.missingTxHashes = new ArrayList<String>();
-    BlocksWalletContainer blocksWalletContainer = JsonUtils.deserialize(MoneroRpcConnection.MAPPER, blocksJson, BlocksWalletContainer.class);
-    if (blocksWalletContainer.blocks != null) for (MoneroBlockWallet blockWallet : blocksWalletContainer.blocks) deserializedBlocksContainer.blocks.add(blockWallet.toBlock());
-    if (blocksWalletContainer.missingTxHashes != null) for (String missingTxHash : blocksWalletContainer.missingTxHashes) deserializedBlocksContainer.missingTxHashes.add(missingTxHash);
+    deserializedBlocksContainer.blocks = MoneroBlocksJsonDeserializer.deserialize(blocksJson, deserializedBlocksContainer.missingTxHashes);
+    return deserializedBlocksContainer;
+  }
+  
+  private static DeserializedBlocksContainer decodeBlocks(byte[] blocksBinary) {
+    DeserializedBlocksContainer deserializedBlocksContainer = new DeserializedBlocksContainer();
+    deserializedBlocksContainer.missingTxHashes = new ArrayList<String>();
+    deserializedBlocksContainer.blocks = MoneroBlocksBinaryCodec.decode(blocksBinary, deserializedBlocksContainer.missingTxHashes);
     return deserializedBlocksContainer;
   }
   
-  private static List<MoneroTxWallet> deserializeTxs(MoneroTxQuery query, String blocksJson, Collection<String> missingTxHashes) {
+  private static boolean isBinaryResults(MoneroResultEncoding encoding) {
+    return encoding == MoneroResultEncoding.BINARY && isBinaryResultsSupported;
+  }
+  
+  private static void disableBinaryResults(UnsatisfiedLinkError e) {
+    isBinaryResultsSupported = false;
+    LOGGER.warning("Native library does not support binary results, falling back to JSON: " + e.getMessage());
+  }
+  
+  private static List<MoneroTxWallet> collectTxs(MoneroTxQuery query, DeserializedBlocksContainer deserializedBlocks, Collection<String> missingTxHashes) {
     
-    // deserialize blocks
-    DeserializedBlocksContainer deserializedBlocks = deserializeBlocks(blocksJson);
+    // check missing tx hashes
     if (missingTxHashes == null && !deserializedBlocks.missingTxHashes.isEmpty()) throw new MoneroError("Wallet missing requested tx hashes: " + deserializedBlocks.missingTxHashes);
     for (String missingTxHash : deserializedBlocks.missingTxHashes) missingTxHashes.add(missingTxHash);
     List<MoneroBlock> blocks = deserializedBlocks.blocks;
@@ -1705,10 +2481,9 @@ public class MoneroWalletFull extends MoneroWalletDefault {
     return txs;
   }
   
-  private static List<MoneroTransfer> deserializeTransfers(MoneroTransferQuery query, String blocksJson) {
+  private static List<MoneroTransfer> collectTransfers(MoneroTransferQuery query, DeserializedBlocksContainer deserializedBlocks) {
     
-    // deserialize blocks
-    DeserializedBlocksContainer deserializedBlocks = deserializeBlocks(blocksJson);
+    // check missing tx hashes
     if (!deserializedBlocks.missingTxHashes.isEmpty()) throw new RuntimeException("Wallet missing requested tx hashes: " + deserializedBlocks.missingTxHashes);
     List<MoneroBlock> blocks = deserializedBlocks.blocks;
     
@@ -1728,10 +2503,9 @@ public class MoneroWalletFull extends MoneroWalletDefault {
     return transfers;
   }
   
-  private static List<MoneroOutputWallet> deserializeOutputs(MoneroOutputQuery query, String blocksJson) {
+  private static List<MoneroOutputWallet> collectOutputs(MoneroOutputQuery query, DeserializedBlocksContainer deserializedBlocks) {
     
-    // deserialize blocks
-    DeserializedBlocksContainer deserializedBlocks = deserializeBlocks(blocksJson);
+    // check missing tx hashes
     if (!deserializedBlocks.missingTxHashes.isEmpty()) throw new RuntimeException("Wallet missing requested tx hashes: " + deserializedBlocks.missingTxHashes);
     List<MoneroBlock> blocks = deserializedBlocks.blocks;
     
@@ -1752,17 +2526,117 @@ public class MoneroWalletFull extends MoneroWalletDefault {
   
   // ---------------------------- PRIVATE HELPERS -----------------------------
   
+  /**
+   * Registers the c++ listener while the wallet has listeners or an auto-save
+   * policy and unregisters it otherwise.
+   * 
+   * Only a change to whether the wallet is listening calls into c++, holding
+   * the shared lock so the wallet is not closed meanwhile.  The c++ listener
+   * is registered while it notifies the current thread and is not
+   * unregistered from within its notification, but when listeners next change
+   * on another thread or the wallet is closed.
+   */
+  private void updateIsListening() {
+    if (isListening == isListeningRequired() || isNotifyingThread()) return;
+    lockRead();
+    try {
+      synchronized (listeningLock) {
+        boolean isRequired = isListeningRequired();
+        if (isListening != isRequired && !isClosed) setIsListening(isRequired);
+      }
+    } finally {
+      unlockRead();
+    }
+  }
+  
+  private boolean isListeningRequired() {
+    return hasListeners() || primitiveListeners.length > 0 || getAutoSavePolicy() != null;
+  }
+  
   /**
    * Enables or disables listening in the c++ wallet.
    */
   private void setIsListening(boolean isEnabled) {
     jniListenerHandle = setListenerJni(isEnabled ? jniListener : null);
+    isListening = isEnabled;
+    if (isEnabled) applySyncProgressPolicy();
+    invalidateBalancesSnapshot(); // balance changes are only announced while listening
+  }
+  
+  private void stopSyncingAux() {
+    try {
+      stopSyncingJni();
+      isSyncingInBackground = false;
+    } catch (Exception e) {
+      throw new MoneroError(e.getMessage());
+    }
+  }
+  
+  private void applySyncProgressPolicy() {
+    MoneroSyncProgressPolicy policy = getSyncProgressPolicy();
+    setSyncProgressPolicyJni(policy.getMinIntervalMs(), policy.getMinPercentDelta(), policy.getBlockStride());
   }
   
   private void assertNotClosed() {
     if (isClosed) throw new MoneroError("Wallet is closed");
   }
   
+  /**
+   * Indicates if the native wallet is notifying the listener on the current
+   * thread.
+   */
+  private boolean isNotifyingThread() {
+    return Boolean.TRUE.equals(isNotifying.get());
+  }
+  
+  /**
+   * Indicates if the current thread is notified by the native background sync
+   * thread, which holds no lock and may be waited for by a thread holding the
+   * exclusive lock.
+   */
+  private boolean isBackgroundNotifyingThread() {
+    return isNotifyingThread() && !lock.isWriteLockedByCurrentThread() && lock.getReadHoldCount() == 0;
+  }
+  
+  /**
+   * Acquire the shared lock for a call which reads the wallet.
+   * 
+   * Listeners notified on the background sync thread read without the lock.
+   */
+  private void lockRead() {
+    if (isBackgroundNotifyingThread()) {
+      assertNotClosed();
+      return;
+    }
+    lock.readLock().lock();
+    if (isClosed) {
+      lock.readLock().unlock();
+      throw new MoneroError("Wallet is closed");
+    }
+  }
+  
+  private void unlockRead() {
+    if (isBackgroundNotifyingThread()) return;
+    lock.readLock().unlock();
+  }
+  
+  /**
+   * Acquire the exclusive lock for a call which changes the wallet.
+   */
+  private void lockWrite() {
+    if (isBackgroundNotifyingThread()) throw new MoneroError("Cannot change wallet from a listener notified by background syncing");
+    if (lock.getReadHoldCount() > 0 && !lock.isWriteLockedByCurrentThread()) throw new MoneroError("Cannot change wallet while reading it on the same thread");
+    lock.writeLock().lock();
+    if (isClosed) {
+      lock.writeLock().unlock();
+      throw new MoneroError("Wallet is closed");
+    }
+  }
+  
+  private void unlockWrite() {
+    lock.writeLock().unlock();
+  }
+  
   private static MoneroAccount sanitizeAccount(MoneroAccount account) {
     if (account.getSubaddresses() != null) {
       for (MoneroSubaddress subaddress : account.getSubaddresses()) sanitizeSubaddress(subaddress);
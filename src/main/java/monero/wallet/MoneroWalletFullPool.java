@@ -0,0 +1,394 @@
+/**
+ * Copyright (c) woodser
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package monero.wallet;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import common.utils.GenUtils;
+import monero.common.MoneroError;
+import monero.wallet.model.MoneroWalletConfig;
+
+/**
+ * Hosts many full wallets within a budget of native memory.
+ * 
+ * Each open full wallet holds its wallet cache in native memory, so hosting
+ * many wallets which are rarely active at once is costly.  Wallets registered
+ * with the pool are opened on demand when leased and tracked by their
+ * approximate native memory.  When the pool's wallets exceed the memory
+ * budget, the least recently used wallets are saved and closed until the pool
+ * is within budget, and reopened transparently when next leased.
+ * 
+ * A wallet is not closed while it is leased, has listeners, or is syncing in
+ * the foreground or background, so the pool may exceed its budget until such
+ * wallets become idle.
+ * 
+ * Example:
+ * 
+ * <code>
+ * MoneroWalletFullPool pool = new MoneroWalletFullPool(512 * 1024 * 1024);<br>
+ * pool.register(new MoneroWalletConfig().setPath("wallets/wallet1").setPassword("abc123").setNetworkType(MoneroNetworkType.STAGENET).setServerUri("http://localhost:38081"));<br>
+ * try (MoneroWalletFullPool.Lease lease = pool.lease("wallets/wallet1")) {<br>
+ * &nbsp;&nbsp; lease.getWallet().getBalance();<br>
+ * }<br>
+ * </code>
+ */
+public class MoneroWalletFullPool {
+  
+  private static final Logger LOGGER = Logger.getLogger(MoneroWalletFullPool.class.getName());
+  private static final long WALLET_BASE_MEMORY_BYTES = 4 * 1024 * 1024; // approximate native memory of a wallet without a cache
+  private static final long CACHE_MEMORY_FACTOR = 2;                    // approximate native memory per byte of the wallet cache file
+  
+  private long memoryBudgetBytes;
+  private Map<String, Entry> entries; // registered wallets by path
+  private long useCounter;            // increments on each lease and release to order wallets by use
+  private int numOpens;
+  private int numEvictions;
+  private boolean isClosed;
+  
+  /**
+   * Construct a pool of full wallets.
+   * 
+   * @param memoryBudgetBytes is the approximate native memory in bytes which open wallets may use
+   */
+  public MoneroWalletFullPool(long memoryBudgetBytes) {
+    GenUtils.assertTrue("Memory budget must be > 0 bytes", memoryBudgetBytes > 0);
+    this.memoryBudgetBytes = memoryBudgetBytes;
+    this.entries = new LinkedHashMap<String, Entry>();
+  }
+  
+  /**
+   * Register a wallet to open on demand.
+   * 
+   * @param config specifies the path, password, network type, and server of an existing wallet
+   */
+  public synchronized void register(MoneroWalletConfig config) {
+    assertNotClosed();
+    if (config == null || config.getPath() == null) throw new MoneroError("Must specify path of wallet to register");
+    if (config.getPassword() == null) throw new MoneroError("Must specify password of wallet to register");
+    if (config.getNetworkType() == null) throw new MoneroError("Must specify network type of wallet to register");
+    if (entries.containsKey(config.getPath())) throw new MoneroError("Wallet is already registered: " + config.getPath());
+    MoneroWalletConfig openConfig = new MoneroWalletConfig()
+        .setPath(config.getPath())
+        .setPassword(config.getPassword())
+        .setNetworkType(config.getNetworkType())
+        .setServer(config.getServer());
+    entries.put(config.getPath(), new Entry(openConfig));
+  }
+  
+  /**
+   * Unregister a wallet, saving and closing it if open.
+   * 
+   * @param path is the path of the wallet to unregister
+   */
+  public void unregister(String path) {
+    Entry entry;
+    synchronized (this) {
+      entry = getEntry(path);
+      waitWhileBusy(entry);
+      if (entry.numLeases > 0) throw new MoneroError("Cannot unregister leased wallet: " + path);
+      entries.remove(path);
+      if (entry.wallet == null) return;
+      entry.isBusy = true;
+    }
+    closeWallet(entry);
+  }
+  
+  /**
+   * Lease a registered wallet, opening it if it is not open.
+   * 
+   * The wallet may be shared with other leases of the same wallet and must
+   * not be closed by the caller.  Wallets are closed to stay within the memory
+   * budget when the lease is released.
+   * 
+   * @param path is the path of the wallet to lease
+   * @return the lease which must be released when done
+   */
+  public Lease lease(String path) {
+    Entry entry;
+    synchronized (this) {
+      assertNotClosed();
+      entry = getEntry(path);
+      waitWhileBusy(entry);
+      if (entries.get(path) != entry) throw new MoneroError("Wallet is not registered: " + path);
+      entry.numLeases++;
+      entry.lastUsed = ++useCounter;
+      if (entry.wallet != null) return new Lease(entry);
+      entry.isBusy = true;
+    }
+    
+    // open wallet outside of lock
+    MoneroWalletFull wallet;
+    try {
+      wallet = MoneroWalletFull.openWallet(entry.config);
+    } catch (RuntimeException e) {
+      synchronized (this) {
+        entry.numLeases--;
+        entry.isBusy = false;
+        notifyAll();
+      }
+      throw e;
+    }
+    long memoryBytes = estimateMemory(wallet, entry.config.getPath());
+    synchronized (this) {
+      entry.wallet = wallet;
+      entry.memoryBytes = memoryBytes;
+      entry.isBusy = false;
+      numOpens++;
+      notifyAll();
+    }
+    evict();
+    return new Lease(entry);
+  }
+  
+  /**
+   * Save and close least recently used wallets which are idle until the pool
+   * is within its memory budget.
+   */
+  public void evict() {
+    while (true) {
+      Entry entry;
+      synchronized (this) {
+        if (getMemoryUsage() <= memoryBudgetBytes) return;
+        entry = getEvictableEntry();
+        if (entry == null) {
+          LOGGER.fine("Full wallet pool exceeds memory budget with no idle wallets to close");
+          return;
+        }
+        entry.isBusy = true;
+        numEvictions++;
+      }
+      closeWallet(entry);
+    }
+  }
+  
+  public long getMemoryBudget() {
+    return memoryBudgetBytes;
+  }
+  
+  /**
+   * Get the approximate native memory used by open wallets.
+   * 
+   * @return the approximate native memory in bytes
+   */
+  public synchronized long getMemoryUsage() {
+    long memoryBytes = 0;
+    for (Entry entry : entries.values()) if (entry.wallet != null) memoryBytes += entry.memoryBytes;
+    return memoryBytes;
+  }
+  
+  /**
+   * Get the paths of registered wallets.
+   * 
+   * @return the paths of registered wallets
+   */
+  public synchronized Set<String> getWallets() {
+    return new HashSet<String>(entries.keySet());
+  }
+  
+  /**
+   * Get the paths of open wallets.
+   * 
+   * @return the paths of open wallets
+   */
+  public synchronized Set<String> getOpenWallets() {
+    Set<String> paths = new HashSet<String>();
+    for (Entry entry : entries.values()) if (entry.wallet != null && !entry.isBusy) paths.add(entry.config.getPath());
+    return paths;
+  }
+  
+  /**
+   * Get the number of times wallets have been opened.
+   * 
+   * @return the number of opens
+   */
+  public synchronized int getNumOpens() {
+    return numOpens;
+  }
+  
+  /**
+   * Get the number of times wallets have been closed to stay within the memory budget.
+   * 
+   * @return the number of evictions
+   */
+  public synchronized int getNumEvictions() {
+    return numEvictions;
+  }
+  
+  /**
+   * Save and close open wallets.
+   * 
+   * Waits for wallets being opened or closed but does not wait for leases to be released.
+   */
+  public void close() {
+    synchronized (this) {
+      if (isClosed) return;
+      isClosed = true;
+      for (Entry entry : entries.values()) waitWhileBusy(entry);
+      for (Entry entry : entries.values()) if (entry.wallet != null) entry.isBusy = true;
+    }
+    for (Entry entry : entries.values()) if (entry.wallet != null) closeWallet(entry);
+  }
+  
+  public synchronized boolean isClosed() {
+    return isClosed;
+  }
+  
+  /**
+   * Estimate the native memory used by an open wallet.
+   * 
+   * The wallet's cache is held in native memory, so the estimate is a base
+   * amount plus a multiple of the size of the wallet's cache file.
+   * 
+   * @param wallet is the open wallet
+   * @param path is the path of the wallet
+   * @return the approximate native memory in bytes
+   */
+  protected long estimateMemory(MoneroWalletFull wallet, String path) {
+    return WALLET_BASE_MEMORY_BYTES + CACHE_MEMORY_FACTOR * new File(path).length();
+  }
+  
+  // ------------------------------ PRIVATE -----------------------------------
+  
+  private void assertNotClosed() {
+    if (isClosed) throw new MoneroError("Full wallet pool is closed");
+  }
+  
+  private Entry getEntry(String path) {
+    GenUtils.assertNotNull("Must provide wallet path", path);
+    Entry entry = entries.get(path);
+    if (entry == null) throw new MoneroError("Wallet is not registered: " + path);
+    return entry;
+  }
+  
+  private void waitWhileBusy(Entry entry) {
+    while (entry.isBusy) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        throw new MoneroError(e);
+      }
+    }
+  }
+  
+  /**
+   * Get the least recently used open wallet which is not leased, listened to, or syncing.
+   */
+  private Entry getEvictableEntry() {
+    Entry lruEntry = null;
+    for (Entry entry : entries.values()) {
+      if (entry.wallet == null || entry.isBusy || entry.numLeases > 0) continue;
+      if (lruEntry != null && entry.lastUsed > lruEntry.lastUsed) continue;
+      if (entry.wallet.isClosed() || !entry.wallet.getListeners().isEmpty() || !entry.wallet.getPrimitiveListeners().isEmpty() || entry.wallet.isSyncInProgress()) continue;
+      lruEntry = entry;
+    }
+    return lruEntry;
+  }
+  
+  private void closeWallet(Entry entry) {
+    try {
+      if (!entry.wallet.isClosed()) entry.wallet.close(true);
+    } catch (Exception e) {
+      LOGGER.log(Level.WARNING, "Failed to save and close wallet " + entry.config.getPath(), e);
+    } finally {
+      synchronized (this) {
+        entry.wallet = null;
+        entry.memoryBytes = 0;
+        entry.isBusy = false;
+        notifyAll();
+      }
+    }
+  }
+  
+  private void release(Entry entry, MoneroWalletFull wallet) {
+    long memoryBytes = estimateMemory(wallet, entry.config.getPath()); // cache file may have been saved while leased
+    synchronized (this) {
+      entry.numLeases--;
+      entry.lastUsed = ++useCounter;
+      if (entry.wallet == wallet) entry.memoryBytes = memoryBytes;
+    }
+    evict();
+  }
+  
+  /**
+   * A registered wallet and its state in the pool.
+   */
+  private static class Entry {
+    
+    private final MoneroWalletConfig config;
+    private MoneroWalletFull wallet; // null if not open
+    private long memoryBytes;
+    private int numLeases;
+    private long lastUsed;
+    private boolean isBusy;          // opening or closing the wallet
+    
+    public Entry(MoneroWalletConfig config) {
+      this.config = config;
+    }
+  }
+  
+  /**
+   * Lease of an open wallet in the pool.
+   */
+  public class Lease implements AutoCloseable {
+    
+    private final Entry entry;
+    private final MoneroWalletFull wallet;
+    private boolean isReleased;
+    
+    private Lease(Entry entry) {
+      this.entry = entry;
+      this.wallet = entry.wallet;
+    }
+    
+    /**
+     * Get the leased wallet.
+     * 
+     * @return the open wallet
+     */
+    public MoneroWalletFull getWallet() {
+      if (isReleased) throw new MoneroError("Lease is released");
+      return wallet;
+    }
+    
+    /**
+     * Release the lease so the wallet can be closed to stay within the memory budget.
+     */
+    public synchronized void release() {
+      if (isReleased) return;
+      isReleased = true;
+      MoneroWalletFullPool.this.release(entry, wallet);
+    }
+    
+    @Override
+    public void close() {
+      release();
+    }
+  }
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright (c) woodser
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package monero.wallet;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import common.utils.GenUtils;
+import monero.common.MoneroError;
+import monero.common.MoneroRpcConnection;
+import monero.daemon.MoneroDaemonProxy;
+import monero.wallet.model.MoneroSyncResult;
+
+/**
+ * Syncs many full wallets from one stream of blocks.
+ * 
+ * Wallets added to the group are connected to a local MoneroDaemonProxy so
+ * each block range requested by the wallets is downloaded from the daemon once
+ * and served to every wallet scanning that range.  Wallets are synced in
+ * parallel, one wallet per worker, so scanning is spread across cores while
+ * wallets at the same height request the same blocks together.
+ * 
+ * Removing a wallet or stopping the group restores the wallet's daemon connection.
+ */
+public class MoneroWalletFullSyncGroup {
+  
+  private MoneroRpcConnection daemonConnection;
+  private int numWorkers;
+  private MoneroDaemonProxy proxy;
+  private ExecutorService workers;
+  private Map<MoneroWalletFull, MoneroRpcConnection> wallets; // wallet -> original daemon connection
+  private List<MoneroWalletFull> walletOrder;
+  
+  public MoneroWalletFullSyncGroup(MoneroRpcConnection daemonConnection) {
+    this(daemonConnection, Runtime.getRuntime().availableProcessors());
+  }
+  
+  /**
+   * Construct a sync group.
+   * 
+   * @param daemonConnection is the connection to the daemon to fetch blocks from
+   * @param numWorkers is the number of wallets to sync in parallel
+   */
+  public MoneroWalletFullSyncGroup(MoneroRpcConnection daemonConnection, int numWorkers) {
+    this(new MoneroDaemonProxy(daemonConnection), numWorkers);
+  }
+  
+  /**
+   * Construct a sync group with a configured proxy.
+   * 
+   * @param proxy is the proxy which shares block requests to the daemon
+   * @param numWorkers is the number of wallets to sync in parallel
+   */
+  public MoneroWalletFullSyncGroup(MoneroDaemonProxy proxy, int numWorkers) {
+    GenUtils.assertNotNull(proxy);
+    GenUtils.assertTrue("Number of workers must be > 0", numWorkers > 0);
+    this.proxy = proxy;
+    this.numWorkers = numWorkers;
+    this.wallets = new IdentityHashMap<MoneroWalletFull, MoneroRpcConnection>();
+    this.walletOrder = new ArrayList<MoneroWalletFull>();
+  }
+  
+  /**
+   * Start the proxy and workers.
+   */
+  public synchronized void start() {
+    if (workers != null) return;
+    proxy.start();
+    daemonConnection = proxy.getConnection();
+    workers = Executors.newFixedThreadPool(numWorkers, new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "MoneroWalletFullSyncGroup");
+        thread.setDaemon(true); // daemon thread does not prevent JVM from halting
+        return thread;
+      }
+    });
+    for (MoneroWalletFull wallet : walletOrder) wallet.setDaemonConnection(daemonConnection);
+  }
+  
+  /**
+   * Wait for syncs in progress to complete, then restore the wallets' daemon
+   * connections and stop the proxy.
+   */
+  public synchronized void stop() {
+    if (workers == null) return;
+    workers.shutdown();
+    try {
+      while (!workers.awaitTermination(1, TimeUnit.SECONDS)) { }
+    } catch (InterruptedException e) {
+      throw new MoneroError(e);
+    }
+    workers = null;
+    for (MoneroWalletFull wallet : walletOrder) if (!wallet.isClosed()) wallet.setDaemonConnection(wallets.get(wallet));
+    proxy.stop();
+    daemonConnection = null;
+  }
+  
+  /**
+   * Add a wallet to the group, connecting it to the proxy if started.
+   * 
+   * @param wallet is the wallet to add
+   */
+  public synchronized void addWallet(MoneroWalletFull wallet) {
+    GenUtils.assertNotNull(wallet);
+    if (wallets.containsKey(wallet)) return;
+    wallets.put(wallet, wallet.getDaemonConnection());
+    walletOrder.add(wallet);
+    if (daemonConnection != null) wallet.setDaemonConnection(daemonConnection);
+  }
+  
+  /**
+   * Remove a wallet from the group, restoring its daemon connection.
+   * 
+   * @param wallet is the wallet to remove
+   */
+  public synchronized void removeWallet(MoneroWalletFull wallet) {
+    if (!wallets.containsKey(wallet)) return;
+    MoneroRpcConnection connection = wallets.remove(wallet);
+    walletOrder.remove(wallet);
+    if (daemonConnection != null && !wallet.isClosed()) wallet.setDaemonConnection(connection);
+  }
+  
+  public synchronized List<MoneroWalletFull> getWallets() {
+    return new ArrayList<MoneroWalletFull>(walletOrder);
+  }
+  
+  public MoneroDaemonProxy getProxy() {
+    return proxy;
+  }
+  
+  /**
+   * Sync all wallets in the group in parallel.
+   * 
+   * @return the sync results in the order wallets were added
+   */
+  public List<MoneroSyncResult> sync() {
+    
+    // submit one sync per wallet
+    List<Future<MoneroSyncResult>> futures = new ArrayList<Future<MoneroSyncResult>>();
+    synchronized (this) {
+      if (workers == null) throw new MoneroError("Sync group is not started");
+      for (final MoneroWalletFull wallet : walletOrder) {
+        futures.add(workers.submit(new Callable<MoneroSyncResult>() {
+          @Override
+          public MoneroSyncResult call() {
+            return wallet.sync();
+          }
+        }));
+      }
+    }
+    
+    // collect results after all syncs complete
+    List<MoneroSyncResult> results = new ArrayList<MoneroSyncResult>();
+    MoneroError error = null;
+    for (Future<MoneroSyncResult> future : futures) {
+      try {
+        results.add(future.get());
+      } catch (Exception e) {
+        results.add(null);
+        if (error == null) error = e.getCause() instanceof MoneroError ? (MoneroError) e.getCause() : new MoneroError(e.getCause() == null ? e : e.getCause());
+      }
+    }
+    if (error != null) throw error;
+    return results;
+  }
+}
@@ -0,0 +1,403 @@
+/**
+ * Copyright (c) woodser
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package monero.wallet;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import common.utils.GenUtils;
+import monero.common.MoneroError;
+import monero.wallet.model.MoneroListenerOverflowPolicy;
+import monero.wallet.model.MoneroOutputWallet;
+import monero.wallet.model.MoneroWalletBatchListenerI;
+import monero.wallet.model.MoneroWalletListenerI;
+
+/**
+ * Delivers a wallet's notifications to its listeners asynchronously.
+ * 
+ * By default, wallets notify listeners on the thread which observes the event,
+ * e.g. the native sync thread of a full wallet, so a slow listener stalls the
+ * wallet.  A wallet with a dispatcher instead queues notifications, which are
+ * delivered in order on an executor.  The executor may be shared by the
+ * dispatchers of many wallets; each dispatcher runs at most one delivery task
+ * at a time, so notifications of one wallet are never delivered concurrently
+ * or out of order.
+ * 
+ * The queue is bounded.  When it is full, the overflow policy determines
+ * whether the notifying thread blocks or a notification is dropped.  A
+ * notifying thread which holds a lock that listeners need to call the wallet,
+ * e.g. a full wallet's exclusive lock while syncing, does not block but queues
+ * the notification beyond the capacity.
+ * 
+ * Notifications are delivered to the listeners registered when the
+ * notification was queued.  Exceptions thrown by listeners are logged.
+ * 
+ * A dispatcher serves one wallet (see MoneroWallet.setListenerDispatcher()).
+ */
+public class MoneroWalletListenerDispatcher {
+  
+  private static final Logger LOGGER = Logger.getLogger(MoneroWalletListenerDispatcher.class.getName());
+  private static final int DEFAULT_CAPACITY = 10000;
+  private static final int MAX_BATCH_SIZE = 256; // maximum notifications delivered per task so wallets sharing an executor take turns
+  private static final long BLOCK_RECHECK_MS = 100; // interval to recheck if a blocked notifying thread may keep waiting
+  
+  private Executor executor;
+  private ExecutorService ownExecutor;
+  private int capacity;
+  private MoneroListenerOverflowPolicy overflowPolicy;
+  private ArrayDeque<Notification> queue;
+  private Runnable deliverTask;
+  private Thread deliverThread;
+  private boolean isDelivering;
+  private MoneroWalletDefault wallet;
+  private boolean isClosed;
+  private long numDropped;
+  
+  /**
+   * Construct a dispatcher which delivers on its own thread and blocks when
+   * DEFAULT_CAPACITY notifications are queued.
+   */
+  public MoneroWalletListenerDispatcher() {
+    this(DEFAULT_CAPACITY, MoneroListenerOverflowPolicy.BLOCK);
+  }
+  
+  /**
+   * Construct a dispatcher which delivers on its own thread.
+   * 
+   * @param capacity is the maximum number of queued notifications
+   * @param overflowPolicy is the action taken when the queue is full
+   */
+  public MoneroWalletListenerDispatcher(int capacity, MoneroListenerOverflowPolicy overflowPolicy) {
+    this(null, capacity, overflowPolicy);
+  }
+  
+  /**
+   * Construct a dispatcher.
+   * 
+   * @param executor executes delivery tasks (optional, otherwise the dispatcher uses its own thread)
+   * @param capacity is the maximum number of queued notifications
+   * @param overflowPolicy is the action taken when the queue is full
+   */
+  public MoneroWalletListenerDispatcher(Executor executor, int capacity, MoneroListenerOverflowPolicy overflowPolicy) {
+    GenUtils.assertTrue("Capacity must be > 0", capacity > 0);
+    GenUtils.assertNotNull("Overflow policy must be given", overflowPolicy);
+    if (executor == null) {
+      ownExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "MoneroWalletListenerDispatcher");
+          thread.setDaemon(true); // daemon thread does not prevent JVM from halting
+          return thread;
+        }
+      });
+      executor = ownExecutor;
+    }
+    this.executor = executor;
+    this.capacity = capacity;
+    this.overflowPolicy = overflowPolicy;
+    this.queue = new ArrayDeque<Notification>();
+    this.deliverTask = new Runnable() {
+      @Override
+      public void run() {
+        deliverBatch();
+      }
+    };
+  }
+  
+  public int getCapacity() {
+    return capacity;
+  }
+  
+  public MoneroListenerOverflowPolicy getOverflowPolicy() {
+    return overflowPolicy;
+  }
+  
+  /**
+   * Get the number of queued notifications which have not been delivered.
+   * 
+   * @return the number of queued notifications
+   */
+  public synchronized int getNumQueued() {
+    return queue.size();
+  }
+  
+  /**
+   * Get the number of notifications dropped because the queue was full.
+   * 
+   * @return the number of dropped notifications
+   */
+  public synchronized long getNumDropped() {
+    return numDropped;
+  }
+  
+  /**
+   * Wait until queued notifications are delivered.
+   * 
+   * @param timeoutMs is the maximum time to wait in milliseconds
+   * @return true if queued notifications were delivered, false if the timeout elapsed
+   */
+  public synchronized boolean flush(long timeoutMs) {
+    GenUtils.assertFalse("Cannot flush from a listener of this dispatcher", Thread.currentThread() == deliverThread);
+    long deadline = System.currentTimeMillis() + timeoutMs;
+    while (!queue.isEmpty() || isDelivering) {
+      long remainingMs = deadline - System.currentTimeMillis();
+      if (remainingMs <= 0) return false;
+      try {
+        wait(remainingMs);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new MoneroError(e);
+      }
+    }
+    return true;
+  }
+  
+  /**
+   * Stop delivering notifications and discard queued notifications.
+   * 
+   * The dispatcher's own thread is stopped but a given executor is not.
+   */
+  public void close() {
+    synchronized (this) {
+      if (isClosed) return;
+      isClosed = true;
+      queue.clear();
+      notifyAll();
+    }
+    if (ownExecutor != null) ownExecutor.shutdown();
+  }
+  
+  public synchronized boolean isClosed() {
+    return isClosed;
+  }
+  
+  // ---------------------------- PACKAGE PRIVATE -----------------------------
+  
+  synchronized void attach(MoneroWalletDefault wallet) {
+    if (this.wallet != null) throw new MoneroError("Listener dispatcher is already attached to a wallet");
+    if (isClosed) throw new MoneroError("Listener dispatcher is closed");
+    this.wallet = wallet;
+  }
+  
+  synchronized void detach() {
+    wallet = null;
+  }
+  
+  void submitSyncProgress(MoneroWalletListenerI[] listeners, long height, long startHeight, long endHeight, double percentDone, String message) {
+    Notification notification = new Notification(NotificationType.SYNC_PROGRESS, listeners);
+    notification.height = height;
+    notification.startHeight = startHeight;
+    notification.endHeight = endHeight;
+    notification.percentDone = percentDone;
+    notification.message = message;
+    submit(notification);
+  }
+  
+  void submitNewBlock(MoneroWalletListenerI[] listeners, long height) {
+    Notification notification = new Notification(NotificationType.NEW_BLOCK, listeners);
+    notification.height = height;
+    submit(notification);
+  }
+  
+  void submitBalancesChanged(MoneroWalletListenerI[] listeners, BigInteger newBalance, BigInteger newUnlockedBalance) {
+    Notification notification = new Notification(NotificationType.BALANCES_CHANGED, listeners);
+    notification.balance = newBalance;
+    notification.unlockedBalance = newUnlockedBalance;
+    submit(notification);
+  }
+  
+  void submitOutputReceived(MoneroWalletListenerI[] listeners, MoneroOutputWallet output) {
+    Notification notification = new Notification(NotificationType.OUTPUT_RECEIVED, listeners);
+    notification.output = output;
+    submit(notification);
+  }
+  
+  void submitOutputSpent(MoneroWalletListenerI[] listeners, MoneroOutputWallet output) {
+    Notification notification = new Notification(NotificationType.OUTPUT_SPENT, listeners);
+    notification.output = output;
+    submit(notification);
+  }
+  
+  /**
+   * Announce received outputs to a listener, in one batch if it is a batch listener.
+   * 
+   * @param listener is the listener to notify
+   * @param outputs are the received outputs
+   */
+  static void notifyOutputsReceived(MoneroWalletListenerI listener, List<MoneroOutputWallet> outputs) {
+    if (listener instanceof MoneroWalletBatchListenerI) ((MoneroWalletBatchListenerI) listener).onOutputsReceived(outputs);
+    else for (MoneroOutputWallet output : outputs) listener.onOutputReceived(output);
+  }
+  
+  // --------------------------------- PRIVATE --------------------------------
+  
+  private void submit(Notification notification) {
+    if (notification.listeners.length == 0) return;
+    synchronized (this) {
+      if (isClosed) return;
+      while (queue.size() >= capacity) {
+        if (overflowPolicy == MoneroListenerOverflowPolicy.DROP_NEWEST) {
+          numDropped++;
+          return;
+        } else if (overflowPolicy == MoneroListenerOverflowPolicy.DROP_OLDEST) {
+          queue.poll();
+          numDropped++;
+        } else {
+          if (Thread.currentThread() == deliverThread) break; // listener notifying its own wallet cannot wait for itself
+          if (wallet != null && !wallet.isWaitingForListenersAllowed()) break; // listeners would wait for the notifying thread
+          try {
+            wait(BLOCK_RECHECK_MS); // recheck as threads take the wallet's lock
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MoneroError(e);
+          }
+          if (isClosed) return;
+        }
+      }
+      queue.add(notification);
+      if (isDelivering) return;
+      isDelivering = true;
+    }
+    schedule();
+  }
+  
+  private void schedule() {
+    try {
+      executor.execute(deliverTask);
+    } catch (RejectedExecutionException e) {
+      LOGGER.log(Level.WARNING, "Listener dispatcher's executor rejected delivery, discarding queued notifications", e);
+      synchronized (this) {
+        numDropped += queue.size();
+        queue.clear();
+        isDelivering = false;
+        notifyAll();
+      }
+    }
+  }
+  
+  private void deliverBatch() {
+    
+    // take batch of queued notifications
+    List<Notification> batch = new ArrayList<Notification>();
+    synchronized (this) {
+      while (!queue.isEmpty() && batch.size() < MAX_BATCH_SIZE) batch.add(queue.poll());
+      notifyAll(); // queue has room
+      deliverThread = Thread.currentThread();
+    }
+    
+    // deliver notifications with consecutive received outputs in one batch
+    try {
+      int i = 0;
+      while (i < batch.size()) {
+        Notification notification = batch.get(i);
+        if (notification.type == NotificationType.OUTPUT_RECEIVED) {
+          int end = i + 1;
+          while (end < batch.size() && batch.get(end).type == NotificationType.OUTPUT_RECEIVED && batch.get(end).listeners == notification.listeners) end++;
+          List<MoneroOutputWallet> outputs = new ArrayList<MoneroOutputWallet>(end - i);
+          for (int j = i; j < end; j++) outputs.add(batch.get(j).output);
+          for (MoneroWalletListenerI listener : notification.listeners) {
+            try {
+              notifyOutputsReceived(listener, outputs);
+            } catch (Exception e) {
+              LOGGER.log(Level.WARNING, "Wallet listener failed on received outputs", e);
+            }
+          }
+          i = end;
+        } else {
+          for (MoneroWalletListenerI listener : notification.listeners) {
+            try {
+              notification.deliver(listener);
+            } catch (Exception e) {
+              LOGGER.log(Level.WARNING, "Wallet listener failed on " + notification.type, e);
+            }
+          }
+          i++;
+        }
+      }
+    } finally {
+      
+      // deliver next batch in a new task or finish
+      boolean hasNext;
+      synchronized (this) {
+        deliverThread = null;
+        hasNext = !queue.isEmpty() && !isClosed;
+        if (!hasNext) {
+          isDelivering = false;
+          notifyAll(); // flushed
+        }
+      }
+      if (hasNext) schedule();
+    }
+  }
+  
+  private enum NotificationType {
+    SYNC_PROGRESS,
+    NEW_BLOCK,
+    BALANCES_CHANGED,
+    OUTPUT_RECEIVED,
+    OUTPUT_SPENT
+  }
+  
+  /**
+   * Queued notification with the listeners registered when it was queued.
+   */
+  private static class Notification {
+    
+    private NotificationType type;
+    private MoneroWalletListenerI[] listeners;
+    private long height;
+    private long startHeight;
+    private long endHeight;
+    private double percentDone;
+    private String message;
+    private BigInteger balance;
+    private BigInteger unlockedBalance;
+    private MoneroOutputWallet output;
+    
+    private Notification(NotificationType type, MoneroWalletListenerI[] listeners) {
+      this.type = type;
+      this.listeners = listeners;
+    }
+    
+    private void deliver(MoneroWalletListenerI listener) {
+      switch (type) {
+        case SYNC_PROGRESS: listener.onSyncProgress(height, startHeight, endHeight, percentDone, message); break;
+        case NEW_BLOCK: listener.onNewBlock(height); break;
+        case BALANCES_CHANGED: listener.onBalancesChanged(balance, unlockedBalance); break;
+        case OUTPUT_RECEIVED: notifyOutputsReceived(listener, Arrays.asList(output)); break;
+        case OUTPUT_SPENT: listener.onOutputSpent(output); break;
+      }
+    }
+  }
+}
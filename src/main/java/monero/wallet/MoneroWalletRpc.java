@@ -38,10 +38,26 @@ import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Queue;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import monero.common.MoneroError;
@@ -58,6 +74,7 @@ import monero.daemon.model.MoneroVersion;
 import monero.wallet.model.MoneroAccount;
 import monero.wallet.model.MoneroAccountTag;
 import monero.wallet.model.MoneroAddressBookEntry;
+import monero.wallet.model.MoneroBalances;
 import monero.wallet.model.MoneroCheckReserve;
 import monero.wallet.model.MoneroCheckTx;
 import monero.wallet.model.MoneroDestination;
@@ -82,6 +99,7 @@ import monero.wallet.model.MoneroTxSet;
 import monero.wallet.model.MoneroTxWallet;
 import monero.wallet.model.MoneroWalletConfig;
 import monero.wallet.model.MoneroWalletListenerI;
+import monero.wallet.model.MoneroZmqMetrics;
 import org.zeromq.SocketType;
 import org.zeromq.ZContext;
 import org.zeromq.ZMQ;
@@ -96,6 +114,14 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
   private static final TxHeightComparator TX_HEIGHT_COMPARATOR = new TxHeightComparator();
   private static final int ERROR_CODE_INVALID_PAYMENT_ID = -5; // invalid payment id error code
   private static final long DEFAULT_SYNC_PERIOD_IN_MS = 20000; // default period between syncs in ms (defined by DEFAULT_AUTO_REFRESH_PERIOD in wallet_rpc_server.cpp)
+  private static final int MAX_CONCURRENT_REQUESTS = 4; // max concurrent rpc requests per query (within the http client's default of 5 connections per route)
+  private static final int MAX_REFETCH_ATTEMPTS = 3; // max attempts to re-fetch txs which are inconsistent across rpc calls
+  private static final int REQUEST_POOL_SIZE = 16; // max threads shared by all wallets to send concurrent rpc requests
+  private static final long REQUEST_POOL_KEEP_ALIVE_MS = 60000; // idle time before request pool threads exit
+  private static final ExecutorService REQUEST_POOL = newRequestPool();
+  private static final int MAX_ADDRESS_INDEX_CACHE_SIZE = 100000; // max number of addresses cached by their account and subaddress indices
+  private static final long REORG_DEPTH = 10; // number of blocks below the last seen height to re-fetch from to detect re-orgs
+  private static final int ZMQ_QUEUE_CAPACITY = 10000; // max zmq notifications queued for processing before the poll thread waits
   
   // instance variables
   private String path;                                     // wallet's path identifier
@@ -103,8 +129,13 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
   private WalletRpcZmqListener zmqListener;                // listener which processes zmq notifications from monero-wallet-rpc
   private WalletRpcPollListener pollListener;              // listener which polls monero-wallet-rpc
   private Map<Integer, Map<Integer, String>> addressCache; // cache static addresses to reduce requests
+  private Set<Integer> completeAddressCacheAccounts;       // indices of accounts whose subaddresses are all cached until invalidated
+  private volatile List<Integer> accountIndicesCache;      // cached account indices, null if invalidated
+  private Map<String, int[]> addressIndexCache;            // cache account and subaddress indices by address
+  private Queue<String> addressIndexCacheOrder;            // cached addresses in insertion order for eviction
   private Process process;                                 // process running monero-wallet-rpc if applicable
   private long syncPeriodInMs = DEFAULT_SYNC_PERIOD_IN_MS; // period between syncs in ms (default 20000)
+  private WalletRpcTransferStore transferStore;            // local store of transfers if caching transfers
   
   public MoneroWalletRpc(String uri) {
     this(new MoneroRpcConnection(uri));
@@ -120,7 +151,10 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
   
   public MoneroWalletRpc(MoneroRpcConnection rpc) {
     this.rpc = rpc;
-    addressCache = new HashMap<Integer, Map<Integer, String>>();
+    addressCache = new ConcurrentHashMap<Integer, Map<Integer, String>>();
+    completeAddressCacheAccounts = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+    addressIndexCache = new ConcurrentHashMap<String, int[]>();
+    addressIndexCacheOrder = new ConcurrentLinkedQueue<String>();
   }
   
   /**
@@ -196,7 +230,10 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     
     // initialize internal state
     rpc = new MoneroRpcConnection(uri, username, password, zmqUri);
-    addressCache = new HashMap<Integer, Map<Integer, String>>();
+    addressCache = new ConcurrentHashMap<Integer, Map<Integer, String>>();
+    completeAddressCacheAccounts = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+    addressIndexCache = new ConcurrentHashMap<String, int[]>();
+    addressIndexCacheOrder = new ConcurrentLinkedQueue<String>();
   }
   
   // --------------------------- RPC WALLET METHODS ---------------------------
@@ -231,6 +268,34 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     return rpc;
   }
   
+  /**
+   * Start caching the wallet's transfers in memory.
+   * 
+   * The transfers are fetched once then updated incrementally from the last
+   * refreshed height on each query, so subsequent queries only fetch the
+   * transfers which changed from monero-wallet-rpc.  The cache is rebuilt if a
+   * reorg is detected.
+   */
+  public void startCachingTransfers() {
+    if (transferStore == null) transferStore = new WalletRpcTransferStore();
+  }
+  
+  /**
+   * Stop caching the wallet's transfers in memory.
+   */
+  public void stopCachingTransfers() {
+    transferStore = null;
+  }
+  
+  /**
+   * Indicates if the wallet's transfers are cached in memory.
+   * 
+   * @return true if transfers are cached, false otherwise
+   */
+  public boolean isCachingTransfers() {
+    return transferStore != null;
+  }
+  
   /**
    * Open an existing wallet on the monero-wallet-rpc server.
    * 
@@ -468,7 +533,18 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
   
   public void removeListener(MoneroWalletListenerI listener) {
     super.removeListener(listener);
-    if (getListeners().isEmpty()) setIsListening(false);
+    if (!hasListeners()) setIsListening(false);
+  }
+  
+  /**
+   * Get back-pressure metrics of the queue of zmq notifications from
+   * monero-wallet-rpc, accumulated across listening sessions.
+   * 
+   * @return the zmq notification metrics, null if not yet listening with zmq
+   */
+  public MoneroZmqMetrics getZmqMetrics() {
+    WalletRpcZmqListener listener = zmqListener;
+    return listener == null ? null : listener.getMetrics();
   }
   
   public boolean isViewOnly() {
@@ -597,17 +673,26 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     }
     String address = subaddressMap.get(subaddressIdx);
     if (address == null) {
+      if (completeAddressCacheAccounts.contains(accountIdx) && isAddressCacheTrusted()) return null; // subaddress does not exist
       getSubaddresses(accountIdx, null, true);      // cache's all addresses at this account
       return addressCache.get(accountIdx).get(subaddressIdx);
     }
     return address;
   }
 
-  // TODO: use cache
   @SuppressWarnings("unchecked")
   @Override
   public MoneroSubaddress getAddressIndex(String address) {
     
+    // check cache
+    int[] indices = address == null ? null : addressIndexCache.get(address);
+    if (indices != null) {
+      MoneroSubaddress subaddress = new MoneroSubaddress(address);
+      subaddress.setAccountIndex(indices[0]);
+      subaddress.setIndex(indices[1]);
+      return subaddress;
+    }
+    
     // fetch result and normalize error if address does not belong to the wallet
     Map<String, Object> result;
     try {
@@ -626,6 +711,7 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     MoneroSubaddress subaddress = new MoneroSubaddress(address);
     subaddress.setAccountIndex(rpcIndices.get("major").intValue());
     subaddress.setIndex(rpcIndices.get("minor").intValue());
+    cacheAddressIndex(address, subaddress.getAccountIndex(), subaddress.getIndex());
     return subaddress;
   }
 
@@ -682,9 +768,12 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     params.put("start_height", startHeight);
     synchronized(SYNC_LOCK) {  // TODO (monero-project): monero-wallet-rpc hangs at 100% cpu utilization if refresh called concurrently
       Map<String, Object> resp = rpc.sendJsonRequest("refresh", params);
+      invalidateAddressCache();
       poll();
       Map<String, Object> result = (Map<String, Object>) resp.get("result");
-      return new MoneroSyncResult(((BigInteger) result.get("blocks_fetched")).longValue(), (Boolean) result.get("received_money"));
+      MoneroSyncResult syncResult = new MoneroSyncResult(((BigInteger) result.get("blocks_fetched")).longValue(), (Boolean) result.get("received_money"));
+      if (syncResult.getNumBlocksFetched() > 0) markDirty();
+      return syncResult;
     }
   }
   
@@ -717,10 +806,16 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
   @Override
   public void rescanSpent() {
     rpc.sendJsonRequest("rescan_spent");
+    markDirty();
+    invalidateBalancesSnapshot();
   }
   
   public void rescanBlockchain() {
     rpc.sendJsonRequest("rescan_blockchain");
+    markDirty();
+    invalidateBalancesSnapshot();
+    WalletRpcTransferStore transferStore = this.transferStore;
+    if (transferStore != null) transferStore.reset();
   }
 
   @Override
@@ -733,6 +828,19 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     return getBalances(accountIdx, subaddressIdx)[1];
   }
   
+  @SuppressWarnings("unchecked")
+  @Override
+  protected MoneroBalances fetchBalances() {
+    Map<String, Object> resp = rpc.sendJsonRequest("get_accounts");
+    Map<String, Object> result = (Map<String, Object>) resp.get("result");
+    return new MoneroBalances((BigInteger) result.get("total_balance"), (BigInteger) result.get("total_unlocked_balance"));
+  }
+  
+  @Override
+  protected boolean isSnapshottingBalances() {
+    return (pollListener != null && pollListener.isEnabled) || (zmqListener != null && zmqListener.isEnabled);  // balance changes are detected while listening
+  }
+  
   @Override
   public List<MoneroAccount> getAccounts(boolean includeSubaddresses, String tag) {
     return getAccounts(includeSubaddresses, tag, false);
@@ -747,13 +855,30 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     Map<String, Object> resp = rpc.sendJsonRequest("get_accounts", params);
     Map<String, Object> result = (Map<String, Object>) resp.get("result");
     
-    // build account objects and fetch subaddresses per account using get_address
-    // TODO monero-wallet-rpc: get_address should support all_accounts so not called once per account
+    // build account objects
     List<MoneroAccount> accounts = new ArrayList<MoneroAccount>();
+    List<Integer> accountIndices = new ArrayList<Integer>();
     for (Map<String, Object> rpcAccount : (List<Map<String, Object>>) result.get("subaddress_accounts")) {
       MoneroAccount account = convertRpcAccount(rpcAccount);
-      if (includeSubaddresses) account.setSubaddresses(getSubaddresses(account.getIndex(), null, true));
       accounts.add(account);
+      accountIndices.add(account.getIndex());
+    }
+    if (tag == null) accountIndicesCache = Collections.unmodifiableList(accountIndices);
+    
+    // fetch subaddresses per account using concurrent get_address calls
+    // TODO monero-wallet-rpc: get_address should support all_accounts so not called once per account
+    if (includeSubaddresses) {
+      List<Callable<List<MoneroSubaddress>>> requests = new ArrayList<Callable<List<MoneroSubaddress>>>();
+      for (final MoneroAccount account : accounts) {
+        requests.add(new Callable<List<MoneroSubaddress>>() {
+          @Override
+          public List<MoneroSubaddress> call() {
+            return getSubaddresses(account.getIndex(), null, true);
+          }
+        });
+      }
+      List<List<MoneroSubaddress>> subaddresses = sendConcurrently(requests);
+      for (int i = 0; i < accounts.size(); i++) accounts.get(i).setSubaddresses(subaddresses.get(i));
     }
     
     // fetch and merge fields from get_balance across all accounts
@@ -819,8 +944,23 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     Map<String, Object> params = new HashMap<String, Object>();
     params.put("label", label);
     Map<String, Object> resp = rpc.sendJsonRequest("create_account", params);
+    markDirty();
     Map<String, Object> result = (Map<String, Object>) resp.get("result");
-    return new MoneroAccount(((BigInteger) result.get("account_index")).intValue(), (String) result.get("address"), BigInteger.valueOf(0), BigInteger.valueOf(0), null);
+    MoneroAccount account = new MoneroAccount(((BigInteger) result.get("account_index")).intValue(), (String) result.get("address"), BigInteger.valueOf(0), BigInteger.valueOf(0), null);
+    
+    // cache new account with its primary address
+    Map<Integer, String> subaddressMap = new ConcurrentSkipListMap<Integer, String>();
+    subaddressMap.put(0, account.getPrimaryAddress());
+    addressCache.put(account.getIndex(), subaddressMap);
+    completeAddressCacheAccounts.add(account.getIndex());
+    cacheAddressIndex(account.getPrimaryAddress(), account.getIndex(), 0);
+    List<Integer> accountIndices = accountIndicesCache;
+    if (accountIndices != null && !accountIndices.contains(account.getIndex())) {
+      accountIndices = new ArrayList<Integer>(accountIndices);
+      accountIndices.add(account.getIndex());
+      accountIndicesCache = Collections.unmodifiableList(accountIndices);
+    }
+    return account;
   }
   
   @Override
@@ -877,14 +1017,13 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     }
     
     // cache addresses
+    addressCache.putIfAbsent(accountIdx, new ConcurrentSkipListMap<Integer, String>());
     Map<Integer, String> subaddressMap = addressCache.get(accountIdx);
-    if (subaddressMap == null) {
-      subaddressMap = new HashMap<Integer, String>();
-      addressCache.put(accountIdx, subaddressMap);
-    }
     for (MoneroSubaddress subaddress : subaddresses) {
       subaddressMap.put(subaddress.getIndex(), subaddress.getAddress());
+      cacheAddressIndex(subaddress.getAddress(), accountIdx, subaddress.getIndex());
     }
+    if (subaddressIndices == null || subaddressIndices.isEmpty()) completeAddressCacheAccounts.add(accountIdx);
     
     // return results
     return subaddresses;
@@ -899,6 +1038,7 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     params.put("account_index", accountIdx);
     params.put("label", label);
     Map<String, Object> resp = rpc.sendJsonRequest("create_address", params);
+    markDirty();
     Map<String, Object> result = (Map<String, Object>) resp.get("result");
     
     // build subaddress object
@@ -912,9 +1052,15 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     subaddress.setNumUnspentOutputs(0l);
     subaddress.setIsUsed(false);
     subaddress.setNumBlocksToUnlock(0l);
+    
+    // cache address
+    Map<Integer, String> subaddressMap = addressCache.get(accountIdx);
+    if (subaddressMap != null) subaddressMap.put(subaddress.getIndex(), subaddress.getAddress());
+    cacheAddressIndex(subaddress.getAddress(), accountIdx, subaddress.getIndex());
     return subaddress;
   }
   
+  @SuppressWarnings("unchecked")
   @Override
   public List<MoneroTxWallet> getTxs(MoneroTxQuery query, Collection<String> missingTxHashes) {
     
@@ -927,8 +1073,31 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     query.setTransferQuery(null);
     query.setOutputQuery(null);
     
-    // fetch all transfers that meet tx query
-    List<MoneroTransfer> transfers = getTransfersAux(new MoneroTransferQuery().setTxQuery(decontextualize(query.copy())));
+    // fetch all transfers that meet tx query, concurrently with outputs if queried
+    final MoneroTxQuery transfersTxQuery = decontextualize(query.copy());
+    List<MoneroTransfer> transfers;
+    List<MoneroOutputWallet> outputs = null;
+    if (!Boolean.TRUE.equals(query.getIncludeOutputs()) && outputQuery == null) {
+      transfers = getTransfersAux(new MoneroTransferQuery().setTxQuery(transfersTxQuery));
+    } else {
+      final MoneroTxQuery outputsTxQuery = decontextualize(query.copy());
+      List<Callable<List<?>>> requests = new ArrayList<Callable<List<?>>>();
+      requests.add(new Callable<List<?>>() {
+        @Override
+        public List<?> call() {
+          return getTransfersAux(new MoneroTransferQuery().setTxQuery(transfersTxQuery));
+        }
+      });
+      requests.add(new Callable<List<?>>() {
+        @Override
+        public List<?> call() {
+          return getOutputsAux(new MoneroOutputQuery().setTxQuery(outputsTxQuery));
+        }
+      });
+      List<List<?>> results = sendConcurrently(requests);
+      transfers = (List<MoneroTransfer>) results.get(0);
+      outputs = (List<MoneroOutputWallet>) results.get(1);
+    }
     
     // collect unique txs from transfers while retaining order
     List<MoneroTxWallet> txs = new ArrayList<MoneroTxWallet>();
@@ -947,9 +1116,8 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
       mergeTx(tx, txMap, blockMap);
     }
     
-    // fetch and merge outputs if queried
-    if (Boolean.TRUE.equals(query.getIncludeOutputs()) || outputQuery != null) {
-      List<MoneroOutputWallet> outputs = getOutputsAux(new MoneroOutputQuery().setTxQuery(decontextualize(query.copy())));
+    // merge outputs if queried
+    if (outputs != null) {
       
       // merge output txs one time while retaining order
       Set<MoneroTxWallet> outputTxs = new HashSet<MoneroTxWallet>();
@@ -973,6 +1141,27 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     }
     txs = txsQueried;
     
+    // special case: re-fetch txs if inconsistency caused by needing to make multiple rpc calls
+    for (int attempt = 1; ; attempt++) {
+      List<String> inconsistentTxHashes = new ArrayList<String>();
+      for (MoneroTxWallet tx : txs) {
+        if (tx.isConfirmed() && tx.getBlock() == null) inconsistentTxHashes.add(tx.getHash());
+      }
+      if (inconsistentTxHashes.isEmpty()) break;
+      if (attempt > MAX_REFETCH_ATTEMPTS) throw new MoneroError("Txs are inconsistent across rpc calls after " + MAX_REFETCH_ATTEMPTS + " re-fetches: " + inconsistentTxHashes);
+      LOGGER.warning("Inconsistency detected building txs from multiple rpc calls, re-fetching " + inconsistentTxHashes.size() + " tx(s)");
+      for (int i = 0; i < txs.size(); i++) {
+        MoneroTxWallet tx = txs.get(i);
+        if (!inconsistentTxHashes.contains(tx.getHash())) continue;
+        MoneroTxWallet refetchedTx = refetchTx(tx, blockMap);
+        if (refetchedTx != null && query.meetsCriteria(refetchedTx)) txs.set(i, refetchedTx);
+        else {
+          if (refetchedTx != null && refetchedTx.getBlock() != null) refetchedTx.getBlock().getTxs().remove(refetchedTx);
+          txs.remove(i--);
+        }
+      }
+    }
+    
     // collect unfound tx hashes
     if (query.getHashes() != null) {
       List<String> unfoundTxHashes = new ArrayList<String>();
@@ -992,14 +1181,6 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
       else if (unfoundTxHashes.size() > 0) throw new MoneroError("Wallet missing requested tx hashes: " + unfoundTxHashes);
     }
     
-    // special case: re-fetch txs if inconsistency caused by needing to make multiple rpc calls
-    for (MoneroTxWallet tx : txs) {
-      if (tx.isConfirmed() && tx.getBlock() == null) {
-        LOGGER.warning("Inconsistency detected building txs from multiple rpc calls, re-fetching");
-        return getTxs(query);
-      }
-    }
-    
     // order txs if tx hashes given
     if (query.getHashes() != null && !query.getHashes().isEmpty()) {
       Map<String, MoneroTxWallet> txsById = new HashMap<String, MoneroTxWallet>();  // store txs in temporary map for sorting
@@ -1052,7 +1233,9 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     Map<String, Object> params = new HashMap<String, Object>();
     params.put("outputs_data_hex", outputsHex);
     Map<String, Object> resp = rpc.sendJsonRequest("import_outputs", params);
+    markDirty();
     Map<String, Object> result = (Map<String, Object>) resp.get("result");
+    invalidateBalancesSnapshot();
     return ((BigInteger) result.get("num_imported")).intValue();
   }
 
@@ -1078,7 +1261,9 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     Map<String, Object> params = new HashMap<String, Object>();
     params.put("signed_key_images", rpcKeyImages);
     Map<String, Object> resp = rpc.sendJsonRequest("import_key_images", params);
+    markDirty();
     Map<String, Object> result = (Map<String, Object>) resp.get("result");
+    invalidateBalancesSnapshot();
     
     // build and return result
     MoneroKeyImageImportResult importResult = new MoneroKeyImageImportResult();
@@ -1102,6 +1287,7 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
       Map<String, Object> params = new HashMap<String, Object>();
       params.put("hex", txMetadata);
       Map<String, Object> resp = rpc.sendJsonRequest("relay_tx", params);
+      markDirty();
       Map<String, Object> result = (Map<String, Object>) resp.get("result");
       txHashes.add((String) result.get("tx_hash"));
     }
@@ -1155,6 +1341,7 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     Map<String, Object> result = null;
     try {
       Map<String, Object> resp = rpc.sendJsonRequest(config.getCanSplit() ? "transfer_split" : "transfer", params);
+      markDirty();
       result = (Map<String, Object>) resp.get("result");
     } catch (MoneroRpcError err) {
       if (err.getMessage().indexOf("WALLET_RPC_ERROR_CODE_WRONG_ADDRESS") > -1) throw new MoneroError("Invalid destination address");
@@ -1207,6 +1394,7 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     
     // send request
     Map<String, Object> resp = (Map<String, Object>) rpc.sendJsonRequest("sweep_single", params);
+    markDirty();
     Map<String, Object> result = (Map<String, Object>) resp.get("result");
     
     // notify of changes
@@ -1291,6 +1479,7 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     Map<String, Object> params = new HashMap<String, Object>();
     params.put("do_not_relay", !relay);
     Map<String, Object> resp = rpc.sendJsonRequest("sweep_dust", params);
+    markDirty();
     Map<String, Object> result = (Map<String, Object>) resp.get("result");
     MoneroTxSet txSet = convertRpcSentTxsToTxSet(result, null);
     if (txSet.getTxs() != null) {
@@ -1321,6 +1510,7 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     Map<String, Object> params = new HashMap<String, Object>();
     params.put("unsigned_txset", unsignedTxHex);
     Map<String, Object> resp = rpc.sendJsonRequest("sign_transfer", params);
+    markDirty();
     Map<String, Object> result = (Map<String, Object>) resp.get("result");
     return (String) result.get("signed_txset");
   }
@@ -1331,6 +1521,7 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     Map<String, Object> params = new HashMap<String, Object>();
     params.put("tx_data_hex", signedTxHex);
     Map<String, Object> resp = rpc.sendJsonRequest("submit_transfer", params);
+    markDirty();
     poll();
     Map<String, Object> result = (Map<String, Object>) resp.get("result");
     return (List<String>) result.get("tx_hash_list");
@@ -1556,6 +1747,9 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     params.put("txids", txHashes);
     params.put("notes", notes);
     rpc.sendJsonRequest("set_tx_notes", params);
+    markDirty();
+    WalletRpcTransferStore transferStore = this.transferStore;
+    if (transferStore != null) transferStore.setNotes(txHashes, notes);
   }
 
   @SuppressWarnings("unchecked")
@@ -1586,6 +1780,7 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     params.put("address", address);
     params.put("description", description);
     Map<String, Object> respMap = rpc.sendJsonRequest("add_address_book", params);
+    markDirty();
     Map<String, Object> resultMap = (Map<String, Object>) respMap.get("result");
     return ((BigInteger) resultMap.get("index")).intValue();
   }
@@ -1599,6 +1794,7 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     params.put("set_description", setDescription);
     params.put("description", description);
     rpc.sendJsonRequest("edit_address_book", params);
+    markDirty();
   }
 
   @Override
@@ -1606,6 +1802,7 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     Map<String, Object> params = new HashMap<String, Object>();
     params.put("index", entryIdx);
     rpc.sendJsonRequest("delete_address_book", params);
+    markDirty();
   }
   
   @Override
@@ -1614,6 +1811,7 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     params.put("tag", tag);
     params.put("accounts", accountIndices);
     rpc.sendJsonRequest("tag_accounts", params);
+    markDirty();
   }
 
   @Override
@@ -1621,6 +1819,7 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     Map<String, Object> params = new HashMap<String, Object>();
     params.put("accounts", accountIndices);
     rpc.sendJsonRequest("untag_accounts", params);
+    markDirty();
   }
 
   @SuppressWarnings("unchecked")
@@ -1651,6 +1850,7 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     params.put("tag", tag);
     params.put("description", label);
     rpc.sendJsonRequest("set_account_tag_description", params);
+    markDirty();
   }
 
   @SuppressWarnings("unchecked")
@@ -1710,6 +1910,7 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     params.put("key", key);
     params.put("value", val);
     rpc.sendJsonRequest("set_attribute", params);
+    markDirty();
   }
 
   @Override
@@ -1751,6 +1952,7 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
   @SuppressWarnings("unchecked")
   public String prepareMultisig() {
     Map<String, Object> resp = rpc.sendJsonRequest("prepare_multisig");
+    markDirty();
     Map<String, Object> result = (Map<String, Object>) resp.get("result");
     return (String) result.get("multisig_info");
   }
@@ -1763,6 +1965,7 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     params.put("threshold", threshold);
     params.put("password", password);
     Map<String, Object> resp = rpc.sendJsonRequest("make_multisig", params);
+    markDirty();
     Map<String, Object> result = (Map<String, Object>) resp.get("result");
     MoneroMultisigInitResult msResult = new MoneroMultisigInitResult();
     msResult.setAddress((String) result.get("address"));
@@ -1779,6 +1982,7 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     params.put("multisig_info", multisigHexes);
     params.put("password", password);
     Map<String, Object> resp = rpc.sendJsonRequest("exchange_multisig_keys", params);
+    markDirty();
     Map<String, Object> result = (Map<String, Object>) resp.get("result");
     MoneroMultisigInitResult msResult = new MoneroMultisigInitResult();
     msResult.setAddress((String) result.get("address"));
@@ -1802,7 +2006,9 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     Map<String, Object> params = new HashMap<String, Object>();
     params.put("info", multisigHexes);
     Map<String, Object> resp = rpc.sendJsonRequest("import_multisig_info", params);
+    markDirty();
     Map<String, Object> result = (Map<String, Object>) resp.get("result");
+    invalidateBalancesSnapshot();
     return ((BigInteger) result.get("n_outputs")).intValue();
   }
 
@@ -1812,6 +2018,7 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     Map<String, Object> params = new HashMap<String, Object>();
     params.put("tx_data_hex", multisigTxHex);
     Map<String, Object> resp = rpc.sendJsonRequest("sign_multisig", params);
+    markDirty();
     Map<String, Object> result = (Map<String, Object>) resp.get("result");
     MoneroMultisigSignResult signResult = new MoneroMultisigSignResult();
     signResult.setSignedMultisigTxHex((String) result.get("tx_data_hex"));
@@ -1825,21 +2032,34 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     Map<String, Object> params = new HashMap<String, Object>();
     params.put("tx_data_hex", signedMultisigTxHex);
     Map<String, Object> resp = rpc.sendJsonRequest("submit_multisig", params);
+    markDirty();
     Map<String, Object> result = (Map<String, Object>) resp.get("result");
+    invalidateBalancesSnapshot();
     return (List<String>) result.get("tx_hash_list");
   }
   
   @Override
   public void save() {
+    long numChanges = getNumChanges();
+    long startTime = System.currentTimeMillis();
     rpc.sendJsonRequest("store");
+    markSaved(numChanges, System.currentTimeMillis() - startTime);
   }
   
   @Override
   public void close(boolean save) {
-    clear();
-    Map<String, Object> params = new HashMap<String, Object>();
-    params.put("autosave_current", save);
-    rpc.sendJsonRequest("close_wallet", params);
+    if (isSaveOnClose()) save = true;
+    long numChanges = getNumChanges();
+    long startTime = System.currentTimeMillis();
+    setIsListening(false);
+    try {
+      Map<String, Object> params = new HashMap<String, Object>();
+      params.put("autosave_current", save);
+      rpc.sendJsonRequest("close_wallet", params);
+      if (save) markSaved(numChanges, System.currentTimeMillis() - startTime);
+    } finally {
+      clear();
+    }
   }
   
   @Override
@@ -1856,29 +2076,99 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
   
   private void clear() {
     setIsListening(false);
-    listeners.clear();
+    clearListeners();
     addressCache.clear();
+    addressIndexCache.clear();
+    addressIndexCacheOrder.clear();
+    invalidateAddressCache();
+    invalidateBalancesSnapshot();
+    if (transferStore != null) transferStore.reset();
+    resetAutoSave();
     path = null;
   }
   
+  /**
+   * Invalidate the cached account indices and which accounts have all of their
+   * subaddresses cached, e.g. when new blocks may have expanded the wallet's
+   * subaddresses.  Cached addresses remain valid since they are static.
+   */
+  private void invalidateAddressCache() {
+    accountIndicesCache = null;
+    completeAddressCacheAccounts.clear();
+  }
+  
+  /**
+   * Indicates if the cached account indices and which accounts have all of
+   * their subaddresses cached are current.  They are only trusted while the
+   * wallet listens for new blocks, which invalidate them.  Otherwise accounts
+   * and subaddresses may be created without this wallet, e.g. while
+   * monero-wallet-rpc refreshes automatically or by another client of it.
+   * 
+   * @return true if the cached account indices and complete accounts are current, false otherwise
+   */
+  private boolean isAddressCacheTrusted() {
+    return isSnapshottingBalances();
+  }
+  
+  /**
+   * Cache an address's account and subaddress indices, evicting the oldest
+   * cached addresses beyond MAX_ADDRESS_INDEX_CACHE_SIZE.
+   * 
+   * @param address is the address to cache
+   * @param accountIdx is the address's account index
+   * @param subaddressIdx is the address's subaddress index
+   */
+  private void cacheAddressIndex(String address, int accountIdx, int subaddressIdx) {
+    if (address == null) return;
+    if (addressIndexCache.put(address, new int[] { accountIdx, subaddressIdx }) != null) return; // already cached
+    addressIndexCacheOrder.add(address);
+    while (addressIndexCache.size() > MAX_ADDRESS_INDEX_CACHE_SIZE) {
+      String evicted = addressIndexCacheOrder.poll();
+      if (evicted == null) break;
+      addressIndexCache.remove(evicted);
+    }
+  }
+  
   private Map<Integer, List<Integer>> getAccountIndices(boolean getSubaddressIndices) {
+    
+    // get cached account indices or fetch and cache
+    if (!isAddressCacheTrusted()) invalidateAddressCache();
+    List<Integer> accountIndices = accountIndicesCache;
+    if (accountIndices == null) {
+      accountIndices = new ArrayList<Integer>();
+      for (MoneroAccount account : getAccounts()) accountIndices.add(account.getIndex());
+    }
+    
+    // fetch uncached subaddresses concurrently
+    if (getSubaddressIndices) {
+      List<Callable<List<MoneroSubaddress>>> requests = new ArrayList<Callable<List<MoneroSubaddress>>>();
+      for (final int accountIdx : accountIndices) {
+        if (completeAddressCacheAccounts.contains(accountIdx)) continue;
+        requests.add(new Callable<List<MoneroSubaddress>>() {
+          @Override
+          public List<MoneroSubaddress> call() {
+            return getSubaddresses(accountIdx, null, true);
+          }
+        });
+      }
+      sendConcurrently(requests);
+    }
+    
+    // build indices
     Map<Integer, List<Integer>> indices = new HashMap<Integer, List<Integer>>();
-    for (MoneroAccount account : getAccounts()) {
-      indices.put(account.getIndex(), getSubaddressIndices ? getSubaddressIndices(account.getIndex()) : null);
+    for (int accountIdx : accountIndices) {
+      indices.put(accountIdx, getSubaddressIndices ? getSubaddressIndices(accountIdx) : null);
     }
     return indices;
   }
   
-  @SuppressWarnings("unchecked")
   private List<Integer> getSubaddressIndices(int accountIdx) {
-    List<Integer> subaddressIndices = new ArrayList<Integer>();
-    Map<String, Object> params = new HashMap<String, Object>();
-    params.put("account_index", accountIdx);
-    Map<String, Object> resp = rpc.sendJsonRequest("get_address", params);
-    Map<String, Object> result = (Map<String, Object>) resp.get("result");
-    for (Map<String, Object> address : (List<Map<String, Object>>) result.get("addresses")) {
-      subaddressIndices.add(((BigInteger) address.get("address_index")).intValue());
+    if (completeAddressCacheAccounts.contains(accountIdx)) {
+      Map<Integer, String> subaddressMap = addressCache.get(accountIdx);
+      if (subaddressMap != null) return new ArrayList<Integer>(subaddressMap.keySet());
     }
+    List<Integer> subaddressIndices = new ArrayList<Integer>();
+    for (MoneroSubaddress subaddress : getSubaddresses(accountIdx, null, true)) subaddressIndices.add(subaddress.getIndex());
     return subaddressIndices;
   }
   
@@ -1906,13 +2196,8 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
   private BigInteger[] getBalances(Integer accountIdx, Integer subaddressIdx) {
     if (accountIdx == null) {
       GenUtils.assertNull("Must provide account index with subaddress index", subaddressIdx);
-      BigInteger balance = BigInteger.valueOf(0);
-      BigInteger unlockedBalance = BigInteger.valueOf(0);
-      for (MoneroAccount account : getAccounts()) {
-        balance = balance.add(account.getBalance());
-        unlockedBalance = unlockedBalance.add(account.getUnlockedBalance());
-      }
-      return new BigInteger[] { balance, unlockedBalance };
+      MoneroBalances balances = fetchBalances();
+      return new BigInteger[] { balances.getBalance(), balances.getUnlockedBalance() };
     } else {
       Map<String, Object> params = new HashMap<String, Object>();
       params.put("account_index", accountIdx);
@@ -1948,14 +2233,15 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     MoneroTxQuery txQuery = query.getTxQuery();
     
     // check if pool txs explicitly requested without daemon connection
-    if (txQuery.inTxPool() != null && Boolean.TRUE.equals(txQuery.inTxPool()) && !isConnected()) {
+    boolean isConnected = isConnected();
+    if (txQuery.inTxPool() != null && Boolean.TRUE.equals(txQuery.inTxPool()) && !isConnected) {
       throw new MoneroError("Cannot fetch pool transactions because wallet has no daemon connection");
     }
 
     // build params for get_transfers rpc call
     Map<String, Object> params = new HashMap<String, Object>();
     boolean canBeConfirmed = !Boolean.FALSE.equals(txQuery.isConfirmed()) && !Boolean.TRUE.equals(txQuery.inTxPool()) && !Boolean.TRUE.equals(txQuery.isFailed()) && !Boolean.FALSE.equals(txQuery.isRelayed());
-    boolean canBeInTxPool = isConnected() && !Boolean.TRUE.equals(txQuery.isConfirmed()) && !Boolean.FALSE.equals(txQuery.inTxPool()) && !Boolean.TRUE.equals(txQuery.isFailed()) && !Boolean.FALSE.equals(txQuery.isRelayed()) && txQuery.getHeight() == null && txQuery.getMinHeight() == null && txQuery.getMaxHeight() == null && !Boolean.FALSE.equals(txQuery.isLocked());
+    boolean canBeInTxPool = isConnected && !Boolean.TRUE.equals(txQuery.isConfirmed()) && !Boolean.FALSE.equals(txQuery.inTxPool()) && !Boolean.TRUE.equals(txQuery.isFailed()) && !Boolean.FALSE.equals(txQuery.isRelayed()) && txQuery.getHeight() == null && txQuery.getMinHeight() == null && txQuery.getMaxHeight() == null && !Boolean.FALSE.equals(txQuery.isLocked());
     boolean canBeIncoming = !Boolean.FALSE.equals(query.isIncoming()) && !Boolean.TRUE.equals(query.isOutgoing()) && !Boolean.TRUE.equals(query.hasDestinations());
     boolean canBeOutgoing = !Boolean.FALSE.equals(query.isOutgoing()) && !Boolean.TRUE.equals(query.isIncoming());
     params.put("in", canBeIncoming && canBeConfirmed);
@@ -1988,9 +2274,14 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     Map<String, MoneroTxWallet> txMap = new HashMap<String, MoneroTxWallet>();
     Map<Long, MoneroBlock> blockMap = new HashMap<Long, MoneroBlock>();
     
-    // build txs using `get_transfers`
-    Map<String, Object> resp = rpc.sendJsonRequest("get_transfers", params);
-    Map<String, Object> result = (Map<String, Object>) resp.get("result");
+    // build txs using `get_transfers` or the local transfer store
+    WalletRpcTransferStore transferStore = this.transferStore;
+    Map<String, Object> result;
+    if (transferStore != null) result = transferStore.getTransfers(params, isConnected);
+    else {
+      Map<String, Object> resp = rpc.sendJsonRequest("get_transfers", params);
+      result = (Map<String, Object>) resp.get("result");
+    }
     for (String key : result.keySet()) {
       for (Map<String, Object> rpcTx :((List<Map<String, Object>>) result.get(key))) {
         MoneroTxWallet tx = convertRpcTxWithTransfer(rpcTx, null, null);
@@ -2001,14 +2292,7 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
 //        }
         
         // replace transfer amount with destination sum
-        // TODO monero-wallet-rpc: confirmed tx from/to same account has amount 0 but cached transfers
-        if (tx.getOutgoingTransfer() != null && Boolean.TRUE.equals(tx.isRelayed()) && !Boolean.TRUE.equals(tx.isFailed()) &&
-            tx.getOutgoingTransfer().getDestinations() != null && tx.getOutgoingAmount().compareTo(BigInteger.valueOf(0)) == 0) {
-          MoneroOutgoingTransfer outgoingTransfer = tx.getOutgoingTransfer();
-          BigInteger transferTotal = BigInteger.valueOf(0);
-          for (MoneroDestination destination : outgoingTransfer.getDestinations()) transferTotal = transferTotal.add(destination.getAmount());
-          tx.getOutgoingTransfer().setAmount(transferTotal);
-        }
+        setOutgoingAmountFromDestinations(tx);
         
         // merge tx
         mergeTx(tx, txMap, blockMap);
@@ -2077,23 +2361,29 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     Map<String, MoneroTxWallet> txMap = new HashMap<String, MoneroTxWallet>();
     Map<Long, MoneroBlock> blockMap = new HashMap<Long, MoneroBlock>();
     
-    // collect txs with outputs for each indicated account using `incoming_transfers` rpc call
-    Map<String, Object> params = new HashMap<String, Object>();
+    // collect txs with outputs for each indicated account using concurrent `incoming_transfers` rpc calls
     String transferType;
     if (Boolean.TRUE.equals(query.isSpent())) transferType = "unavailable";
     else if (Boolean.FALSE.equals(query.isSpent())) transferType = "available";
     else transferType = "all";
-    params.put("transfer_type", transferType);
-    params.put("verbose", true);
+    List<Callable<Map<String, Object>>> requests = new ArrayList<Callable<Map<String, Object>>>();
     for (int accountIdx : indices.keySet()) {
-    
-      // send request
+      final Map<String, Object> params = new HashMap<String, Object>();
+      params.put("transfer_type", transferType);
+      params.put("verbose", true);
       params.put("account_index", accountIdx);
       params.put("subaddr_indices", indices.get(accountIdx));
-      Map<String, Object> resp = rpc.sendJsonRequest("incoming_transfers", params);
-      Map<String, Object> result = (Map<String, Object>) resp.get("result");
-      
-      // convert response to txs with outputs and merge
+      requests.add(new Callable<Map<String, Object>>() {
+        @Override
+        public Map<String, Object> call() {
+          Map<String, Object> resp = rpc.sendJsonRequest("incoming_transfers", params);
+          return (Map<String, Object>) resp.get("result");
+        }
+      });
+    }
+    
+    // convert responses to txs with outputs and merge in account order
+    for (Map<String, Object> result : sendConcurrently(requests)) {
       if (!result.containsKey("transfers")) continue;
       for (Map<String, Object> rpcOutput : (List<Map<String, Object>>) result.get("transfers")) {
         MoneroTxWallet tx = convertRpcTxWithOutput(rpcOutput);
@@ -2121,6 +2411,130 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     return outputs;
   }
   
+  /**
+   * Re-fetch a tx's transfers using `get_transfer_by_txid` for each account
+   * the tx belongs to, retaining the tx's outputs.
+   * 
+   * @param tx is the tx to re-fetch
+   * @param blockMap maps block heights to the blocks of the other queried txs, which the re-fetched tx's block is merged into
+   * @return the re-fetched tx or null if the tx no longer exists
+   */
+  @SuppressWarnings("unchecked")
+  private MoneroTxWallet refetchTx(MoneroTxWallet tx, Map<Long, MoneroBlock> blockMap) {
+    
+    // collect accounts the tx belongs to
+    Set<Integer> accountIndices = new HashSet<Integer>();
+    if (tx.getOutgoingTransfer() != null) accountIndices.add(tx.getOutgoingTransfer().getAccountIndex());
+    if (tx.getIncomingTransfers() != null) for (MoneroIncomingTransfer transfer : tx.getIncomingTransfers()) accountIndices.add(transfer.getAccountIndex());
+    if (tx.getOutputs() != null) for (MoneroOutputWallet output : tx.getOutputsWallet()) accountIndices.add(output.getAccountIndex());
+    
+    // fetch and merge the tx's transfers per account
+    Map<String, MoneroTxWallet> txMap = new HashMap<String, MoneroTxWallet>();
+    for (int accountIdx : accountIndices) {
+      Map<String, Object> params = new HashMap<String, Object>();
+      params.put("txid", tx.getHash());
+      params.put("account_index", accountIdx);
+      Map<String, Object> result;
+      try {
+        Map<String, Object> resp = rpc.sendJsonRequest("get_transfer_by_txid", params);
+        result = (Map<String, Object>) resp.get("result");
+      } catch (MoneroRpcError e) {
+        if (Integer.valueOf(-8).equals(e.getCode()) && e.getMessage().contains("Transaction not found")) continue; // tx does not belong to account
+        throw e;
+      }
+      for (Map<String, Object> rpcTx : (List<Map<String, Object>>) result.get("transfers")) {
+        MoneroTxWallet transferTx = convertRpcTxWithTransfer(rpcTx, null, null);
+        setOutgoingAmountFromDestinations(transferTx);
+        mergeTx(transferTx, txMap, blockMap);
+      }
+    }
+    MoneroTxWallet refetchedTx = txMap.get(tx.getHash());
+    if (refetchedTx == null) return null;
+    
+    // retain outputs
+    if (tx.getOutputs() != null) {
+      MoneroTxWallet outputTx = new MoneroTxWallet();
+      outputTx.setHash(tx.getHash());
+      outputTx.setOutputs(new ArrayList<MoneroOutput>(tx.getOutputs()));
+      refetchedTx.merge(outputTx);
+      Collections.sort(refetchedTx.getOutputs(), new OutputComparator());
+    }
+    
+    // tx is not incoming/outgoing unless already set
+    if (refetchedTx.isIncoming() == null) refetchedTx.setIsIncoming(false);
+    if (refetchedTx.isOutgoing() == null) refetchedTx.setIsOutgoing(false);
+    if (refetchedTx.getIncomingTransfers() != null) Collections.sort(refetchedTx.getIncomingTransfers(), new IncomingTransferComparator());
+    return refetchedTx;
+  }
+  
+  /**
+   * Send rpc requests concurrently on the shared request pool, at most
+   * MAX_CONCURRENT_REQUESTS at a time.
+   * 
+   * The calling thread also sends requests which no pool thread has started,
+   * so requests which send their own concurrent requests cannot exhaust the
+   * shared pool.
+   * 
+   * @param requests are the requests to send
+   * @return the results of the requests in order
+   */
+  private static <T> List<T> sendConcurrently(List<? extends Callable<T>> requests) {
+    
+    // workers send unstarted requests until none remain
+    final List<FutureTask<T>> tasks = new ArrayList<FutureTask<T>>();
+    for (Callable<T> request : requests) tasks.add(new FutureTask<T>(request));
+    final AtomicInteger nextIdx = new AtomicInteger();
+    Runnable worker = new Runnable() {
+      @Override
+      public void run() {
+        for (int i = nextIdx.getAndIncrement(); i < tasks.size(); i = nextIdx.getAndIncrement()) tasks.get(i).run();
+      }
+    };
+    
+    // send requests on pool workers and the calling thread
+    List<Future<?>> workers = new ArrayList<Future<?>>();
+    try {
+      for (int i = 1; i < Math.min(MAX_CONCURRENT_REQUESTS, tasks.size()); i++) workers.add(REQUEST_POOL.submit(worker));
+      worker.run();
+      List<T> results = new ArrayList<T>();
+      for (FutureTask<T> task : tasks) results.add(getResult(task));
+      return results;
+    } finally {
+      for (Future<?> pendingWorker : workers) pendingWorker.cancel(false); // no-op if started
+    }
+  }
+  
+  private static ExecutorService newRequestPool() {
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(REQUEST_POOL_SIZE, REQUEST_POOL_SIZE, REQUEST_POOL_KEEP_ALIVE_MS, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "MoneroWalletRpc request");
+        thread.setDaemon(true); // daemon thread does not prevent JVM from halting
+        return thread;
+      }
+    });
+    pool.allowCoreThreadTimeOut(true);
+    return pool;
+  }
+  
+  /**
+   * Get the result of a concurrent rpc request, rethrowing its error.
+   * 
+   * @param future is the future result of the request
+   * @return the result of the request
+   */
+  private static <T> T getResult(Future<T> future) {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof MoneroError) throw (MoneroError) e.getCause();
+      throw new MoneroError(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MoneroError(e);
+    }
+  }
+  
   @SuppressWarnings("unchecked")
   private List<MoneroTxWallet> rpcSweepAccount(MoneroTxConfig config) {
     
@@ -2160,6 +2574,7 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     
     // invoke wallet rpc `sweep_all`
     Map<String, Object> resp = rpc.sendJsonRequest("sweep_all", params);
+    markDirty();
     Map<String, Object> result = (Map<String, Object>) resp.get("result");
     
     // initialize txs from response
@@ -2210,9 +2625,27 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
    * Poll if listening.
    */
   private void poll() {
+    invalidateBalancesSnapshot();
     if (pollListener != null && pollListener.isEnabled) pollListener.poll();
   }
   
+  /**
+   * Hash and unlock data of a locked tx, which the poll listener keeps instead
+   * of the tx, whose outputs are modified when announced.
+   */
+  private static class LockedTx {
+    
+    private final String hash;
+    private final Long height; // null if unconfirmed
+    private final Long unlockTime;
+    
+    private LockedTx(MoneroTxWallet tx) {
+      hash = tx.getHash();
+      height = Boolean.TRUE.equals(tx.isConfirmed()) ? tx.getHeight() : null;
+      unlockTime = tx.getUnlockHeight();
+    }
+  }
+  
   /**
    * Polls monero-wallet-rpc to provide listener notifications.
    * 
@@ -2226,7 +2659,7 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     private Long prevHeight;
     private BigInteger prevBalance;
     private BigInteger prevUnlockedBalance;
-    private List<MoneroTxWallet> prevLockedTxs = new ArrayList<MoneroTxWallet>();
+    private Map<String, LockedTx> prevLockedTxs = new HashMap<String, LockedTx>(); // hashes and unlock data of locked txs by hash
     private Set<String> prevUnconfirmedNotifications = new HashSet<String>(); // tx hashes of previous notifications
     private Set<String> prevConfirmedNotifications = new HashSet<String>(); // tx hashes of previously confirmed but not yet unlocked notifications
     
@@ -2269,6 +2702,7 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
           isPollLoopRunning = false;
         }
       });
+      pollThread.setDaemon(true); // daemon thread does not prevent JVM from halting
       pollThread.start();
     }
     
@@ -2281,41 +2715,75 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
       // take initial snapshot
       if (prevHeight == null) {
         prevHeight = getHeight();
-        prevLockedTxs = getTxs(new MoneroTxQuery().setIsLocked(true));
+        for (MoneroTxWallet lockedTx : getTxs(new MoneroTxQuery().setIsLocked(true))) prevLockedTxs.put(lockedTx.getHash(), new LockedTx(lockedTx));
         isPolling = false;
         return;
       }
       
       // announce height changes
       long height = getHeight();
+      long fromHeight = Math.max(0, prevHeight - REORG_DEPTH); // re-fetch recent blocks to detect re-orgs
       if (prevHeight != height) {
+        invalidateAddressCache();
+        invalidateBalancesSnapshot();
         for (long i = prevHeight; i < height; i++) onNewBlock(i);
         prevHeight = height;
       }
       
-      // get locked txs for comparison to previous
-      List<MoneroTxWallet> lockedTxs = getTxs(new MoneroTxQuery().setIsLocked(true).setIncludeOutputs(true));
+      // fetch locked txs confirmed since the last seen height and in the pool
+      Map<String, MoneroTxWallet> lockedTxs = new HashMap<String, MoneroTxWallet>();
+      for (MoneroTxWallet lockedTx : getTxs(new MoneroTxQuery().setMinHeight(fromHeight).setIsLocked(true))) lockedTxs.put(lockedTx.getHash(), lockedTx);
+      for (MoneroTxWallet lockedTx : getTxs(new MoneroTxQuery().setIsConfirmed(false).setIsLocked(true))) lockedTxs.put(lockedTx.getHash(), lockedTx);
       
-      // collect hashes of txs no longer locked
+      // carry over older txs which are still locked by their unlock time, otherwise collect hashes of txs no longer locked
+      Map<String, LockedTx> carriedLockedTxs = new HashMap<String, LockedTx>();
       List<String> noLongerLockedHashes = new ArrayList<String>();
-      for (MoneroTxWallet prevLockedTx : prevLockedTxs) {
-        if (getTx(lockedTxs, prevLockedTx.getHash()) == null) {
-          noLongerLockedHashes.add(prevLockedTx.getHash());
-        }
+      for (LockedTx prevLockedTx : prevLockedTxs.values()) {
+        if (lockedTxs.containsKey(prevLockedTx.hash)) continue;
+        if (prevLockedTx.height != null && prevLockedTx.height < fromHeight && !MoneroUtils.isUnlocked(prevLockedTx.height, prevLockedTx.unlockTime, height, System.currentTimeMillis() / 1000)) carriedLockedTxs.put(prevLockedTx.hash, prevLockedTx);
+        else noLongerLockedHashes.add(prevLockedTx.hash);
       }
       
       // fetch txs that are no longer locked
-      List<MoneroTxWallet> unlockedTxs = getTxs(new MoneroTxQuery().setHashes(noLongerLockedHashes).setIncludeOutputs(true), new ArrayList<String>()); // ignore missing tx hashes which could be removed due to re-org
-      
-      // save locked txs for next comparison
-      prevLockedTxs = lockedTxs;
+      List<MoneroTxWallet> unlockedTxs = new ArrayList<MoneroTxWallet>();
+      if (!noLongerLockedHashes.isEmpty()) {
+        for (MoneroTxWallet unlockedTx : getTxs(new MoneroTxQuery().setHashes(noLongerLockedHashes).setIncludeOutputs(true), new ArrayList<String>())) { // ignore missing tx hashes which could be removed due to re-org
+          if (Boolean.TRUE.equals(unlockedTx.isLocked())) lockedTxs.put(unlockedTx.getHash(), unlockedTx); // derived unlock height is ahead of wallet
+          else unlockedTxs.add(unlockedTx);
+        }
+      }
       
-      // announce new unconfirmed and confirmed txs
-      for (MoneroTxWallet lockedTx : lockedTxs) {
+      // collect new unconfirmed and confirmed txs and carried over txs which are not yet announced
+      List<MoneroTxWallet> unannouncedTxs = new ArrayList<MoneroTxWallet>();
+      List<String> fetchOutputsHashes = new ArrayList<String>();
+      for (MoneroTxWallet lockedTx : lockedTxs.values()) {
         boolean unannounced = lockedTx.isConfirmed() ? prevConfirmedNotifications.add(lockedTx.getHash()) : prevUnconfirmedNotifications.add(lockedTx.getHash());
-        if (unannounced) notifyOutputs(lockedTx);
+        if (!unannounced) continue;
+        unannouncedTxs.add(lockedTx);
+        if (lockedTx.isConfirmed() && lockedTx.getIncomingTransfers() != null) fetchOutputsHashes.add(lockedTx.getHash());
+      }
+      for (LockedTx carriedLockedTx : carriedLockedTxs.values()) {
+        if (prevConfirmedNotifications.add(carriedLockedTx.hash)) fetchOutputsHashes.add(carriedLockedTx.hash); // locked since the initial snapshot
       }
       
+      // fetch new confirmed txs with incoming transfers and carried over txs with outputs
+      if (!fetchOutputsHashes.isEmpty()) {
+        Map<String, MoneroTxWallet> txsWithOutputs = new HashMap<String, MoneroTxWallet>();
+        for (MoneroTxWallet tx : getTxs(new MoneroTxQuery().setHashes(fetchOutputsHashes).setIncludeOutputs(true), new ArrayList<String>())) txsWithOutputs.put(tx.getHash(), tx);
+        for (int i = 0; i < unannouncedTxs.size(); i++) {
+          MoneroTxWallet txWithOutputs = txsWithOutputs.remove(unannouncedTxs.get(i).getHash());
+          if (txWithOutputs != null) unannouncedTxs.set(i, txWithOutputs);
+        }
+        unannouncedTxs.addAll(txsWithOutputs.values());
+      }
+      
+      // save hashes and unlock data of locked txs for next comparison, which do not change as outputs are announced
+      for (MoneroTxWallet lockedTx : lockedTxs.values()) carriedLockedTxs.put(lockedTx.getHash(), new LockedTx(lockedTx));
+      prevLockedTxs = carriedLockedTxs;
+      
+      // announce new unconfirmed and confirmed txs
+      for (MoneroTxWallet unannouncedTx : unannouncedTxs) notifyOutputs(unannouncedTx);
+      
       // announce new unlocked outputs
       for (MoneroTxWallet unlockedTx : unlockedTxs) {
         prevUnconfirmedNotifications.remove(unlockedTx.getHash()); // stop tracking tx notifications
@@ -2340,15 +2808,13 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
             .setSubaddressIndex(tx.getOutgoingTransfer().getSubaddressIndices().size() == 1 ? tx.getOutgoingTransfer().getSubaddressIndices().get(0) : null) // initialize if transfer sourced from single subaddress
             .setTx(tx);
         tx.setInputsWallet(Arrays.asList(output));
-        for (MoneroWalletListenerI listener : listeners) listener.onOutputSpent(output);
+        announceOutputSpent(output);
       }
       
       // notify received outputs
       if (tx.getIncomingTransfers() != null) {
         if (tx.getOutputs() != null && !tx.getOutputs().isEmpty()) { // TODO (monero-project): outputs only returned for confirmed txs
-          for (MoneroOutputWallet output : tx.getOutputsWallet()) {
-            for (MoneroWalletListenerI listener : listeners) listener.onOutputReceived(output);
-          }
+          announceOutputsReceived(tx.getOutputsWallet());
         } else { // TODO (monero-project): monero-wallet-rpc does not allow scrape of unconfirmed received outputs so using incoming transfer values
           List<MoneroOutputWallet> outputs = new ArrayList<MoneroOutputWallet>();
           for (MoneroIncomingTransfer transfer : tx.getIncomingTransfers()) {
@@ -2359,30 +2825,25 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
                 .setTx(tx));
           }
           tx.setOutputsWallet(outputs);
-          for (MoneroWalletListenerI listener : listeners) {
-            for (MoneroOutputWallet output : tx.getOutputsWallet()) listener.onOutputReceived(output);
-          }
+          announceOutputsReceived(tx.getOutputsWallet());
         }
       }
     }
     
     private void onNewBlock(long height) {
-      for (MoneroWalletListenerI listener : listeners) listener.onNewBlock(height);
-    }
-    
-    private MoneroTxWallet getTx(List<MoneroTxWallet> txs, String txHash) {
-      for (MoneroTxWallet tx : txs) if (txHash.equals(tx.getHash())) return tx;
-      return null;
+      announceNewBlock(height);
     }
     
     // TODO: factor to common wallet rpc listener
     private boolean checkForChangedBalances() {
-      BigInteger balance = getBalance();
-      BigInteger unlockedBalance = getUnlockedBalance();
+      MoneroBalances balances = fetchBalances();
+      BigInteger balance = balances.getBalance();
+      BigInteger unlockedBalance = balances.getUnlockedBalance();
+      setBalancesSnapshot(balance, unlockedBalance);
       if (!balance.equals(prevBalance) || !unlockedBalance.equals(prevUnlockedBalance)) {
         prevBalance =  balance;
         prevUnlockedBalance = unlockedBalance;
-        for (MoneroWalletListenerI listener : getListeners()) listener.onBalancesChanged(balance, unlockedBalance);
+        announceBalancesChanged(balance, unlockedBalance);
         return true;
       }
       return false;
@@ -2390,22 +2851,37 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
   }
   
   /**
-   * Receives ZMQ notifications directly from monero-wallet-rpc. 
+   * Receives ZMQ notifications directly from monero-wallet-rpc.
+   * 
+   * Notifications are received on a poll thread and handed to a process thread
+   * through a bounded queue, so the poll thread blocks (and the socket's high
+   * water mark applies) when processing falls behind.  The process thread
+   * drains all queued notifications at once, announces outputs and blocks per
+   * notification, then checks balances and unlocked txs once for the batch.
    */
   private class WalletRpcZmqListener {
     
-    private boolean isEnabled;
+    private volatile boolean isEnabled;
     private Thread pollThread;
-    private ExecutorService processNotificationPool;
+    private Thread processThread;
+    private BlockingQueue<String> notifications = new ArrayBlockingQueue<String>(ZMQ_QUEUE_CAPACITY);
     private ZContext context;
     private ZMQ.Socket subscriber;
     private BigInteger prevBalance;
     private BigInteger prevUnlockedBalance;
-    private List<String> prevLockedTxHashes = new ArrayList<String>();
+    private final Set<String> prevLockedTxHashes = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>()); // updated by the process thread and cleared on stop
+    
+    // back-pressure metrics
+    private final AtomicLong numReceived = new AtomicLong();
+    private final AtomicLong numProcessed = new AtomicLong();
+    private final AtomicLong numBlocked = new AtomicLong();       // number of notifications which waited for space in the queue
+    private final AtomicLong blockedTimeMs = new AtomicLong();    // total time the poll thread waited for space in the queue
+    private final AtomicInteger maxQueueSize = new AtomicInteger();
     
     public WalletRpcZmqListener() {
-      prevBalance = getBalance();
-      prevUnlockedBalance = getUnlockedBalance();
+      MoneroBalances balances = fetchBalances();
+      prevBalance = balances.getBalance();
+      prevUnlockedBalance = balances.getUnlockedBalance();
     }
     
     public void setIsEnabled(boolean isEnabled) {
@@ -2420,8 +2896,28 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
       // cache locked txs for later comparison
       checkForChangedUnlockedTxs(); 
       
-      // create pool to process notifications in serial without blocking polling
-      processNotificationPool = Executors.newFixedThreadPool(1);
+      // create thread which processes notifications in serial without blocking polling
+      processThread = new Thread(new Runnable() {
+        @Override public void run() {
+          List<String> batch = new ArrayList<String>();
+          while (!Thread.currentThread().isInterrupted() && isEnabled) {
+            try {
+              batch.add(notifications.take());
+              notifications.drainTo(batch);
+              processZmqNotifications(batch);
+            } catch (InterruptedException e) {
+              break;
+            } catch (Exception e) {
+              if (isEnabled) LOGGER.log(Level.WARNING, "Failed to process zmq notifications for " + getPath(), e);
+            } finally {
+              numProcessed.addAndGet(batch.size());
+              batch.clear();
+            }
+          }
+        }
+      });
+      processThread.setDaemon(true); // daemon thread does not prevent JVM from halting
+      processThread.start();
       
       // create thread which polls zmq publications
       pollThread = new Thread(new Runnable() {
@@ -2433,10 +2929,10 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
           
           // subscribe to topic
           subscriber.connect(getRpcConnection().getZmqUri());
-          subscriber.subscribe("json-minimal-chain_main".getBytes()); // TODO (monero-project): these notifications not received if subscribed to json-full
-          subscriber.subscribe("json-full-money_received".getBytes());
-          subscriber.subscribe("json-full-money_spent".getBytes());
-          subscriber.subscribe("json-full-unconfirmed_money_received".getBytes());
+          subscriber.subscribe(MoneroZmqNotification.TOPIC_CHAIN_MAIN.getBytes()); // TODO (monero-project): these notifications not received if subscribed to json-full
+          subscriber.subscribe(MoneroZmqNotification.TOPIC_MONEY_RECEIVED.getBytes());
+          subscriber.subscribe(MoneroZmqNotification.TOPIC_MONEY_SPENT.getBytes());
+          subscriber.subscribe(MoneroZmqNotification.TOPIC_UNCONFIRMED_MONEY_RECEIVED.getBytes());
           
           // TODO: refine topics
           //subscriber.subscribe("json-full".getBytes());
@@ -2453,15 +2949,9 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
           while (!Thread.currentThread().isInterrupted() && isEnabled) {
             try {
               poller.poll();
-              if (poller.pollin(0)) {
-                String notification = subscriber.recvStr();
-                processNotificationPool.submit(new Runnable() {
-                  @Override
-                  public void run() {
-                    processZmqNotification(notification);
-                  }
-                });
-              }
+              if (poller.pollin(0)) enqueue(subscriber.recvStr());
+            } catch (InterruptedException e) {
+              break;
             } catch (Exception e) {
               if (!Thread.currentThread().isInterrupted() && isEnabled) {
                 throw e;
@@ -2480,93 +2970,125 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
       isEnabled = false;
       subscriber.close();
       context.close();
-      prevLockedTxHashes.clear();
-      processNotificationPool.shutdown();
+      processThread.interrupt();
       pollThread.interrupt();
+      notifications.clear();
+      prevLockedTxHashes.clear();
     }
     
-    @SuppressWarnings("unchecked")
-    private void processZmqNotification(String content) {
-      
-      System.out.println("Processing zmq notification: " + content);
-      
-      // parse json content to map
-      // TODO: more efficent way?
-      int bodyIdx = content.indexOf(":");
-      String topic = content.substring(0, bodyIdx);
-      if (content.substring(bodyIdx + 1).isEmpty()) {
-        System.out.println("WARNING: empty body to parse zmq notification");
-        return;
+    public MoneroZmqMetrics getMetrics() {
+      return new MoneroZmqMetrics()
+          .setNumReceived(numReceived.get())
+          .setNumProcessed(numProcessed.get())
+          .setNumBlocked(numBlocked.get())
+          .setBlockedTimeMs(blockedTimeMs.get())
+          .setMaxQueueSize(maxQueueSize.get());
+    }
+    
+    /**
+     * Queue a notification for processing, waiting if the queue is full.
+     */
+    private void enqueue(String notification) throws InterruptedException {
+      numReceived.incrementAndGet();
+      if (!notifications.offer(notification)) {
+        long start = System.currentTimeMillis();
+        notifications.put(notification);
+        long blockedMs = System.currentTimeMillis() - start;
+        blockedTimeMs.addAndGet(blockedMs);
+        if (numBlocked.getAndIncrement() == 0) LOGGER.warning("zmq notification queue for " + getPath() + " is full, processing is behind");
+        LOGGER.fine("Waited " + blockedMs + " ms to queue zmq notification for " + getPath() + " (received=" + numReceived.get() + ", processed=" + numProcessed.get() + ", blocked=" + numBlocked.get() + ", blockedTimeMs=" + blockedTimeMs.get() + ")");
       }
+      int queueSize = notifications.size();
+      if (queueSize > maxQueueSize.get()) maxQueueSize.set(queueSize); // only updated by the poll thread
+    }
+    
+    private void processZmqNotifications(List<String> batch) {
+      if (batch.size() > 1) LOGGER.fine("Processing " + batch.size() + " zmq notifications for " + getPath() + " (max queued=" + maxQueueSize.get() + ")");
       
-      // process topics
-      if (topic.equals("json-minimal-chain_main")) {
-        Map<String, Object> contentMap = JsonUtils.toMap(MoneroRpcConnection.MAPPER, content.substring(bodyIdx + 1)); // TODO: keep mapper in MoneroRpcConnection?
-        long height = ((BigInteger) contentMap.get("first_height")).longValue();
-        for (MoneroWalletListenerI listener : getListeners()) listener.onNewBlock(height);
-        
-        // notify if balances change
-        boolean balancesChanged = checkForChangedBalances();
-        
-        // notify when txs unlock after wallet is synced
-        if (balancesChanged) checkForChangedUnlockedTxs();  // TODO: only check for unlocked txs when isSynced() 
-      } else {
-        
-        // parse json to maps
-        Map<String, Object> contentMap = JsonUtils.toMap(MoneroRpcConnection.MAPPER, content.substring(bodyIdx + 1));
-        Map<String, Object> txMap = (Map<String, Object>) (contentMap.containsKey("tx_in") ? contentMap.get("tx_in") : contentMap.get("tx"));
-        
-        // build output
-        MoneroOutputWallet output = new MoneroOutputWallet();
-        output.setAmount((BigInteger) contentMap.get("amount"));
-        output.setAccountIndex(((BigInteger) contentMap.get("subaddr_index_major")).intValue());  // TODO: deserialize as {major: 0, minor: 0}
-        output.setSubaddressIndex(((BigInteger) contentMap.get("subaddr_index_minor")).intValue());
-        MoneroTxWallet tx = new MoneroTxWallet();
-        tx.setHash((String) contentMap.get("txid"));
-        tx.setVersion(((BigInteger) txMap.get("version")).intValue());
-        tx.setUnlockHeight(((BigInteger) txMap.get("unlock_time")).longValue());
-        output.setTx(tx);
-        tx.setOutputs(Arrays.asList(output));
-        long height = ((BigInteger) contentMap.get("height")).longValue();
-        tx.setIsLocked(true);
-        if (height > 0) {
-          MoneroBlock block = new MoneroBlock().setHeight(height);
-          block.setTxs(Arrays.asList(tx));
-          tx.setBlock(block);
-          tx.setIsConfirmed(true);
-          tx.setInTxPool(false);
-          tx.setIsFailed(false);
-        } else {
-          tx.setIsConfirmed(false);
-          tx.setInTxPool(true);
+      // announce each notification and note which checks are needed
+      boolean checkBalances = false;
+      boolean newBlock = false;
+      for (String content : batch) {
+        LOGGER.finest("Processing zmq notification: " + content);
+        MoneroZmqNotification notification;
+        try {
+          notification = MoneroZmqNotification.parse(content);
+        } catch (Exception e) {
+          LOGGER.log(Level.WARNING, "Failed to parse zmq notification: " + content, e);
+          continue;
         }
-        
-        // announce output
-        if (topic.equals("json-full-money_received")) {
-          tx.setIsIncoming(true);
-          prevLockedTxHashes.add(tx.getHash()); // watch for unlock
-          for (MoneroWalletListenerI listener : getListeners()) listener.onOutputReceived(output);
-        } else if (topic.equals("json-full-money_spent")) {
-          tx.setIsIncoming(false);
-          prevLockedTxHashes.add(tx.getHash()); // watch for unlock
-          for (MoneroWalletListenerI listener : getListeners()) listener.onOutputSpent(output);
-        } else if (topic.equals("json-full-unconfirmed_money_received")) {
-          tx.setIsIncoming(true);
-          for (MoneroWalletListenerI listener : getListeners()) listener.onOutputReceived(output);
-          checkForChangedBalances();
+        if (notification == null) continue;
+        if (notification.getTopic().equals(MoneroZmqNotification.TOPIC_CHAIN_MAIN)) {
+          invalidateAddressCache();
+          invalidateBalancesSnapshot();
+          announceNewBlock(notification.getFirstHeight());
+          newBlock = true;
+          checkBalances = true;
         } else {
-          LOGGER.warning("Received unsupported notification: " + content);
+          processOutputNotification(notification);
+          if (notification.getTopic().equals(MoneroZmqNotification.TOPIC_UNCONFIRMED_MONEY_RECEIVED)) checkBalances = true;
         }
       }
+      
+      // notify if balances change
+      boolean balancesChanged = checkBalances && checkForChangedBalances();
+      
+      // notify when txs unlock after wallet is synced
+      if (newBlock && balancesChanged) checkForChangedUnlockedTxs();  // TODO: only check for unlocked txs when isSynced() 
+    }
+    
+    private void processOutputNotification(MoneroZmqNotification notification) {
+      
+      // build output
+      MoneroOutputWallet output = new MoneroOutputWallet();
+      output.setAmount(notification.getAmount());
+      output.setAccountIndex(notification.getAccountIndex());
+      output.setSubaddressIndex(notification.getSubaddressIndex());
+      MoneroTxWallet tx = new MoneroTxWallet();
+      tx.setHash(notification.getTxHash());
+      tx.setVersion(notification.getVersion());
+      tx.setUnlockHeight(notification.getUnlockTime());
+      output.setTx(tx);
+      tx.setOutputs(Arrays.asList(output));
+      tx.setIsLocked(true);
+      if (notification.isConfirmed()) {
+        MoneroBlock block = new MoneroBlock().setHeight(notification.getHeight());
+        block.setTxs(Arrays.asList(tx));
+        tx.setBlock(block);
+        tx.setIsConfirmed(true);
+        tx.setInTxPool(false);
+        tx.setIsFailed(false);
+      } else {
+        tx.setIsConfirmed(false);
+        tx.setInTxPool(true);
+      }
+      
+      // announce output
+      if (notification.getTopic().equals(MoneroZmqNotification.TOPIC_MONEY_RECEIVED)) {
+        tx.setIsIncoming(true);
+        prevLockedTxHashes.add(tx.getHash()); // watch for unlock
+        announceOutputReceived(output);
+      } else if (notification.getTopic().equals(MoneroZmqNotification.TOPIC_MONEY_SPENT)) {
+        tx.setIsIncoming(false);
+        prevLockedTxHashes.add(tx.getHash()); // watch for unlock
+        announceOutputSpent(output);
+      } else if (notification.getTopic().equals(MoneroZmqNotification.TOPIC_UNCONFIRMED_MONEY_RECEIVED)) {
+        tx.setIsIncoming(true);
+        announceOutputReceived(output);
+      } else {
+        LOGGER.warning("Received unsupported notification with topic: " + notification.getTopic());
+      }
     }
     
     private boolean checkForChangedBalances() {
-      BigInteger balance = getBalance();
-      BigInteger unlockedBalance = getUnlockedBalance();
+      MoneroBalances balances = fetchBalances();
+      BigInteger balance = balances.getBalance();
+      BigInteger unlockedBalance = balances.getUnlockedBalance();
+      setBalancesSnapshot(balance, unlockedBalance);
       if (!balance.equals(prevBalance) || !unlockedBalance.equals(prevUnlockedBalance)) {
         prevBalance =  balance;
         prevUnlockedBalance = unlockedBalance;
-        for (MoneroWalletListenerI listener : getListeners()) listener.onBalancesChanged(balance, unlockedBalance);
+        announceBalancesChanged(balance, unlockedBalance);
         return true;
       }
       return false;
@@ -2574,20 +3096,14 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
     
     private void checkForChangedUnlockedTxs() {
       
-      // get locked txs
-      List<MoneroTxWallet> lockedTxs = getTxs(new MoneroTxQuery().setIsLocked(true).setIsConfirmed(true));
+      // get locked tx hashes
+      Set<String> lockedTxHashes = new HashSet<String>();
+      for (MoneroTxWallet lockedTx : getTxs(new MoneroTxQuery().setIsLocked(true).setIsConfirmed(true))) lockedTxHashes.add(lockedTx.getHash());
       
       // collect hashes of txs no longer locked
       List<String> txHashesNoLongerLocked = new ArrayList<String>();
       for (String prevLockedTxHash : prevLockedTxHashes) {
-        boolean found = false;
-        for (MoneroTxWallet lockedTx : lockedTxs) {
-          if (lockedTx.getHash().equals(prevLockedTxHash)) {
-            found = true;
-            break;
-          }
-        }
-        if (!found) txHashesNoLongerLocked.add(prevLockedTxHash);
+        if (!lockedTxHashes.contains(prevLockedTxHash)) txHashesNoLongerLocked.add(prevLockedTxHash);
       }
       
       // fetch txs that are no longer locked
@@ -2603,16 +3119,231 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
       
       // notify listeners of newly unlocked tx outputs
       for (MoneroTxWallet unlockedTx : txsNoLongerLocked) {
-        for (MoneroOutputWallet output : unlockedTx.getOutputsWallet()) {
-          for (MoneroWalletListenerI listener : getListeners()) {
-            listener.onOutputReceived(output);
+        announceOutputsReceived(unlockedTx.getOutputsWallet());
+      }
+      
+      // replace with currently locked tx hashes
+      prevLockedTxHashes.retainAll(lockedTxHashes);
+      prevLockedTxHashes.addAll(lockedTxHashes);
+    }
+  }
+  
+  /**
+   * Stores the wallet's transfers from `get_transfers` in memory so transfer
+   * queries are answered locally and only the delta is fetched from
+   * monero-wallet-rpc.
+   * 
+   * Confirmed transfers are indexed by key and height.  Each refresh fetches
+   * confirmed transfers from REORG_DEPTH blocks below the last
+   * refreshed height (or the lowest locked transfer if lower) and replaces the
+   * stored transfers from that height, so reorgs within that window and
+   * changes to lock state are picked up.  If a stored transfer disappears or
+   * moves within the window, or the wallet's height decreases, the store is
+   * rebuilt.  Unconfirmed transfers (pool, pending, failed) are replaced on
+   * every refresh.
+   */
+  private class WalletRpcTransferStore {
+    
+    private Map<String, TreeMap<Long, Map<String, Map<String, Object>>>> confirmedRows = new HashMap<String, TreeMap<Long, Map<String, Map<String, Object>>>>(); // type -> height -> key -> rpc transfer
+    private Map<String, Long> heightsByKey = new HashMap<String, Long>();
+    private Map<String, Long> lockedHeightsByKey = new HashMap<String, Long>();
+    private Map<String, List<Map<String, Object>>> unconfirmedRows = new HashMap<String, List<Map<String, Object>>>(); // type -> rpc transfers
+    private Long refreshedHeight; // wallet height at last refresh, null if store is empty
+    
+    /**
+     * Get transfers as a `get_transfers` result after refreshing the store.
+     * 
+     * @param params are the `get_transfers` parameters to filter by
+     * @param includePool specifies if pool and pending transfers can be fetched
+     * @return the stored transfers meeting the parameters
+     */
+    public synchronized Map<String, Object> getTransfers(Map<String, Object> params, boolean includePool) {
+      refresh(includePool);
+      return filter(params);
+    }
+    
+    public synchronized void reset() {
+      confirmedRows.clear();
+      heightsByKey.clear();
+      lockedHeightsByKey.clear();
+      unconfirmedRows.clear();
+      refreshedHeight = null;
+    }
+    
+    public synchronized void setNotes(List<String> txHashes, List<String> notes) {
+      Map<String, String> notesByHash = new HashMap<String, String>();
+      for (int i = 0; i < txHashes.size(); i++) notesByHash.put(txHashes.get(i), notes.get(i));
+      for (TreeMap<Long, Map<String, Map<String, Object>>> rowsByHeight : confirmedRows.values()) {
+        for (Map<String, Map<String, Object>> rows : rowsByHeight.values()) setNotes(rows.values(), notesByHash);
+      }
+      for (List<Map<String, Object>> rows : unconfirmedRows.values()) setNotes(rows, notesByHash);
+    }
+    
+    private void setNotes(Collection<Map<String, Object>> rows, Map<String, String> notesByHash) {
+      for (Map<String, Object> row : rows) {
+        String note = notesByHash.get((String) row.get("txid"));
+        if (note != null) row.put("note", note);
+      }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void refresh(boolean includePool) {
+      
+      // rebuild if wallet height decreased
+      long height = getHeight();
+      if (refreshedHeight != null && height < refreshedHeight) {
+        LOGGER.warning("Wallet height decreased from " + refreshedHeight + " to " + height + ", rebuilding transfer store");
+        reset();
+      }
+      
+      // fetch transfers from refresh height
+      Long fromHeight = getRefreshFromHeight();
+      Map<String, Object> params = new HashMap<String, Object>();
+      params.put("in", true);
+      params.put("out", true);
+      params.put("pool", includePool);
+      params.put("pending", includePool);
+      params.put("failed", true);
+      params.put("all_accounts", true);
+      if (fromHeight != null && fromHeight > 0) {
+        params.put("filter_by_height", true);
+        params.put("min_height", fromHeight - 1); // min_height is exclusive
+      }
+      Map<String, Object> resp = rpc.sendJsonRequest("get_transfers", params);
+      Map<String, Object> result = (Map<String, Object>) resp.get("result");
+      
+      // index fetched confirmed transfers by key
+      Map<String, Map<String, Map<String, Object>>> fetchedRows = new HashMap<String, Map<String, Map<String, Object>>>();
+      for (String type : Arrays.asList("in", "out")) {
+        Map<String, Map<String, Object>> rows = new LinkedHashMap<String, Map<String, Object>>();
+        fetchedRows.put(type, rows);
+        if (!result.containsKey(type)) continue;
+        for (Map<String, Object> row : (List<Map<String, Object>>) result.get(type)) {
+          String key = getKey(type, row);
+          String uniqueKey = key;
+          for (int i = 1; rows.containsKey(uniqueKey); i++) uniqueKey = key + "#" + i;
+          rows.put(uniqueKey, row);
+        }
+      }
+      
+      // rebuild if a stored transfer disappeared or moved within the refresh window
+      if (fromHeight != null) {
+        for (Map.Entry<String, Long> entry : heightsByKey.entrySet()) {
+          if (entry.getValue() < fromHeight) continue;
+          String type = entry.getKey().substring(0, entry.getKey().indexOf(':'));
+          Map<String, Object> row = fetchedRows.get(type).get(entry.getKey());
+          if (row == null || ((BigInteger) row.get("height")).longValue() != entry.getValue()) {
+            LOGGER.warning("Transfer " + entry.getKey() + " changed below height " + refreshedHeight + ", rebuilding transfer store");
+            reset();
+            refresh(includePool);
+            return;
           }
         }
       }
       
-      // re-assign currently locked tx hashes // TODO: needs mutex for thread safety?
-      prevLockedTxHashes.clear();
-      for (MoneroTxWallet lockedTx : lockedTxs) prevLockedTxHashes.add(lockedTx.getHash());
+      // replace confirmed transfers from refresh height
+      for (String type : fetchedRows.keySet()) {
+        TreeMap<Long, Map<String, Map<String, Object>>> rowsByHeight = confirmedRows.get(type);
+        if (rowsByHeight == null) {
+          rowsByHeight = new TreeMap<Long, Map<String, Map<String, Object>>>();
+          confirmedRows.put(type, rowsByHeight);
+        }
+        if (fromHeight != null) {
+          Map<Long, Map<String, Map<String, Object>>> removed = rowsByHeight.tailMap(fromHeight, true);
+          for (Map<String, Map<String, Object>> rows : removed.values()) {
+            for (String key : rows.keySet()) {
+              heightsByKey.remove(key);
+              lockedHeightsByKey.remove(key);
+            }
+          }
+          removed.clear();
+        }
+        for (Map.Entry<String, Map<String, Object>> entry : fetchedRows.get(type).entrySet()) {
+          long rowHeight = ((BigInteger) entry.getValue().get("height")).longValue();
+          Map<String, Map<String, Object>> rows = rowsByHeight.get(rowHeight);
+          if (rows == null) {
+            rows = new LinkedHashMap<String, Map<String, Object>>();
+            rowsByHeight.put(rowHeight, rows);
+          }
+          rows.put(entry.getKey(), entry.getValue());
+          heightsByKey.put(entry.getKey(), rowHeight);
+          if (Boolean.TRUE.equals(entry.getValue().get("locked"))) lockedHeightsByKey.put(entry.getKey(), rowHeight);
+        }
+      }
+      
+      // replace unconfirmed transfers
+      unconfirmedRows.clear();
+      for (String type : Arrays.asList("pending", "failed", "pool")) {
+        if (result.containsKey(type)) unconfirmedRows.put(type, (List<Map<String, Object>>) result.get(type));
+      }
+      refreshedHeight = height;
+    }
+    
+    private Long getRefreshFromHeight() {
+      if (refreshedHeight == null) return null;
+      long fromHeight = Math.max(0, refreshedHeight - REORG_DEPTH);
+      for (long lockedHeight : lockedHeightsByKey.values()) fromHeight = Math.min(fromHeight, lockedHeight);
+      return fromHeight;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> filter(Map<String, Object> params) {
+      
+      // collect subaddress filter
+      Integer accountIdx = Boolean.TRUE.equals(params.get("all_accounts")) ? null : (Integer) params.get("account_index");
+      Set<Integer> subaddressIndices = params.get("subaddr_indices") == null ? null : new HashSet<Integer>((List<Integer>) params.get("subaddr_indices"));
+      
+      // collect height filter, min height is exclusive
+      Long minHeight = null;
+      Long maxHeight = null;
+      if (Boolean.TRUE.equals(params.get("filter_by_height"))) {
+        if (params.get("min_height") != null) minHeight = ((Number) params.get("min_height")).longValue();
+        if (params.get("max_height") != null) maxHeight = ((Number) params.get("max_height")).longValue();
+      }
+      
+      // collect transfers of requested types
+      Map<String, Object> result = new LinkedHashMap<String, Object>();
+      for (String type : Arrays.asList("in", "out", "pending", "failed", "pool")) {
+        if (!Boolean.TRUE.equals(params.get(type))) continue;
+        List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+        if (confirmedRows.containsKey(type)) {
+          NavigableMap<Long, Map<String, Map<String, Object>>> rowsByHeight = confirmedRows.get(type);
+          if (minHeight != null) rowsByHeight = rowsByHeight.tailMap(minHeight, false);
+          if (maxHeight != null) rowsByHeight = rowsByHeight.headMap(maxHeight, true);
+          for (Map.Entry<Long, Map<String, Map<String, Object>>> entry : rowsByHeight.entrySet()) {
+            for (Map<String, Object> row : entry.getValue().values()) {
+              if (!meetsCriteria(row, accountIdx, subaddressIndices)) continue;
+              Map<String, Object> copy = new HashMap<String, Object>(row);
+              copy.put("confirmations", BigInteger.valueOf(Math.max(0, refreshedHeight - entry.getKey())));
+              rows.add(copy);
+            }
+          }
+        } else if (unconfirmedRows.containsKey(type)) {
+          for (Map<String, Object> row : unconfirmedRows.get(type)) {
+            if (meetsCriteria(row, accountIdx, subaddressIndices)) rows.add(new HashMap<String, Object>(row));
+          }
+        }
+        if (!rows.isEmpty()) result.put(type, rows);
+      }
+      return result;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private boolean meetsCriteria(Map<String, Object> row, Integer accountIdx, Set<Integer> subaddressIndices) {
+      if (accountIdx == null) return true;
+      List<Map<String, BigInteger>> rpcIndices = (List<Map<String, BigInteger>>) row.get("subaddr_indices");
+      if (rpcIndices == null || rpcIndices.isEmpty() || rpcIndices.get(0).get("major").intValue() != accountIdx) return false;
+      if (subaddressIndices == null) return true;
+      for (Map<String, BigInteger> rpcIndex : rpcIndices) {
+        if (subaddressIndices.contains(rpcIndex.get("minor").intValue())) return true;
+      }
+      return false;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private String getKey(String type, Map<String, Object> row) {
+      Map<String, BigInteger> rpcIndex = (Map<String, BigInteger>) row.get("subaddr_index");
+      return type + ":" + row.get("txid") + ":" + (rpcIndex == null ? "" : rpcIndex.get("major") + "," + rpcIndex.get("minor")) + ":" + row.get("amount");
     }
   }
   
@@ -3102,17 +3833,20 @@ public class MoneroWalletRpc extends MoneroWalletDefault {
   }
   
   /**
-   * Compares two transactions by their height.
+   * Replace a relayed tx's outgoing amount with the sum of its destinations if
+   * the amount is 0.
+   * 
+   * TODO monero-wallet-rpc: confirmed tx from/to same account has amount 0 but cached transfers
+   * 
+   * @param tx is the tx to update
    */
-  private static class TxHeightComparator implements Comparator<MoneroTx> {
-    @Override
-    public int compare(MoneroTx tx1, MoneroTx tx2) {
-      if (tx1.getHeight() == null && tx2.getHeight() == null) return 0; // both unconfirmed
-      else if (tx1.getHeight() == null) return 1;   // tx1 is unconfirmed
-      else if (tx2.getHeight() == null) return -1;  // tx2 is unconfirmed
-      int diff = tx1.getHeight().compareTo(tx2.getHeight());
-      if (diff != 0) return diff;
-      return tx1.getBlock().getTxs().indexOf(tx1) - tx2.getBlock().getTxs().indexOf(tx2); // txs are in the same block so retain their original order
+  private static void setOutgoingAmountFromDestinations(MoneroTxWallet tx) {
+    if (tx.getOutgoingTransfer() != null && Boolean.TRUE.equals(tx.isRelayed()) && !Boolean.TRUE.equals(tx.isFailed()) &&
+        tx.getOutgoingTransfer().getDestinations() != null && tx.getOutgoingAmount().compareTo(BigInteger.valueOf(0)) == 0) {
+      MoneroOutgoingTransfer outgoingTransfer = tx.getOutgoingTransfer();
+      BigInteger transferTotal = BigInteger.valueOf(0);
+      for (MoneroDestination destination : outgoingTransfer.getDestinations()) transferTotal = transferTotal.add(destination.getAmount());
+      tx.getOutgoingTransfer().setAmount(transferTotal);
     }
   }
   
@@ -0,0 +1,474 @@
+/**
+ * Copyright (c) woodser
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package monero.wallet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import common.utils.GenUtils;
+import monero.common.MoneroError;
+
+/**
+ * Hosts many wallets on a fixed number of monero-wallet-rpc processes.
+ * 
+ * Each monero-wallet-rpc process has at most one wallet open, so wallets are
+ * leased: leasing a wallet which is already open on a process shares that
+ * process, otherwise the wallet is opened on a process without a wallet or on
+ * the least recently used process which is not leased, closing (and saving) the
+ * wallet open there.  Pinned wallets are never closed to make room for another
+ * wallet.  If no process is available, leasing waits until one is released.
+ * 
+ * A background thread periodically checks processes which are not leased and
+ * restarts any which have exited or stopped responding, reopening the wallet
+ * which was open.  A process is also restarted if it has exited when leased.
+ * 
+ * Example:
+ * 
+ * <code>
+ * MoneroWalletRpcProcessPool pool = new MoneroWalletRpcProcessPool(cmds);<br>
+ * pool.start();<br>
+ * try (MoneroWalletRpcProcessPool.Lease lease = pool.lease("wallet1", "abc123")) {<br>
+ * &nbsp;&nbsp; lease.getWallet().getBalance();<br>
+ * }<br>
+ * </code>
+ */
+public class MoneroWalletRpcProcessPool {
+  
+  private static final Logger LOGGER = Logger.getLogger(MoneroWalletRpcProcessPool.class.getName());
+  private static final long DEFAULT_HEALTH_CHECK_PERIOD_MS = 10000;
+  private static final long DEFAULT_LEASE_TIMEOUT_MS = 60000;
+  
+  private List<Slot> slots;
+  private Set<String> pinnedWallets;
+  private long healthCheckPeriodMs;
+  private long useCounter;  // increments on each lease and release to order slots by use
+  private boolean isStarted;
+  private boolean isClosed;
+  private Thread healthCheckThread;
+  
+  /**
+   * Construct a pool which starts one monero-wallet-rpc process per command.
+   * 
+   * @param cmds are the commands to start each process, each with its own port
+   */
+  public MoneroWalletRpcProcessPool(List<List<String>> cmds) {
+    this(cmds, DEFAULT_HEALTH_CHECK_PERIOD_MS);
+  }
+  
+  /**
+   * Construct a pool which starts one monero-wallet-rpc process per command.
+   * 
+   * @param cmds are the commands to start each process, each with its own port
+   * @param healthCheckPeriodMs is the period to check that processes are responsive
+   */
+  public MoneroWalletRpcProcessPool(List<List<String>> cmds, long healthCheckPeriodMs) {
+    GenUtils.assertTrue("Must provide at least one command to start monero-wallet-rpc", cmds != null && !cmds.isEmpty());
+    GenUtils.assertTrue("Health check period must be > 0 ms", healthCheckPeriodMs > 0);
+    this.slots = new ArrayList<Slot>();
+    for (int i = 0; i < cmds.size(); i++) slots.add(new Slot(i, cmds.get(i)));
+    this.pinnedWallets = new HashSet<String>();
+    this.healthCheckPeriodMs = healthCheckPeriodMs;
+  }
+  
+  /**
+   * Start the monero-wallet-rpc processes and periodic health checks.
+   * 
+   * @throws IOException if input/output error starting a process
+   */
+  public synchronized void start() throws IOException {
+    if (isClosed) throw new MoneroError("Wallet rpc process pool is closed");
+    if (isStarted) return;
+    for (Slot slot : slots) {
+      try {
+        slot.wallet = new MoneroWalletRpc(slot.cmd);
+      } catch (IOException | RuntimeException e) {
+        stopProcesses();
+        throw e;
+      }
+    }
+    isStarted = true;
+    healthCheckThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+          try {
+            Thread.sleep(MoneroWalletRpcProcessPool.this.healthCheckPeriodMs);
+          } catch (InterruptedException e) {
+            break;
+          }
+          checkHealth();
+        }
+      }
+    });
+    healthCheckThread.setDaemon(true); // daemon thread does not prevent JVM from halting
+    healthCheckThread.start();
+  }
+  
+  /**
+   * Lease a wallet, waiting up to a default timeout for a process to become available.
+   * 
+   * @param name is the name of the wallet file to open
+   * @param password is the wallet's password
+   * @return the lease which must be released when done
+   */
+  public Lease lease(String name, String password) {
+    return lease(name, password, DEFAULT_LEASE_TIMEOUT_MS);
+  }
+  
+  /**
+   * Lease a wallet, opening it on a process if it is not already open.
+   * 
+   * The wallet may be shared with other leases of the same wallet.  The leased
+   * wallet must not be closed and its process must not be stopped by the caller.
+   * 
+   * @param name is the name of the wallet file to open
+   * @param password is the wallet's password
+   * @param timeoutMs is the maximum time to wait for a process to become available
+   * @return the lease which must be released when done
+   */
+  public Lease lease(String name, String password, long timeoutMs) {
+    GenUtils.assertNotNull("Must provide wallet name to lease", name);
+    GenUtils.assertNotNull("Must provide wallet password to lease", password);
+    
+    // reserve a slot which has the wallet open or on which to open it
+    Slot slot;
+    String prevName;
+    String prevPassword;
+    synchronized (this) {
+      long deadline = System.currentTimeMillis() + timeoutMs;
+      while (true) {
+        assertStarted();
+        slot = getSlot(name);
+        if (slot != null && !slot.isBusy) {
+          if (!password.equals(slot.walletPassword)) throw new MoneroError("Invalid password for wallet " + name);
+          if (slot.numLeases > 0 || slot.wallet.getProcess().isAlive()) {
+            slot.numLeases++;
+            slot.lastUsed = ++useCounter;
+            return new Lease(slot);
+          }
+        } else if (slot == null) {
+          slot = getEvictableSlot();
+        } else {
+          slot = null; // wait for wallet to open
+        }
+        if (slot != null) break;
+        long remainingMs = deadline - System.currentTimeMillis();
+        if (remainingMs <= 0) throw new MoneroError("Timed out waiting for a monero-wallet-rpc process to lease wallet " + name);
+        try {
+          wait(remainingMs);
+        } catch (InterruptedException e) {
+          throw new MoneroError(e);
+        }
+      }
+      prevName = slot.walletName;
+      prevPassword = slot.walletPassword;
+      slot.walletName = name;
+      slot.walletPassword = password;
+      slot.numLeases = 1;
+      slot.isBusy = true;
+    }
+    
+    // open wallet on slot outside of lock
+    try {
+      if (!slot.wallet.getProcess().isAlive()) restart(slot);
+      else if (prevName != null && !prevName.equals(name)) slot.wallet.close(true);
+      if (prevName == null || !prevName.equals(name) || !prevPassword.equals(password) || slot.wallet.getPath() == null) slot.wallet.openWallet(name, password);
+    } catch (Exception e) {
+      synchronized (this) {
+        slot.walletName = null;
+        slot.walletPassword = null;
+        slot.numLeases = 0;
+        slot.isBusy = false;
+        notifyAll();
+      }
+      throw e instanceof MoneroError ? (MoneroError) e : new MoneroError(e);
+    }
+    synchronized (this) {
+      slot.isBusy = false;
+      slot.lastUsed = ++useCounter;
+      notifyAll();
+    }
+    return new Lease(slot);
+  }
+  
+  /**
+   * Pin a wallet so it is not closed to make room for other wallets once open.
+   * 
+   * At least one process must remain available for unpinned wallets.
+   * 
+   * @param name is the name of the wallet to pin
+   */
+  public synchronized void pin(String name) {
+    GenUtils.assertNotNull(name);
+    if (pinnedWallets.contains(name)) return;
+    if (pinnedWallets.size() + 1 >= slots.size()) throw new MoneroError("Cannot pin more than " + (slots.size() - 1) + " wallets with " + slots.size() + " processes");
+    pinnedWallets.add(name);
+  }
+  
+  /**
+   * Unpin a wallet so it can be closed to make room for other wallets.
+   * 
+   * @param name is the name of the wallet to unpin
+   */
+  public synchronized void unpin(String name) {
+    if (pinnedWallets.remove(name)) notifyAll();
+  }
+  
+  /**
+   * Get the names of pinned wallets.
+   * 
+   * @return the names of pinned wallets
+   */
+  public synchronized Set<String> getPinnedWallets() {
+    return new HashSet<String>(pinnedWallets);
+  }
+  
+  /**
+   * Get the names of wallets open on the pool's processes.
+   * 
+   * @return the names of open wallets
+   */
+  public synchronized Set<String> getOpenWallets() {
+    Set<String> names = new HashSet<String>();
+    for (Slot slot : slots) if (slot.walletName != null && !slot.isBusy) names.add(slot.walletName);
+    return names;
+  }
+  
+  /**
+   * Get the number of monero-wallet-rpc processes in the pool.
+   * 
+   * @return the number of processes
+   */
+  public int getNumProcesses() {
+    return slots.size();
+  }
+  
+  /**
+   * Get the number of times processes have been restarted.
+   * 
+   * @return the number of restarts
+   */
+  public synchronized int getNumRestarts() {
+    int numRestarts = 0;
+    for (Slot slot : slots) numRestarts += slot.numRestarts;
+    return numRestarts;
+  }
+  
+  /**
+   * Check processes which are not leased and restart any which are not responsive.
+   */
+  public void checkHealth() {
+    for (Slot slot : slots) {
+      
+      // reserve slot if not in use
+      synchronized (this) {
+        if (!isStarted || slot.isBusy || slot.numLeases > 0) continue;
+        slot.isBusy = true;
+      }
+      
+      // check and restart process outside of lock
+      try {
+        boolean isHealthy = slot.wallet.getProcess().isAlive();
+        if (isHealthy) {
+          try {
+            slot.wallet.getVersion();
+          } catch (Exception e) {
+            isHealthy = false;
+          }
+        }
+        if (!isHealthy) {
+          restart(slot);
+          if (slot.walletName != null) slot.wallet.openWallet(slot.walletName, slot.walletPassword);
+        }
+      } catch (Exception e) {
+        LOGGER.log(Level.WARNING, "Failed to restart monero-wallet-rpc process " + slot.index, e);
+        synchronized (this) {
+          slot.walletName = null;
+          slot.walletPassword = null;
+        }
+      } finally {
+        synchronized (this) {
+          slot.isBusy = false;
+          notifyAll();
+        }
+      }
+    }
+  }
+  
+  /**
+   * Stop health checks, close open wallets with saving, and stop the processes.
+   * 
+   * Waits for processes being opened or checked but does not wait for leases to be released.
+   */
+  public synchronized void close() {
+    if (isClosed) return;
+    isClosed = true;
+    if (healthCheckThread != null) healthCheckThread.interrupt();
+    while (true) {
+      boolean isBusy = false;
+      for (Slot slot : slots) isBusy = isBusy || slot.isBusy;
+      if (!isBusy) break;
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        throw new MoneroError(e);
+      }
+    }
+    for (Slot slot : slots) {
+      if (slot.walletName != null && slot.wallet.getProcess().isAlive()) {
+        try {
+          slot.wallet.close(true);
+        } catch (Exception e) {
+          LOGGER.log(Level.WARNING, "Failed to close wallet " + slot.walletName, e);
+        }
+      }
+      slot.walletName = null;
+      slot.walletPassword = null;
+    }
+    stopProcesses();
+    notifyAll();
+  }
+  
+  // ------------------------------ PRIVATE -----------------------------------
+  
+  private void assertStarted() {
+    if (isClosed) throw new MoneroError("Wallet rpc process pool is closed");
+    if (!isStarted) throw new MoneroError("Wallet rpc process pool is not started");
+  }
+  
+  private Slot getSlot(String name) {
+    for (Slot slot : slots) if (name.equals(slot.walletName)) return slot;
+    return null;
+  }
+  
+  /**
+   * Get a slot without a wallet or the least recently used slot with an
+   * unpinned wallet which is not leased.
+   */
+  private Slot getEvictableSlot() {
+    Slot lruSlot = null;
+    for (Slot slot : slots) {
+      if (slot.isBusy || slot.numLeases > 0) continue;
+      if (slot.walletName == null) return slot;
+      if (pinnedWallets.contains(slot.walletName)) continue;
+      if (lruSlot == null || slot.lastUsed < lruSlot.lastUsed) lruSlot = slot;
+    }
+    return lruSlot;
+  }
+  
+  private synchronized void release(Slot slot) {
+    slot.numLeases--;
+    slot.lastUsed = ++useCounter;
+    notifyAll();
+  }
+  
+  private void restart(Slot slot) throws IOException {
+    LOGGER.warning("Restarting monero-wallet-rpc process " + slot.index);
+    try {
+      slot.wallet.stopProcess();
+    } catch (Exception e) {
+      // process already exited
+    }
+    MoneroWalletRpc wallet = new MoneroWalletRpc(slot.cmd);
+    synchronized (this) {
+      slot.wallet = wallet;
+      slot.numRestarts++;
+    }
+  }
+  
+  private void stopProcesses() {
+    for (Slot slot : slots) {
+      if (slot.wallet == null) continue;
+      try {
+        slot.wallet.stopProcess();
+      } catch (Exception e) {
+        LOGGER.log(Level.WARNING, "Failed to stop monero-wallet-rpc process " + slot.index, e);
+      }
+    }
+  }
+  
+  /**
+   * A monero-wallet-rpc process and the wallet open on it.
+   */
+  private static class Slot {
+    
+    private final int index;
+    private final List<String> cmd;
+    private MoneroWalletRpc wallet;
+    private String walletName;      // name of the open or opening wallet, null if none
+    private String walletPassword;
+    private int numLeases;
+    private long lastUsed;
+    private boolean isBusy;         // opening a wallet or checking health
+    private int numRestarts;
+    
+    public Slot(int index, List<String> cmd) {
+      this.index = index;
+      this.cmd = Collections.unmodifiableList(new ArrayList<String>(cmd));
+    }
+  }
+  
+  /**
+   * Lease of a wallet open on one of the pool's processes.
+   */
+  public class Lease implements AutoCloseable {
+    
+    private final Slot slot;
+    private boolean isReleased;
+    
+    private Lease(Slot slot) {
+      this.slot = slot;
+    }
+    
+    /**
+     * Get the leased wallet.
+     * 
+     * @return the wallet client connected to the process with the wallet open
+     */
+    public MoneroWalletRpc getWallet() {
+      if (isReleased) throw new MoneroError("Lease is released");
+      return slot.wallet;
+    }
+    
+    /**
+     * Release the lease so its process can be used for other wallets.
+     */
+    public synchronized void release() {
+      if (isReleased) return;
+      isReleased = true;
+      MoneroWalletRpcProcessPool.this.release(slot);
+    }
+    
+    @Override
+    public void close() {
+      release();
+    }
+  }
+}
@@ -0,0 +1,351 @@
+/**
+ * Copyright (c) woodser
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package monero.wallet;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import common.utils.GenUtils;
+import monero.common.MoneroError;
+import monero.daemon.MoneroDaemon;
+import monero.daemon.model.MoneroBlockHeader;
+import monero.daemon.model.MoneroDaemonListener;
+import monero.wallet.model.MoneroSyncMetrics;
+import monero.wallet.model.MoneroSyncResult;
+
+/**
+ * Syncs many wallets connected to the same daemon with a limit on concurrent syncs.
+ * 
+ * Instead of each wallet syncing on its own timer, the scheduler listens for
+ * new blocks from one daemon (or is notified of the daemon's height directly)
+ * and syncs wallets which are behind, at most a given number at a time.
+ * Wallets waiting to sync are ordered by activity, then by the number of blocks
+ * they are behind, then by the time since their last sync.  A wallet is active
+ * if it received funds on a recent sync or was marked active by the caller.
+ * 
+ * Scheduled wallets should not also sync themselves with startSyncing().
+ */
+public class MoneroWalletSyncScheduler {
+  
+  private static final Logger LOGGER = Logger.getLogger(MoneroWalletSyncScheduler.class.getName());
+  private static final long DEFAULT_ACTIVE_PERIOD_MS = 600000; // wallets are prioritized for 10 minutes after activity
+  
+  private MoneroDaemon daemon;
+  private MoneroDaemonListener daemonListener;
+  private int maxConcurrentSyncs;
+  private long activePeriodMs;
+  private Map<MoneroWallet, Entry> entries;
+  private Long targetHeight;
+  private int numSyncing;
+  private boolean isRunning;
+  private ExecutorService pool;
+  
+  /**
+   * Construct a scheduler which must be notified of the daemon's height with notifyHeight().
+   * 
+   * @param maxConcurrentSyncs is the maximum number of wallets to sync at once
+   */
+  public MoneroWalletSyncScheduler(int maxConcurrentSyncs) {
+    this(null, maxConcurrentSyncs, DEFAULT_ACTIVE_PERIOD_MS);
+  }
+  
+  /**
+   * Construct a scheduler which listens to the daemon for new blocks.
+   * 
+   * @param daemon is the daemon the wallets are connected to
+   * @param maxConcurrentSyncs is the maximum number of wallets to sync at once
+   */
+  public MoneroWalletSyncScheduler(MoneroDaemon daemon, int maxConcurrentSyncs) {
+    this(daemon, maxConcurrentSyncs, DEFAULT_ACTIVE_PERIOD_MS);
+  }
+  
+  /**
+   * Construct a scheduler.
+   * 
+   * @param daemon is the daemon to listen to for new blocks (optional, otherwise use notifyHeight())
+   * @param maxConcurrentSyncs is the maximum number of wallets to sync at once
+   * @param activePeriodMs is the period after activity during which a wallet is prioritized
+   */
+  public MoneroWalletSyncScheduler(MoneroDaemon daemon, int maxConcurrentSyncs, long activePeriodMs) {
+    GenUtils.assertTrue("Max concurrent syncs must be > 0", maxConcurrentSyncs > 0);
+    GenUtils.assertTrue("Active period must be >= 0 ms", activePeriodMs >= 0);
+    this.daemon = daemon;
+    this.maxConcurrentSyncs = maxConcurrentSyncs;
+    this.activePeriodMs = activePeriodMs;
+    this.entries = new IdentityHashMap<MoneroWallet, Entry>();
+  }
+  
+  /**
+   * Start syncing wallets which are behind the daemon.
+   */
+  public synchronized void start() {
+    if (isRunning) return;
+    isRunning = true;
+    pool = Executors.newFixedThreadPool(maxConcurrentSyncs, new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "MoneroWalletSyncScheduler");
+        thread.setDaemon(true); // daemon thread does not prevent JVM from halting
+        return thread;
+      }
+    });
+    if (daemon != null) {
+      daemonListener = new MoneroDaemonListener() {
+        @Override
+        public void onBlockHeader(MoneroBlockHeader header) {
+          super.onBlockHeader(header);
+          notifyHeight(header.getHeight() + 1);
+        }
+      };
+      daemon.addListener(daemonListener);
+      if (targetHeight == null) notifyHeight(daemon.getHeight());
+    }
+    schedule();
+  }
+  
+  /**
+   * Stop scheduling syncs and wait for syncs in progress to complete.
+   */
+  public void stop() {
+    ExecutorService pool;
+    synchronized (this) {
+      if (!isRunning) return;
+      isRunning = false;
+      if (daemonListener != null) {
+        daemon.removeListener(daemonListener);
+        daemonListener = null;
+      }
+      pool = this.pool;
+      this.pool = null;
+    }
+    pool.shutdown();
+    try {
+      while (!pool.awaitTermination(1, TimeUnit.SECONDS)) { }
+    } catch (InterruptedException e) {
+      throw new MoneroError(e);
+    }
+  }
+  
+  /**
+   * Add a wallet to sync.  The wallet is synced as soon as possible.
+   * 
+   * @param wallet is the wallet to sync
+   */
+  public synchronized void addWallet(MoneroWallet wallet) {
+    GenUtils.assertNotNull(wallet);
+    if (entries.containsKey(wallet)) return;
+    Entry entry = new Entry(wallet, System.currentTimeMillis());
+    entry.metrics.setTargetHeight(targetHeight);
+    entries.put(wallet, entry);
+    schedule();
+  }
+  
+  /**
+   * Remove a wallet from syncing.  A sync in progress is not interrupted.
+   * 
+   * @param wallet is the wallet to remove
+   */
+  public synchronized void removeWallet(MoneroWallet wallet) {
+    entries.remove(wallet);
+  }
+  
+  /**
+   * Get the scheduled wallets.
+   * 
+   * @return the scheduled wallets
+   */
+  public synchronized List<MoneroWallet> getWallets() {
+    return new ArrayList<MoneroWallet>(entries.keySet());
+  }
+  
+  /**
+   * Notify the scheduler of the daemon's height, scheduling syncs of wallets which are behind.
+   * 
+   * @param height is the daemon's height (number of blocks)
+   */
+  public synchronized void notifyHeight(long height) {
+    if (targetHeight != null && height <= targetHeight) return;
+    targetHeight = height;
+    for (Entry entry : entries.values()) {
+      entry.metrics.setTargetHeight(height);
+      if (entry.metrics.getHeight() == null || entry.metrics.getHeight() < height) entry.isDue = true;
+    }
+    schedule();
+  }
+  
+  /**
+   * Mark a wallet active so it is prioritized, and sync it as soon as possible.
+   * 
+   * @param wallet is the wallet to mark active
+   */
+  public synchronized void markActive(MoneroWallet wallet) {
+    Entry entry = getEntry(wallet);
+    entry.lastActiveTime = System.currentTimeMillis();
+    entry.isDue = true;
+    schedule();
+  }
+  
+  /**
+   * Request a sync of a wallet even if it is not behind the daemon.
+   * 
+   * @param wallet is the wallet to sync
+   */
+  public synchronized void requestSync(MoneroWallet wallet) {
+    getEntry(wallet).isDue = true;
+    schedule();
+  }
+  
+  /**
+   * Get sync metrics of a scheduled wallet.
+   * 
+   * @param wallet is the wallet to get metrics of
+   * @return the wallet's sync metrics
+   */
+  public synchronized MoneroSyncMetrics getMetrics(MoneroWallet wallet) {
+    return getEntry(wallet).metrics.copy();
+  }
+  
+  /**
+   * Get the number of wallets waiting to sync.
+   * 
+   * @return the number of wallets waiting to sync
+   */
+  public synchronized int getNumPending() {
+    int numPending = 0;
+    for (Entry entry : entries.values()) if (entry.isDue && !entry.metrics.isSyncing()) numPending++;
+    return numPending;
+  }
+  
+  /**
+   * Get the number of wallets syncing.
+   * 
+   * @return the number of wallets syncing
+   */
+  public synchronized int getNumSyncing() {
+    return numSyncing;
+  }
+  
+  // ------------------------------ PRIVATE -----------------------------------
+  
+  private Entry getEntry(MoneroWallet wallet) {
+    Entry entry = entries.get(wallet);
+    if (entry == null) throw new MoneroError("Wallet is not scheduled");
+    return entry;
+  }
+  
+  /**
+   * Submit syncs of the highest priority due wallets up to the concurrency limit.
+   */
+  private void schedule() {
+    if (!isRunning || numSyncing >= maxConcurrentSyncs) return;
+    List<Entry> dueEntries = new ArrayList<Entry>();
+    for (Entry entry : entries.values()) if (entry.isDue && !entry.metrics.isSyncing()) dueEntries.add(entry);
+    if (dueEntries.isEmpty()) return;
+    final long now = System.currentTimeMillis();
+    dueEntries.sort(new Comparator<Entry>() {
+      @Override
+      public int compare(Entry e1, Entry e2) {
+        boolean isActive1 = e1.lastActiveTime != null && now - e1.lastActiveTime <= activePeriodMs;
+        boolean isActive2 = e2.lastActiveTime != null && now - e2.lastActiveTime <= activePeriodMs;
+        if (isActive1 != isActive2) return isActive1 ? -1 : 1;
+        long lag1 = e1.metrics.getHeight() == null ? Long.MAX_VALUE : e1.metrics.getLag() == null ? 0 : e1.metrics.getLag();
+        long lag2 = e2.metrics.getHeight() == null ? Long.MAX_VALUE : e2.metrics.getLag() == null ? 0 : e2.metrics.getLag();
+        if (lag1 != lag2) return lag1 > lag2 ? -1 : 1;
+        return Long.compare(e1.getStaleSince(), e2.getStaleSince());
+      }
+    });
+    for (int i = 0; i < dueEntries.size() && numSyncing < maxConcurrentSyncs; i++) {
+      final Entry entry = dueEntries.get(i);
+      entry.isDue = false;
+      entry.metrics.setIsSyncing(true);
+      numSyncing++;
+      pool.submit(new Runnable() {
+        @Override
+        public void run() {
+          sync(entry);
+        }
+      });
+    }
+  }
+  
+  private void sync(Entry entry) {
+    long start = System.currentTimeMillis();
+    MoneroSyncResult result = null;
+    Long height = null;
+    try {
+      result = entry.wallet.sync();
+      height = entry.wallet.getHeight();
+    } catch (Exception e) {
+      LOGGER.log(Level.WARNING, "Failed to sync wallet " + entry.wallet.getPath(), e);
+    }
+    synchronized (this) {
+      long end = System.currentTimeMillis();
+      numSyncing--;
+      entry.metrics.setIsSyncing(false);
+      if (height == null) {
+        entry.metrics.setNumFailures(entry.metrics.getNumFailures() + 1); // retried on next block or request
+      } else {
+        entry.metrics.setHeight(height);
+        entry.metrics.setLastSyncTime(end);
+        entry.metrics.setLastSyncDurationMs(end - start);
+        entry.metrics.setNumSyncs(entry.metrics.getNumSyncs() + 1);
+        if (Boolean.TRUE.equals(result.getReceivedMoney())) entry.lastActiveTime = end;
+        if (targetHeight != null && height < targetHeight) entry.isDue = true; // new blocks arrived while syncing
+      }
+      schedule();
+    }
+  }
+  
+  /**
+   * Scheduling state of a wallet.
+   */
+  private static class Entry {
+    
+    private final MoneroWallet wallet;
+    private final long addedTime;
+    private final MoneroSyncMetrics metrics;
+    private boolean isDue;
+    private Long lastActiveTime;
+    
+    public Entry(MoneroWallet wallet, long addedTime) {
+      this.wallet = wallet;
+      this.addedTime = addedTime;
+      this.metrics = new MoneroSyncMetrics().setNumSyncs(0).setNumFailures(0).setIsSyncing(false);
+      this.isDue = true;
+    }
+    
+    private long getStaleSince() {
+      return metrics.getLastSyncTime() == null ? addedTime : metrics.getLastSyncTime();
+    }
+  }
+}
@@ -0,0 +1,173 @@
+/**
+ * Copyright (c) woodser
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package monero.wallet;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import monero.common.MoneroError;
+import monero.common.MoneroRpcConnection;
+
+/**
+ * Fields of a zmq notification from monero-wallet-rpc which are used by the
+ * wallet's listener.
+ * 
+ * Notifications have the form "topic:json" and are parsed in a single
+ * streaming pass, skipping fields which are not used (e.g. a tx's inputs and
+ * outputs).
+ */
+public class MoneroZmqNotification {
+  
+  private static final Logger LOGGER = Logger.getLogger(MoneroZmqNotification.class.getName());
+  
+  public static final String TOPIC_CHAIN_MAIN = "json-minimal-chain_main";
+  public static final String TOPIC_MONEY_RECEIVED = "json-full-money_received";
+  public static final String TOPIC_MONEY_SPENT = "json-full-money_spent";
+  public static final String TOPIC_UNCONFIRMED_MONEY_RECEIVED = "json-full-unconfirmed_money_received";
+  
+  private String topic;
+  private Long firstHeight;       // json-minimal-chain_main
+  private String txHash;          // json-full-*money*
+  private BigInteger amount;
+  private Integer accountIndex;
+  private Integer subaddressIndex;
+  private Long height;
+  private Integer version;
+  private Long unlockTime;
+  
+  private MoneroZmqNotification() {
+    // created by parsing
+  }
+  
+  /**
+   * Parse a zmq notification.
+   * 
+   * @param content is the notification's content of the form "topic:json"
+   * @return the parsed notification or null if the body is empty
+   */
+  public static MoneroZmqNotification parse(String content) {
+    int bodyIdx = content.indexOf(":");
+    if (bodyIdx < 0) throw new MoneroError("Invalid zmq notification: " + content);
+    MoneroZmqNotification notification = new MoneroZmqNotification();
+    notification.topic = content.substring(0, bodyIdx);
+    if (bodyIdx == content.length() - 1) {
+      LOGGER.warning("Empty body to parse zmq notification with topic: " + notification.topic);
+      return null;
+    }
+    try {
+      JsonParser parser = MoneroRpcConnection.MAPPER.getFactory().createParser(content.substring(bodyIdx + 1));
+      try {
+        if (parser.nextToken() != JsonToken.START_OBJECT) throw new MoneroError("Invalid zmq notification: " + content);
+        String field;
+        while ((field = parser.nextFieldName()) != null) {
+          parser.nextToken();
+          if (field.equals("first_height")) notification.firstHeight = parser.getLongValue();
+          else if (field.equals("txid")) notification.txHash = parser.getText();
+          else if (field.equals("amount")) notification.amount = parser.getBigIntegerValue();
+          else if (field.equals("subaddr_index_major")) notification.accountIndex = parser.getIntValue(); // TODO: deserialize as {major: 0, minor: 0}
+          else if (field.equals("subaddr_index_minor")) notification.subaddressIndex = parser.getIntValue();
+          else if (field.equals("height")) notification.height = parser.getLongValue();
+          else if (field.equals("tx") || field.equals("tx_in")) {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+              parser.skipChildren();
+              continue;
+            }
+            String txField;
+            while ((txField = parser.nextFieldName()) != null) {
+              parser.nextToken();
+              if (txField.equals("version")) notification.version = parser.getIntValue();
+              else if (txField.equals("unlock_time")) notification.unlockTime = parser.getBigIntegerValue().longValue();
+              else parser.skipChildren();
+            }
+          }
+          else parser.skipChildren();
+        }
+      } finally {
+        parser.close();
+      }
+    } catch (IOException e) {
+      throw new MoneroError(e);
+    }
+    if (notification.topic.equals(TOPIC_CHAIN_MAIN) && notification.firstHeight == null) throw new MoneroError("Invalid zmq notification, missing first_height: " + content);
+    return notification;
+  }
+  
+  public String getTopic() {
+    return topic;
+  }
+  
+  /**
+   * Get the height of the first new block of a chain_main notification.
+   * 
+   * @return the height of the first new block
+   */
+  public Long getFirstHeight() {
+    return firstHeight;
+  }
+  
+  public String getTxHash() {
+    return txHash;
+  }
+  
+  public BigInteger getAmount() {
+    return amount;
+  }
+  
+  public Integer getAccountIndex() {
+    return accountIndex;
+  }
+  
+  public Integer getSubaddressIndex() {
+    return subaddressIndex;
+  }
+  
+  /**
+   * Get the height of the block the notification's tx is confirmed in.
+   * 
+   * @return the height of the tx's block, null or 0 if the tx is unconfirmed
+   */
+  public Long getHeight() {
+    return height;
+  }
+  
+  /**
+   * Indicates if the notification's tx is confirmed.
+   * 
+   * @return true if the tx has a block height, false otherwise
+   */
+  public boolean isConfirmed() {
+    return height != null && height > 0;
+  }
+  
+  public Integer getVersion() {
+    return version;
+  }
+  
+  public Long getUnlockTime() {
+    return unlockTime;
+  }
+}
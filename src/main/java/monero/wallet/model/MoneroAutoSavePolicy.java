@@ -0,0 +1,79 @@
+package monero.wallet.model;
+
+/**
+ * Configures saving a wallet in the background after it changes.
+ * 
+ * Changes are coalesced into one save: the wallet is saved once it has not
+ * changed for the minimum interval, or once it has had unsaved changes for the
+ * maximum dirty time if it keeps changing.  Saves are at least the minimum
+ * interval apart.
+ */
+public class MoneroAutoSavePolicy {
+  
+  public static final long DEFAULT_MIN_INTERVAL_MS = 1000;
+  public static final long DEFAULT_MAX_DIRTY_MS = 30000;
+
+  private long minIntervalMs;
+  private long maxDirtyMs;
+  private boolean saveOnClose;
+  
+  public MoneroAutoSavePolicy() {
+    this.minIntervalMs = DEFAULT_MIN_INTERVAL_MS;
+    this.maxDirtyMs = DEFAULT_MAX_DIRTY_MS;
+    this.saveOnClose = true;
+  }
+  
+  public MoneroAutoSavePolicy(MoneroAutoSavePolicy policy) {
+    this.minIntervalMs = policy.minIntervalMs;
+    this.maxDirtyMs = policy.maxDirtyMs;
+    this.saveOnClose = policy.saveOnClose;
+  }
+  
+  public MoneroAutoSavePolicy copy() {
+    return new MoneroAutoSavePolicy(this);
+  }
+  
+  /**
+   * Get the time to wait for further changes before saving, which is also the
+   * minimum time between saves.
+   * 
+   * @return the minimum interval in milliseconds
+   */
+  public long getMinIntervalMs() {
+    return minIntervalMs;
+  }
+  
+  public MoneroAutoSavePolicy setMinIntervalMs(long minIntervalMs) {
+    this.minIntervalMs = minIntervalMs;
+    return this;
+  }
+  
+  /**
+   * Get the maximum time the wallet has unsaved changes before saving, even
+   * if it keeps changing.
+   * 
+   * @return the maximum dirty time in milliseconds
+   */
+  public long getMaxDirtyMs() {
+    return maxDirtyMs;
+  }
+  
+  public MoneroAutoSavePolicy setMaxDirtyMs(long maxDirtyMs) {
+    this.maxDirtyMs = maxDirtyMs;
+    return this;
+  }
+  
+  /**
+   * Indicates if a wallet with unsaved changes is saved when closed without saving.
+   * 
+   * @return true if unsaved changes are saved on close, false otherwise
+   */
+  public boolean getSaveOnClose() {
+    return saveOnClose;
+  }
+  
+  public MoneroAutoSavePolicy setSaveOnClose(boolean saveOnClose) {
+    this.saveOnClose = saveOnClose;
+    return this;
+  }
+}
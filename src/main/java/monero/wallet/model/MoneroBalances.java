@@ -0,0 +1,41 @@
+package monero.wallet.model;
+
+import java.math.BigInteger;
+
+/**
+ * A wallet's balance and unlocked balance at the same point in time.
+ */
+public class MoneroBalances {
+
+  private BigInteger balance;
+  private BigInteger unlockedBalance;
+  
+  public MoneroBalances() {
+    this(null, null);
+  }
+  
+  public MoneroBalances(BigInteger balance, BigInteger unlockedBalance) {
+    this.balance = balance;
+    this.unlockedBalance = unlockedBalance;
+  }
+  
+  public BigInteger getBalance() {
+    return balance;
+  }
+  
+  public void setBalance(BigInteger balance) {
+    this.balance = balance;
+  }
+  
+  public BigInteger getUnlockedBalance() {
+    return unlockedBalance;
+  }
+  
+  public void setUnlockedBalance(BigInteger unlockedBalance) {
+    this.unlockedBalance = unlockedBalance;
+  }
+  
+  public MoneroBalances copy() {
+    return new MoneroBalances(balance, unlockedBalance);
+  }
+}
@@ -0,0 +1,23 @@
+package monero.wallet.model;
+
+/**
+ * Enumerates actions taken when a wallet notification is queued for
+ * asynchronous delivery and the queue is full.
+ */
+public enum MoneroListenerOverflowPolicy {
+  
+  /**
+   * Block the notifying thread until the queue has room.
+   */
+  BLOCK,
+  
+  /**
+   * Discard the oldest queued notification to make room.
+   */
+  DROP_OLDEST,
+  
+  /**
+   * Discard the new notification.
+   */
+  DROP_NEWEST;
+}
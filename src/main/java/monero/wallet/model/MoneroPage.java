@@ -0,0 +1,50 @@
+package monero.wallet.model;
+
+import java.util.List;
+
+/**
+ * A page of query results and a cursor to get the next page.
+ * 
+ * @param <T> is the type of results
+ */
+public class MoneroPage<T> {
+
+  private List<T> items;
+  private String nextCursor;
+  
+  public MoneroPage() {
+    this(null, null);
+  }
+  
+  public MoneroPage(List<T> items, String nextCursor) {
+    this.items = items;
+    this.nextCursor = nextCursor;
+  }
+  
+  public List<T> getItems() {
+    return items;
+  }
+  
+  public MoneroPage<T> setItems(List<T> items) {
+    this.items = items;
+    return this;
+  }
+  
+  /**
+   * Get the cursor to get the page after this page.
+   * 
+   * @return the cursor of the next page or null if this is the last page
+   */
+  public String getNextCursor() {
+    return nextCursor;
+  }
+  
+  public MoneroPage<T> setNextCursor(String nextCursor) {
+    this.nextCursor = nextCursor;
+    return this;
+  }
+  
+  public boolean hasNext() {
+    return nextCursor != null;
+  }
+}
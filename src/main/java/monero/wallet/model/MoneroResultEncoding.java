@@ -0,0 +1,17 @@
+package monero.wallet.model;
+
+/**
+ * Enumerates encodings of query results returned from the native wallet.
+ */
+public enum MoneroResultEncoding {
+  
+  /**
+   * JSON string.
+   */
+  JSON,
+  
+  /**
+   * Compact, length-prefixed binary (see MoneroBlocksBinaryCodec).
+   */
+  BINARY;
+}
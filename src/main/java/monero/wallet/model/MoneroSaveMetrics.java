@@ -0,0 +1,137 @@
+package monero.wallet.model;
+
+/**
+ * Save metrics of a wallet, including saves by its auto-save policy.
+ */
+public class MoneroSaveMetrics {
+
+  private long numSaves;
+  private long numFailures;
+  private long numChangesSaved;
+  private Long lastSaveTime;
+  private Long lastSaveLatencyMs;
+  private long maxSaveLatencyMs;
+  private long totalSaveLatencyMs;
+  private Boolean isDirty;
+  
+  public MoneroSaveMetrics() {
+    // nothing to construct
+  }
+  
+  public MoneroSaveMetrics(MoneroSaveMetrics metrics) {
+    this.numSaves = metrics.numSaves;
+    this.numFailures = metrics.numFailures;
+    this.numChangesSaved = metrics.numChangesSaved;
+    this.lastSaveTime = metrics.lastSaveTime;
+    this.lastSaveLatencyMs = metrics.lastSaveLatencyMs;
+    this.maxSaveLatencyMs = metrics.maxSaveLatencyMs;
+    this.totalSaveLatencyMs = metrics.totalSaveLatencyMs;
+    this.isDirty = metrics.isDirty;
+  }
+  
+  public MoneroSaveMetrics copy() {
+    return new MoneroSaveMetrics(this);
+  }
+  
+  public long getNumSaves() {
+    return numSaves;
+  }
+  
+  public MoneroSaveMetrics setNumSaves(long numSaves) {
+    this.numSaves = numSaves;
+    return this;
+  }
+  
+  /**
+   * Get the number of background saves which failed.
+   * 
+   * @return the number of failed background saves
+   */
+  public long getNumFailures() {
+    return numFailures;
+  }
+  
+  public MoneroSaveMetrics setNumFailures(long numFailures) {
+    this.numFailures = numFailures;
+    return this;
+  }
+  
+  /**
+   * Get the number of wallet changes persisted by saves, so the number of
+   * changes coalesced per save is numChangesSaved / numSaves.
+   * 
+   * @return the number of changes saved
+   */
+  public long getNumChangesSaved() {
+    return numChangesSaved;
+  }
+  
+  public MoneroSaveMetrics setNumChangesSaved(long numChangesSaved) {
+    this.numChangesSaved = numChangesSaved;
+    return this;
+  }
+  
+  /**
+   * Get the time the last save completed.
+   * 
+   * @return the completion time in milliseconds since the epoch, null if not yet saved
+   */
+  public Long getLastSaveTime() {
+    return lastSaveTime;
+  }
+  
+  public MoneroSaveMetrics setLastSaveTime(Long lastSaveTime) {
+    this.lastSaveTime = lastSaveTime;
+    return this;
+  }
+  
+  public Long getLastSaveLatencyMs() {
+    return lastSaveLatencyMs;
+  }
+  
+  public MoneroSaveMetrics setLastSaveLatencyMs(Long lastSaveLatencyMs) {
+    this.lastSaveLatencyMs = lastSaveLatencyMs;
+    return this;
+  }
+  
+  public long getMaxSaveLatencyMs() {
+    return maxSaveLatencyMs;
+  }
+  
+  public MoneroSaveMetrics setMaxSaveLatencyMs(long maxSaveLatencyMs) {
+    this.maxSaveLatencyMs = maxSaveLatencyMs;
+    return this;
+  }
+  
+  public long getTotalSaveLatencyMs() {
+    return totalSaveLatencyMs;
+  }
+  
+  public MoneroSaveMetrics setTotalSaveLatencyMs(long totalSaveLatencyMs) {
+    this.totalSaveLatencyMs = totalSaveLatencyMs;
+    return this;
+  }
+  
+  /**
+   * Get the average latency of saves.
+   * 
+   * @return the average latency in milliseconds, null if not yet saved
+   */
+  public Long getAverageSaveLatencyMs() {
+    return numSaves == 0 ? null : totalSaveLatencyMs / numSaves;
+  }
+  
+  /**
+   * Indicates if the wallet has changes which are not saved.
+   * 
+   * @return true if the wallet has unsaved changes, false otherwise
+   */
+  public Boolean isDirty() {
+    return isDirty;
+  }
+  
+  public MoneroSaveMetrics setIsDirty(Boolean isDirty) {
+    this.isDirty = isDirty;
+    return this;
+  }
+}
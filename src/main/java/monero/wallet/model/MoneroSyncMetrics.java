@@ -0,0 +1,121 @@
+package monero.wallet.model;
+
+/**
+ * Sync metrics of a wallet synced by a MoneroWalletSyncScheduler.
+ */
+public class MoneroSyncMetrics {
+
+  private Long height;
+  private Long targetHeight;
+  private Long lastSyncTime;
+  private Long lastSyncDurationMs;
+  private long numSyncs;
+  private long numFailures;
+  private Boolean isSyncing;
+  
+  public MoneroSyncMetrics() {
+    // nothing to construct
+  }
+  
+  public MoneroSyncMetrics(MoneroSyncMetrics metrics) {
+    this.height = metrics.height;
+    this.targetHeight = metrics.targetHeight;
+    this.lastSyncTime = metrics.lastSyncTime;
+    this.lastSyncDurationMs = metrics.lastSyncDurationMs;
+    this.numSyncs = metrics.numSyncs;
+    this.numFailures = metrics.numFailures;
+    this.isSyncing = metrics.isSyncing;
+  }
+  
+  public MoneroSyncMetrics copy() {
+    return new MoneroSyncMetrics(this);
+  }
+  
+  /**
+   * Get the wallet's height after its last sync.
+   * 
+   * @return the wallet's height, null if not yet synced
+   */
+  public Long getHeight() {
+    return height;
+  }
+  
+  public MoneroSyncMetrics setHeight(Long height) {
+    this.height = height;
+    return this;
+  }
+  
+  /**
+   * Get the daemon's height last notified to the scheduler.
+   * 
+   * @return the daemon's height, null if not yet known
+   */
+  public Long getTargetHeight() {
+    return targetHeight;
+  }
+  
+  public MoneroSyncMetrics setTargetHeight(Long targetHeight) {
+    this.targetHeight = targetHeight;
+    return this;
+  }
+  
+  /**
+   * Get the number of blocks the wallet is behind the daemon.
+   * 
+   * @return the number of blocks behind, null if the wallet or daemon height is not yet known
+   */
+  public Long getLag() {
+    if (height == null || targetHeight == null) return null;
+    return Math.max(0, targetHeight - height);
+  }
+  
+  /**
+   * Get the time the wallet's last successful sync completed.
+   * 
+   * @return the completion time in milliseconds since the epoch, null if not yet synced
+   */
+  public Long getLastSyncTime() {
+    return lastSyncTime;
+  }
+  
+  public MoneroSyncMetrics setLastSyncTime(Long lastSyncTime) {
+    this.lastSyncTime = lastSyncTime;
+    return this;
+  }
+  
+  public Long getLastSyncDurationMs() {
+    return lastSyncDurationMs;
+  }
+  
+  public MoneroSyncMetrics setLastSyncDurationMs(Long lastSyncDurationMs) {
+    this.lastSyncDurationMs = lastSyncDurationMs;
+    return this;
+  }
+  
+  public long getNumSyncs() {
+    return numSyncs;
+  }
+  
+  public MoneroSyncMetrics setNumSyncs(long numSyncs) {
+    this.numSyncs = numSyncs;
+    return this;
+  }
+  
+  public long getNumFailures() {
+    return numFailures;
+  }
+  
+  public MoneroSyncMetrics setNumFailures(long numFailures) {
+    this.numFailures = numFailures;
+    return this;
+  }
+  
+  public Boolean isSyncing() {
+    return isSyncing;
+  }
+  
+  public MoneroSyncMetrics setIsSyncing(Boolean isSyncing) {
+    this.isSyncing = isSyncing;
+    return this;
+  }
+}
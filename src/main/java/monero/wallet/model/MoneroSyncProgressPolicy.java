@@ -0,0 +1,75 @@
+package monero.wallet.model;
+
+/**
+ * Configures how often a wallet reports sync progress to its listeners.
+ * 
+ * Progress is reported once it passes every threshold since the last
+ * reported progress: at least the minimum interval, the minimum percent delta,
+ * and the block stride.  The first and final progress of each sync are always
+ * reported.  The default policy reports all progress.
+ */
+public class MoneroSyncProgressPolicy {
+  
+  private long minIntervalMs;
+  private double minPercentDelta;
+  private long blockStride;
+  
+  public MoneroSyncProgressPolicy() {
+    this.minIntervalMs = 0;
+    this.minPercentDelta = 0;
+    this.blockStride = 1;
+  }
+  
+  public MoneroSyncProgressPolicy(MoneroSyncProgressPolicy policy) {
+    this.minIntervalMs = policy.minIntervalMs;
+    this.minPercentDelta = policy.minPercentDelta;
+    this.blockStride = policy.blockStride;
+  }
+  
+  public MoneroSyncProgressPolicy copy() {
+    return new MoneroSyncProgressPolicy(this);
+  }
+  
+  /**
+   * Get the minimum time between reported progress.
+   * 
+   * @return the minimum interval in milliseconds
+   */
+  public long getMinIntervalMs() {
+    return minIntervalMs;
+  }
+  
+  public MoneroSyncProgressPolicy setMinIntervalMs(long minIntervalMs) {
+    this.minIntervalMs = minIntervalMs;
+    return this;
+  }
+  
+  /**
+   * Get the minimum change in percent done between reported progress, as a
+   * fraction of the sync between 0 and 1 like percentDone.
+   * 
+   * @return the minimum percent delta
+   */
+  public double getMinPercentDelta() {
+    return minPercentDelta;
+  }
+  
+  public MoneroSyncProgressPolicy setMinPercentDelta(double minPercentDelta) {
+    this.minPercentDelta = minPercentDelta;
+    return this;
+  }
+  
+  /**
+   * Get the minimum number of blocks synced between reported progress.
+   * 
+   * @return the block stride
+   */
+  public long getBlockStride() {
+    return blockStride;
+  }
+  
+  public MoneroSyncProgressPolicy setBlockStride(long blockStride) {
+    this.blockStride = blockStride;
+    return this;
+  }
+}
@@ -0,0 +1,20 @@
+package monero.wallet.model;
+
+import java.util.List;
+
+/**
+ * Wallet listener which receives outputs in batches.
+ * 
+ * Received outputs are announced to onOutputsReceived() instead of
+ * onOutputReceived().  Outputs received consecutively while notifications are
+ * queued for asynchronous delivery are announced in one batch.
+ */
+public interface MoneroWalletBatchListenerI extends MoneroWalletListenerI {
+  
+  /**
+   * Invoked with received outputs in the order they are received.
+   * 
+   * @param outputs - the received outputs
+   */
+  public void onOutputsReceived(List<MoneroOutputWallet> outputs);
+}
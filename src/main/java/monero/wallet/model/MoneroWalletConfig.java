@@ -22,6 +22,8 @@ public class MoneroWalletConfig {
   private Long restoreHeight;
   private String language;
   private Boolean saveCurrent;
+  private byte[] keysData;
+  private byte[] cacheData;
   
   public String getPath() {
     return path;
@@ -163,4 +165,34 @@ public class MoneroWalletConfig {
     this.saveCurrent = saveCurrent;
     return this;
   }
-}
\ No newline at end of file
+  
+  /**
+   * Get the contents of the wallet's keys file to open the wallet from memory
+   * instead of a path.
+   * 
+   * @return the wallet's keys file data
+   */
+  public byte[] getKeysData() {
+    return keysData;
+  }
+  
+  public MoneroWalletConfig setKeysData(byte[] keysData) {
+    this.keysData = keysData;
+    return this;
+  }
+  
+  /**
+   * Get the contents of the wallet's cache file to open the wallet from memory
+   * instead of a path.
+   * 
+   * @return the wallet's cache file data
+   */
+  public byte[] getCacheData() {
+    return cacheData;
+  }
+  
+  public MoneroWalletConfig setCacheData(byte[] cacheData) {
+    this.cacheData = cacheData;
+    return this;
+  }
+}
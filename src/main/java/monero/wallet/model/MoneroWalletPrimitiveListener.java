@@ -0,0 +1,22 @@
+package monero.wallet.model;
+
+/**
+ * Default primitive wallet listener which takes no action on notifications.
+ */
+public class MoneroWalletPrimitiveListener implements MoneroWalletPrimitiveListenerI {
+
+  @Override
+  public void onSyncProgress(long height, long startHeight, long endHeight, double percentDone, String message) { }
+
+  @Override
+  public void onNewBlock(long height) { }
+  
+  @Override
+  public void onBalancesChanged(long newBalance, long newUnlockedBalance) { }
+
+  @Override
+  public void onOutputReceived(long height, String txHash, long amount, int accountIdx, int subaddressIdx, int version, long unlockHeight, boolean isLocked) { }
+
+  @Override
+  public void onOutputSpent(long height, String txHash, long amount, int accountIdx, int subaddressIdx, int version, long unlockHeight, boolean isLocked) { }
+}
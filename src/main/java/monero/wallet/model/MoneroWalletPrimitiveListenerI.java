@@ -0,0 +1,70 @@
+package monero.wallet.model;
+
+/**
+ * Interface to receive notifications from a full wallet as primitive values
+ * without building model objects.
+ * 
+ * Amounts are atomic units as unsigned 64-bit values, so amounts of 2^63 or
+ * more are negative as signed longs (see MoneroUtils.toUnsignedBigInteger()).
+ * Account and subaddress indices are -1 if unknown.
+ * 
+ * Invoked directly on the thread which syncs the wallet, bypassing any
+ * listener dispatcher, so implementations should return quickly.
+ */
+public interface MoneroWalletPrimitiveListenerI {
+  
+  /**
+   * Invoked as the wallet is synchronized.
+   * 
+   * @param height - height of the synced block 
+   * @param startHeight - starting height of the sync request
+   * @param endHeight - ending height of the sync request
+   * @param percentDone - sync progress as a percentage
+   * @param message is a human-readable description of the current progress
+   */
+  public void onSyncProgress(long height, long startHeight, long endHeight, double percentDone, String message);
+  
+  /**
+   * Invoked when a new block is added to the chain.
+   * 
+   * @param height - the height of the new block (i.e. the number of blocks before it).
+   */
+  public void onNewBlock(long height);
+  
+  /**
+   * Invoked when the wallet's balances change.
+   * 
+   * @param newBalance - new wallet balance as an unsigned 64-bit value
+   * @param newUnlockedBalance - new unlocked wallet balance as an unsigned 64-bit value
+   */
+  public void onBalancesChanged(long newBalance, long newUnlockedBalance);
+  
+  /**
+   * Invoked 3 times per received output: once when unconfirmed, once when confirmed, and
+   * once when unlocked.
+   * 
+   * @param height - height of the output's tx or 0 if unconfirmed
+   * @param txHash - hash of the output's tx
+   * @param amount - amount of the output as an unsigned 64-bit value
+   * @param accountIdx - account index of the output
+   * @param subaddressIdx - subaddress index of the output
+   * @param version - version of the output's tx
+   * @param unlockHeight - unlock height of the output's tx
+   * @param isLocked - whether the output's tx is locked
+   */
+  public void onOutputReceived(long height, String txHash, long amount, int accountIdx, int subaddressIdx, int version, long unlockHeight, boolean isLocked);
+  
+  /**
+   * Invoked twice per spent output: once when confirmed and once when unlocked.
+   * 
+   * @param height - height of the spending tx or 0 if unconfirmed
+   * @param txHash - hash of the spending tx
+   * @param amount - amount of the output as an unsigned 64-bit value
+   * @param accountIdx - account index of the output or -1 if unknown
+   * @param subaddressIdx - subaddress index of the output or -1 if unknown
+   * @param version - version of the spending tx
+   * @param unlockHeight - unlock height of the spending tx
+   * @param isLocked - whether the spending tx is locked
+   */
+  public void onOutputSpent(long height, String txHash, long amount, int accountIdx, int subaddressIdx, int version, long unlockHeight, boolean isLocked);
+}
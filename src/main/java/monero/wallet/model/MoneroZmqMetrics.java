@@ -0,0 +1,96 @@
+package monero.wallet.model;
+
+/**
+ * Back-pressure metrics of a wallet's queue of zmq notifications from
+ * monero-wallet-rpc.
+ */
+public class MoneroZmqMetrics {
+
+  private long numReceived;
+  private long numProcessed;
+  private long numBlocked;
+  private long blockedTimeMs;
+  private int maxQueueSize;
+  
+  public MoneroZmqMetrics() {
+    // nothing to construct
+  }
+  
+  public MoneroZmqMetrics(MoneroZmqMetrics metrics) {
+    this.numReceived = metrics.numReceived;
+    this.numProcessed = metrics.numProcessed;
+    this.numBlocked = metrics.numBlocked;
+    this.blockedTimeMs = metrics.blockedTimeMs;
+    this.maxQueueSize = metrics.maxQueueSize;
+  }
+  
+  public MoneroZmqMetrics copy() {
+    return new MoneroZmqMetrics(this);
+  }
+  
+  public long getNumReceived() {
+    return numReceived;
+  }
+  
+  public MoneroZmqMetrics setNumReceived(long numReceived) {
+    this.numReceived = numReceived;
+    return this;
+  }
+  
+  /**
+   * Get the number of notifications processed, including notifications which
+   * failed to process.
+   * 
+   * @return the number of processed notifications
+   */
+  public long getNumProcessed() {
+    return numProcessed;
+  }
+  
+  public MoneroZmqMetrics setNumProcessed(long numProcessed) {
+    this.numProcessed = numProcessed;
+    return this;
+  }
+  
+  /**
+   * Get the number of notifications which waited for space in the queue.
+   * 
+   * @return the number of blocked notifications
+   */
+  public long getNumBlocked() {
+    return numBlocked;
+  }
+  
+  public MoneroZmqMetrics setNumBlocked(long numBlocked) {
+    this.numBlocked = numBlocked;
+    return this;
+  }
+  
+  /**
+   * Get the total time notifications waited for space in the queue.
+   * 
+   * @return the total blocked time in milliseconds
+   */
+  public long getBlockedTimeMs() {
+    return blockedTimeMs;
+  }
+  
+  public MoneroZmqMetrics setBlockedTimeMs(long blockedTimeMs) {
+    this.blockedTimeMs = blockedTimeMs;
+    return this;
+  }
+  
+  /**
+   * Get the maximum number of notifications queued for processing.
+   * 
+   * @return the maximum queue size
+   */
+  public int getMaxQueueSize() {
+    return maxQueueSize;
+  }
+  
+  public MoneroZmqMetrics setMaxQueueSize(int maxQueueSize) {
+    this.maxQueueSize = maxQueueSize;
+    return this;
+  }
+}
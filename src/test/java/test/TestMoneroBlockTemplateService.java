@@ -0,0 +1,285 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import common.utils.JsonUtils;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import monero.common.MoneroError;
+import monero.common.MoneroRpcConnection;
+import monero.daemon.MoneroBlockTemplateService;
+import monero.daemon.MoneroDaemonRpc;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests serving block templates from memory against a stub daemon.
+ */
+public class TestMoneroBlockTemplateService {
+
+  private static final String ADDRESS = "address";
+
+  private static HttpServer server;
+  private static ExecutorService executor;
+  private static AtomicInteger numTemplateRequests = new AtomicInteger();
+  private static volatile long templateDelayMs;
+  private static volatile String topBlockHash;
+  private static volatile int numTxsPool;
+  private static volatile String submitStatus;
+  private static MoneroDaemonRpc daemon;
+
+  @BeforeAll
+  public static void beforeAll() throws IOException {
+    executor = Executors.newCachedThreadPool(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable);
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.setExecutor(executor);
+    server.createContext("/json_rpc", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        Map<String, Object> req = JsonUtils.toMap(MoneroRpcConnection.MAPPER, new String(readAll(exchange.getRequestBody()), StandardCharsets.UTF_8));
+        Map<String, Object> result = new HashMap<String, Object>();
+        result.put("status", "OK");
+        if ("get_block_template".equals(req.get("method"))) {
+          long delayMs = templateDelayMs;
+          int requestNum = numTemplateRequests.incrementAndGet();
+          try { Thread.sleep(delayMs); }
+          catch (InterruptedException e) { throw new RuntimeException(e); }
+          result.put("prev_hash", topBlockHash);
+          result.put("reserved_offset", requestNum);
+        } else if ("get_info".equals(req.get("method"))) {
+          result.put("top_block_hash", topBlockHash);
+          result.put("tx_pool_size", numTxsPool);
+        } else if ("submit_block".equals(req.get("method"))) {
+          result.put("status", submitStatus);
+        }
+        Map<String, Object> resp = new HashMap<String, Object>();
+        resp.put("id", "0");
+        resp.put("jsonrpc", "2.0");
+        resp.put("result", result);
+        byte[] bytes = JsonUtils.serialize(resp).getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+      }
+    });
+    server.start();
+    daemon = new MoneroDaemonRpc("http://127.0.0.1:" + server.getAddress().getPort());
+  }
+
+  @AfterAll
+  public static void afterAll() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  @BeforeEach
+  public void beforeEach() {
+    numTemplateRequests.set(0);
+    templateDelayMs = 0;
+    topBlockHash = "hash0";
+    numTxsPool = 0;
+    submitStatus = "OK";
+  }
+
+  // Concurrent requests for a template share one fetch
+  @Test
+  public void testSingleFlight() throws InterruptedException {
+    final MoneroBlockTemplateService service = new MoneroBlockTemplateService(daemon);
+    templateDelayMs = 200;
+    List<MoneroBlockTemplateService.Entry> entries = getEntriesConcurrently(service, 8);
+    assertEquals(1, numTemplateRequests.get());
+    for (MoneroBlockTemplateService.Entry entry : entries) assertTrue(entry == entries.get(0));
+
+    // requests after a refresh join the refresh's fetch
+    Thread refresher = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        service.refresh();
+      }
+    });
+    refresher.start();
+    Thread.sleep(50);
+    entries = getEntriesConcurrently(service, 8);
+    refresher.join();
+    assertEquals(2, numTemplateRequests.get());
+    for (MoneroBlockTemplateService.Entry entry : entries) assertEquals(service.getGeneration(), entry.getGeneration());
+    assertTrue(entries.get(0) == service.getEntry(ADDRESS, 8));
+    assertEquals(2, numTemplateRequests.get());
+  }
+
+  // A slow fetch does not replace a template of a newer generation
+  @Test
+  public void testSlowFetchNotStored() throws InterruptedException {
+    final MoneroBlockTemplateService service = new MoneroBlockTemplateService(daemon);
+    templateDelayMs = 400;
+    final List<MoneroBlockTemplateService.Entry> slowEntries = new ArrayList<MoneroBlockTemplateService.Entry>();
+    Thread slowThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        slowEntries.add(service.getEntry(ADDRESS, 8));
+      }
+    });
+    slowThread.start();
+    Thread.sleep(100);
+
+    // fetch newer template while slow fetch is in flight
+    templateDelayMs = 0;
+    service.refresh();
+    MoneroBlockTemplateService.Entry newEntry = service.getEntry(ADDRESS, 8);
+    assertEquals(service.getGeneration(), newEntry.getGeneration());
+    slowThread.join();
+    assertTrue(newEntry == slowEntries.get(0));
+    assertTrue(newEntry == service.getEntry(ADDRESS, 8));
+    assertEquals(2, numTemplateRequests.get());
+  }
+
+  // A refresh does not wait for the daemon requests of another refresh
+  @Test
+  public void testRefreshDuringSlowRefresh() throws InterruptedException {
+    final MoneroBlockTemplateService service = new MoneroBlockTemplateService(daemon);
+    service.getEntry(ADDRESS, 8);
+    templateDelayMs = 400;
+    Thread slowRefresher = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        service.refresh();
+      }
+    });
+    slowRefresher.start();
+    Thread.sleep(100);
+
+    // refresh while slow refresh is fetching
+    templateDelayMs = 0;
+    long start = System.currentTimeMillis();
+    service.refresh();
+    assertTrue(System.currentTimeMillis() - start < 300, "Refresh waited for slow refresh");
+    MoneroBlockTemplateService.Entry newEntry = service.getEntry(ADDRESS, 8);
+    assertEquals(service.getGeneration(), newEntry.getGeneration());
+    slowRefresher.join();
+    assertTrue(newEntry == service.getEntry(ADDRESS, 8));
+    assertEquals(3, numTemplateRequests.get());
+  }
+
+  // Templates are refreshed only when submitted blocks are accepted
+  @Test
+  public void testSubmitRefreshesIfAccepted() {
+    MoneroBlockTemplateService service = new MoneroBlockTemplateService(daemon);
+    MoneroBlockTemplateService.Entry entry = service.getEntry(ADDRESS, 8);
+
+    // rejected block keeps current templates
+    submitStatus = "Block not accepted";
+    try {
+      service.submitBlock("blob");
+      fail("Should have thrown error submitting rejected block");
+    } catch (MoneroError e) {
+      assertEquals("Block not accepted", e.getMessage());
+    }
+    assertEquals(entry.getGeneration(), service.getGeneration());
+    assertTrue(service.isCurrent(entry.getGeneration()));
+    assertTrue(entry == service.getEntry(ADDRESS, 8));
+    assertEquals(1, numTemplateRequests.get());
+
+    // accepted block refreshes templates
+    submitStatus = "OK";
+    service.submitBlock("blob");
+    assertFalse(service.isCurrent(entry.getGeneration()));
+    assertEquals(service.getGeneration(), service.getEntry(ADDRESS, 8).getGeneration());
+    assertEquals(2, numTemplateRequests.get());
+  }
+
+  // Work stays current when templates are refreshed for pool growth but not for a new block
+  @Test
+  public void testCurrentUntilNewBlock() {
+    MoneroBlockTemplateService service = new MoneroBlockTemplateService(daemon, 50, 2);
+    service.start();
+    try {
+      MoneroBlockTemplateService.Entry entry = service.getEntry(ADDRESS, 8);
+      assertTrue(service.isCurrent(entry.getGeneration()));
+
+      // pool growth refreshes templates on the same block
+      numTxsPool = 5;
+      waitForGeneration(service, entry.getGeneration() + 1);
+      MoneroBlockTemplateService.Entry poolEntry = service.getEntry(ADDRESS, 8);
+      assertTrue(poolEntry.getGeneration() > entry.getGeneration());
+      assertTrue(service.isCurrent(entry.getGeneration()));
+      assertTrue(service.isCurrent(poolEntry.getGeneration()));
+
+      // new block makes previous work stale
+      topBlockHash = "hash1";
+      waitForGeneration(service, poolEntry.getGeneration() + 1);
+      MoneroBlockTemplateService.Entry blockEntry = service.getEntry(ADDRESS, 8);
+      assertEquals("hash1", blockEntry.getTemplate().getPrevHash());
+      assertFalse(service.isCurrent(entry.getGeneration()));
+      assertFalse(service.isCurrent(poolEntry.getGeneration()));
+      assertTrue(service.isCurrent(blockEntry.getGeneration()));
+    } finally {
+      service.stop();
+    }
+  }
+
+  // ------------------------------- PRIVATE ----------------------------------
+
+  private static List<MoneroBlockTemplateService.Entry> getEntriesConcurrently(final MoneroBlockTemplateService service, int numThreads) throws InterruptedException {
+    final List<MoneroBlockTemplateService.Entry> entries = new ArrayList<MoneroBlockTemplateService.Entry>();
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < numThreads; i++) {
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          MoneroBlockTemplateService.Entry entry = service.getEntry(ADDRESS, 8);
+          synchronized (entries) { entries.add(entry); }
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    for (Thread thread : threads) thread.join();
+    assertEquals(numThreads, entries.size());
+    return entries;
+  }
+
+  private static void waitForGeneration(MoneroBlockTemplateService service, long generation) {
+    long start = System.currentTimeMillis();
+    while (service.getGeneration() < generation) {
+      if (System.currentTimeMillis() - start > 5000) fail("Timed out waiting for generation " + generation);
+      try { Thread.sleep(10); }
+      catch (InterruptedException e) { throw new RuntimeException(e); }
+    }
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buf = new byte[4096];
+    int n;
+    while ((n = in.read(buf)) != -1) out.write(buf, 0, n);
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,156 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import common.utils.JsonUtils;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import monero.common.MoneroError;
+import monero.common.MoneroRpcConnection;
+import monero.daemon.model.MoneroBlock;
+import monero.daemon.model.MoneroOutput;
+import monero.daemon.model.MoneroTx;
+import monero.wallet.MoneroBlocksBinaryCodec;
+import monero.wallet.MoneroBlocksJsonDeserializer;
+import monero.wallet.model.MoneroOutgoingTransfer;
+import monero.wallet.model.MoneroTxWallet;
+import org.junit.jupiter.api.Test;
+import utils.BenchmarkBlocksDeserializer;
+
+/**
+ * Tests the binary encoding of blocks returned from the native wallet against
+ * fixtures, independently of the native library.
+ */
+public class TestMoneroBlocksBinaryCodec {
+  
+  private static final int NUM_FUZZ_ITERATIONS = 20000;
+  
+  // Decodes the same blocks as deserializing JSON
+  @Test
+  public void testRoundTrip() {
+    String json = BenchmarkBlocksDeserializer.generateBlocksJson(250, 2);
+    List<MoneroBlock> blocks = MoneroBlocksJsonDeserializer.deserialize(json, new ArrayList<String>());
+    
+    // add fields not in fixture
+    MoneroTxWallet tx = (MoneroTxWallet) blocks.get(0).getTxs().get(0);
+    tx.setExtra(new int[] { 1, 255, 0, 128 });
+    tx.setNote("note with unicode é中😀");
+    tx.setFee(new BigInteger("18446744073709551615"));
+    tx.getOutputs().get(0).setRingOutputIndices(new ArrayList<Integer>(Arrays.asList(1, 2, Integer.MAX_VALUE)));
+    
+    // encode and decode
+    List<String> missingTxHashes = new ArrayList<String>(Arrays.asList("abc", "def"));
+    List<String> decodedMissingTxHashes = new ArrayList<String>();
+    byte[] bytes = MoneroBlocksBinaryCodec.encode(blocks, missingTxHashes);
+    List<MoneroBlock> decodedBlocks = MoneroBlocksBinaryCodec.decode(bytes, decodedMissingTxHashes);
+    assertEquals(missingTxHashes, decodedMissingTxHashes);
+    assertEquals(serialize(blocks), serialize(decodedBlocks));
+    
+    // test references
+    for (MoneroBlock block : decodedBlocks) {
+      for (MoneroTx decodedTx : block.getTxs()) {
+        assertTrue(block == decodedTx.getBlock());
+        MoneroTxWallet txWallet = (MoneroTxWallet) decodedTx;
+        if (txWallet.getOutputs() != null) for (MoneroOutput output : txWallet.getOutputs()) assertTrue(decodedTx == output.getTx());
+        if (txWallet.getIncomingTransfers() != null) assertTrue(decodedTx == txWallet.getIncomingTransfers().get(0).getTx());
+        if (txWallet.getOutgoingTransfer() != null) assertTrue(decodedTx == txWallet.getOutgoingTransfer().getTx());
+      }
+    }
+    
+    // binary is smaller than json
+    assertTrue(bytes.length < json.length() / 2, "Binary encoding is " + bytes.length + " bytes vs " + json.length() + " chars of json");
+  }
+  
+  // Skips unknown fields so fields can be added to the encoder
+  @Test
+  public void testSkipUnknownFields() {
+    MoneroTxWallet tx = new MoneroTxWallet();
+    tx.setHash("abc");
+    tx.setOutgoingTransfer(new MoneroOutgoingTransfer().setAmount(BigInteger.TEN));
+    MoneroBlock block = new MoneroBlock().setHeight(7l).setTxs(tx);
+    byte[] bytes = MoneroBlocksBinaryCodec.encode(Arrays.asList(block), null);
+    
+    // append unknown varint and length-delimited root fields
+    byte[] extended = Arrays.copyOf(bytes, bytes.length + 6);
+    extended[bytes.length] = (byte) (99 << 3 | 0); // key is 2 byte varint
+    extended[bytes.length] |= (byte) 0x80;
+    extended[bytes.length + 1] = (byte) ((99 << 3) >>> 7);
+    extended[bytes.length + 2] = 5;
+    extended[bytes.length + 3] = (byte) (15 << 3 | 2);
+    extended[bytes.length + 4] = 1;
+    extended[bytes.length + 5] = 42;
+    List<MoneroBlock> decoded = MoneroBlocksBinaryCodec.decode(extended, new ArrayList<String>());
+    assertEquals(1, decoded.size());
+    assertEquals(7l, (long) decoded.get(0).getHeight());
+    assertEquals("abc", decoded.get(0).getTxs().get(0).getHash());
+    assertEquals(BigInteger.TEN, ((MoneroTxWallet) decoded.get(0).getTxs().get(0)).getOutgoingTransfer().getAmount());
+  }
+  
+  // Rejects invalid headers
+  @Test
+  public void testInvalidHeader() {
+    assertDecodeError(new byte[0]);
+    assertDecodeError(new byte[] { 'M', 'N', 'R', 'B' });
+    assertDecodeError(new byte[] { 'M', 'N', 'R', 'B', 2 });
+    assertDecodeError(new byte[] { 'J', 'S', 'O', 'N', 1 });
+    assertEquals(0, MoneroBlocksBinaryCodec.decode(new byte[] { 'M', 'N', 'R', 'B', 1 }, new ArrayList<String>()).size());
+  }
+  
+  // Decodes or throws MoneroError for mutated and truncated fixtures
+  @Test
+  public void testFuzz() {
+    byte[] fixture = MoneroBlocksBinaryCodec.encode(MoneroBlocksJsonDeserializer.deserialize(BenchmarkBlocksDeserializer.generateBlocksJson(20, 3), new ArrayList<String>()), Arrays.asList("abc"));
+    Random random = new Random(3);
+    int numDecoded = 0;
+    for (int i = 0; i < NUM_FUZZ_ITERATIONS; i++) {
+      byte[] bytes;
+      switch (i % 4) {
+        case 0: // flip bits
+          bytes = fixture.clone();
+          for (int j = random.nextInt(4); j >= 0; j--) bytes[random.nextInt(bytes.length)] ^= 1 << random.nextInt(8);
+          break;
+        case 1: // random bytes
+          bytes = fixture.clone();
+          for (int j = random.nextInt(4); j >= 0; j--) bytes[5 + random.nextInt(bytes.length - 5)] = (byte) random.nextInt(256);
+          break;
+        case 2: // truncate
+          bytes = Arrays.copyOf(fixture, random.nextInt(fixture.length));
+          break;
+        default: // random body
+          bytes = Arrays.copyOf(fixture, 5 + random.nextInt(64));
+          for (int j = 5; j < bytes.length; j++) bytes[j] = (byte) random.nextInt(256);
+      }
+      try {
+        MoneroBlocksBinaryCodec.decode(bytes, new ArrayList<String>());
+        numDecoded++;
+      } catch (MoneroError e) {
+        // expected for invalid encodings
+      } catch (Exception e) {
+        fail("Decoding fuzzed fixture " + i + " threw " + e.getClass().getName() + ": " + Arrays.toString(bytes), e);
+      }
+    }
+    assertTrue(numDecoded > 0);
+  }
+  
+  private static void assertDecodeError(byte[] bytes) {
+    try {
+      MoneroBlocksBinaryCodec.decode(bytes, new ArrayList<String>());
+      fail("Should have failed to decode " + Arrays.toString(bytes));
+    } catch (MoneroError e) {
+      // expected
+    }
+  }
+  
+  private static Map<String, Object> serialize(List<MoneroBlock> blocks) {
+    Map<String, Object> container = new HashMap<String, Object>();
+    container.put("blocks", blocks);
+    return JsonUtils.toMap(MoneroRpcConnection.MAPPER, JsonUtils.serialize(MoneroRpcConnection.MAPPER, container));
+  }
+}
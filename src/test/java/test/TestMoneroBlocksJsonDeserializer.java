@@ -0,0 +1,96 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import common.utils.JsonUtils;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import monero.common.MoneroRpcConnection;
+import monero.daemon.model.MoneroBlock;
+import monero.daemon.model.MoneroOutput;
+import monero.daemon.model.MoneroTx;
+import monero.wallet.MoneroBlocksJsonDeserializer;
+import monero.wallet.model.MoneroIncomingTransfer;
+import monero.wallet.model.MoneroTxWallet;
+import org.junit.jupiter.api.Test;
+import utils.BenchmarkBlocksDeserializer;
+
+/**
+ * Tests deserializing blocks of wallet txs returned from the native wallet.
+ */
+public class TestMoneroBlocksJsonDeserializer {
+  
+  // Deserializes the same graph as data binding with references to each parent
+  @Test
+  public void testDeserializeBlocks() {
+    String json = BenchmarkBlocksDeserializer.generateBlocksJson(250, 1);
+    List<String> missingTxHashes = new ArrayList<String>();
+    List<MoneroBlock> blocks = MoneroBlocksJsonDeserializer.deserialize(json, missingTxHashes);
+    assertTrue(missingTxHashes.isEmpty());
+    
+    // re-serialize and compare
+    Map<String, Object> container = new HashMap<String, Object>();
+    container.put("blocks", blocks);
+    container.put("missingTxHashes", missingTxHashes);
+    assertEquals(JsonUtils.toMap(MoneroRpcConnection.MAPPER, json), JsonUtils.toMap(MoneroRpcConnection.MAPPER, JsonUtils.serialize(MoneroRpcConnection.MAPPER, container)));
+    
+    // test types and references
+    int numTxs = 0;
+    for (MoneroBlock block : blocks) {
+      for (MoneroTx tx : block.getTxs()) {
+        numTxs++;
+        MoneroTxWallet txWallet = (MoneroTxWallet) tx;
+        assertTrue(block == tx.getBlock());
+        assertEquals(block.getHeight() != null, tx.isConfirmed());
+        if (txWallet.getIncomingTransfers() != null) {
+          for (MoneroIncomingTransfer transfer : txWallet.getIncomingTransfers()) {
+            assertTrue(tx == transfer.getTx());
+            assertEquals(BigInteger.class, transfer.getAmount().getClass());
+          }
+        }
+        if (txWallet.getOutgoingTransfer() != null) {
+          assertTrue(tx == txWallet.getOutgoingTransfer().getTx());
+          assertFalse(txWallet.getOutgoingTransfer().getDestinations().isEmpty());
+        }
+        if (tx.getOutputs() != null) {
+          for (MoneroOutput output : tx.getOutputs()) {
+            assertTrue(tx == output.getTx());
+            assertEquals(64, output.getKeyImage().getHex().length());
+          }
+        }
+      }
+    }
+    assertEquals(250, numTxs);
+  }
+  
+  // Reads missing tx hashes, string and big integers, nulls, and unknown fields
+  @Test
+  public void testDeserializeEdgeCases() {
+    String json = "{\"unknown\":{\"a\":[1,{}]},\"blocks\":[{\"height\":5,\"reward\":\"123\",\"difficulty\":123456789012345678901234567890,\"txs\":[" +
+        "{\"hash\":\"abc\",\"fee\":7,\"note\":null,\"extra\":[1,2,3],\"unknown\":[[],{}],\"outgoingTransfer\":{\"amount\":18446744073709551615,\"destinations\":[{\"address\":\"addr\",\"amount\":1}]}}]}]," +
+        "\"missingTxHashes\":[\"def\"]}";
+    List<String> missingTxHashes = new ArrayList<String>();
+    List<MoneroBlock> blocks = MoneroBlocksJsonDeserializer.deserialize(json, missingTxHashes);
+    assertEquals(1, missingTxHashes.size());
+    assertEquals("def", missingTxHashes.get(0));
+    assertEquals(1, blocks.size());
+    MoneroBlock block = blocks.get(0);
+    assertEquals(5, (long) block.getHeight());
+    assertEquals(new BigInteger("123"), block.getReward());
+    assertEquals(new BigInteger("123456789012345678901234567890"), block.getDifficulty());
+    MoneroTxWallet tx = (MoneroTxWallet) block.getTxs().get(0);
+    assertEquals("abc", tx.getHash());
+    assertEquals(BigInteger.valueOf(7), tx.getFee());
+    assertNull(tx.getNote());
+    assertEquals(3, tx.getExtra().length);
+    assertEquals(new BigInteger("18446744073709551615"), tx.getOutgoingTransfer().getAmount());
+    assertEquals("addr", tx.getOutgoingTransfer().getDestinations().get(0).getAddress());
+    assertEquals(BigInteger.ONE, tx.getOutgoingTransfer().getDestinations().get(0).getAmount());
+  }
+}
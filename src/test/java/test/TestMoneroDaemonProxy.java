@@ -0,0 +1,126 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import monero.common.MoneroRpcConnection;
+import monero.daemon.MoneroDaemonProxy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests sharing block requests through a daemon proxy with a stub daemon.
+ */
+public class TestMoneroDaemonProxy {
+  
+  private HttpServer daemon;
+  private ExecutorService daemonExecutor;
+  private Map<String, AtomicInteger> numDaemonRequests = new ConcurrentHashMap<String, AtomicInteger>();
+  private MoneroDaemonProxy proxy;
+  
+  @BeforeEach
+  public void beforeEach() throws IOException {
+    
+    // stub daemon echoes the request path and body after a delay
+    daemon = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    daemonExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable);
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    daemon.setExecutor(daemonExecutor);
+    daemon.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        numDaemonRequests.putIfAbsent(path, new AtomicInteger());
+        numDaemonRequests.get(path).incrementAndGet();
+        InputStream in = exchange.getRequestBody();
+        StringBuilder sb = new StringBuilder(path).append(':');
+        int b;
+        while ((b = in.read()) != -1) sb.append((char) b);
+        try { Thread.sleep(200); }
+        catch (InterruptedException e) { }
+        byte[] resp = sb.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, resp.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(resp);
+        out.close();
+      }
+    });
+    daemon.start();
+    proxy = new MoneroDaemonProxy(new MoneroRpcConnection("http://127.0.0.1:" + daemon.getAddress().getPort()));
+    proxy.start();
+  }
+  
+  @AfterEach
+  public void afterEach() {
+    proxy.stop();
+    daemon.stop(0);
+    daemonExecutor.shutdownNow();
+  }
+  
+  // Fetches concurrent and repeated block requests once
+  @Test
+  public void testShareBlockRequests() throws Exception {
+    final MoneroRpcConnection connection = proxy.getConnection();
+    final Map<String, Object> params = new HashMap<String, Object>();
+    params.put("start_height", 100);
+    
+    // request same blocks concurrently
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    List<Future<byte[]>> futures = new ArrayList<Future<byte[]>>();
+    for (int i = 0; i < 8; i++) {
+      futures.add(pool.submit(new Callable<byte[]>() {
+        @Override
+        public byte[] call() {
+          return connection.sendPathRequestRaw("getblocks.bin", params);
+        }
+      }));
+    }
+    byte[] expected = futures.get(0).get();
+    for (Future<byte[]> future : futures) assertArrayEquals(expected, future.get());
+    pool.shutdown();
+    assertEquals(1, numDaemonRequests.get("/getblocks.bin").get());
+    
+    // repeated request is served from memory
+    assertArrayEquals(expected, connection.sendPathRequestRaw("getblocks.bin", params));
+    assertEquals(1, numDaemonRequests.get("/getblocks.bin").get());
+    assertEquals(8, proxy.getNumSharedResponses());
+    
+    // different blocks are fetched
+    params.put("start_height", 200);
+    connection.sendPathRequestRaw("getblocks.bin", params);
+    assertEquals(2, numDaemonRequests.get("/getblocks.bin").get());
+    
+    // other requests are forwarded
+    connection.sendPathRequestRaw("get_info", null);
+    connection.sendPathRequestRaw("get_info", null);
+    assertEquals(2, numDaemonRequests.get("/get_info").get());
+    assertEquals(12, proxy.getNumRequests());
+    assertEquals(4, proxy.getNumDaemonRequests());
+  }
+}
@@ -15,9 +15,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import monero.common.MoneroError;
 import monero.common.MoneroRpcError;
+import monero.daemon.MoneroBlockTemplateService;
+import monero.daemon.MoneroBlockchainScanner;
 import monero.daemon.MoneroDaemon;
 import monero.daemon.MoneroDaemonRpc;
 import monero.daemon.model.MoneroAltChain;
@@ -25,6 +29,7 @@ import monero.daemon.model.MoneroBan;
 import monero.daemon.model.MoneroBlock;
 import monero.daemon.model.MoneroBlockHeader;
 import monero.daemon.model.MoneroBlockTemplate;
+import monero.daemon.model.MoneroBlockchainVisitor;
 import monero.daemon.model.MoneroDaemonConnection;
 import monero.daemon.model.MoneroDaemonConnectionSpan;
 import monero.daemon.model.MoneroDaemonInfo;
@@ -43,6 +48,7 @@ import monero.daemon.model.MoneroOutputDistributionEntry;
 import monero.daemon.model.MoneroOutputHistogramEntry;
 import monero.daemon.model.MoneroSubmitTxResult;
 import monero.daemon.model.MoneroTx;
+import monero.daemon.model.MoneroTxPoolHistogramEntry;
 import monero.daemon.model.MoneroTxPoolStats;
 import monero.daemon.model.MoneroVersion;
 import monero.wallet.MoneroWallet;
@@ -143,6 +149,32 @@ public class TestMoneroDaemonRpc {
     MoneroBlockTemplate template = daemon.getBlockTemplate(TestUtils.ADDRESS, 2);
     testBlockTemplate(template);
   }
+
+  // Can serve block templates from memory
+  @Test
+  public void testBlockTemplateService() {
+    assumeTrue(TEST_NON_RELAYS);
+    MoneroBlockTemplateService service = new MoneroBlockTemplateService(daemon);
+    service.start();
+    try {
+
+      // templates are served from memory until refreshed
+      MoneroBlockTemplateService.Entry entry = service.getEntry(TestUtils.ADDRESS, 2);
+      testBlockTemplate(entry.getTemplate());
+      assertTrue(service.isCurrent(entry.getGeneration()));
+      assertTrue(entry == service.getEntry(TestUtils.ADDRESS, 2));
+      assertTrue(entry.getTemplate() != service.getEntry(TestUtils.ADDRESS, 3).getTemplate());
+
+      // refresh makes previous templates stale
+      service.refresh();
+      assertFalse(service.isCurrent(entry.getGeneration()));
+      MoneroBlockTemplateService.Entry refreshed = service.getEntry(TestUtils.ADDRESS, 2);
+      assertEquals(service.getGeneration(), refreshed.getGeneration());
+      testBlockTemplate(refreshed.getTemplate());
+    } finally {
+      service.stop();
+    }
+  }
   
   // Can get the last block's header
   @Test
@@ -247,6 +279,55 @@ public class TestMoneroDaemonRpc {
     throw new RuntimeException("Not implemented");
   }
 
+  // Can scan a range of blocks with a visitor
+  @Test
+  public void testScanBlockchain() {
+    assumeTrue(TEST_NON_RELAYS);
+    long endHeight = daemon.getHeight() - 1;
+    long startHeight = Math.max(0, endHeight - 250);
+    final List<Long> visitedHeights = new ArrayList<Long>();
+    final List<Long> checkpointHeights = new ArrayList<Long>();
+    final AtomicInteger numTxs = new AtomicInteger();
+    final AtomicInteger numOutputs = new AtomicInteger();
+    final AtomicInteger expectedNumTxs = new AtomicInteger();
+    MoneroBlockchainVisitor visitor = new MoneroBlockchainVisitor() {
+      @Override
+      public void visitTx(MoneroTx tx) {
+        assertNotNull(tx.getBlock());
+        numTxs.incrementAndGet();
+      }
+      @Override
+      public void visitOutput(MoneroOutput output) {
+        assertNotNull(output.getTx());
+        numOutputs.incrementAndGet();
+      }
+      @Override
+      public void visitBlock(MoneroBlock block) {
+        visitedHeights.add(block.getHeight());
+        expectedNumTxs.addAndGet(block.getTxHashes().size() + 1); // include miner tx
+      }
+      @Override
+      public void onCheckpoint(MoneroBlock lastBlock) {
+        checkpointHeights.add(lastBlock.getHeight());
+      }
+    };
+    MoneroBlockchainScanner scanner = new MoneroBlockchainScanner(daemon, ForkJoinPool.commonPool(), 100);
+    assertEquals(endHeight, scanner.scan(startHeight, endHeight, visitor));
+    
+    // blocks are visited in order with all txs and outputs
+    assertEquals(endHeight - startHeight + 1, visitedHeights.size());
+    for (int i = 0; i < visitedHeights.size(); i++) assertEquals(startHeight + i, (long) visitedHeights.get(i));
+    assertEquals(expectedNumTxs.get(), numTxs.get());
+    assertTrue(numOutputs.get() >= numTxs.get());
+    assertEquals(endHeight, (long) checkpointHeights.get(checkpointHeights.size() - 1));
+    
+    // scan resumes from a checkpoint
+    visitedHeights.clear();
+    long checkpointHeight = checkpointHeights.get(0);
+    assertEquals(endHeight, scanner.scan(checkpointHeight + 1, endHeight, visitor));
+    assertEquals(checkpointHeight + 1, (long) visitedHeights.get(0));
+  }
+  
   // Can get a block by height
   @Test
   public void testGetBlockByHeight() {
@@ -544,7 +625,28 @@ public class TestMoneroDaemonRpc {
     MoneroMinerTxSum sum = daemon.getMinerTxSum(0l, Math.min(50000l, daemon.getHeight()));
     testMinerTxSum(sum);
   }
-  
+
+  // Can get the miner tx sum of a range split into segments
+  @Test
+  public void testGetMinerTxSumSegmented() {
+    assumeTrue(TEST_NON_RELAYS);
+    long numBlocks = Math.min(25000l, daemon.getHeight());
+    long splitHeight = numBlocks / 2 + 1; // not aligned to segments
+    MoneroMinerTxSum sum = daemon.getMinerTxSum(0l, numBlocks);
+    testMinerTxSum(sum);
+
+    // sum equals sums of sub-ranges
+    MoneroMinerTxSum sum1 = daemon.getMinerTxSum(0l, splitHeight);
+    MoneroMinerTxSum sum2 = daemon.getMinerTxSum(splitHeight, numBlocks - splitHeight);
+    assertEquals(sum.getEmissionSum(), sum1.getEmissionSum().add(sum2.getEmissionSum()));
+    assertEquals(sum.getFeeSum(), sum1.getFeeSum().add(sum2.getFeeSum()));
+
+    // repeated sum over memoized segments equals the first sum
+    MoneroMinerTxSum sumRepeated = daemon.getMinerTxSum(0l, numBlocks);
+    assertEquals(sum.getEmissionSum(), sumRepeated.getEmissionSum());
+    assertEquals(sum.getFeeSum(), sumRepeated.getFeeSum());
+  }
+
   // Can get a fee estimate
   @Test
   public void testGetFeeEstimate() {
@@ -835,7 +937,7 @@ public class TestMoneroDaemonRpc {
     MoneroHardForkInfo hardForkInfo = daemon.getHardForkInfo();
     testHardForkInfo(hardForkInfo);
   }
-  
+
   // Can get alternative chains
   @Test
   public void testGetAlternativeChains() {
@@ -1691,8 +1793,19 @@ public class TestMoneroDaemonRpc {
       if (stats.getNumTxs() == 1) assertNull(stats.getHisto());
       else {
         assertNotNull(stats.getHisto());
-        fail("Ready to test histogram");
+        assertFalse(stats.getHisto().isEmpty());
+        int numTxs = 0;
+        for (MoneroTxPoolHistogramEntry entry : stats.getHisto()) {
+          assertTrue(entry.getNumTxs() >= 0);
+          assertTrue(entry.getNumBytes() >= 0);
+          assertTrue(entry.getMinAge() >= 0);
+          assertTrue(entry.getMaxAge() >= entry.getMinAge());
+          numTxs += entry.getNumTxs();
+        }
+        assertEquals((int) stats.getNumTxs(), numTxs);
+        assertFalse(daemon.getTxPoolHistogram().isEmpty());
       }
+      assertTrue(stats.getFeePerByte() > 0);
       assertTrue(stats.getBytesMax() > 0);
       assertTrue(stats.getBytesMed() > 0);
       assertTrue(stats.getBytesMin() > 0);
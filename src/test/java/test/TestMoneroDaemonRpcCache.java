@@ -0,0 +1,195 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import common.utils.JsonUtils;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import monero.common.MoneroRpcConnection;
+import monero.daemon.MoneroDaemonRpc;
+import monero.daemon.model.MoneroDaemonInfo;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests caching idempotent daemon reads against a stub daemon which counts requests.
+ */
+public class TestMoneroDaemonRpcCache {
+
+  private static HttpServer server;
+  private static Map<String, AtomicInteger> numRequests = new ConcurrentHashMap<String, AtomicInteger>(); // method -> number of requests
+  private static volatile long height;
+  private static volatile BigInteger fee;
+  private MoneroDaemonRpc daemon;
+
+  @BeforeAll
+  public static void beforeAll() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/json_rpc", new HttpHandler() {
+      @SuppressWarnings("unchecked")
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        Map<String, Object> req = JsonUtils.toMap(MoneroRpcConnection.MAPPER, new String(readAll(exchange.getRequestBody()), StandardCharsets.UTF_8));
+        String method = (String) req.get("method");
+        getCounter(method).incrementAndGet();
+        Map<String, Object> result = new HashMap<String, Object>();
+        result.put("status", "OK");
+        if ("get_info".equals(method)) {
+          result.put("height", height);
+          result.put("top_block_hash", getBlockHash(height - 1));
+        } else if ("get_fee_estimate".equals(method)) {
+          result.put("fee", fee);
+        } else if ("sync_info".equals(method)) {
+          result.put("height", height);
+        } else if ("hard_fork_info".equals(method)) {
+          result.put("earliest_height", 1);
+          result.put("version", 16);
+        } else if ("get_last_block_header".equals(method)) {
+          Map<String, Object> header = new HashMap<String, Object>();
+          header.put("height", height - 1);
+          header.put("hash", getBlockHash(height - 1));
+          header.put("prev_hash", getBlockHash(height - 2));
+          result.put("block_header", header);
+        } else if ("submit_block".equals(method)) {
+          height++;
+        }
+        Map<String, Object> resp = new HashMap<String, Object>();
+        resp.put("id", "0");
+        resp.put("jsonrpc", "2.0");
+        if ("on_get_block_hash".equals(method)) resp.put("result", getBlockHash(((Number) ((List<Object>) req.get("params")).get(0)).longValue()));
+        else resp.put("result", result);
+        byte[] bytes = JsonUtils.serialize(resp).getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+      }
+    });
+    server.start();
+  }
+
+  @AfterAll
+  public static void afterAll() {
+    server.stop(0);
+  }
+
+  @BeforeEach
+  public void beforeEach() {
+    numRequests.clear();
+    height = 100;
+    fee = BigInteger.valueOf(20000);
+    daemon = new MoneroDaemonRpc("http://127.0.0.1:" + server.getAddress().getPort());
+    daemon.startCaching(60000);
+  }
+
+  @AfterEach
+  public void afterEach() {
+    daemon.stopCaching();
+  }
+
+  // Serves repeated reads from the cache as new models
+  @Test
+  public void testCachedReads() {
+    MoneroDaemonInfo info1 = daemon.getInfo();
+    MoneroDaemonInfo info2 = daemon.getInfo();
+    assertEquals(1, getNumRequests("get_info"));
+    assertTrue(info1 != info2);
+    assertEquals(info1.getHeight(), info2.getHeight());
+    assertEquals(info1.getTopBlockHash(), info2.getTopBlockHash());
+    assertEquals(daemon.getFeeEstimate(), daemon.getFeeEstimate());
+    assertEquals(1, getNumRequests("get_fee_estimate"));
+    assertEquals(daemon.getSyncInfo().getHeight(), daemon.getSyncInfo().getHeight());
+    assertEquals(1, getNumRequests("sync_info"));
+    assertEquals(daemon.getHardForkInfo().getVersion(), daemon.getHardForkInfo().getVersion());
+    assertEquals(1, getNumRequests("hard_fork_info"));
+
+    // reads are not cached after caching stops
+    daemon.stopCaching();
+    daemon.getInfo();
+    daemon.getInfo();
+    assertEquals(3, getNumRequests("get_info"));
+  }
+
+  // Fetches from the daemon after the cache is cleared
+  @Test
+  public void testClearCache() {
+    daemon.getFeeEstimate();
+    fee = BigInteger.valueOf(30000);
+    assertEquals(BigInteger.valueOf(20000), daemon.getFeeEstimate());
+    daemon.clearCache();
+    assertEquals(BigInteger.valueOf(30000), daemon.getFeeEstimate());
+    assertEquals(2, getNumRequests("get_fee_estimate"));
+    assertEquals(BigInteger.valueOf(30000), daemon.getFeeEstimate());
+    assertEquals(2, getNumRequests("get_fee_estimate"));
+  }
+
+  // Fetches from the daemon after a block is submitted or a new block is polled
+  @Test
+  public void testNewBlockInvalidates() {
+    assertEquals(100, (long) daemon.getInfo().getHeight());
+
+    // submitted block invalidates the cache
+    daemon.submitBlock("blob");
+    assertEquals(101, (long) daemon.getInfo().getHeight());
+    assertEquals(2, getNumRequests("get_info"));
+    daemon.getInfo();
+    assertEquals(2, getNumRequests("get_info"));
+
+    // block added by another client is detected by polling, which invalidates the cache
+    height = 102;
+    long start = System.currentTimeMillis();
+    while (daemon.getInfo().getHeight() != 102) {
+      if (System.currentTimeMillis() - start > 30000) fail("Timed out waiting for new block to invalidate cache");
+      try { Thread.sleep(100); }
+      catch (InterruptedException e) { throw new RuntimeException(e); }
+    }
+    assertEquals(3, getNumRequests("get_info"));
+    daemon.getInfo();
+    assertEquals(3, getNumRequests("get_info"));
+  }
+
+  // ------------------------------- PRIVATE ----------------------------------
+
+  private static AtomicInteger getCounter(String method) {
+    AtomicInteger counter = numRequests.get(method);
+    if (counter == null) {
+      numRequests.putIfAbsent(method, new AtomicInteger());
+      counter = numRequests.get(method);
+    }
+    return counter;
+  }
+
+  private static int getNumRequests(String method) {
+    return getCounter(method).get();
+  }
+
+  private static String getBlockHash(long height) {
+    return String.format("%064x", height);
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buf = new byte[4096];
+    int n;
+    while ((n = in.read(buf)) != -1) out.write(buf, 0, n);
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,235 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import common.utils.JsonUtils;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import monero.common.MoneroError;
+import monero.common.MoneroRpcConnection;
+import monero.daemon.MoneroDaemonRpc;
+import monero.daemon.MoneroRangeAggregator;
+import monero.daemon.model.MoneroMinerTxSum;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests aggregating values over block ranges in concurrent, memoized segments
+ * against a stub instead of a daemon.
+ */
+public class TestMoneroRangeAggregator {
+
+  // Splits ranges into segments aligned to the segment size
+  @Test
+  public void testAlignedSegments() {
+    HeightSumAggregator aggregator = new HeightSumAggregator(10, 3, 1);
+    assertEquals(sumHeights(15, 30), (long) aggregator.aggregate(15, 30, 1000));
+    assertEquals(sorted(Arrays.asList("15:5", "20:10", "30:10", "40:5")), sorted(aggregator.getFetches()));
+
+    // single partial segment
+    aggregator.getFetches().clear();
+    assertEquals(sumHeights(52, 3), (long) aggregator.aggregate(52, 3, 1000));
+    assertEquals(sorted(Arrays.asList("52:3")), sorted(aggregator.getFetches()));
+  }
+
+  // Memoizes only full segments below the safe height until cleared
+  @Test
+  public void testMemoizedSegments() {
+    HeightSumAggregator aggregator = new HeightSumAggregator(10, 2, 1);
+    assertEquals(sumHeights(0, 45), (long) aggregator.aggregate(0, 45, 25));
+    assertEquals(5, aggregator.getFetches().size());
+
+    // full segments ending at or below the safe height are not fetched again
+    aggregator.getFetches().clear();
+    assertEquals(sumHeights(0, 45), (long) aggregator.aggregate(0, 45, 25));
+    assertEquals(sorted(Arrays.asList("20:10", "30:10", "40:5")), sorted(aggregator.getFetches()));
+
+    // overlapping range shares memoized segments
+    aggregator.getFetches().clear();
+    assertEquals(sumHeights(5, 20), (long) aggregator.aggregate(5, 20, 25));
+    assertEquals(sorted(Arrays.asList("5:5", "20:5")), sorted(aggregator.getFetches()));
+
+    // cleared segments are fetched again
+    aggregator.clear();
+    aggregator.getFetches().clear();
+    assertEquals(sumHeights(0, 20), (long) aggregator.aggregate(0, 20, 25));
+    assertEquals(sorted(Arrays.asList("0:10", "10:10")), sorted(aggregator.getFetches()));
+  }
+
+  // Retries failed segments independently up to the maximum attempts
+  @Test
+  public void testRetries() {
+    HeightSumAggregator aggregator = new HeightSumAggregator(10, 2, 3);
+    aggregator.setNumFailures(10, 2);
+    assertEquals(sumHeights(0, 30), (long) aggregator.aggregate(0, 30, 1000));
+    assertEquals(sorted(Arrays.asList("0:10", "10:10", "10:10", "10:10", "20:10")), sorted(aggregator.getFetches()));
+
+    // segment which fails every attempt fails the aggregate
+    aggregator.getFetches().clear();
+    aggregator.setNumFailures(40, 3);
+    try {
+      aggregator.aggregate(30, 20, 1000);
+      fail("Should have failed");
+    } catch (MoneroError e) {
+      assertEquals("Failed to fetch segment 40", e.getMessage());
+    }
+    assertEquals(3, Collections.frequency(aggregator.getFetches(), "40:10"));
+  }
+
+  // Preserves the interrupt status of an interrupted aggregate
+  @Test
+  public void testInterrupted() {
+    HeightSumAggregator aggregator = new HeightSumAggregator(10, 1, 1);
+    aggregator.setFetchDelayMs(60000); // fetches are cancelled
+    Thread.currentThread().interrupt();
+    try {
+      aggregator.aggregate(0, 100, 1000);
+      fail("Should have failed");
+    } catch (MoneroError e) {
+      assertTrue(e.getCause() instanceof InterruptedException);
+      assertTrue(Thread.interrupted()); // clears interrupt
+    }
+  }
+
+  // Sums miner txs over memoized segments of the daemon's chain
+  @Test
+  public void testMinerTxSumMemoized() throws IOException {
+    final long chainHeight = 35000;
+    final AtomicInteger numSumRequests = new AtomicInteger();
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/json_rpc", new HttpHandler() {
+      @SuppressWarnings("unchecked")
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        Map<String, Object> req = JsonUtils.toMap(MoneroRpcConnection.MAPPER, new String(readAll(exchange.getRequestBody()), StandardCharsets.UTF_8));
+        Map<String, Object> params = (Map<String, Object>) req.get("params");
+        Map<String, Object> result = new HashMap<String, Object>();
+        result.put("status", "OK");
+        if ("get_block_count".equals(req.get("method"))) result.put("count", chainHeight);
+        else if ("get_coinbase_tx_sum".equals(req.get("method"))) {
+          numSumRequests.incrementAndGet();
+          long height = ((Number) params.get("height")).longValue();
+          long count = ((Number) params.get("count")).longValue();
+          result.put("emission_amount", sumHeights(height, count));
+          result.put("fee_amount", count);
+        }
+        Map<String, Object> resp = new HashMap<String, Object>();
+        resp.put("id", "0");
+        resp.put("jsonrpc", "2.0");
+        resp.put("result", result);
+        byte[] bytes = JsonUtils.serialize(resp).getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+      }
+    });
+    server.start();
+    try {
+      MoneroDaemonRpc daemon = new MoneroDaemonRpc("http://127.0.0.1:" + server.getAddress().getPort());
+      MoneroMinerTxSum sum = daemon.getMinerTxSum(0, chainHeight);
+      assertEquals(BigInteger.valueOf(sumHeights(0, chainHeight)), sum.getEmissionSum());
+      assertEquals(BigInteger.valueOf(chainHeight), sum.getFeeSum());
+      assertEquals(4, numSumRequests.get());
+
+      // repeated sum only fetches the segment within the reorg-safe depth
+      numSumRequests.set(0);
+      sum = daemon.getMinerTxSum(0, chainHeight);
+      assertEquals(BigInteger.valueOf(sumHeights(0, chainHeight)), sum.getEmissionSum());
+      assertEquals(1, numSumRequests.get());
+
+      // cleared sums are fetched again
+      numSumRequests.set(0);
+      daemon.clearMinerTxSumCache();
+      daemon.getMinerTxSum(0, chainHeight);
+      assertEquals(4, numSumRequests.get());
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  // ------------------------------- PRIVATE ----------------------------------
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buf = new byte[4096];
+    int n;
+    while ((n = in.read(buf)) != -1) out.write(buf, 0, n);
+    return out.toByteArray();
+  }
+
+  private static List<String> sorted(List<String> fetches) {
+    List<String> sorted = new ArrayList<String>(fetches);
+    Collections.sort(sorted);
+    return sorted;
+  }
+
+  private static long sumHeights(long startHeight, long numBlocks) {
+    return numBlocks * (2 * startHeight + numBlocks - 1) / 2;
+  }
+
+  /**
+   * Sums the heights of blocks in a range, recording fetches and failing
+   * segments a configured number of times.
+   */
+  private static class HeightSumAggregator extends MoneroRangeAggregator<Long> {
+
+    private List<String> fetches = Collections.synchronizedList(new ArrayList<String>());
+    private Map<Long, Integer> numFailures = new HashMap<Long, Integer>();
+    private volatile long fetchDelayMs;
+
+    public HeightSumAggregator(long segmentSize, int maxParallelism, int maxAttempts) {
+      super(segmentSize, maxParallelism, maxAttempts);
+    }
+
+    public List<String> getFetches() {
+      return fetches;
+    }
+
+    public synchronized void setNumFailures(long startHeight, int numFailures) {
+      this.numFailures.put(startHeight, numFailures);
+    }
+
+    public void setFetchDelayMs(long fetchDelayMs) {
+      this.fetchDelayMs = fetchDelayMs;
+    }
+
+    @Override
+    protected Long aggregateSegment(long startHeight, long numBlocks) {
+      fetches.add(startHeight + ":" + numBlocks);
+      if (fetchDelayMs > 0) {
+        try { Thread.sleep(fetchDelayMs); }
+        catch (InterruptedException e) { throw new MoneroError(e); }
+      }
+      synchronized (this) {
+        Integer remaining = numFailures.get(startHeight);
+        if (remaining != null && remaining > 0) {
+          numFailures.put(startHeight, remaining - 1);
+          throw new MoneroError("Failed to fetch segment " + startHeight);
+        }
+      }
+      return sumHeights(startHeight, numBlocks);
+    }
+
+    @Override
+    protected Long merge(Long value1, Long value2) {
+      return value1 + value2;
+    }
+  }
+}
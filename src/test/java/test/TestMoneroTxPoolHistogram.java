@@ -0,0 +1,151 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import monero.common.MoneroError;
+import monero.daemon.MoneroDaemonRpc;
+import monero.daemon.model.MoneroTxPoolHistogramEntry;
+import monero.daemon.model.MoneroTxPoolStats;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests decoding the binary tx pool histogram from fixtures of the daemon's
+ * get_transaction_pool_stats response, independently of a daemon.
+ */
+public class TestMoneroTxPoolHistogram {
+
+  private static final int NUM_BINS = 10;
+
+  private static HttpServer server;
+  private static volatile byte[] response;
+  private static MoneroDaemonRpc daemon;
+
+  @BeforeAll
+  public static void beforeAll() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/get_transaction_pool_stats", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        byte[] bytes = response;
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+      }
+    });
+    server.start();
+    daemon = new MoneroDaemonRpc("http://127.0.0.1:" + server.getAddress().getPort());
+  }
+
+  @AfterAll
+  public static void afterAll() {
+    server.stop(0);
+  }
+
+  // Decodes histograms of padded structs
+  @Test
+  public void testPaddedEntries() {
+    testHistogram(16);
+  }
+
+  // Decodes histograms of packed structs
+  @Test
+  public void testPackedEntries() {
+    testHistogram(12);
+  }
+
+  // Leaves the histogram uninitialized if the pool has too few txs to bucket
+  @Test
+  public void testEmptyHistogram() {
+    response = toResponse(new byte[0], 1);
+    MoneroTxPoolStats stats = daemon.getTxPoolStats();
+    assertEquals(1, (int) stats.getNumTxs());
+    assertNull(stats.getHisto());
+  }
+
+  // Rejects histograms which are not the daemon's number of bins
+  @Test
+  public void testInvalidLength() {
+    for (int length : new int[] { 48, 96, 16 * (NUM_BINS + 2), 10 * NUM_BINS }) {
+      response = toResponse(new byte[length], 20);
+      try {
+        daemon.getTxPoolStats();
+        fail("Should have failed to decode histogram of length " + length);
+      } catch (MoneroError e) {
+        assertTrue(e.getMessage().startsWith("Invalid binary tx pool histogram"), e.getMessage());
+      }
+    }
+  }
+
+  // ------------------------------- PRIVATE ----------------------------------
+
+  private static void testHistogram(int entrySize) {
+
+    // build histogram with bytes which must be escaped in json and non-zero padding
+    int[] numTxs = new int[NUM_BINS];
+    long[] numBytes = new long[NUM_BINS];
+    ByteBuffer buf = ByteBuffer.allocate(NUM_BINS * entrySize).order(ByteOrder.LITTLE_ENDIAN);
+    for (int i = 0; i < NUM_BINS; i++) {
+      numTxs[i] = i == 0 ? 0x0a22005c : i * 0x01000101;
+      numBytes[i] = i == 0 ? 0xff00080d0c09227fL : i * 0x00ff0000001f0001L;
+      buf.putInt(numTxs[i]);
+      for (int j = 12; j < entrySize; j++) buf.put((byte) 0xab);
+      buf.putLong(numBytes[i]);
+    }
+    response = toResponse(buf.array(), 20);
+
+    // decode and test
+    MoneroTxPoolStats stats = daemon.getTxPoolStats();
+    List<MoneroTxPoolHistogramEntry> histo = stats.getHisto();
+    assertEquals(NUM_BINS, histo.size());
+    for (int i = 0; i < NUM_BINS; i++) {
+      assertEquals(numTxs[i], (int) histo.get(i).getNumTxs());
+      assertEquals(numBytes[i], (long) histo.get(i).getNumBytes());
+      assertTrue(histo.get(i).getMinAge() <= histo.get(i).getMaxAge());
+    }
+    assertEquals(20, (int) stats.getNumTxs());
+    assertEquals(1000, (long) stats.getBytesTotal());
+  }
+
+  /**
+   * Builds a get_transaction_pool_stats response with the histogram as a binary
+   * string escaped the way the daemon's json serializer escapes it: control
+   * characters as unicode escapes and other bytes as is.
+   */
+  private static byte[] toResponse(byte[] histoBin, int numTxs) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("{\"credits\": 0, \"pool_stats\": {");
+    sb.append("\"bytes_max\": 100, \"bytes_med\": 50, \"bytes_min\": 10, \"bytes_total\": 1000, \"fee_total\": 12345, ");
+    sb.append("\"histo\": \"");
+    for (byte b : histoBin) {
+      int c = b & 0xff;
+      if (c == '"') sb.append("\\\"");
+      else if (c == '\\') sb.append("\\\\");
+      else if (c == '\t') sb.append("\\t");
+      else if (c == '\n') sb.append("\\n");
+      else if (c == '\r') sb.append("\\r");
+      else if (c < 0x20 || c == 0x7f) sb.append(String.format("\\u%04x", c));
+      else sb.append((char) c);
+    }
+    sb.append("\", \"histo_98pc\": 0, \"num_10m\": 0, \"num_double_spends\": 0, \"num_failing\": 0, \"num_not_relayed\": 0, ");
+    sb.append("\"oldest\": " + (System.currentTimeMillis() / 1000 - 600) + ", \"txs_total\": " + numTxs + "}, ");
+    sb.append("\"status\": \"OK\", \"top_hash\": \"\", \"untrusted\": false}");
+    return sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+  }
+}
@@ -168,6 +168,43 @@ public class TestMoneroUtils {
     assertEquals(1.25, MoneroUtils.atomicUnitsToXmr(new BigInteger("1250000000000")));
   };
   
+  // Can convert unsigned 64-bit amounts from native code
+  @Test
+  public void testUnsignedAmountConversion() {
+    assertEquals(BigInteger.ZERO, MoneroUtils.toUnsignedBigInteger(0));
+    assertEquals(new BigInteger("1250000000000"), MoneroUtils.toUnsignedBigInteger(1250000000000l));
+    assertEquals(BigInteger.valueOf(Long.MAX_VALUE), MoneroUtils.toUnsignedBigInteger(Long.MAX_VALUE));
+    assertEquals(new BigInteger("9223372036854775808"), MoneroUtils.toUnsignedBigInteger(Long.MIN_VALUE));
+    assertEquals(new BigInteger("18446744073709551615"), MoneroUtils.toUnsignedBigInteger(-1));
+    assertEquals(new BigInteger("18446744073709551615").subtract(BigInteger.valueOf(41)), MoneroUtils.toUnsignedBigInteger(-42));
+  }
+  
+  // Can determine if a confirmed tx is unlocked by height or timestamp
+  @Test
+  public void testIsUnlocked() {
+    long now = 1700000000;
+    Object[][] cases = new Object[][] {
+      
+      // tx height, unlock time, height, timestamp, is unlocked
+      { 100l, null, 109l, now, false },           // spendable age not reached
+      { 100l, null, 110l, now, true },            // spendable age reached
+      { 100l, 0l, 110l, now, true },              // no unlock time
+      { 100l, 105l, 110l, now, true },            // unlock height before spendable age
+      { 100l, 200l, 110l, now, false },           // unlock height not reached
+      { 100l, 200l, 199l, now, false },
+      { 100l, 200l, 200l, now, true },            // unlock height reached
+      { 100l, 499999999l, 200l, now, false },     // largest unlock height
+      { 100l, now + 121, 200l, now, false },      // unlock timestamp beyond leeway
+      { 100l, now + 120, 200l, now, true },       // unlock timestamp within leeway
+      { 100l, now - 1000, 200l, now, true },      // unlock timestamp passed
+      { 100l, now - 1000, 105l, now, false },     // unlock timestamp passed but spendable age not reached
+      { 100l, 500000000l, 200l, now, true },      // smallest unlock timestamp
+    };
+    for (Object[] c : cases) {
+      assertEquals(c[4], MoneroUtils.isUnlocked((Long) c[0], (Long) c[1], (Long) c[2], (Long) c[3]), "Unexpected unlock state for tx height " + c[0] + ", unlock time " + c[1] + ", height " + c[2]);
+    }
+  }
+  
   // ---------------------------- PRIVATE HELPERS -----------------------------
   
   private static void testInvalidAddress(String address, MoneroNetworkType networkType) {
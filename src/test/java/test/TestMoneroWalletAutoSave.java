@@ -0,0 +1,173 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import monero.wallet.MoneroWalletRpc;
+import monero.wallet.model.MoneroAutoSavePolicy;
+import monero.wallet.model.MoneroSaveMetrics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import utils.WalletRpcStub;
+
+/**
+ * Tests saving wallets in the background per their auto-save policy against a
+ * stub monero-wallet-rpc.
+ */
+public class TestMoneroWalletAutoSave {
+
+  private static String uri;
+  private MoneroWalletRpc wallet;
+
+  @BeforeAll
+  public static void beforeAll() throws IOException {
+    uri = WalletRpcStub.start();
+  }
+
+  @AfterAll
+  public static void afterAll() {
+    WalletRpcStub.stop();
+  }
+
+  @BeforeEach
+  public void beforeEach() {
+    wallet = new MoneroWalletRpc(uri);
+    wallet.openWallet("autosave", "abc123");
+  }
+
+  @AfterEach
+  public void afterEach() {
+    WalletRpcStub.setSaveDelayMs(0);
+    wallet.setAutoSavePolicy(null);
+    wallet.close();
+  }
+
+  // Coalesces a burst of changes into one background save
+  @Test
+  public void testCoalesceChanges() {
+    assertNull(wallet.getAutoSavePolicy());
+    wallet.setAutoSavePolicy(new MoneroAutoSavePolicy().setMinIntervalMs(200).setMaxDirtyMs(5000));
+    assertEquals(200, wallet.getAutoSavePolicy().getMinIntervalMs());
+    int numSaves = WalletRpcStub.getNumSaves();
+    for (int i = 0; i < 20; i++) wallet.setAttribute("key" + i, "value" + i);
+    assertTrue(wallet.getSaveMetrics().isDirty());
+
+    // wallet is saved once after changes stop
+    waitForSaves(1);
+    sleep(500);
+    assertEquals(numSaves + 1, WalletRpcStub.getNumSaves());
+    MoneroSaveMetrics metrics = wallet.getSaveMetrics();
+    assertEquals(1, metrics.getNumSaves());
+    assertEquals(0, metrics.getNumFailures());
+    assertEquals(20, metrics.getNumChangesSaved());
+    assertFalse(metrics.isDirty());
+    assertEquals("value7", wallet.getAttribute("key7"));
+  }
+
+  // Saves a wallet which keeps changing once it has been dirty for the maximum time
+  @Test
+  public void testMaxDirtyTime() {
+    wallet.setAutoSavePolicy(new MoneroAutoSavePolicy().setMinIntervalMs(300).setMaxDirtyMs(600));
+    long start = System.currentTimeMillis();
+    while (System.currentTimeMillis() - start < 2000) {
+      wallet.setAttribute("key", Long.toString(System.currentTimeMillis()));
+      sleep(50);
+    }
+    long numSaves = wallet.getSaveMetrics().getNumSaves();
+    assertTrue(numSaves >= 1, "Wallet was not saved while changing");
+    assertTrue(numSaves <= 2000 / 300 + 1, "Saves were not at least the minimum interval apart: " + numSaves);
+  }
+
+  // Changes do not wait for a slow save in progress
+  @Test
+  public void testSaveInBackground() {
+    WalletRpcStub.setSaveDelayMs(500);
+    wallet.setAutoSavePolicy(new MoneroAutoSavePolicy().setMinIntervalMs(0).setMaxDirtyMs(0));
+    wallet.setAttribute("key", "value1");
+    sleep(100); // save in progress
+    long start = System.currentTimeMillis();
+    wallet.setAttribute("key", "value2");
+    assertTrue(System.currentTimeMillis() - start < 400, "Change waited for save in progress");
+
+    // change during save is saved after it
+    waitForSaves(2);
+    MoneroSaveMetrics metrics = wallet.getSaveMetrics();
+    assertEquals(2, metrics.getNumChangesSaved());
+    assertTrue(metrics.getLastSaveLatencyMs() >= 500);
+    assertTrue(metrics.getMaxSaveLatencyMs() >= metrics.getLastSaveLatencyMs());
+    assertTrue(metrics.getAverageSaveLatencyMs() >= 500);
+    assertFalse(metrics.isDirty());
+  }
+
+  // Saves unsaved changes on close per the policy
+  @Test
+  public void testSaveOnClose() {
+
+    // unsaved changes are saved on close
+    wallet.setAutoSavePolicy(new MoneroAutoSavePolicy().setMinIntervalMs(60000).setMaxDirtyMs(60000));
+    wallet.setAttribute("key", "value");
+    int numSaves = WalletRpcStub.getNumSaves();
+    wallet.close();
+    assertEquals(numSaves + 1, WalletRpcStub.getNumSaves());
+    assertEquals(1, wallet.getSaveMetrics().getNumSaves());
+    assertFalse(wallet.getSaveMetrics().isDirty());
+
+    // unsaved changes are discarded on close if not saved on close
+    wallet.openWallet("autosave", "abc123");
+    wallet.setAutoSavePolicy(new MoneroAutoSavePolicy().setMinIntervalMs(60000).setMaxDirtyMs(60000).setSaveOnClose(false));
+    wallet.setAttribute("key", "value");
+    numSaves = WalletRpcStub.getNumSaves();
+    wallet.close();
+    assertEquals(numSaves, WalletRpcStub.getNumSaves());
+
+    // closed wallet is not saved in the background
+    wallet.openWallet("autosave", "abc123");
+    wallet.setAutoSavePolicy(new MoneroAutoSavePolicy().setMinIntervalMs(200).setMaxDirtyMs(200).setSaveOnClose(false));
+    wallet.setAttribute("key", "value");
+    numSaves = WalletRpcStub.getNumSaves();
+    wallet.close();
+    sleep(500);
+    assertEquals(numSaves, WalletRpcStub.getNumSaves());
+    wallet.openWallet("autosave", "abc123");
+  }
+
+  // Rejects invalid policies
+  @Test
+  public void testInvalidPolicy() {
+    try {
+      wallet.setAutoSavePolicy(new MoneroAutoSavePolicy().setMinIntervalMs(-1));
+      fail("Should have failed");
+    } catch (AssertionError e) {
+      assertEquals("Auto-save minimum interval must be >= 0 ms", e.getMessage());
+    }
+    try {
+      wallet.setAutoSavePolicy(new MoneroAutoSavePolicy().setMinIntervalMs(2000).setMaxDirtyMs(1000));
+      fail("Should have failed");
+    } catch (AssertionError e) {
+      assertEquals("Auto-save maximum dirty time must be >= minimum interval", e.getMessage());
+    }
+    assertNull(wallet.getAutoSavePolicy());
+  }
+
+  // ------------------------------- PRIVATE ----------------------------------
+
+  private void waitForSaves(int numSaves) {
+    long start = System.currentTimeMillis();
+    while (wallet.getSaveMetrics().getNumSaves() < numSaves) {
+      if (System.currentTimeMillis() - start > 10000) fail("Timed out waiting for " + numSaves + " saves");
+      sleep(20);
+    }
+  }
+
+  private static void sleep(long ms) {
+    try { Thread.sleep(ms); }
+    catch (InterruptedException e) { throw new RuntimeException(e); }
+  }
+}
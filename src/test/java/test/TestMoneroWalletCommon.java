@@ -39,6 +39,7 @@ import monero.wallet.MoneroWallet;
 import monero.wallet.MoneroWalletRpc;
 import monero.wallet.model.MoneroAccount;
 import monero.wallet.model.MoneroAddressBookEntry;
+import monero.wallet.model.MoneroBalances;
 import monero.wallet.model.MoneroCheckReserve;
 import monero.wallet.model.MoneroCheckTx;
 import monero.wallet.model.MoneroDestination;
@@ -663,6 +664,13 @@ public abstract class TestMoneroWalletCommon {
     TestUtils.testUnsignedBigInteger(accountsUnlockedBalance);
     assertEquals((wallet.getBalance()).toString(), accountsBalance.toString());
     assertEquals((wallet.getUnlockedBalance()).toString(), accountsUnlockedBalance.toString());
+    
+    // test that balance and unlocked balance are fetched together
+    MoneroBalances balances = wallet.getBalances();
+    assertEquals(accountsBalance.toString(), balances.getBalance().toString());
+    assertEquals(accountsUnlockedBalance.toString(), balances.getUnlockedBalance().toString());
+    balances.setBalance(BigInteger.valueOf(-1)); // returned balances do not modify snapshot
+    assertEquals(accountsBalance.toString(), wallet.getBalances().getBalance().toString());
   }
   
   // Can get accounts without subaddresses
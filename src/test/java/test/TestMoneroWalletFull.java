@@ -11,10 +11,16 @@ import static org.junit.jupiter.api.Assumptions.assumeTrue;
 import common.utils.GenUtils;
 import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import monero.common.MoneroError;
 import monero.common.MoneroRpcConnection;
 import monero.common.MoneroUtils;
@@ -22,17 +28,24 @@ import monero.daemon.model.MoneroKeyImage;
 import monero.daemon.model.MoneroNetworkType;
 import monero.wallet.MoneroWallet;
 import monero.wallet.MoneroWalletFull;
+import monero.wallet.MoneroWalletFullPool;
+import monero.wallet.MoneroWalletListenerDispatcher;
 import monero.wallet.MoneroWalletRpc;
 import monero.wallet.model.MoneroAccount;
+import monero.wallet.model.MoneroAutoSavePolicy;
+import monero.wallet.model.MoneroListenerOverflowPolicy;
 import monero.wallet.model.MoneroMultisigInfo;
 import monero.wallet.model.MoneroMultisigInitResult;
 import monero.wallet.model.MoneroOutputWallet;
+import monero.wallet.model.MoneroSyncProgressPolicy;
 import monero.wallet.model.MoneroSyncResult;
 import monero.wallet.model.MoneroTransfer;
 import monero.wallet.model.MoneroTransferQuery;
 import monero.wallet.model.MoneroTxWallet;
 import monero.wallet.model.MoneroWalletConfig;
 import monero.wallet.model.MoneroWalletListener;
+import monero.wallet.model.MoneroWalletListenerI;
+import monero.wallet.model.MoneroWalletPrimitiveListener;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Disabled;
@@ -891,6 +904,499 @@ public class TestMoneroWalletFull extends TestMoneroWalletCommon {
     assertFalse(tester3.isNotified());
   }
   
+  // Throttles sync progress per the sync progress policy
+  @Test
+  public void testSyncProgressPolicy() {
+    
+    // default policy reports all progress
+    long restoreHeight = daemon.getHeight() - 1000;
+    List<Long> allHeights = syncProgressHeights(restoreHeight, null);
+    assertTrue(allHeights.size() > 100);
+    
+    // block stride reports first, final, and progress at least the stride apart
+    List<Long> strideHeights = syncProgressHeights(restoreHeight, new MoneroSyncProgressPolicy().setBlockStride(100));
+    assertTrue(strideHeights.size() < allHeights.size() / 10, "Expected fewer than " + (allHeights.size() / 10) + " progress notifications but got " + strideHeights.size());
+    assertEquals(allHeights.get(0), strideHeights.get(0));
+    assertEquals(allHeights.get(allHeights.size() - 1), strideHeights.get(strideHeights.size() - 1));
+    for (int i = 1; i < strideHeights.size() - 1; i++) assertTrue(strideHeights.get(i) - strideHeights.get(i - 1) >= 100);
+    
+    // percent delta reports at most about 1 / delta
+    List<Long> percentHeights = syncProgressHeights(restoreHeight, new MoneroSyncProgressPolicy().setMinPercentDelta(.25));
+    assertTrue(percentHeights.size() <= 6, "Expected at most 6 progress notifications but got " + percentHeights.size());
+    
+    // invalid policies are rejected
+    MoneroWalletFull wallet = createWallet(new MoneroWalletConfig().setServerUri(""), false);
+    try {
+      assertEquals(1, wallet.getSyncProgressPolicy().getBlockStride());
+      try {
+        wallet.setSyncProgressPolicy(new MoneroSyncProgressPolicy().setBlockStride(0));
+        fail("Should have rejected block stride of 0");
+      } catch (AssertionError e) {
+        assertEquals("Sync progress block stride must be >= 1", e.getMessage());
+      }
+      try {
+        wallet.setSyncProgressPolicy(new MoneroSyncProgressPolicy().setMinPercentDelta(2));
+        fail("Should have rejected percent delta of 2");
+      } catch (AssertionError e) {
+        assertEquals("Sync progress minimum percent delta must be between 0 and 1", e.getMessage());
+      }
+    } finally {
+      wallet.close();
+    }
+  }
+  
+  private List<Long> syncProgressHeights(long restoreHeight, MoneroSyncProgressPolicy policy) {
+    MoneroWalletFull wallet = createWallet(new MoneroWalletConfig().setMnemonic(TestUtils.MNEMONIC).setRestoreHeight(restoreHeight), false);
+    try {
+      if (policy != null) wallet.setSyncProgressPolicy(policy);
+      final List<Long> heights = Collections.synchronizedList(new ArrayList<Long>());
+      wallet.sync(new MoneroWalletListener() {
+        @Override
+        public void onSyncProgress(long height, long startHeight, long endHeight, double percentDone, String message) {
+          heights.add(height);
+        }
+      });
+      return heights;
+    } finally {
+      wallet.close();
+    }
+  }
+  
+  // Notifies primitive listeners the same as model listeners
+  @Test
+  public void testPrimitiveListener() {
+    MoneroWalletFull wallet = createWallet(new MoneroWalletConfig().setMnemonic(TestUtils.MNEMONIC).setRestoreHeight(TestUtils.FIRST_RECEIVE_HEIGHT), false);
+    try {
+      
+      // collect primitive notifications
+      final List<String> primitiveOutputs = Collections.synchronizedList(new ArrayList<String>());
+      final List<BigInteger> primitiveBalances = Collections.synchronizedList(new ArrayList<BigInteger>());
+      MoneroWalletPrimitiveListener primitiveListener = new MoneroWalletPrimitiveListener() {
+        @Override
+        public void onBalancesChanged(long newBalance, long newUnlockedBalance) {
+          primitiveBalances.add(MoneroUtils.toUnsignedBigInteger(newBalance));
+        }
+        @Override
+        public void onOutputReceived(long height, String txHash, long amount, int accountIdx, int subaddressIdx, int version, long unlockHeight, boolean isLocked) {
+          primitiveOutputs.add(txHash + ":" + MoneroUtils.toUnsignedBigInteger(amount) + ":" + accountIdx + ":" + subaddressIdx + ":" + height);
+        }
+      };
+      wallet.addPrimitiveListener(primitiveListener);
+      assertEquals(1, wallet.getPrimitiveListeners().size());
+      assertTrue(wallet.getListeners().isEmpty());
+      
+      // collect model notifications
+      final List<String> outputs = Collections.synchronizedList(new ArrayList<String>());
+      final List<BigInteger> balances = Collections.synchronizedList(new ArrayList<BigInteger>());
+      wallet.addListener(new MoneroWalletListener() {
+        @Override
+        public void onBalancesChanged(BigInteger newBalance, BigInteger newUnlockedBalance) {
+          balances.add(newBalance);
+        }
+        @Override
+        public void onOutputReceived(MoneroOutputWallet output) {
+          outputs.add(output.getTx().getHash() + ":" + output.getAmount() + ":" + output.getAccountIndex() + ":" + output.getSubaddressIndex() + ":" + (output.getTx().getBlock() == null ? 0 : output.getTx().getHeight()));
+        }
+      });
+      
+      // sync and compare
+      wallet.sync();
+      assertFalse(primitiveOutputs.isEmpty());
+      assertEquals(outputs, primitiveOutputs);
+      assertEquals(balances, primitiveBalances);
+      assertEquals(wallet.getBalance(), primitiveBalances.get(primitiveBalances.size() - 1));
+      
+      // unregister primitive listener
+      wallet.removePrimitiveListener(primitiveListener);
+      assertTrue(wallet.getPrimitiveListeners().isEmpty());
+      try {
+        wallet.removePrimitiveListener(primitiveListener);
+        fail("Should have failed to remove unregistered listener");
+      } catch (MoneroError e) {
+        assertEquals("Listener is not registered with wallet", e.getMessage());
+      }
+    } finally {
+      wallet.close();
+    }
+  }
+  
+  // Can close and reopen pooled wallets within a memory budget
+  @Test
+  public void testWalletFullPool() {
+    
+    // create offline wallets to pool
+    List<String> paths = new ArrayList<String>();
+    List<String> addresses = new ArrayList<String>();
+    for (int i = 0; i < 3; i++) {
+      MoneroWalletFull wallet = createWallet(new MoneroWalletConfig().setServerUri(""), false);
+      paths.add(wallet.getPath());
+      addresses.add(wallet.getPrimaryAddress());
+      wallet.close(true);
+    }
+    
+    // pool with room for 2 wallets
+    MoneroWalletFullPool pool = new MoneroWalletFullPool(250) {
+      @Override
+      protected long estimateMemory(MoneroWalletFull wallet, String path) {
+        return 100;
+      }
+    };
+    try {
+      for (String path : paths) pool.register(new MoneroWalletConfig().setPath(path).setPassword(TestUtils.WALLET_PASSWORD).setNetworkType(TestUtils.NETWORK_TYPE));
+      
+      // leasing 3 wallets closes the least recently used
+      for (int i = 0; i < 3; i++) {
+        try (MoneroWalletFullPool.Lease lease = pool.lease(paths.get(i))) {
+          assertEquals(addresses.get(i), lease.getWallet().getPrimaryAddress());
+        }
+      }
+      assertEquals(3, pool.getNumOpens());
+      assertEquals(1, pool.getNumEvictions());
+      assertEquals(new HashSet<String>(paths.subList(1, 3)), pool.getOpenWallets());
+      assertEquals(200, pool.getMemoryUsage());
+      
+      // leasing a closed wallet reopens it
+      MoneroWalletFullPool.Lease lease0 = pool.lease(paths.get(0));
+      assertEquals(addresses.get(0), lease0.getWallet().getPrimaryAddress());
+      assertEquals(4, pool.getNumOpens());
+      assertEquals(new HashSet<String>(Arrays.asList(paths.get(0), paths.get(2))), pool.getOpenWallets());
+      
+      // leased and listened wallets are not closed
+      MoneroWalletFull wallet2;
+      try (MoneroWalletFullPool.Lease lease2 = pool.lease(paths.get(2))) {
+        wallet2 = lease2.getWallet();
+        wallet2.addListener(new MoneroWalletListener());
+      }
+      try (MoneroWalletFullPool.Lease lease1 = pool.lease(paths.get(1))) {
+        assertEquals(addresses.get(1), lease1.getWallet().getPrimaryAddress());
+      }
+      assertEquals(new HashSet<String>(Arrays.asList(paths.get(0), paths.get(2))), pool.getOpenWallets());
+      assertFalse(wallet2.isClosed());
+      
+      // released wallets can be closed
+      lease0.release();
+      try {
+        lease0.getWallet();
+        fail("Should have failed to get wallet of released lease");
+      } catch (MoneroError e) {
+        assertEquals("Lease is released", e.getMessage());
+      }
+      for (MoneroWalletListenerI listener : wallet2.getListeners()) wallet2.removeListener(listener);
+      try (MoneroWalletFullPool.Lease lease1 = pool.lease(paths.get(1))) {
+        assertEquals(new HashSet<String>(Arrays.asList(paths.get(0), paths.get(1))), pool.getOpenWallets());
+        assertEquals(addresses.get(1), lease1.getWallet().getPrimaryAddress());
+        assertTrue(wallet2.isClosed());
+      }
+    } finally {
+      pool.close();
+    }
+    assertTrue(pool.getOpenWallets().isEmpty());
+  }
+  
+  // Can read concurrently with changes and close without races
+  @Test
+  public void testConcurrentReadsAndWrites() throws InterruptedException {
+    final MoneroWalletFull wallet = createWallet(new MoneroWalletConfig().setServerUri(""), false);
+    final String primaryAddress = wallet.getPrimaryAddress();
+    String path = wallet.getPath();
+    final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+    final AtomicInteger numReads = new AtomicInteger();
+    final AtomicInteger numWrites = new AtomicInteger();
+    
+    // readers check state which writers change
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < 8; i++) {
+      threads.add(new Thread(new Runnable() {
+        @Override
+        public void run() {
+          int numSubaddresses = 0;
+          while (true) {
+            try {
+              assertEquals(primaryAddress, wallet.getPrimaryAddress());
+              assertEquals(BigInteger.ZERO, wallet.getBalance());
+              assertTrue(wallet.getTxs().isEmpty());
+              int size = wallet.getSubaddresses(0).size();
+              assertTrue(size >= numSubaddresses, "Subaddresses decreased from " + numSubaddresses + " to " + size);
+              numSubaddresses = size;
+              numReads.incrementAndGet();
+            } catch (MoneroError e) {
+              if (!"Wallet is closed".equals(e.getMessage())) errors.add(e);
+              break;
+            } catch (Throwable e) {
+              errors.add(e);
+              break;
+            }
+          }
+        }
+      }));
+    }
+    
+    // writers change the wallet until closed
+    for (int i = 0; i < 2; i++) {
+      threads.add(new Thread(new Runnable() {
+        @Override
+        public void run() {
+          while (true) {
+            try {
+              try {
+                wallet.sync();
+              } catch (MoneroError e) {
+                if ("Wallet is closed".equals(e.getMessage())) throw e; // offline wallet otherwise fails to sync
+              }
+              wallet.createSubaddress(0);
+              wallet.setAttribute("numWrites", Integer.toString(numWrites.incrementAndGet()));
+              if (numWrites.get() % 10 == 0) wallet.save();
+            } catch (MoneroError e) {
+              if (!"Wallet is closed".equals(e.getMessage())) errors.add(e);
+              break;
+            } catch (Throwable e) {
+              errors.add(e);
+              break;
+            }
+          }
+        }
+      }));
+    }
+    for (Thread thread : threads) thread.start();
+    
+    // close while reading and writing
+    TimeUnit.SECONDS.sleep(3);
+    wallet.close(true);
+    for (Thread thread : threads) thread.join(60000);
+    if (!errors.isEmpty()) throw new RuntimeException(errors.get(0));
+    assertTrue(numReads.get() > 0);
+    assertTrue(numWrites.get() > 0);
+    
+    // calls after close fail
+    try {
+      wallet.getBalance();
+      fail("Should have failed to read closed wallet");
+    } catch (MoneroError e) {
+      assertEquals("Wallet is closed", e.getMessage());
+    }
+    
+    // changes before close are saved
+    MoneroWalletFull reopened = openWallet(new MoneroWalletConfig().setPath(path).setServerUri(""), false);
+    try {
+      int numWritesSaved = Integer.parseInt(reopened.getAttribute("numWrites"));
+      assertTrue(numWritesSaved > 0 && numWritesSaved <= numWrites.get());
+    } finally {
+      reopened.close();
+    }
+  }
+  
+  // Can sync more blocks than a blocking dispatcher's capacity with dispatched listeners reading the wallet
+  @Test
+  public void testDispatchedListenersReadWhileSyncing() throws InterruptedException {
+    long restoreHeight = TestUtils.getDaemonRpc().getHeight() - 100;
+    final MoneroWalletFull wallet = createWallet(new MoneroWalletConfig().setMnemonic(TestUtils.MNEMONIC).setRestoreHeight(restoreHeight), false);
+    MoneroWalletListenerDispatcher dispatcher = new MoneroWalletListenerDispatcher(10, MoneroListenerOverflowPolicy.BLOCK);
+    try {
+      wallet.setListenerDispatcher(dispatcher);
+      final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+      final AtomicInteger numBlocks = new AtomicInteger();
+      wallet.addListener(new MoneroWalletListener() {
+        @Override
+        public void onNewBlock(long height) {
+          try {
+            wallet.getBalance();
+            numBlocks.incrementAndGet();
+          } catch (Throwable e) {
+            errors.add(e);
+          }
+        }
+      });
+      
+      // sync on another thread to detect deadlock
+      Thread syncer = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          wallet.sync();
+        }
+      });
+      syncer.start();
+      syncer.join(120000);
+      assertFalse(syncer.isAlive(), "Deadlocked syncing with dispatched listeners");
+      assertTrue(dispatcher.flush(60000));
+      if (!errors.isEmpty()) throw new RuntimeException(errors.get(0));
+      assertTrue(numBlocks.get() > dispatcher.getCapacity());
+      assertEquals(0, dispatcher.getNumDropped());
+    } finally {
+      wallet.close();
+      dispatcher.close();
+    }
+  }
+  
+  // Can read the wallet from listeners while syncing in the background and sync and close concurrently
+  @Test
+  public void testListenersReadWhileSyncingAndClosing() throws InterruptedException {
+    long restoreHeight = TestUtils.getDaemonRpc().getHeight() - 1000;
+    final MoneroWalletFull wallet = createWallet(new MoneroWalletConfig().setMnemonic(TestUtils.MNEMONIC).setRestoreHeight(restoreHeight), false);
+    final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+    final AtomicInteger numListenerReads = new AtomicInteger();
+    final AtomicInteger numSyncs = new AtomicInteger();
+    
+    // listener reads the wallet on the notifying thread
+    wallet.addListener(new MoneroWalletListener() {
+      @Override
+      public void onSyncProgress(long height, long startHeight, long endHeight, double percentDone, String message) {
+        read();
+      }
+      
+      @Override
+      public void onNewBlock(long height) {
+        read();
+      }
+      
+      private void read() {
+        try {
+          wallet.getBalance();
+          wallet.getHeight();
+          numListenerReads.incrementAndGet();
+        } catch (MoneroError e) {
+          if (!"Wallet is closed".equals(e.getMessage())) errors.add(e);
+        } catch (Throwable e) {
+          errors.add(e);
+        }
+      }
+    });
+    wallet.startSyncing(TestUtils.SYNC_PERIOD_IN_MS);
+    
+    // sync, stop syncing, and change listeners concurrently until closed
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < 2; i++) {
+      threads.add(new Thread(new Runnable() {
+        @Override
+        public void run() {
+          MoneroWalletListener listener = new MoneroWalletListener();
+          while (true) {
+            try {
+              wallet.sync();
+              numSyncs.incrementAndGet();
+              wallet.addListener(listener);
+              wallet.stopSyncing();
+              wallet.removeListener(listener);
+              wallet.startSyncing(TestUtils.SYNC_PERIOD_IN_MS);
+            } catch (MoneroError e) {
+              if (!"Wallet is closed".equals(e.getMessage())) errors.add(e);
+              break;
+            } catch (Throwable e) {
+              errors.add(e);
+              break;
+            }
+          }
+        }
+      }));
+    }
+    for (Thread thread : threads) thread.start();
+    
+    // close while listeners read and threads sync
+    TimeUnit.SECONDS.sleep(5);
+    Thread closer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        wallet.close();
+      }
+    });
+    closer.start();
+    closer.join(60000);
+    assertFalse(closer.isAlive(), "Deadlocked closing wallet");
+    for (Thread thread : threads) {
+      thread.join(60000);
+      assertFalse(thread.isAlive(), "Deadlocked syncing wallet");
+    }
+    if (!errors.isEmpty()) throw new RuntimeException(errors.get(0));
+    assertTrue(numListenerReads.get() > 0);
+    assertTrue(numSyncs.get() > 0);
+  }
+  
+  // Saves blocks synced in the background per the auto-save policy without listeners
+  @Test
+  public void testAutoSaveBackgroundSync() throws InterruptedException {
+    long restoreHeight = TestUtils.getDaemonRpc().getHeight() - 100;
+    MoneroWalletFull wallet = createWallet(new MoneroWalletConfig().setMnemonic(TestUtils.MNEMONIC).setRestoreHeight(restoreHeight), false);
+    try {
+      wallet.setAutoSavePolicy(new MoneroAutoSavePolicy().setMinIntervalMs(100).setMaxDirtyMs(1000));
+      wallet.startSyncing(TestUtils.SYNC_PERIOD_IN_MS);
+      long start = System.currentTimeMillis();
+      while (wallet.getSaveMetrics().getNumSaves() == 0) {
+        if (System.currentTimeMillis() - start > 60000) fail("Background sync was not saved");
+        TimeUnit.MILLISECONDS.sleep(100);
+      }
+      assertTrue(wallet.getSaveMetrics().getNumChangesSaved() > 0);
+    } finally {
+      wallet.close();
+    }
+  }
+  
+  // Can open wallets from keys and cache data in memory
+  @Test
+  public void testOpenWalletData() throws IOException {
+    
+    // open wallet saved to disk from its files' data
+    MoneroWalletFull wallet = createWallet(new MoneroWalletConfig().setServerUri(""), false);
+    String path = wallet.getPath();
+    String primaryAddress = wallet.getPrimaryAddress();
+    wallet.setAttribute("key", "value");
+    wallet.close(true);
+    byte[] keysData = Files.readAllBytes(Paths.get(path + ".keys"));
+    byte[] cacheData = Files.readAllBytes(Paths.get(path));
+    MoneroWalletFull dataWallet = MoneroWalletFull.openWallet(new MoneroWalletConfig().setPassword(TestUtils.WALLET_PASSWORD).setNetworkType(TestUtils.NETWORK_TYPE).setKeysData(keysData).setCacheData(cacheData));
+    try {
+      assertEquals(primaryAddress, dataWallet.getPrimaryAddress());
+      assertEquals("value", dataWallet.getAttribute("key"));
+      assertEquals("", dataWallet.getPath());
+      
+      // in-memory changes round trip through data
+      dataWallet.setAttribute("key", "value2");
+      byte[] keysData2 = dataWallet.getKeysData(TestUtils.WALLET_PASSWORD);
+      byte[] cacheData2 = dataWallet.getCacheData();
+      assertTrue(keysData2.length > 0);
+      assertTrue(cacheData2.length > 0);
+      MoneroWalletFull dataWallet2 = MoneroWalletFull.openWallet(new MoneroWalletConfig().setPassword(TestUtils.WALLET_PASSWORD).setNetworkType(TestUtils.NETWORK_TYPE).setKeysData(keysData2).setCacheData(cacheData2));
+      try {
+        assertEquals(primaryAddress, dataWallet2.getPrimaryAddress());
+        assertEquals("value2", dataWallet2.getAttribute("key"));
+      } finally {
+        dataWallet2.close();
+      }
+      
+      // keys data alone opens the wallet without its cache
+      MoneroWalletFull keysWallet = MoneroWalletFull.openWalletData(TestUtils.WALLET_PASSWORD, TestUtils.NETWORK_TYPE, keysData2, null, null);
+      try {
+        assertEquals(primaryAddress, keysWallet.getPrimaryAddress());
+      } finally {
+        keysWallet.close();
+      }
+      
+      // keys data is encrypted with the given password
+      MoneroWalletFull newPasswordWallet = MoneroWalletFull.openWalletData("new password", TestUtils.NETWORK_TYPE, dataWallet.getKeysData("new password"), cacheData2, null);
+      try {
+        assertEquals(primaryAddress, newPasswordWallet.getPrimaryAddress());
+      } finally {
+        newPasswordWallet.close();
+      }
+    } finally {
+      dataWallet.close();
+    }
+    
+    // cannot open with both path and data
+    try {
+      MoneroWalletFull.openWallet(new MoneroWalletConfig().setPath(path).setPassword(TestUtils.WALLET_PASSWORD).setNetworkType(TestUtils.NETWORK_TYPE).setKeysData(keysData));
+      fail("Should have failed to open wallet with path and keys data");
+    } catch (MoneroError e) {
+      assertEquals("Cannot specify both path and keys or cache data to open wallet", e.getMessage());
+    }
+    
+    // cannot open with wrong password
+    try {
+      MoneroWalletFull.openWalletData("wrong password", TestUtils.NETWORK_TYPE, keysData, cacheData, null);
+      fail("Should have failed to open wallet data with wrong password");
+    } catch (MoneroError e) {
+      // expected
+    }
+  }
+  
   // Is equal to the RPC wallet.
   @Test
   public void testWalletEqualityRpc() {
@@ -0,0 +1,370 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import monero.common.MoneroError;
+import monero.wallet.MoneroWalletListenerDispatcher;
+import monero.wallet.MoneroWalletRpc;
+import monero.wallet.model.MoneroListenerOverflowPolicy;
+import monero.wallet.model.MoneroOutputWallet;
+import monero.wallet.model.MoneroWalletBatchListenerI;
+import monero.wallet.model.MoneroWalletListener;
+import monero.wallet.model.MoneroWalletListenerI;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import utils.WalletRpcStub;
+
+/**
+ * Tests delivering wallet notifications through a listener dispatcher.
+ */
+public class TestMoneroWalletListenerDispatcher {
+  
+  private static String uri;
+  private NotifyingWallet wallet;
+  private MoneroWalletListenerDispatcher dispatcher;
+  
+  @BeforeAll
+  public static void beforeAll() throws IOException {
+    uri = WalletRpcStub.start();
+  }
+  
+  @AfterAll
+  public static void afterAll() {
+    WalletRpcStub.stop();
+  }
+  
+  @BeforeEach
+  public void beforeEach() {
+    wallet = new NotifyingWallet(uri);
+    wallet.openWallet("dispatcher", "abc123");
+  }
+  
+  @AfterEach
+  public void afterEach() {
+    wallet.close();
+    if (dispatcher != null) dispatcher.close();
+    dispatcher = null;
+  }
+  
+  // Delivers notifications in order off the notifying thread
+  @Test
+  public void testAsyncDelivery() throws InterruptedException {
+    dispatcher = new MoneroWalletListenerDispatcher();
+    wallet.setListenerDispatcher(dispatcher);
+    final List<Long> heights = Collections.synchronizedList(new ArrayList<Long>());
+    final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+    wallet.addListener(new MoneroWalletListener() {
+      @Override
+      public void onNewBlock(long height) {
+        threads.add(Thread.currentThread());
+        sleep(10); // slow listener
+        heights.add(height);
+      }
+    });
+    
+    // notifying does not wait for the slow listener
+    long start = System.currentTimeMillis();
+    for (long height = 0; height < 50; height++) wallet.announceNewBlock(height);
+    assertTrue(System.currentTimeMillis() - start < 250, "Notifying waited for slow listener");
+    
+    // notifications are delivered in order on another thread
+    assertTrue(dispatcher.flush(10000));
+    assertEquals(50, heights.size());
+    for (int i = 0; i < heights.size(); i++) assertEquals(i, heights.get(i).longValue());
+    assertNotEquals(Thread.currentThread(), threads.get(0));
+    assertEquals(0, dispatcher.getNumQueued());
+    
+    // cannot attach dispatcher to another wallet
+    NotifyingWallet wallet2 = new NotifyingWallet(uri);
+    try {
+      wallet2.setListenerDispatcher(dispatcher);
+      fail("Should have rejected dispatcher attached to another wallet");
+    } catch (MoneroError e) {
+      assertEquals("Listener dispatcher is already attached to a wallet", e.getMessage());
+    }
+    
+    // listeners are notified directly without dispatcher
+    wallet.setListenerDispatcher(null);
+    wallet2.setListenerDispatcher(dispatcher);
+    wallet.announceNewBlock(50);
+    assertEquals(51, heights.size());
+    assertEquals(Thread.currentThread(), threads.get(50));
+  }
+  
+  // Drops or blocks on a full queue per the overflow policy
+  @Test
+  public void testOverflowPolicies() throws InterruptedException {
+    assertEquals(Arrays.asList(0l, 1l, 2l, 3l, 4l, 5l), testOverflowPolicy(MoneroListenerOverflowPolicy.DROP_NEWEST, 5));
+    assertEquals(Arrays.asList(0l, 6l, 7l, 8l, 9l, 10l), testOverflowPolicy(MoneroListenerOverflowPolicy.DROP_OLDEST, 5));
+    assertEquals(Arrays.asList(0l, 1l, 2l, 3l, 4l, 5l, 6l, 7l, 8l, 9l, 10l), testOverflowPolicy(MoneroListenerOverflowPolicy.BLOCK, 0));
+  }
+  
+  private List<Long> testOverflowPolicy(MoneroListenerOverflowPolicy policy, long expectedDropped) throws InterruptedException {
+    if (dispatcher != null) dispatcher.close();
+    wallet.setListenerDispatcher(null);
+    dispatcher = new MoneroWalletListenerDispatcher(5, policy);
+    wallet.setListenerDispatcher(dispatcher);
+    final CountDownLatch delivering = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final List<Long> heights = Collections.synchronizedList(new ArrayList<Long>());
+    MoneroWalletListenerI listener = new MoneroWalletListener() {
+      @Override
+      public void onNewBlock(long height) {
+        delivering.countDown();
+        await(release);
+        heights.add(height);
+      }
+    };
+    wallet.addListener(listener);
+    
+    // block delivery on first notification
+    wallet.announceNewBlock(0);
+    assertTrue(delivering.await(10, TimeUnit.SECONDS));
+    
+    // overflow queue from another thread
+    final CountDownLatch notified = new CountDownLatch(1);
+    new Thread(new Runnable() {
+      @Override
+      public void run() {
+        for (long height = 1; height <= 10; height++) wallet.announceNewBlock(height);
+        notified.countDown();
+      }
+    }).start();
+    if (policy == MoneroListenerOverflowPolicy.BLOCK) {
+      assertFalse(notified.await(200, TimeUnit.MILLISECONDS), "Notifying thread should block on full queue");
+      assertEquals(5, dispatcher.getNumQueued());
+    } else {
+      assertTrue(notified.await(10, TimeUnit.SECONDS));
+    }
+    
+    // release delivery
+    release.countDown();
+    assertTrue(notified.await(10, TimeUnit.SECONDS));
+    assertTrue(dispatcher.flush(10000));
+    assertEquals(expectedDropped, dispatcher.getNumDropped());
+    wallet.removeListener(listener);
+    return new ArrayList<Long>(heights);
+  }
+  
+  // Delivers consecutive received outputs in one batch to batch listeners
+  @Test
+  public void testBatchListener() throws InterruptedException {
+    dispatcher = new MoneroWalletListenerDispatcher();
+    wallet.setListenerDispatcher(dispatcher);
+    final CountDownLatch delivering = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final List<List<MoneroOutputWallet>> batches = new ArrayList<List<MoneroOutputWallet>>();
+    final List<MoneroOutputWallet> received = new ArrayList<MoneroOutputWallet>();
+    BatchListener batchListener = new BatchListener() {
+      @Override
+      public void onNewBlock(long height) {
+        delivering.countDown();
+        await(release);
+      }
+      
+      @Override
+      public void onOutputsReceived(List<MoneroOutputWallet> outputs) {
+        batches.add(outputs);
+      }
+      
+      @Override
+      public void onOutputReceived(MoneroOutputWallet output) {
+        fail("Batch listener should receive outputs in batches");
+      }
+    };
+    wallet.addListener(batchListener);
+    wallet.addListener(new MoneroWalletListener() {
+      @Override
+      public void onOutputReceived(MoneroOutputWallet output) {
+        received.add(output);
+      }
+    });
+    
+    // queue outputs while delivery is blocked
+    wallet.announceNewBlock(0);
+    assertTrue(delivering.await(10, TimeUnit.SECONDS));
+    List<MoneroOutputWallet> outputs = new ArrayList<MoneroOutputWallet>();
+    for (int i = 0; i < 5; i++) {
+      MoneroOutputWallet output = new MoneroOutputWallet().setAmount(BigInteger.valueOf(i));
+      outputs.add(output);
+      wallet.announceOutputReceived(output);
+    }
+    wallet.announceBalancesChanged(BigInteger.TEN, BigInteger.ONE);
+    MoneroOutputWallet lastOutput = new MoneroOutputWallet().setAmount(BigInteger.TEN);
+    wallet.announceOutputReceived(lastOutput);
+    release.countDown();
+    assertTrue(dispatcher.flush(10000));
+    
+    // batch listener receives consecutive outputs in one batch
+    assertEquals(2, batches.size());
+    assertEquals(outputs, batches.get(0));
+    assertEquals(Arrays.asList(lastOutput), batches.get(1));
+    List<MoneroOutputWallet> allOutputs = new ArrayList<MoneroOutputWallet>(outputs);
+    allOutputs.add(lastOutput);
+    assertEquals(allOutputs, received);
+    
+    // batch listener receives singleton batches without dispatcher
+    wallet.setListenerDispatcher(null);
+    wallet.announceOutputReceived(lastOutput);
+    assertEquals(3, batches.size());
+    assertEquals(Arrays.asList(lastOutput), batches.get(2));
+  }
+  
+  // Delivers to listeners registered when notified and isolates failing listeners
+  @Test
+  public void testListenerRegistration() throws InterruptedException {
+    dispatcher = new MoneroWalletListenerDispatcher();
+    wallet.setListenerDispatcher(dispatcher);
+    final List<String> notifications = Collections.synchronizedList(new ArrayList<String>());
+    MoneroWalletListenerI failing = new MoneroWalletListener() {
+      @Override
+      public void onNewBlock(long height) {
+        notifications.add("failing " + height);
+        throw new RuntimeException("Listener failure");
+      }
+    };
+    MoneroWalletListenerI removed = new MoneroWalletListener() {
+      @Override
+      public void onNewBlock(long height) {
+        notifications.add("removed " + height);
+      }
+    };
+    wallet.addListener(failing);
+    wallet.addListener(removed);
+    wallet.addListener(removed); // listeners are registered once
+    assertEquals(2, wallet.getListeners().size());
+    wallet.announceNewBlock(0);
+    wallet.removeListener(removed);
+    wallet.announceNewBlock(1);
+    assertTrue(dispatcher.flush(10000));
+    assertEquals(Arrays.asList("failing 0", "removed 0", "failing 1"), notifications);
+    
+    // listener can unregister itself while notified directly
+    wallet.setListenerDispatcher(null);
+    wallet.removeListener(failing);
+    notifications.clear();
+    for (int i = 0; i < 2; i++) {
+      wallet.addListener(new MoneroWalletListener() {
+        @Override
+        public void onNewBlock(long height) {
+          notifications.add("self-removing " + height);
+          wallet.removeListener(this);
+        }
+      });
+    }
+    wallet.announceNewBlock(2);
+    wallet.announceNewBlock(3);
+    assertEquals(Arrays.asList("self-removing 2", "self-removing 2"), notifications);
+    assertTrue(wallet.getListeners().isEmpty());
+  }
+  
+  // Does not block a notifying thread which holds a lock that listeners need to read the wallet
+  @Test
+  public void testNotifyWhileLocked() throws InterruptedException {
+    dispatcher = new MoneroWalletListenerDispatcher(5, MoneroListenerOverflowPolicy.BLOCK);
+    wallet.setListenerDispatcher(dispatcher);
+    final List<Long> heights = Collections.synchronizedList(new ArrayList<Long>());
+    wallet.addListener(new MoneroWalletListener() {
+      @Override
+      public void onNewBlock(long height) {
+        wallet.read(); // waits for the notifying thread to release the lock
+        heights.add(height);
+      }
+    });
+    
+    // notify more than the dispatcher's capacity while holding the lock
+    Thread syncer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        wallet.announceNewBlocksLocked(50);
+      }
+    });
+    syncer.start();
+    syncer.join(10000);
+    assertFalse(syncer.isAlive(), "Notifying thread deadlocked on full queue while holding lock");
+    assertTrue(dispatcher.flush(10000));
+    assertEquals(50, heights.size());
+    assertEquals(0, dispatcher.getNumDropped());
+  }
+  
+  private static void sleep(long ms) {
+    try {
+      TimeUnit.MILLISECONDS.sleep(ms);
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+  
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+  
+  private static abstract class BatchListener extends MoneroWalletListener implements MoneroWalletBatchListenerI { }
+  
+  /**
+   * Wallet which exposes notifying its listeners, optionally while holding a
+   * lock which listeners need to read it, like a full wallet while syncing.
+   */
+  private static class NotifyingWallet extends MoneroWalletRpc {
+    
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(true);
+    
+    public NotifyingWallet(String uri) {
+      super(uri);
+    }
+    
+    public void read() {
+      lock.readLock().lock();
+      lock.readLock().unlock();
+    }
+    
+    public void announceNewBlocksLocked(long numBlocks) {
+      lock.writeLock().lock();
+      try {
+        for (long height = 0; height < numBlocks; height++) announceNewBlock(height);
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+    
+    @Override
+    protected boolean isWaitingForListenersAllowed() {
+      return !lock.isWriteLockedByCurrentThread() && lock.getReadHoldCount() == 0;
+    }
+    
+    @Override
+    public void announceNewBlock(long height) {
+      super.announceNewBlock(height);
+    }
+    
+    @Override
+    public void announceBalancesChanged(BigInteger newBalance, BigInteger newUnlockedBalance) {
+      super.announceBalancesChanged(newBalance, newUnlockedBalance);
+    }
+    
+    @Override
+    public void announceOutputReceived(MoneroOutputWallet output) {
+      super.announceOutputReceived(output);
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import monero.common.MoneroError;
+import monero.wallet.MoneroWalletRpc;
+import monero.wallet.model.MoneroPage;
+import monero.wallet.model.MoneroTransfer;
+import monero.wallet.model.MoneroTxQuery;
+import monero.wallet.model.MoneroTxWallet;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import utils.WalletRpcStub;
+
+/**
+ * Tests paging wallet txs and transfers against a stub monero-wallet-rpc.
+ */
+public class TestMoneroWalletPaging {
+  
+  private static MoneroWalletRpc wallet;
+  
+  @BeforeAll
+  public static void beforeAll() throws IOException {
+    wallet = new MoneroWalletRpc(WalletRpcStub.start());
+    wallet.openWallet("paging", "abc123");
+  }
+  
+  @AfterAll
+  public static void afterAll() {
+    wallet.close();
+    WalletRpcStub.stop();
+  }
+  
+  // Pages through txs in height order with height bounds pushed down
+  @Test
+  public void testTxsPage() {
+    
+    // get all txs
+    List<MoneroTxWallet> allTxs = wallet.getTxs();
+    assertFalse(allTxs.isEmpty());
+    
+    // page through txs
+    int numRequests = WalletRpcStub.getTransfersRequests().size();
+    List<MoneroTxWallet> pagedTxs = new ArrayList<MoneroTxWallet>();
+    String cursor = null;
+    int numPages = 0;
+    do {
+      MoneroPage<MoneroTxWallet> page = wallet.getTxsPage(null, cursor, 7);
+      assertTrue(page.getItems().size() <= 7);
+      assertEquals(page.hasNext(), page.getItems().size() == 7);
+      pagedTxs.addAll(page.getItems());
+      cursor = page.getNextCursor();
+      numPages++;
+    } while (cursor != null);
+    assertEquals(getHashes(allTxs), getHashes(pagedTxs));
+    assertEquals((allTxs.size() + 6) / 7 + (allTxs.size() % 7 == 0 ? 1 : 0), numPages);
+    
+    // each request is bounded by height
+    List<Map<String, Object>> requests = WalletRpcStub.getTransfersRequests().subList(numRequests, WalletRpcStub.getTransfersRequests().size());
+    for (Map<String, Object> request : requests) {
+      if (!Boolean.TRUE.equals(request.get("in"))) continue; // unconfirmed
+      assertEquals(true, request.get("filter_by_height"));
+      assertTrue(((Number) request.get("max_height")).longValue() - ((Number) request.get("min_height")).longValue() <= 4000);
+    }
+    
+    // first page only fetches from the start of the chain
+    numRequests = WalletRpcStub.getTransfersRequests().size();
+    MoneroPage<MoneroTxWallet> page = wallet.getTxsPage(null, null, 5);
+    assertEquals(getHashes(allTxs.subList(0, 5)), getHashes(page.getItems()));
+    for (Map<String, Object> request : WalletRpcStub.getTransfersRequests().subList(numRequests, WalletRpcStub.getTransfersRequests().size())) {
+      if (Boolean.TRUE.equals(request.get("in"))) assertTrue(((Number) request.get("max_height")).longValue() < WalletRpcStub.STUB_HEIGHT - 1);
+    }
+  }
+  
+  // Pages within the query's heights and resumes within a height
+  @Test
+  public void testTxsPageWithQuery() {
+    MoneroTxQuery query = new MoneroTxQuery().setMinHeight(1000l).setMaxHeight(1500l);
+    List<MoneroTxWallet> allTxs = wallet.getTxs(query);
+    assertFalse(allTxs.isEmpty());
+    List<MoneroTxWallet> pagedTxs = new ArrayList<MoneroTxWallet>();
+    String cursor = null;
+    do {
+      MoneroPage<MoneroTxWallet> page = wallet.getTxsPage(query, cursor, 2); // multiple txs per height span pages
+      pagedTxs.addAll(page.getItems());
+      cursor = page.getNextCursor();
+    } while (cursor != null);
+    assertEquals(getHashes(allTxs), getHashes(pagedTxs));
+    for (MoneroTxWallet tx : pagedTxs) assertTrue(tx.getHeight() >= 1000 && tx.getHeight() <= 1500);
+  }
+  
+  // Pages through transfers
+  @Test
+  public void testTransfersPage() {
+    List<MoneroTransfer> allTransfers = wallet.getTransfers();
+    List<String> pagedHashes = new ArrayList<String>();
+    String cursor = null;
+    do {
+      MoneroPage<MoneroTransfer> page = wallet.getTransfersPage(null, cursor, 50);
+      for (MoneroTransfer transfer : page.getItems()) pagedHashes.add(transfer.getTx().getHash());
+      cursor = page.getNextCursor();
+    } while (cursor != null);
+    List<String> allHashes = new ArrayList<String>();
+    for (MoneroTransfer transfer : allTransfers) allHashes.add(transfer.getTx().getHash());
+    assertEquals(allHashes, pagedHashes);
+  }
+  
+  // Rejects invalid cursors and limits
+  @Test
+  public void testInvalidPage() {
+    try {
+      wallet.getTxsPage(null, "abc", 10);
+      fail("Should have rejected invalid cursor");
+    } catch (MoneroError e) {
+      assertEquals("Invalid page cursor: abc", e.getMessage());
+    }
+    try {
+      wallet.getTxsPage(null, null, 0);
+      fail("Should have rejected invalid limit");
+    } catch (MoneroError e) {
+      assertTrue(e.getMessage().contains("limit"));
+    }
+    assertNull(wallet.getTxsPage(null, WalletRpcStub.STUB_HEIGHT + ":0", 10).getNextCursor());
+  }
+  
+  private static List<String> getHashes(List<MoneroTxWallet> txs) {
+    List<String> hashes = new ArrayList<String>();
+    for (MoneroTxWallet tx : txs) hashes.add(tx.getHash());
+    return hashes;
+  }
+}
@@ -20,6 +20,9 @@ import monero.wallet.MoneroWallet;
 import monero.wallet.MoneroWalletRpc;
 import monero.wallet.model.MoneroAccount;
 import monero.wallet.model.MoneroAccountTag;
+import monero.wallet.model.MoneroSubaddress;
+import monero.wallet.model.MoneroTransfer;
+import monero.wallet.model.MoneroTransferQuery;
 import monero.wallet.model.MoneroTxWallet;
 import monero.wallet.model.MoneroWalletConfig;
 import org.junit.jupiter.api.AfterAll;
@@ -343,6 +346,74 @@ public class TestMoneroWalletRpc extends TestMoneroWalletCommon {
     assertNull(address);
   }
   
+  // Can cache transfers locally and answer queries like monero-wallet-rpc
+  @Test
+  public void testCachingTransfers() {
+    assumeTrue(TEST_NON_RELAYS);
+    MoneroWalletRpc walletRpc = (MoneroWalletRpc) wallet;
+    List<MoneroTxWallet> txsRpc = walletRpc.getTxs();
+    List<MoneroTransfer> transfersRpc = walletRpc.getTransfers(new MoneroTransferQuery().setAccountIndex(0).setSubaddressIndex(1));
+    walletRpc.startCachingTransfers();
+    try {
+      assertTrue(walletRpc.isCachingTransfers());
+      for (int i = 0; i < 2; i++) { // fill then refresh store
+        List<MoneroTxWallet> txsCached = walletRpc.getTxs();
+        assertEquals(txsRpc.size(), txsCached.size());
+        for (int j = 0; j < txsRpc.size(); j++) {
+          assertEquals(txsRpc.get(j).getHash(), txsCached.get(j).getHash());
+          assertEquals(txsRpc.get(j).getHeight(), txsCached.get(j).getHeight());
+          assertEquals(txsRpc.get(j).getIncomingAmount(), txsCached.get(j).getIncomingAmount());
+          assertEquals(txsRpc.get(j).getOutgoingAmount(), txsCached.get(j).getOutgoingAmount());
+        }
+        List<MoneroTransfer> transfersCached = walletRpc.getTransfers(new MoneroTransferQuery().setAccountIndex(0).setSubaddressIndex(1));
+        assertEquals(transfersRpc.size(), transfersCached.size());
+        for (int j = 0; j < transfersRpc.size(); j++) {
+          assertEquals(transfersRpc.get(j).getTx().getHash(), transfersCached.get(j).getTx().getHash());
+          assertEquals(transfersRpc.get(j).getAmount(), transfersCached.get(j).getAmount());
+        }
+      }
+    } finally {
+      walletRpc.stopCachingTransfers();
+    }
+    assertFalse(walletRpc.isCachingTransfers());
+  }
+  
+  // Can get accounts with subaddresses fetched concurrently and cached
+  @Test
+  public void testGetAccountsWithSubaddressesCached() {
+    assumeTrue(TEST_NON_RELAYS);
+    List<MoneroAccount> accounts = wallet.getAccounts(true);
+    for (MoneroAccount account : accounts) {
+      List<MoneroSubaddress> subaddresses = wallet.getSubaddresses(account.getIndex());
+      assertEquals(subaddresses.size(), account.getSubaddresses().size());
+      for (int i = 0; i < subaddresses.size(); i++) {
+        assertEquals(subaddresses.get(i).getIndex(), account.getSubaddresses().get(i).getIndex());
+        assertEquals(subaddresses.get(i).getAddress(), account.getSubaddresses().get(i).getAddress());
+        assertEquals(subaddresses.get(i).getAddress(), wallet.getAddress(account.getIndex(), subaddresses.get(i).getIndex()));
+      }
+    }
+    
+    // created subaddress is cached
+    MoneroSubaddress subaddress = wallet.createSubaddress(0);
+    assertEquals(subaddress.getAddress(), wallet.getAddress(0, subaddress.getIndex()));
+    assertEquals(accounts.get(0).getSubaddresses().size() + 1, wallet.getSubaddresses(0).size());
+  }
+  
+  // Can get address indices from the cache of listed and created subaddresses
+  @Test
+  public void testGetAddressIndexCached() {
+    assumeTrue(TEST_NON_RELAYS);
+    for (MoneroSubaddress subaddress : wallet.getSubaddresses(0)) {
+      MoneroSubaddress indices = wallet.getAddressIndex(subaddress.getAddress());
+      assertEquals(subaddress.getAccountIndex(), indices.getAccountIndex());
+      assertEquals(subaddress.getIndex(), indices.getIndex());
+      indices.setIndex(-1); // returned subaddress does not modify cache
+      assertEquals(subaddress.getIndex(), wallet.getAddressIndex(subaddress.getAddress()).getIndex());
+    }
+    MoneroSubaddress created = wallet.createSubaddress(0);
+    assertEquals(created.getIndex(), wallet.getAddressIndex(created.getAddress()).getIndex());
+  }
+  
   // Can rescan spent
   @Test
   public void testRescanSpent() {
@@ -0,0 +1,66 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import monero.wallet.MoneroWalletRpc;
+import monero.wallet.model.MoneroOutputWallet;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import utils.WalletRpcStub;
+
+/**
+ * Tests that cached account and subaddress indices do not hide accounts and
+ * subaddresses created without the wallet, against a stub monero-wallet-rpc.
+ */
+public class TestMoneroWalletRpcAddressCache {
+
+  private static String uri;
+  private MoneroWalletRpc wallet;
+
+  @BeforeAll
+  public static void beforeAll() throws IOException {
+    uri = WalletRpcStub.start();
+  }
+
+  @AfterAll
+  public static void afterAll() {
+    WalletRpcStub.stop();
+  }
+
+  @BeforeEach
+  public void beforeEach() {
+    wallet = new MoneroWalletRpc(uri);
+    wallet.openWallet("addresscache", "abc123");
+  }
+
+  @AfterEach
+  public void afterEach() {
+    wallet.close();
+    WalletRpcStub.resetAccounts();
+  }
+
+  // Finds outputs of an account created by another client while not listening
+  @Test
+  public void testAccountCreatedOutOfBand() {
+    assertTrue(wallet.getOutputs().isEmpty()); // caches account indices
+    int accountIdx = WalletRpcStub.addAccount();
+    List<MoneroOutputWallet> outputs = wallet.getOutputs();
+    assertEquals(1, outputs.size());
+    assertEquals(accountIdx, (int) outputs.get(0).getAccountIndex());
+  }
+
+  // Gets the address of a subaddress created by another client while not listening
+  @Test
+  public void testSubaddressCreatedOutOfBand() {
+    assertNull(wallet.getAddress(0, 1)); // caches all subaddresses of account 0
+    int subaddressIdx = WalletRpcStub.addSubaddress(0);
+    assertEquals(WalletRpcStub.getAddress(0, subaddressIdx), wallet.getAddress(0, subaddressIdx));
+  }
+}
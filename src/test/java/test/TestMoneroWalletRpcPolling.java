@@ -0,0 +1,187 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import monero.wallet.MoneroWalletRpc;
+import monero.wallet.model.MoneroOutputWallet;
+import monero.wallet.model.MoneroWalletListener;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import utils.WalletRpcStub;
+
+/**
+ * Tests notifications of a wallet which polls a stub monero-wallet-rpc.
+ */
+public class TestMoneroWalletRpcPolling {
+
+  private static final String TX_HASH_1 = String.format("%064x", 111111111l);
+  private static final String TX_HASH_2 = String.format("%064x", 222222222l);
+
+  private static String uri;
+  private MoneroWalletRpc wallet;
+  private OutputListener listener;
+
+  @BeforeAll
+  public static void beforeAll() throws IOException {
+    uri = WalletRpcStub.start();
+  }
+
+  @AfterAll
+  public static void afterAll() {
+    WalletRpcStub.stop();
+  }
+
+  @BeforeEach
+  public void beforeEach() {
+    WalletRpcStub.setHeight(WalletRpcStub.STUB_HEIGHT);
+    wallet = new MoneroWalletRpc(uri);
+    wallet.openWallet("polling", "abc123");
+    listener = new OutputListener();
+  }
+
+  @AfterEach
+  public void afterEach() {
+    wallet.close();
+    WalletRpcStub.removeTx(TX_HASH_1);
+    WalletRpcStub.removeTx(TX_HASH_2);
+    WalletRpcStub.setHeight(WalletRpcStub.STUB_HEIGHT);
+  }
+
+  // Re-fetches locked txs within the re-org depth and carries over older txs until their unlock height
+  @Test
+  public void testPollHeightWindow() {
+    WalletRpcStub.putTx(TX_HASH_1, 2900, 3010); // locked by unlock height
+    WalletRpcStub.putTx(TX_HASH_2, 2995, 0); // locked by confirmations until 3005
+    startListening();
+
+    // locked txs are announced once
+    pollAt(3002);
+    assertEquals(Arrays.asList(3000l, 3001l), listener.getBlocks());
+    assertEquals(Arrays.asList(TX_HASH_1 + ":locked", TX_HASH_2 + ":locked"), sorted(listener.getOutputs()));
+
+    // only blocks within the re-org depth are re-fetched while no tx unlocks
+    int numRequests = WalletRpcStub.getTransfersRequests().size();
+    pollAt(3004);
+    assertEquals(Arrays.asList(3000l, 3001l, 3002l, 3003l), listener.getBlocks());
+    assertEquals(2, listener.getOutputs().size());
+    List<Map<String, Object>> requests = WalletRpcStub.getTransfersRequests();
+    assertTrue(requests.size() > numRequests);
+    for (Map<String, Object> request : requests.subList(numRequests, requests.size())) {
+      if (!Boolean.TRUE.equals(request.get("in"))) continue;
+      assertEquals(Boolean.TRUE, request.get("filter_by_height"));
+      assertEquals(3002 - 10 - 1, ((Number) request.get("min_height")).longValue()); // min_height is exclusive
+    }
+
+    // txs are announced when unlocked
+    pollAt(3006);
+    assertEquals(Arrays.asList(TX_HASH_2 + ":unlocked"), listener.getOutputs().subList(2, listener.getOutputs().size()));
+    pollAt(3010);
+    assertEquals(Arrays.asList(TX_HASH_2 + ":unlocked", TX_HASH_1 + ":unlocked"), listener.getOutputs().subList(2, listener.getOutputs().size()));
+  }
+
+  // Re-fetches txs which are re-orged within the re-org depth
+  @Test
+  public void testPollReorg() {
+    WalletRpcStub.putTx(TX_HASH_1, 2998, 0);
+    WalletRpcStub.putTx(TX_HASH_2, 2999, 0);
+    startListening();
+    pollAt(3001);
+    assertEquals(Arrays.asList(TX_HASH_1 + ":locked", TX_HASH_2 + ":locked"), sorted(listener.getOutputs()));
+
+    // re-org confirms tx 1 in a later block and drops tx 2
+    WalletRpcStub.putTx(TX_HASH_1, 3001, 0);
+    WalletRpcStub.removeTx(TX_HASH_2);
+    pollAt(3009);
+    assertEquals(2, listener.getOutputs().size());
+
+    // tx 1 unlocks at its new height and tx 2 is never announced unlocked
+    pollAt(3010);
+    assertEquals(2, listener.getOutputs().size());
+    pollAt(3011);
+    assertEquals(Arrays.asList(TX_HASH_1 + ":unlocked"), listener.getOutputs().subList(2, listener.getOutputs().size()));
+    pollAt(3020);
+    assertEquals(3, listener.getOutputs().size());
+  }
+
+  // ------------------------------- PRIVATE ----------------------------------
+
+  /**
+   * Add the listener and wait for its initial snapshot on the background poll thread.
+   */
+  private void startListening() {
+    int numHeightRequests = WalletRpcStub.getNumRequests("get_height");
+    wallet.addListener(listener);
+    long start = System.currentTimeMillis();
+    while (WalletRpcStub.getNumRequests("get_height") == numHeightRequests) {
+      if (System.currentTimeMillis() - start > 5000) fail("Timed out waiting for initial snapshot");
+      sleep(10);
+    }
+  }
+
+  /**
+   * Advance the stub's height and poll, retrying while the initial snapshot is in progress.
+   */
+  private void pollAt(long height) {
+    WalletRpcStub.setHeight(height);
+    long start = System.currentTimeMillis();
+    while (true) {
+      int numHeightRequests = WalletRpcStub.getNumRequests("get_height");
+      wallet.sync();
+      if (WalletRpcStub.getNumRequests("get_height") > numHeightRequests) return;
+      if (System.currentTimeMillis() - start > 5000) fail("Timed out waiting to poll");
+      sleep(10);
+    }
+  }
+
+  private static List<String> sorted(List<String> outputs) {
+    List<String> sorted = new ArrayList<String>(outputs);
+    Collections.sort(sorted);
+    return sorted;
+  }
+
+  private static void sleep(long ms) {
+    try { Thread.sleep(ms); }
+    catch (InterruptedException e) { throw new RuntimeException(e); }
+  }
+
+  /**
+   * Records new blocks and received outputs as their tx hash and lock state.
+   */
+  private static class OutputListener extends MoneroWalletListener {
+
+    private List<Long> blocks = new ArrayList<Long>();
+    private List<String> outputs = new ArrayList<String>();
+
+    @Override
+    public synchronized void onNewBlock(long height) {
+      blocks.add(height);
+    }
+
+    @Override
+    public synchronized void onOutputReceived(MoneroOutputWallet output) {
+      String entry = output.getTx().getHash() + (Boolean.TRUE.equals(output.getTx().isLocked()) ? ":locked" : ":unlocked");
+      assertFalse(entry.startsWith("null"));
+      outputs.add(entry);
+    }
+
+    public synchronized List<Long> getBlocks() {
+      return new ArrayList<Long>(blocks);
+    }
+
+    public synchronized List<String> getOutputs() {
+      return new ArrayList<String>(outputs);
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import monero.common.MoneroError;
+import monero.wallet.MoneroWalletRpc;
+import monero.wallet.MoneroWalletRpcProcessPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import utils.WalletRpcStub;
+
+/**
+ * Tests leasing wallets from a pool of stub monero-wallet-rpc processes.
+ */
+public class TestMoneroWalletRpcProcessPool {
+  
+  private MoneroWalletRpcProcessPool pool;
+  
+  @AfterEach
+  public void afterEach() {
+    if (pool != null) pool.close();
+  }
+  
+  // Can open and share wallets on processes
+  @Test
+  public void testLease() throws IOException {
+    pool = startPool(2, 60000);
+    MoneroWalletRpcProcessPool.Lease lease1 = pool.lease("wallet1", "abc123");
+    MoneroWalletRpcProcessPool.Lease lease2 = pool.lease("wallet2", "abc123");
+    MoneroWalletRpcProcessPool.Lease lease3 = pool.lease("wallet1", "abc123");
+    assertEquals("stub-wallet1", lease1.getWallet().getPrimaryAddress());
+    assertEquals("stub-wallet2", lease2.getWallet().getPrimaryAddress());
+    assertSame(lease1.getWallet(), lease3.getWallet());
+    assertNotEquals(lease1.getWallet().getRpcConnection().getUri(), lease2.getWallet().getRpcConnection().getUri());
+    assertEquals(new HashSet<String>(Arrays.asList("wallet1", "wallet2")), pool.getOpenWallets());
+    
+    // cannot lease with wrong password
+    try {
+      pool.lease("wallet1", "wrong");
+      fail("Should have failed to lease wallet with wrong password");
+    } catch (MoneroError e) {
+      assertEquals("Invalid password for wallet wallet1", e.getMessage());
+    }
+    
+    // cannot lease third wallet while processes are leased
+    try {
+      pool.lease("wallet3", "abc123", 100);
+      fail("Should have timed out waiting for process");
+    } catch (MoneroError e) {
+      assertTrue(e.getMessage().contains("Timed out"));
+    }
+    
+    // lease third wallet on released process
+    lease2.release();
+    try (MoneroWalletRpcProcessPool.Lease lease4 = pool.lease("wallet3", "abc123", 100)) {
+      assertEquals("stub-wallet3", lease4.getWallet().getPrimaryAddress());
+      assertEquals(new HashSet<String>(Arrays.asList("wallet1", "wallet3")), pool.getOpenWallets());
+    }
+    lease1.release();
+    lease3.release();
+  }
+  
+  // Closes least recently used wallets and keeps pinned wallets open
+  @Test
+  public void testLruAndPinning() throws IOException {
+    pool = startPool(2, 60000);
+    pool.pin("hot");
+    try {
+      pool.pin("hot2");
+      fail("Should not pin as many wallets as processes");
+    } catch (MoneroError e) { }
+    pool.lease("hot", "abc123").release();
+    pool.lease("wallet1", "abc123").release();
+    pool.lease("wallet2", "abc123").release();
+    pool.lease("hot", "abc123").release();
+    pool.lease("wallet3", "abc123").release();
+    assertEquals(new HashSet<String>(Arrays.asList("hot", "wallet3")), pool.getOpenWallets());
+    
+    // unpinned wallet is least recently used
+    pool.unpin("hot");
+    pool.lease("wallet3", "abc123").release();
+    pool.lease("wallet4", "abc123").release();
+    assertEquals(new HashSet<String>(Arrays.asList("wallet3", "wallet4")), pool.getOpenWallets());
+  }
+  
+  // Restarts processes which exit
+  @Test
+  public void testRestart() throws IOException, InterruptedException {
+    pool = startPool(1, 100);
+    MoneroWalletRpc wallet;
+    try (MoneroWalletRpcProcessPool.Lease lease = pool.lease("wallet1", "abc123")) {
+      wallet = lease.getWallet();
+    }
+    wallet.stopProcess();
+    long deadline = System.currentTimeMillis() + 30000;
+    while (pool.getNumRestarts() == 0 && System.currentTimeMillis() < deadline) Thread.sleep(50);
+    assertEquals(1, pool.getNumRestarts());
+    try (MoneroWalletRpcProcessPool.Lease lease = pool.lease("wallet1", "abc123")) {
+      assertFalse(wallet == lease.getWallet());
+      assertEquals("stub-wallet1", lease.getWallet().getPrimaryAddress());
+    }
+  }
+  
+  private static MoneroWalletRpcProcessPool startPool(int numProcesses, long healthCheckPeriodMs) throws IOException {
+    List<List<String>> cmds = new ArrayList<List<String>>();
+    for (int i = 0; i < numProcesses; i++) {
+      cmds.add(Arrays.asList(
+          System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+          "-cp", System.getProperty("java.class.path"),
+          WalletRpcStub.class.getName(),
+          "--rpc-bind-port", "0"));
+    }
+    MoneroWalletRpcProcessPool pool = new MoneroWalletRpcProcessPool(cmds, healthCheckPeriodMs);
+    pool.start();
+    return pool;
+  }
+}
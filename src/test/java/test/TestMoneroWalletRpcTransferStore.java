@@ -0,0 +1,168 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import monero.wallet.MoneroWalletRpc;
+import monero.wallet.model.MoneroTxWallet;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import utils.WalletRpcStub;
+
+/**
+ * Tests caching a wallet's transfers in memory against a stub monero-wallet-rpc.
+ */
+public class TestMoneroWalletRpcTransferStore {
+
+  private static final String TX_HASH_1 = String.format("%064x", 111111111l);
+  private static final String TX_HASH_2 = String.format("%064x", 222222222l);
+
+  private static String uri;
+  private MoneroWalletRpc wallet;
+
+  @BeforeAll
+  public static void beforeAll() throws IOException {
+    uri = WalletRpcStub.start();
+  }
+
+  @AfterAll
+  public static void afterAll() {
+    WalletRpcStub.stop();
+  }
+
+  @BeforeEach
+  public void beforeEach() {
+    WalletRpcStub.setHeight(WalletRpcStub.STUB_HEIGHT);
+    wallet = new MoneroWalletRpc(uri);
+    wallet.openWallet("transferstore", "abc123");
+    wallet.startCachingTransfers();
+  }
+
+  @AfterEach
+  public void afterEach() {
+    wallet.close();
+    WalletRpcStub.removeTx(TX_HASH_1);
+    WalletRpcStub.removeTx(TX_HASH_2);
+    WalletRpcStub.setHeight(WalletRpcStub.STUB_HEIGHT);
+  }
+
+  // Fetches all transfers once, then only transfers within the re-org depth of the last refresh
+  @Test
+  public void testIncrementalRefresh() {
+    Map<String, MoneroTxWallet> txs = getTxs();
+    assertEquals(getNumStubTxs(), txs.size());
+    assertNull(getLastTransfersRequest().get("filter_by_height"));
+
+    // new tx is added to the store with a refreshed height
+    WalletRpcStub.putTx(TX_HASH_1, 3003, 0);
+    WalletRpcStub.setHeight(3005);
+    txs = getTxs();
+    assertEquals(Boolean.TRUE, getLastTransfersRequest().get("filter_by_height"));
+    assertEquals(3000 - 10 - 1, ((Number) getLastTransfersRequest().get("min_height")).longValue()); // min_height is exclusive
+    assertEquals(getNumStubTxs() + 1, txs.size());
+    assertEquals(3003, (long) txs.get(TX_HASH_1).getHeight());
+    assertTrue(txs.get(TX_HASH_1).isLocked());
+    assertEquals(2, (long) txs.get(TX_HASH_1).getNumConfirmations());
+
+    // stored transfers below the refresh window are kept with updated confirmations
+    WalletRpcStub.setHeight(3020);
+    txs = getTxs();
+    assertEquals(3005 - 10 - 1, ((Number) getLastTransfersRequest().get("min_height")).longValue());
+    assertEquals(getNumStubTxs() + 1, txs.size());
+    assertFalse(txs.get(TX_HASH_1).isLocked());
+    assertEquals(17, (long) txs.get(TX_HASH_1).getNumConfirmations());
+    String oldestHash = String.format("%064x", WalletRpcStub.HEIGHT_OFFSET * 10);
+    assertEquals(3020 - WalletRpcStub.HEIGHT_OFFSET, (long) txs.get(oldestHash).getNumConfirmations());
+  }
+
+  // Rebuilds the store when a stored transfer moves or disappears within the refresh window
+  @Test
+  public void testReorgRebuild() {
+    WalletRpcStub.putTx(TX_HASH_1, 2995, 0);
+    WalletRpcStub.putTx(TX_HASH_2, 2996, 0);
+    assertEquals(getNumStubTxs() + 2, getTxs().size());
+
+    // re-org moves tx 1 to a later block
+    WalletRpcStub.putTx(TX_HASH_1, 3000, 0);
+    WalletRpcStub.setHeight(3001);
+    int numRequests = WalletRpcStub.getTransfersRequests().size();
+    Map<String, MoneroTxWallet> txs = getTxs();
+    List<Map<String, Object>> requests = WalletRpcStub.getTransfersRequests();
+    assertEquals(numRequests + 2, requests.size()); // refresh window then full rebuild
+    assertEquals(Boolean.TRUE, requests.get(numRequests).get("filter_by_height"));
+    assertNull(requests.get(numRequests + 1).get("filter_by_height"));
+    assertEquals(getNumStubTxs() + 2, txs.size());
+    assertEquals(3000, (long) txs.get(TX_HASH_1).getHeight());
+    assertEquals(2996, (long) txs.get(TX_HASH_2).getHeight());
+
+    // re-org drops tx 2
+    WalletRpcStub.removeTx(TX_HASH_2);
+    WalletRpcStub.setHeight(3002);
+    txs = getTxs();
+    assertNull(getLastTransfersRequest().get("filter_by_height"));
+    assertEquals(getNumStubTxs() + 1, txs.size());
+    assertFalse(txs.containsKey(TX_HASH_2));
+
+    // height decrease rebuilds the store
+    WalletRpcStub.removeTx(TX_HASH_1);
+    WalletRpcStub.setHeight(3000);
+    txs = getTxs();
+    assertNull(getLastTransfersRequest().get("filter_by_height"));
+    assertEquals(getNumStubTxs(), txs.size());
+    assertFalse(txs.containsKey(TX_HASH_1));
+  }
+
+  // Re-fetches locked transfers below the re-org depth until they unlock
+  @Test
+  public void testUnlockRecheck() {
+    WalletRpcStub.putTx(TX_HASH_1, 2900, 3010); // locked by unlock height
+    assertTrue(getTxs().get(TX_HASH_1).isLocked());
+
+    // locked tx extends the refresh window
+    WalletRpcStub.setHeight(3005);
+    assertTrue(getTxs().get(TX_HASH_1).isLocked());
+    assertEquals(2900 - 1, ((Number) getLastTransfersRequest().get("min_height")).longValue());
+
+    // tx unlocks at its unlock height
+    WalletRpcStub.setHeight(3010);
+    Map<String, MoneroTxWallet> txs = getTxs();
+    assertEquals(2900 - 1, ((Number) getLastTransfersRequest().get("min_height")).longValue());
+    assertFalse(txs.get(TX_HASH_1).isLocked());
+    assertEquals(getNumStubTxs() + 1, txs.size());
+
+    // unlocked tx is kept below the re-org depth
+    WalletRpcStub.setHeight(3011);
+    txs = getTxs();
+    assertEquals(3010 - 10 - 1, ((Number) getLastTransfersRequest().get("min_height")).longValue());
+    assertFalse(txs.get(TX_HASH_1).isLocked());
+    assertEquals(2900, (long) txs.get(TX_HASH_1).getHeight());
+  }
+
+  // ------------------------------- PRIVATE ----------------------------------
+
+  private Map<String, MoneroTxWallet> getTxs() {
+    Map<String, MoneroTxWallet> txs = new HashMap<String, MoneroTxWallet>();
+    for (MoneroTxWallet tx : wallet.getTxs()) txs.put(tx.getHash(), tx);
+    return txs;
+  }
+
+  private static Map<String, Object> getLastTransfersRequest() {
+    List<Map<String, Object>> requests = WalletRpcStub.getTransfersRequests();
+    return requests.get(requests.size() - 1);
+  }
+
+  private static int getNumStubTxs() {
+    int numTxs = 0;
+    for (long height = 0; height < WalletRpcStub.STUB_HEIGHT; height++) numTxs += WalletRpcStub.getNumTxs(height);
+    return numTxs;
+  }
+}
@@ -0,0 +1,100 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.util.List;
+import monero.common.MoneroError;
+import monero.wallet.MoneroWalletRpc;
+import monero.wallet.model.MoneroTxQuery;
+import monero.wallet.model.MoneroTxWallet;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import utils.WalletRpcStub;
+
+/**
+ * Tests building wallet txs from concurrent transfer and output requests
+ * against a stub monero-wallet-rpc.
+ */
+public class TestMoneroWalletRpcTxQueries {
+
+  private static MoneroWalletRpc wallet;
+
+  @BeforeAll
+  public static void beforeAll() throws IOException {
+    wallet = new MoneroWalletRpc(WalletRpcStub.start());
+    wallet.openWallet("txqueries", "abc123");
+  }
+
+  @AfterAll
+  public static void afterAll() {
+    wallet.close();
+    WalletRpcStub.stop();
+  }
+
+  @AfterEach
+  public void afterEach() {
+    WalletRpcStub.setInconsistentTx(null);
+    WalletRpcStub.setRequestDelayMs("get_transfers", 0);
+    WalletRpcStub.setRequestDelayMs("incoming_transfers", 0);
+  }
+
+  // Fetches transfers and outputs concurrently
+  @Test
+  public void testConcurrentTransfersAndOutputs() {
+    wallet.getTxs(new MoneroTxQuery().setIncludeOutputs(true)); // cache account indices
+    WalletRpcStub.setRequestDelayMs("get_transfers", 500);
+    WalletRpcStub.setRequestDelayMs("incoming_transfers", 500);
+    long start = System.currentTimeMillis();
+    List<MoneroTxWallet> txs = wallet.getTxs(new MoneroTxQuery().setIncludeOutputs(true));
+    long elapsed = System.currentTimeMillis() - start;
+    assertFalse(txs.isEmpty());
+    assertTrue(elapsed >= 500 && elapsed < 900, "Transfers and outputs were not fetched concurrently: " + elapsed + " ms");
+  }
+
+  // Re-fetches a tx which is inconsistent across rpc calls and merges it into the shared block
+  @Test
+  public void testRefetchInconsistentTx() {
+    WalletRpcStub.setInconsistentTx(1);
+    List<MoneroTxWallet> txs = wallet.getTxs(new MoneroTxQuery().setIncludeOutputs(true));
+    assertEquals(2, WalletRpcStub.getNumRefetches());
+
+    // re-fetched tx is confirmed with its outputs
+    MoneroTxWallet refetchedTx = null;
+    MoneroTxWallet blockTx = null;
+    for (MoneroTxWallet tx : txs) {
+      if (WalletRpcStub.INCONSISTENT_TX_HASH.equals(tx.getHash())) refetchedTx = tx;
+      else if (tx.getHeight() != null && tx.getHeight() == WalletRpcStub.INCONSISTENT_TX_HEIGHT) blockTx = tx;
+    }
+    assertNotNull(refetchedTx);
+    assertTrue(refetchedTx.isConfirmed());
+    assertEquals(WalletRpcStub.INCONSISTENT_TX_HEIGHT, (long) refetchedTx.getHeight());
+    assertEquals(1, refetchedTx.getOutputs().size());
+    assertEquals(1, refetchedTx.getIncomingTransfers().size());
+
+    // re-fetched tx shares the block of other txs at its height
+    assertNotNull(blockTx);
+    assertTrue(refetchedTx.getBlock() == blockTx.getBlock());
+    assertTrue(refetchedTx.getBlock().getTxs().contains(refetchedTx));
+    assertTrue(refetchedTx.getBlock().getTxs().contains(blockTx));
+  }
+
+  // Fails after the maximum re-fetches of a tx which stays inconsistent
+  @Test
+  public void testRefetchLimit() {
+    WalletRpcStub.setInconsistentTx(Integer.MAX_VALUE);
+    try {
+      wallet.getTxs(new MoneroTxQuery().setIncludeOutputs(true));
+      fail("Should have failed");
+    } catch (MoneroError e) {
+      assertEquals("Txs are inconsistent across rpc calls after 3 re-fetches: [" + WalletRpcStub.INCONSISTENT_TX_HASH + "]", e.getMessage());
+    }
+    assertEquals(3, WalletRpcStub.getNumRefetches());
+  }
+}
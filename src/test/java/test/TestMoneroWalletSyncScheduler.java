@@ -0,0 +1,141 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import monero.wallet.MoneroWallet;
+import monero.wallet.MoneroWalletSyncScheduler;
+import monero.wallet.model.MoneroSyncMetrics;
+import monero.wallet.model.MoneroSyncResult;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests scheduling syncs of many wallets with stub wallets.
+ */
+public class TestMoneroWalletSyncScheduler {
+  
+  private AtomicLong chainHeight = new AtomicLong();
+  private List<String> syncOrder = Collections.synchronizedList(new ArrayList<String>());
+  private AtomicInteger numSyncing = new AtomicInteger();
+  private AtomicInteger maxNumSyncing = new AtomicInteger();
+  
+  // Syncs wallets to the daemon's height under the concurrency limit
+  @Test
+  public void testConcurrencyLimit() throws InterruptedException {
+    MoneroWalletSyncScheduler scheduler = new MoneroWalletSyncScheduler(3);
+    List<MoneroWallet> wallets = new ArrayList<MoneroWallet>();
+    for (int i = 0; i < 12; i++) {
+      wallets.add(getStubWallet("wallet" + i, 20, null));
+      scheduler.addWallet(wallets.get(i));
+    }
+    chainHeight.set(100);
+    scheduler.notifyHeight(100);
+    scheduler.start();
+    try {
+      waitForSyncs(scheduler, wallets, 1);
+      assertTrue(maxNumSyncing.get() <= 3, "Exceeded max concurrent syncs: " + maxNumSyncing.get());
+      for (MoneroWallet wallet : wallets) {
+        MoneroSyncMetrics metrics = scheduler.getMetrics(wallet);
+        assertEquals(100, (long) metrics.getHeight());
+        assertEquals(0, (long) metrics.getLag());
+        assertEquals(0, metrics.getNumFailures());
+        assertFalse(metrics.isSyncing());
+      }
+      
+      // one notification syncs wallets once
+      chainHeight.set(101);
+      scheduler.notifyHeight(101);
+      waitForSyncs(scheduler, wallets, 2);
+      assertEquals(wallets.size() * 2, syncOrder.size());
+      assertEquals(101, (long) scheduler.getMetrics(wallets.get(0)).getHeight());
+    } finally {
+      scheduler.stop();
+    }
+  }
+  
+  // Syncs active wallets first then the least recently synced
+  @Test
+  public void testPriority() throws InterruptedException {
+    MoneroWalletSyncScheduler scheduler = new MoneroWalletSyncScheduler(1);
+    CountDownLatch latch = new CountDownLatch(1);
+    MoneroWallet blocker = getStubWallet("blocker", 0, latch);
+    List<MoneroWallet> wallets = Arrays.asList(getStubWallet("a", 0, null), getStubWallet("b", 0, null), getStubWallet("c", 0, null));
+    for (MoneroWallet wallet : wallets) scheduler.addWallet(wallet);
+    chainHeight.set(100);
+    scheduler.notifyHeight(100);
+    scheduler.start();
+    try {
+      waitForSyncs(scheduler, wallets, 1);
+      List<String> firstOrder = new ArrayList<String>(syncOrder);
+      
+      // occupy the only sync slot while wallets become due
+      scheduler.addWallet(blocker);
+      while (scheduler.getNumSyncing() == 0) Thread.sleep(10);
+      chainHeight.set(101);
+      scheduler.notifyHeight(101);
+      scheduler.markActive(wallets.get(2));
+      assertEquals(3, scheduler.getNumPending());
+      latch.countDown();
+      waitForSyncs(scheduler, wallets, 2);
+      
+      // active wallet is first, then wallets in order of last sync
+      List<String> expectedOrder = new ArrayList<String>();
+      expectedOrder.add("c");
+      for (String path : firstOrder) if (!path.equals("c")) expectedOrder.add(path);
+      assertEquals(expectedOrder, syncOrder.subList(4, 7));
+    } finally {
+      scheduler.stop();
+    }
+  }
+  
+  private void waitForSyncs(MoneroWalletSyncScheduler scheduler, List<MoneroWallet> wallets, long numSyncs) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 30000;
+    for (MoneroWallet wallet : wallets) {
+      while (scheduler.getMetrics(wallet).getNumSyncs() < numSyncs) {
+        assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for syncs");
+        Thread.sleep(10);
+      }
+    }
+  }
+  
+  /**
+   * Get a stub wallet which syncs to the chain height.
+   */
+  private MoneroWallet getStubWallet(final String path, final long syncTimeMs, final CountDownLatch latch) {
+    return (MoneroWallet) Proxy.newProxyInstance(MoneroWallet.class.getClassLoader(), new Class<?>[] { MoneroWallet.class }, new InvocationHandler() {
+      private long height;
+      @Override
+      public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getName().equals("sync") && method.getParameterCount() == 0) {
+          int num = numSyncing.incrementAndGet();
+          synchronized (maxNumSyncing) { if (num > maxNumSyncing.get()) maxNumSyncing.set(num); }
+          try {
+            if (latch != null) latch.await();
+            Thread.sleep(syncTimeMs);
+            long prevHeight = height;
+            height = chainHeight.get();
+            syncOrder.add(path);
+            return new MoneroSyncResult(height - prevHeight, false);
+          } finally {
+            numSyncing.decrementAndGet();
+          }
+        }
+        if (method.getName().equals("getHeight")) return height;
+        if (method.getName().equals("getPath")) return path;
+        if (method.getName().equals("toString")) return path;
+        throw new UnsupportedOperationException(method.getName());
+      }
+    });
+  }
+}
@@ -0,0 +1,214 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import monero.common.MoneroError;
+import monero.wallet.MoneroWalletRpc;
+import monero.wallet.MoneroZmqNotification;
+import monero.wallet.model.MoneroOutputWallet;
+import monero.wallet.model.MoneroWalletListener;
+import monero.wallet.model.MoneroZmqMetrics;
+import org.junit.jupiter.api.Test;
+import org.zeromq.SocketType;
+import org.zeromq.ZContext;
+import org.zeromq.ZMQ;
+import utils.WalletRpcStub;
+
+/**
+ * Tests parsing zmq notifications from fixtures of monero-wallet-rpc's
+ * publications and announcing them to a listener.
+ */
+public class TestMoneroZmqNotification {
+  
+  private static final String TX_HASH = "9d3d2a6d1a4e2a36b8e1aa5e6b5f8e8f0a3e4f9c2b7d1e6a5c4b3a29180706f5";
+  private static final String TX = "{\"version\": 2, \"unlock_time\": 3010, \"vin\": [{\"key\": {\"amount\": 0, \"key_offsets\": [1, 2, 3], \"k_image\": \"ab\"}}], \"vout\": [{\"amount\": 0, \"target\": {\"tagged_key\": {\"key\": \"cd\", \"view_tag\": \"ef\"}}}], \"extra\": [1, 2, 3], \"rct_signatures\": {\"type\": 6, \"txnFee\": 30000000}}";
+  
+  private static final String CHAIN_MAIN = "json-minimal-chain_main:{\"first_height\": 3000, \"first_prev_id\": \"00\", \"ids\": [\"01\", \"02\"]}";
+  private static final String MONEY_RECEIVED = "json-full-money_received:{\"height\": 2993, \"txid\": \"" + TX_HASH + "\", \"tx\": " + TX + ", \"amount\": 1000000000000, \"subaddr_index_major\": 1, \"subaddr_index_minor\": 2, \"is_change\": false}";
+  private static final String MONEY_SPENT = "json-full-money_spent:{\"height\": 2993, \"txid\": \"" + TX_HASH + "\", \"tx_in\": " + TX + ", \"amount\": 18446744073709551615, \"subaddr_index_major\": 0, \"subaddr_index_minor\": 0}";
+  private static final String UNCONFIRMED_MONEY_RECEIVED = "json-full-unconfirmed_money_received:{\"txid\": \"" + TX_HASH + "\", \"tx\": " + TX + ", \"amount\": 2000000000000, \"subaddr_index_major\": 0, \"subaddr_index_minor\": 3}";
+  
+  // Parses new blocks
+  @Test
+  public void testParseChainMain() {
+    MoneroZmqNotification notification = MoneroZmqNotification.parse(CHAIN_MAIN);
+    assertEquals(MoneroZmqNotification.TOPIC_CHAIN_MAIN, notification.getTopic());
+    assertEquals(3000, (long) notification.getFirstHeight());
+    assertNull(notification.getTxHash());
+    
+    // first height is required
+    try {
+      MoneroZmqNotification.parse("json-minimal-chain_main:{\"first_prev_id\": \"00\", \"ids\": [\"01\"]}");
+      fail("Should have failed");
+    } catch (MoneroError e) {
+      assertTrue(e.getMessage().contains("missing first_height"), e.getMessage());
+    }
+  }
+  
+  // Parses received outputs with the tx's fields and skips its inputs and outputs
+  @Test
+  public void testParseMoneyReceived() {
+    MoneroZmqNotification notification = MoneroZmqNotification.parse(MONEY_RECEIVED);
+    assertEquals(MoneroZmqNotification.TOPIC_MONEY_RECEIVED, notification.getTopic());
+    assertEquals(TX_HASH, notification.getTxHash());
+    assertEquals(new BigInteger("1000000000000"), notification.getAmount());
+    assertEquals(1, (int) notification.getAccountIndex());
+    assertEquals(2, (int) notification.getSubaddressIndex());
+    assertEquals(2993, (long) notification.getHeight());
+    assertTrue(notification.isConfirmed());
+    assertEquals(2, (int) notification.getVersion());
+    assertEquals(3010, (long) notification.getUnlockTime());
+    assertNull(notification.getFirstHeight());
+  }
+  
+  // Parses spent outputs with the tx under tx_in and amounts beyond a long
+  @Test
+  public void testParseMoneySpent() {
+    MoneroZmqNotification notification = MoneroZmqNotification.parse(MONEY_SPENT);
+    assertEquals(MoneroZmqNotification.TOPIC_MONEY_SPENT, notification.getTopic());
+    assertEquals(TX_HASH, notification.getTxHash());
+    assertEquals(new BigInteger("18446744073709551615"), notification.getAmount());
+    assertEquals(0, (int) notification.getAccountIndex());
+    assertEquals(0, (int) notification.getSubaddressIndex());
+    assertTrue(notification.isConfirmed());
+    assertEquals(2, (int) notification.getVersion());
+    assertEquals(3010, (long) notification.getUnlockTime());
+  }
+  
+  // Parses unconfirmed received outputs without a height
+  @Test
+  public void testParseUnconfirmedMoneyReceived() {
+    MoneroZmqNotification notification = MoneroZmqNotification.parse(UNCONFIRMED_MONEY_RECEIVED);
+    assertEquals(MoneroZmqNotification.TOPIC_UNCONFIRMED_MONEY_RECEIVED, notification.getTopic());
+    assertEquals(TX_HASH, notification.getTxHash());
+    assertEquals(new BigInteger("2000000000000"), notification.getAmount());
+    assertEquals(3, (int) notification.getSubaddressIndex());
+    assertNull(notification.getHeight());
+    assertFalse(notification.isConfirmed());
+    
+    // height of 0 is also unconfirmed
+    notification = MoneroZmqNotification.parse(UNCONFIRMED_MONEY_RECEIVED.replace("{\"txid\"", "{\"height\": 0, \"txid\""));
+    assertEquals(0, (long) notification.getHeight());
+    assertFalse(notification.isConfirmed());
+  }
+  
+  // Parses empty and invalid notifications
+  @Test
+  public void testParseInvalid() {
+    assertNull(MoneroZmqNotification.parse("json-full-money_received:"));
+    for (String content : new String[] { "json-full-money_received", "json-full-money_received:[1, 2]", "json-full-money_received:{\"txid\": " }) {
+      try {
+        MoneroZmqNotification.parse(content);
+        fail("Should have failed to parse " + content);
+      } catch (MoneroError e) {
+        // expected
+      }
+    }
+  }
+  
+  // Announces published notifications, including outputs without a height, and reports queue metrics
+  @Test
+  public void testListenerMetrics() throws IOException {
+    String uri = WalletRpcStub.start();
+    ZContext context = new ZContext();
+    MoneroWalletRpc wallet = null;
+    try {
+      ZMQ.Socket publisher = context.createSocket(SocketType.PUB);
+      int port = publisher.bindToRandomPort("tcp://127.0.0.1");
+      wallet = new MoneroWalletRpc(uri, null, null, "tcp://127.0.0.1:" + port);
+      wallet.openWallet("zmq", "abc123");
+      assertNull(wallet.getZmqMetrics());
+      NotificationListener listener = new NotificationListener();
+      wallet.addListener(listener);
+      
+      // publish new blocks until subscribed
+      long start = System.currentTimeMillis();
+      while (listener.getBlocks().isEmpty()) {
+        if (System.currentTimeMillis() - start > 5000) fail("Timed out waiting for zmq subscription");
+        publisher.send(CHAIN_MAIN);
+        sleep(50);
+      }
+      assertEquals(3000, (long) listener.getBlocks().get(0));
+      
+      // publish outputs
+      publisher.send(MONEY_RECEIVED);
+      publisher.send(UNCONFIRMED_MONEY_RECEIVED);
+      publisher.send(MONEY_SPENT);
+      while (listener.getOutputs().size() < 3) {
+        if (System.currentTimeMillis() - start > 5000) fail("Timed out waiting for outputs");
+        sleep(10);
+      }
+      List<MoneroOutputWallet> outputs = listener.getOutputs();
+      assertEquals(2993, (long) outputs.get(0).getTx().getHeight());
+      assertTrue(outputs.get(0).getTx().isConfirmed());
+      assertTrue(outputs.get(0).getTx().isIncoming());
+      assertFalse(outputs.get(1).getTx().isConfirmed());
+      assertTrue(outputs.get(1).getTx().inTxPool());
+      assertNull(outputs.get(1).getTx().getHeight());
+      assertFalse(outputs.get(2).getTx().isIncoming());
+      
+      // all received notifications are processed without blocking
+      MoneroZmqMetrics metrics = wallet.getZmqMetrics();
+      while (metrics.getNumProcessed() < metrics.getNumReceived()) {
+        if (System.currentTimeMillis() - start > 5000) fail("Timed out waiting for notifications to process");
+        sleep(10);
+        metrics = wallet.getZmqMetrics();
+      }
+      assertEquals(listener.getBlocks().size() + 3, metrics.getNumReceived());
+      assertEquals(0, metrics.getNumBlocked());
+      assertEquals(0, metrics.getBlockedTimeMs());
+      assertTrue(metrics.getMaxQueueSize() <= metrics.getNumReceived());
+    } finally {
+      if (wallet != null) wallet.close();
+      context.close();
+      WalletRpcStub.stop();
+    }
+  }
+  
+  // ------------------------------- PRIVATE ----------------------------------
+  
+  private static void sleep(long ms) {
+    try { Thread.sleep(ms); }
+    catch (InterruptedException e) { throw new RuntimeException(e); }
+  }
+  
+  /**
+   * Records new blocks and received and spent outputs.
+   */
+  private static class NotificationListener extends MoneroWalletListener {
+    
+    private List<Long> blocks = new ArrayList<Long>();
+    private List<MoneroOutputWallet> outputs = new ArrayList<MoneroOutputWallet>();
+    
+    @Override
+    public synchronized void onNewBlock(long height) {
+      blocks.add(height);
+    }
+    
+    @Override
+    public synchronized void onOutputReceived(MoneroOutputWallet output) {
+      outputs.add(output);
+    }
+    
+    @Override
+    public synchronized void onOutputSpent(MoneroOutputWallet output) {
+      outputs.add(output);
+    }
+    
+    public synchronized List<Long> getBlocks() {
+      return new ArrayList<Long>(blocks);
+    }
+    
+    public synchronized List<MoneroOutputWallet> getOutputs() {
+      return new ArrayList<MoneroOutputWallet>(outputs);
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package utils;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import monero.daemon.MoneroBlockchainScanner;
+import monero.daemon.model.MoneroBlock;
+import monero.daemon.model.MoneroBlockchainVisitor;
+import monero.daemon.model.MoneroOutput;
+import monero.daemon.model.MoneroTx;
+
+/**
+ * Measures blockchain scanner throughput against a recorded chain fixture.
+ * 
+ * Records the fixture from the test daemon on first run, then replays its
+ * responses over HTTP so each scan includes the chunked binary block fetch
+ * and deserialization.
+ * 
+ * Usage: BenchmarkBlockchainScanner [fixtureDir] [startHeight] [numBlocks] [parallelism]
+ */
+public class BenchmarkBlockchainScanner {
+  
+  private static final int NUM_WARMUP_RUNS = 2;
+  private static final int NUM_RUNS = 5;
+  private static final long BATCH_SIZE = 100;
+
+  public static void main(String[] args) {
+    String path = args.length > 0 ? args[0] : "chain_fixture";
+    long startHeight = args.length > 1 ? Long.parseLong(args[1]) : 0;
+    long numBlocks = args.length > 2 ? Long.parseLong(args[2]) : 10000;
+    int parallelism = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+    ChainFixture fixture = ChainFixture.loadOrRecord(path, startHeight, numBlocks, BATCH_SIZE);
+    System.out.println("Loaded " + fixture.getNumBlocks() + " blocks with " + fixture.getNumTxs() + " txs from " + path);
+    
+    // visitor which does light work per tx and output
+    final AtomicLong numOutputs = new AtomicLong();
+    final AtomicLong extraBytes = new AtomicLong();
+    final AtomicLong lastVisitedHeight = new AtomicLong(fixture.getStartHeight() - 1);
+    MoneroBlockchainVisitor visitor = new MoneroBlockchainVisitor() {
+      @Override
+      public void visitBlock(MoneroBlock block) {
+        if (block.getHeight() != lastVisitedHeight.get() + 1) throw new RuntimeException("Block visited out of order: " + block.getHeight());
+        lastVisitedHeight.set(block.getHeight());
+      }
+      @Override
+      public void visitTx(MoneroTx tx) {
+        if (tx.getExtra() != null) extraBytes.addAndGet(tx.getExtra().length);
+      }
+      @Override
+      public void visitOutput(MoneroOutput output) {
+        numOutputs.incrementAndGet();
+      }
+    };
+    
+    // benchmark scans, each with a new daemon so its header cache is empty as when recorded
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    for (int run = 0; run < NUM_WARMUP_RUNS + NUM_RUNS; run++) {
+      MoneroBlockchainScanner scanner = new MoneroBlockchainScanner(fixture.getDaemon(), pool, fixture.getBatchSize());
+      numOutputs.set(0);
+      lastVisitedHeight.set(fixture.getStartHeight() - 1);
+      long start = System.nanoTime();
+      long lastHeight = scanner.scan(fixture.getStartHeight(), fixture.getEndHeight(), visitor);
+      double seconds = (System.nanoTime() - start) / 1e9;
+      if (lastHeight != fixture.getEndHeight()) throw new RuntimeException("Scan ended at " + lastHeight + " but expected " + fixture.getEndHeight());
+      if (run < NUM_WARMUP_RUNS) continue;
+      System.out.printf("Run %d: %.0f blocks/s, %.0f txs/s, %.0f outputs/s (parallelism %d)%n", run - NUM_WARMUP_RUNS + 1, fixture.getNumBlocks() / seconds, fixture.getNumTxs() / seconds, numOutputs.get() / seconds, parallelism);
+    }
+    fixture.stop();
+  }
+}
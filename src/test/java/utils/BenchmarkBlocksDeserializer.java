@@ -0,0 +1,263 @@
+package utils;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import common.utils.JsonUtils;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import monero.common.MoneroRpcConnection;
+import monero.daemon.model.MoneroBlock;
+import monero.daemon.model.MoneroKeyImage;
+import monero.daemon.model.MoneroOutput;
+import monero.daemon.model.MoneroTx;
+import monero.wallet.MoneroBlocksBinaryCodec;
+import monero.wallet.MoneroBlocksJsonDeserializer;
+import monero.wallet.model.MoneroDestination;
+import monero.wallet.model.MoneroIncomingTransfer;
+import monero.wallet.model.MoneroOutgoingTransfer;
+import monero.wallet.model.MoneroOutputWallet;
+import monero.wallet.model.MoneroTxWallet;
+
+/**
+ * Measures time and allocation per tx to deserialize the blocks returned from
+ * the native wallet, comparing the previous Jackson data binding path with
+ * MoneroBlocksJsonDeserializer and with decoding the same blocks encoded by
+ * MoneroBlocksBinaryCodec.
+ * 
+ * Runs warmup iterations followed by measured iterations in the manner of a JMH
+ * average time benchmark, reading allocation from the thread's allocated bytes.
+ * 
+ * Loads the blocks fixture from file, writing a deterministic fixture in the
+ * shape of the native wallet's output on first run.
+ * 
+ * Usage: BenchmarkBlocksDeserializer [fixturePath] [numTxs] [warmupIterations] [iterations]
+ */
+public class BenchmarkBlocksDeserializer {
+  
+  private static final int TXS_PER_BLOCK = 10;
+  
+  // mapper which ignores derived properties such as tx height when deserializing
+  private static final ObjectMapper MAPPER = MoneroRpcConnection.MAPPER.copy().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+  
+  public static void main(String[] args) throws Exception {
+    File file = new File(args.length > 0 ? args[0] : "blocks_fixture.json");
+    int numTxs = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+    int warmupIterations = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+    int iterations = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+    
+    // load or write fixture
+    if (!file.exists()) Files.write(file.toPath(), generateBlocksJson(numTxs, 0).getBytes(StandardCharsets.UTF_8));
+    final String json = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    numTxs = 0;
+    for (MoneroBlock block : MoneroBlocksJsonDeserializer.deserialize(json, new ArrayList<String>())) numTxs += block.getTxs().size();
+    System.out.println("Fixture " + file + " has " + numTxs + " txs in " + json.length() + " chars");
+    final byte[] binary = MoneroBlocksBinaryCodec.encode(MoneroBlocksJsonDeserializer.deserialize(json, new ArrayList<String>()), null);
+    System.out.println("Binary encoding is " + binary.length + " bytes");
+    
+    // benchmark each path
+    run("jackson data binding", numTxs, warmupIterations, iterations, new Runnable() {
+      @Override
+      public void run() { deserializeJackson(json); }
+    });
+    run("single pass", numTxs, warmupIterations, iterations, new Runnable() {
+      @Override
+      public void run() { MoneroBlocksJsonDeserializer.deserialize(json, new ArrayList<String>()); }
+    });
+    run("binary decode", numTxs, warmupIterations, iterations, new Runnable() {
+      @Override
+      public void run() { MoneroBlocksBinaryCodec.decode(binary, new ArrayList<String>()); }
+    });
+  }
+  
+  private static void run(String name, int numTxs, int warmupIterations, int iterations, Runnable benchmark) {
+    com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    for (int i = 0; i < warmupIterations; i++) benchmark.run();
+    long[] nanos = new long[iterations];
+    long totalBytes = 0;
+    for (int i = 0; i < iterations; i++) {
+      long startBytes = threadBean.getThreadAllocatedBytes(threadId);
+      long start = System.nanoTime();
+      benchmark.run();
+      nanos[i] = System.nanoTime() - start;
+      totalBytes += threadBean.getThreadAllocatedBytes(threadId) - startBytes;
+    }
+    Arrays.sort(nanos);
+    long totalNanos = 0;
+    for (long n : nanos) totalNanos += n;
+    System.out.println(String.format("%-22s %8.1f ns/tx (median %8.1f) %8.0f B/tx", name, (double) totalNanos / iterations / numTxs, (double) nanos[iterations / 2] / numTxs, (double) totalBytes / iterations / numTxs));
+  }
+  
+  /**
+   * Generate deterministic blocks JSON in the shape returned from the native wallet.
+   * 
+   * Confirmed txs are grouped into blocks and unconfirmed txs into a final block
+   * without a height. Txs alternate between incoming and outgoing with transfers
+   * and outputs.
+   * 
+   * @param numTxs is the number of txs to generate
+   * @param seed seeds the generated values
+   * @return the blocks JSON
+   */
+  public static String generateBlocksJson(int numTxs, long seed) {
+    Random random = new Random(seed);
+    List<MoneroBlock> blocks = new ArrayList<MoneroBlock>();
+    int numUnconfirmed = Math.min(numTxs, Math.max(1, numTxs / 100));
+    int txIdx = 0;
+    long height = 1000000;
+    while (txIdx < numTxs) {
+      boolean isConfirmed = txIdx < numTxs - numUnconfirmed;
+      MoneroBlock block = new MoneroBlock();
+      if (isConfirmed) {
+        block.setHeight(height++);
+        block.setTimestamp(1600000000l + height * 120);
+      }
+      List<MoneroTx> txs = new ArrayList<MoneroTx>();
+      for (int i = 0; i < TXS_PER_BLOCK && txIdx < numTxs && (txIdx < numTxs - numUnconfirmed) == isConfirmed; i++, txIdx++) {
+        txs.add(generateTx(random, isConfirmed, txIdx % 2 == 0));
+      }
+      block.setTxs(txs);
+      if (isConfirmed) for (MoneroTx tx : txs) tx.setBlock(block);
+      blocks.add(block);
+    }
+    Map<String, Object> container = new HashMap<String, Object>();
+    container.put("blocks", blocks);
+    container.put("missingTxHashes", new ArrayList<String>());
+    return JsonUtils.serialize(MoneroRpcConnection.MAPPER, container);
+  }
+  
+  private static MoneroTxWallet generateTx(Random random, boolean isConfirmed, boolean isIncoming) {
+    MoneroTxWallet tx = new MoneroTxWallet();
+    tx.setHash(randomHex(random, 32));
+    tx.setVersion(2);
+    tx.setIsMinerTx(false);
+    tx.setFee(BigInteger.valueOf(random.nextInt(100000000)));
+    tx.setIsConfirmed(isConfirmed);
+    tx.setInTxPool(!isConfirmed);
+    tx.setIsRelayed(true);
+    tx.setRelay(true);
+    tx.setIsFailed(false);
+    tx.setIsDoubleSpendSeen(false);
+    tx.setNumConfirmations(isConfirmed ? (long) random.nextInt(100000) : 0l);
+    tx.setUnlockHeight(0l);
+    tx.setIsLocked(!isConfirmed);
+    tx.setPaymentId("0000000000000000");
+    tx.setNumDummyOutputs(0);
+    tx.setIsIncoming(isIncoming);
+    tx.setIsOutgoing(!isIncoming);
+    BigInteger amount = BigInteger.valueOf(random.nextLong() & 0xffffffffffffl);
+    int accountIdx = random.nextInt(4);
+    int subaddressIdx = random.nextInt(8);
+    if (isIncoming) {
+      MoneroIncomingTransfer transfer = new MoneroIncomingTransfer();
+      transfer.setAmount(amount);
+      transfer.setAccountIndex(accountIdx);
+      transfer.setSubaddressIndex(subaddressIdx);
+      transfer.setAddress(randomHex(random, 48));
+      transfer.setNumSuggestedConfirmations(10l);
+      transfer.setTx(tx);
+      tx.setIncomingTransfers(new ArrayList<MoneroIncomingTransfer>(Arrays.asList(transfer)));
+      if (isConfirmed) {
+        MoneroOutputWallet output = new MoneroOutputWallet();
+        output.setAmount(amount);
+        output.setIndex(random.nextInt(10000000));
+        output.setAccountIndex(accountIdx);
+        output.setSubaddressIndex(subaddressIdx);
+        output.setIsSpent(random.nextBoolean());
+        output.setIsFrozen(false);
+        output.setKeyImage(new MoneroKeyImage(randomHex(random, 32)));
+        output.setTx(tx);
+        tx.setOutputs(new ArrayList<MoneroOutput>(Arrays.asList(output)));
+      }
+    } else {
+      MoneroOutgoingTransfer transfer = new MoneroOutgoingTransfer();
+      transfer.setAmount(amount);
+      transfer.setAccountIndex(accountIdx);
+      transfer.setSubaddressIndices(new ArrayList<Integer>(Arrays.asList(subaddressIdx)));
+      transfer.setAddresses(new ArrayList<String>(Arrays.asList(randomHex(random, 48))));
+      transfer.setDestinations(new ArrayList<MoneroDestination>(Arrays.asList(new MoneroDestination(randomHex(random, 48), amount))));
+      transfer.setTx(tx);
+      tx.setOutgoingTransfer(transfer);
+      tx.setChangeAddress(randomHex(random, 48));
+      tx.setChangeAmount(BigInteger.valueOf(random.nextInt(1000000000)));
+    }
+    return tx;
+  }
+  
+  private static String randomHex(Random random, int numBytes) {
+    StringBuilder sb = new StringBuilder(numBytes * 2);
+    for (int i = 0; i < numBytes; i++) sb.append(String.format("%02x", random.nextInt(256)));
+    return sb.toString();
+  }
+  
+  // ---------------------- JACKSON DATA BINDING PATH -------------------------
+  
+  /**
+   * Deserializes blocks as MoneroWalletFull did before the single pass
+   * deserializer: binding to wallet types then copying to a new MoneroBlock.
+   */
+  private static List<MoneroBlock> deserializeJackson(String json) {
+    BlocksWalletContainer container = JsonUtils.deserialize(MAPPER, json, BlocksWalletContainer.class);
+    List<MoneroBlock> blocks = new ArrayList<MoneroBlock>();
+    if (container.blocks != null) for (MoneroBlockWallet blockWallet : container.blocks) blocks.add(blockWallet.toBlock());
+    return blocks;
+  }
+  
+  private static class BlocksWalletContainer {
+    public List<MoneroBlockWallet> blocks;
+    @SuppressWarnings("unused") public List<String> missingTxHashes;
+  }
+  
+  private static class MoneroBlockWallet extends MoneroBlock {
+    
+    // default constructor necessary for serialization
+    @SuppressWarnings("unused")
+    public MoneroBlockWallet() {
+      super();
+    }
+    
+    @JsonProperty("txs")
+    public MoneroBlockWallet setTxWallets(List<MoneroTxWallet> txs) {
+      super.setTxs(new ArrayList<MoneroTx>(txs));
+      return this;
+    }
+    
+    public MoneroBlock toBlock() {
+      MoneroBlock block = new MoneroBlock();
+      block.setHash(getHash());
+      block.setHeight(getHeight());
+      block.setTimestamp(getTimestamp());
+      block.setSize(getSize());
+      block.setWeight(getWeight());
+      block.setLongTermWeight(getLongTermWeight());
+      block.setDepth(getDepth());
+      block.setDifficulty(getDifficulty());
+      block.setCumulativeDifficulty(getCumulativeDifficulty());
+      block.setMajorVersion(getMajorVersion());
+      block.setMinorVersion(getMinorVersion());
+      block.setNonce(getNonce());
+      block.setMinerTxHash(getMinerTxHash());
+      block.setNumTxs(getNumTxs());
+      block.setOrphanStatus(getOrphanStatus());
+      block.setPrevHash(getPrevHash());
+      block.setReward(getReward());
+      block.setPowHash(getPowHash());
+      block.setHex(getHex());
+      block.setMinerTx(getMinerTx());
+      block.setTxs(getTxs());
+      block.setTxHashes(getTxHashes());
+      for (MoneroTx tx : getTxs()) tx.setBlock(block);
+      return block;
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package utils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import monero.common.MoneroRpcConnection;
+import monero.daemon.MoneroDaemonProxy;
+import monero.wallet.MoneroWalletFull;
+import monero.wallet.MoneroWalletFullSyncGroup;
+import monero.wallet.model.MoneroSyncResult;
+import monero.wallet.model.MoneroWalletConfig;
+
+/**
+ * Compares N view-only wallets syncing independently against syncing from a
+ * shared block stream, replaying a recorded stub daemon.
+ * 
+ * Records the daemon's responses for the last numBlocks blocks from the test
+ * daemon on first run.
+ * 
+ * Usage: BenchmarkSharedBlockStream [recordingDir] [numWallets] [numBlocks]
+ */
+public class BenchmarkSharedBlockStream {
+  
+  public static void main(String[] args) throws Exception {
+    File dir = new File(args.length > 0 ? args[0] : "daemon_recording");
+    int numWallets = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+    long numBlocks = args.length > 2 ? Long.parseLong(args[2]) : 10000;
+    
+    // get view-only wallet keys
+    MoneroWalletFull keysWallet = MoneroWalletFull.createWallet(new MoneroWalletConfig().setNetworkType(TestUtils.NETWORK_TYPE).setMnemonic(TestUtils.MNEMONIC));
+    String address = keysWallet.getPrimaryAddress();
+    String privateViewKey = keysWallet.getPrivateViewKey();
+    keysWallet.close();
+    
+    // record daemon responses for one wallet syncing the range
+    File restoreHeightFile = new File(dir, "restore_height");
+    if (!dir.exists()) {
+      long restoreHeight = TestUtils.getDaemonRpc().getHeight() - numBlocks;
+      RecordedDaemonServer recorder = RecordedDaemonServer.record(TestUtils.getDaemonRpc().getRpcConnection(), dir);
+      MoneroWalletFull wallet = createViewOnlyWallet(address, privateViewKey, restoreHeight, recorder.getConnection());
+      wallet.sync();
+      wallet.close();
+      recorder.stop();
+      Files.write(restoreHeightFile.toPath(), Long.toString(restoreHeight).getBytes("UTF-8"));
+      System.out.println("Recorded " + recorder.getNumRequests() + " responses (" + recorder.getNumBytes() / 1024 + " KB) to " + dir);
+    }
+    long restoreHeight = Long.parseLong(new String(Files.readAllBytes(restoreHeightFile.toPath()), "UTF-8").trim());
+    RecordedDaemonServer daemon = RecordedDaemonServer.replay(dir);
+    
+    // sync wallets independently
+    List<MoneroWalletFull> wallets = new ArrayList<MoneroWalletFull>();
+    for (int i = 0; i < numWallets; i++) wallets.add(createViewOnlyWallet(address, privateViewKey, restoreHeight, daemon.getConnection()));
+    ExecutorService pool = Executors.newFixedThreadPool(Math.min(numWallets, Runtime.getRuntime().availableProcessors()));
+    long start = System.nanoTime();
+    List<Future<MoneroSyncResult>> futures = new ArrayList<Future<MoneroSyncResult>>();
+    for (final MoneroWalletFull wallet : wallets) {
+      futures.add(pool.submit(new Callable<MoneroSyncResult>() {
+        @Override
+        public MoneroSyncResult call() {
+          return wallet.sync();
+        }
+      }));
+    }
+    for (Future<MoneroSyncResult> future : futures) future.get();
+    print("Independent", numWallets, numBlocks, System.nanoTime() - start, daemon, null);
+    for (MoneroWalletFull wallet : wallets) wallet.close();
+    pool.shutdown();
+    
+    // sync wallets from shared block stream
+    daemon.resetMetrics();
+    wallets.clear();
+    MoneroWalletFullSyncGroup group = new MoneroWalletFullSyncGroup(daemon.getConnection());
+    for (int i = 0; i < numWallets; i++) {
+      MoneroWalletFull wallet = createViewOnlyWallet(address, privateViewKey, restoreHeight, daemon.getConnection());
+      wallets.add(wallet);
+      group.addWallet(wallet);
+    }
+    group.start();
+    start = System.nanoTime();
+    group.sync();
+    print("Shared", numWallets, numBlocks, System.nanoTime() - start, daemon, group.getProxy());
+    group.stop();
+    for (MoneroWalletFull wallet : wallets) wallet.close();
+    daemon.stop();
+  }
+  
+  private static MoneroWalletFull createViewOnlyWallet(String address, String privateViewKey, long restoreHeight, MoneroRpcConnection daemonConnection) {
+    return MoneroWalletFull.createWallet(new MoneroWalletConfig()
+        .setNetworkType(TestUtils.NETWORK_TYPE)
+        .setPrimaryAddress(address)
+        .setPrivateViewKey(privateViewKey)
+        .setRestoreHeight(restoreHeight)
+        .setServer(daemonConnection));
+  }
+  
+  private static void print(String mode, int numWallets, long numBlocks, long nanos, RecordedDaemonServer daemon, MoneroDaemonProxy proxy) {
+    double seconds = nanos / 1e9;
+    System.out.printf("%s: %d wallets x %d blocks in %.1f s (%.0f wallet-blocks/s), daemon served %d requests, %d KB%s%n",
+        mode, numWallets, numBlocks, seconds, numWallets * numBlocks / seconds, daemon.getNumRequests(), daemon.getNumBytes() / 1024,
+        proxy == null ? "" : String.format(", proxy served %d requests (%d shared), %d KB", proxy.getNumRequests(), proxy.getNumSharedResponses(), proxy.getNumServedBytes() / 1024));
+  }
+}
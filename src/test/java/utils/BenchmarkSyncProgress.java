@@ -0,0 +1,104 @@
+package utils;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import monero.common.MoneroRpcConnection;
+import monero.wallet.MoneroWalletFull;
+import monero.wallet.model.MoneroSyncProgressPolicy;
+import monero.wallet.model.MoneroWalletConfig;
+import monero.wallet.model.MoneroWalletListener;
+
+/**
+ * Measures sync throughput of a view-only wallet without a listener, with a
+ * listener receiving all sync progress, and with a listener whose progress is
+ * throttled by a sync progress policy, replaying a recorded stub daemon.
+ *
+ * Runs warmup iterations followed by measured iterations in the manner of a JMH
+ * average time benchmark, reading allocation from the syncing thread's
+ * allocated bytes.  Records the daemon's responses for the last numBlocks
+ * blocks from the test daemon on first run.
+ *
+ * Usage: BenchmarkSyncProgress [recordingDir] [numBlocks] [warmupIterations] [iterations]
+ */
+public class BenchmarkSyncProgress {
+
+  public static void main(String[] args) throws Exception {
+    File dir = new File(args.length > 0 ? args[0] : "daemon_recording_sync_progress");
+    long numBlocks = args.length > 1 ? Long.parseLong(args[1]) : 10000;
+    int warmupIterations = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+    int iterations = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+
+    // get view-only wallet keys
+    MoneroWalletFull keysWallet = MoneroWalletFull.createWallet(new MoneroWalletConfig().setNetworkType(TestUtils.NETWORK_TYPE).setMnemonic(TestUtils.MNEMONIC));
+    final String address = keysWallet.getPrimaryAddress();
+    final String privateViewKey = keysWallet.getPrivateViewKey();
+    keysWallet.close();
+
+    // record daemon responses for one wallet syncing the range
+    File restoreHeightFile = new File(dir, "restore_height");
+    if (!dir.exists()) {
+      long restoreHeight = TestUtils.getDaemonRpc().getHeight() - numBlocks;
+      RecordedDaemonServer recorder = RecordedDaemonServer.record(TestUtils.getDaemonRpc().getRpcConnection(), dir);
+      MoneroWalletFull wallet = createViewOnlyWallet(address, privateViewKey, restoreHeight, recorder.getConnection());
+      wallet.sync();
+      wallet.close();
+      recorder.stop();
+      Files.write(restoreHeightFile.toPath(), Long.toString(restoreHeight).getBytes("UTF-8"));
+      System.out.println("Recorded " + recorder.getNumRequests() + " responses (" + recorder.getNumBytes() / 1024 + " KB) to " + dir);
+    }
+    final long restoreHeight = Long.parseLong(new String(Files.readAllBytes(restoreHeightFile.toPath()), "UTF-8").trim());
+    final RecordedDaemonServer daemon = RecordedDaemonServer.replay(dir);
+
+    // benchmark each mode
+    run("no listener", numBlocks, warmupIterations, iterations, address, privateViewKey, restoreHeight, daemon, false, null);
+    run("listener, all progress", numBlocks, warmupIterations, iterations, address, privateViewKey, restoreHeight, daemon, true, null);
+    run("listener, 100 ms", numBlocks, warmupIterations, iterations, address, privateViewKey, restoreHeight, daemon, true, new MoneroSyncProgressPolicy().setMinIntervalMs(100));
+    run("listener, 1%", numBlocks, warmupIterations, iterations, address, privateViewKey, restoreHeight, daemon, true, new MoneroSyncProgressPolicy().setMinPercentDelta(.01));
+    run("listener, 1000 blocks", numBlocks, warmupIterations, iterations, address, privateViewKey, restoreHeight, daemon, true, new MoneroSyncProgressPolicy().setBlockStride(1000));
+    daemon.stop();
+  }
+
+  private static void run(String name, long numBlocks, int warmupIterations, int iterations, String address, String privateViewKey, long restoreHeight, RecordedDaemonServer daemon, boolean isListening, MoneroSyncProgressPolicy policy) {
+    com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    final AtomicLong numProgress = new AtomicLong();
+    MoneroWalletListener listener = new MoneroWalletListener() {
+      @Override
+      public void onSyncProgress(long height, long startHeight, long endHeight, double percentDone, String message) {
+        numProgress.incrementAndGet();
+      }
+    };
+    long[] nanos = new long[iterations];
+    long totalBytes = 0;
+    for (int i = 0; i < warmupIterations + iterations; i++) {
+      MoneroWalletFull wallet = createViewOnlyWallet(address, privateViewKey, restoreHeight, daemon.getConnection());
+      if (policy != null) wallet.setSyncProgressPolicy(policy);
+      if (isListening) wallet.addListener(listener);
+      numProgress.set(0);
+      long startBytes = threadBean.getThreadAllocatedBytes(threadId);
+      long start = System.nanoTime();
+      wallet.sync();
+      if (i >= warmupIterations) {
+        nanos[i - warmupIterations] = System.nanoTime() - start;
+        totalBytes += threadBean.getThreadAllocatedBytes(threadId) - startBytes;
+      }
+      wallet.close();
+    }
+    Arrays.sort(nanos);
+    long totalNanos = 0;
+    for (long n : nanos) totalNanos += n;
+    System.out.println(String.format("%-24s %10.0f blocks/s (median %10.0f) %8d progress calls %8.0f B/block", name, numBlocks / (totalNanos / 1e9 / iterations), numBlocks / (nanos[iterations / 2] / 1e9), numProgress.get(), (double) totalBytes / iterations / numBlocks));
+  }
+
+  private static MoneroWalletFull createViewOnlyWallet(String address, String privateViewKey, long restoreHeight, MoneroRpcConnection daemonConnection) {
+    return MoneroWalletFull.createWallet(new MoneroWalletConfig()
+        .setNetworkType(TestUtils.NETWORK_TYPE)
+        .setPrimaryAddress(address)
+        .setPrivateViewKey(privateViewKey)
+        .setRestoreHeight(restoreHeight)
+        .setServer(daemonConnection));
+  }
+}
@@ -0,0 +1,155 @@
+package utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import monero.common.MoneroError;
+import monero.common.MoneroRpcConnection;
+import monero.daemon.MoneroBlockchainScanner;
+import monero.daemon.MoneroDaemonRpc;
+import monero.daemon.model.MoneroBlockchainVisitor;
+import monero.daemon.model.MoneroTx;
+
+/**
+ * Daemon responses for scanning a range of blocks, recorded to a directory and
+ * replayed by a RecordedDaemonServer.
+ *
+ * Blocks are served over HTTP as recorded, so scans against the fixture time the
+ * daemon's chunked binary block fetch and deserialization.  Replaying requires
+ * the same requests as recorded, so the fixture is scanned with the batch size
+ * it was recorded with.
+ */
+public class ChainFixture {
+
+  private static final String RANGE_FILE = "range.properties";
+
+  private RecordedDaemonServer server;
+  private long startHeight;
+  private long endHeight;
+  private long batchSize;
+  private int numTxs;
+
+  private ChainFixture(RecordedDaemonServer server, long startHeight, long endHeight, long batchSize, int numTxs) {
+    this.server = server;
+    this.startHeight = startHeight;
+    this.endHeight = endHeight;
+    this.batchSize = batchSize;
+    this.numTxs = numTxs;
+  }
+
+  /**
+   * Load a chain fixture from a directory, recording it from the test daemon first if the directory does not exist.
+   *
+   * @param path is the path of the fixture directory
+   * @param startHeight is the start height to record
+   * @param numBlocks is the number of blocks to record
+   * @param batchSize is the scanner batch size to record with
+   * @return the chain fixture
+   */
+  public static ChainFixture loadOrRecord(String path, long startHeight, long numBlocks, long batchSize) {
+    File dir = new File(path);
+    if (!dir.exists()) record(TestUtils.getDaemonRpc().getRpcConnection(), dir, startHeight, numBlocks, batchSize);
+    return load(dir);
+  }
+
+  /**
+   * Record the daemon's responses to scanning a range of blocks.
+   */
+  public static void record(MoneroRpcConnection daemonConnection, File dir, long startHeight, long numBlocks, long batchSize) {
+    RecordedDaemonServer recorder = RecordedDaemonServer.record(daemonConnection, dir);
+    final AtomicInteger numTxs = new AtomicInteger();
+    long endHeight;
+    try {
+      MoneroBlockchainScanner scanner = new MoneroBlockchainScanner(new MoneroDaemonRpc(recorder.getConnection()), ForkJoinPool.commonPool(), batchSize);
+      endHeight = scanner.scan(startHeight, startHeight + numBlocks - 1, new MoneroBlockchainVisitor() {
+        @Override
+        public void visitTx(MoneroTx tx) {
+          numTxs.incrementAndGet();
+        }
+      });
+    } finally {
+      recorder.stop();
+    }
+    Properties range = new Properties();
+    range.setProperty("startHeight", Long.toString(startHeight));
+    range.setProperty("endHeight", Long.toString(endHeight));
+    range.setProperty("batchSize", Long.toString(batchSize));
+    range.setProperty("numTxs", Integer.toString(numTxs.get()));
+    try {
+      OutputStream out = new FileOutputStream(new File(dir, RANGE_FILE));
+      try {
+        range.store(out, null);
+      } finally {
+        out.close();
+      }
+    } catch (IOException e) {
+      throw new MoneroError(e);
+    }
+  }
+
+  /**
+   * Load a recorded fixture and start replaying its responses.
+   */
+  public static ChainFixture load(File dir) {
+    Properties range = new Properties();
+    try {
+      InputStream in = new FileInputStream(new File(dir, RANGE_FILE));
+      try {
+        range.load(in);
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      throw new MoneroError(e);
+    }
+    return new ChainFixture(RecordedDaemonServer.replay(dir), Long.parseLong(range.getProperty("startHeight")), Long.parseLong(range.getProperty("endHeight")), Long.parseLong(range.getProperty("batchSize")), Integer.parseInt(range.getProperty("numTxs")));
+  }
+
+  public long getStartHeight() {
+    return startHeight;
+  }
+
+  public long getEndHeight() {
+    return endHeight;
+  }
+
+  public long getNumBlocks() {
+    return endHeight - startHeight + 1;
+  }
+
+  public long getBatchSize() {
+    return batchSize;
+  }
+
+  public int getNumTxs() {
+    return numTxs;
+  }
+
+  public RecordedDaemonServer getServer() {
+    return server;
+  }
+
+  /**
+   * Get a daemon which fetches blocks from the replaying server.
+   *
+   * Each daemon starts with an empty header cache so it sends the recorded requests.
+   *
+   * @return the daemon
+   */
+  public MoneroDaemonRpc getDaemon() {
+    return new MoneroDaemonRpc(server.getConnection());
+  }
+
+  /**
+   * Stop replaying responses.
+   */
+  public void stop() {
+    server.stop();
+  }
+}
@@ -0,0 +1,192 @@
+package utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import monero.common.MoneroError;
+import monero.common.MoneroRpcConnection;
+import org.apache.hc.client5.http.auth.AuthScope;
+import org.apache.hc.client5.http.auth.UsernamePasswordCredentials;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.client5.http.impl.auth.BasicCredentialsProvider;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+
+/**
+ * Stub daemon which records responses from a daemon to a directory and replays them.
+ * 
+ * Responses are keyed by request path and body.  When replaying a request which
+ * was not recorded, the last recorded response to the same path is served.
+ */
+public class RecordedDaemonServer {
+  
+  private File dir;
+  private MoneroRpcConnection daemonConnection; // null if replaying
+  private CloseableHttpClient client;
+  private HttpServer server;
+  private Map<String, byte[]> lastResponses = new ConcurrentHashMap<String, byte[]>(); // path -> last recorded response
+  private AtomicLong numRequests = new AtomicLong();
+  private AtomicLong numBytes = new AtomicLong();
+  
+  /**
+   * Start a server which forwards requests to the daemon and records the responses.
+   */
+  public static RecordedDaemonServer record(MoneroRpcConnection daemonConnection, File dir) {
+    dir.mkdirs();
+    return new RecordedDaemonServer(dir, daemonConnection);
+  }
+  
+  /**
+   * Start a server which replays recorded responses.
+   */
+  public static RecordedDaemonServer replay(File dir) {
+    if (!dir.isDirectory()) throw new MoneroError("No recording at " + dir);
+    return new RecordedDaemonServer(dir, null);
+  }
+  
+  private RecordedDaemonServer(File dir, MoneroRpcConnection daemonConnection) {
+    this.dir = dir;
+    this.daemonConnection = daemonConnection;
+    if (daemonConnection != null) {
+      URI uri = URI.create(daemonConnection.getUri());
+      BasicCredentialsProvider creds = new BasicCredentialsProvider();
+      if (daemonConnection.getUsername() != null) creds.setCredentials(new AuthScope(uri.getHost(), uri.getPort()), new UsernamePasswordCredentials(daemonConnection.getUsername(), daemonConnection.getPassword().toCharArray()));
+      client = HttpClients.custom().setDefaultCredentialsProvider(creds).build();
+    }
+    try {
+      server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    } catch (IOException e) {
+      throw new MoneroError(e);
+    }
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        try {
+          String path = exchange.getRequestURI().getRawPath();
+          byte[] body = readAll(exchange.getRequestBody());
+          byte[] resp = RecordedDaemonServer.this.daemonConnection == null ? replay(path, body) : record(path, exchange.getRequestMethod(), exchange.getRequestHeaders().getFirst("Content-Type"), body);
+          numRequests.incrementAndGet();
+          if (resp == null) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+          }
+          numBytes.addAndGet(resp.length);
+          exchange.sendResponseHeaders(200, resp.length == 0 ? -1 : resp.length);
+          OutputStream out = exchange.getResponseBody();
+          out.write(resp);
+          out.flush();
+        } catch (Exception e) {
+          e.printStackTrace();
+          exchange.sendResponseHeaders(500, -1);
+        } finally {
+          exchange.close();
+        }
+      }
+    });
+    server.start();
+  }
+  
+  public MoneroRpcConnection getConnection() {
+    return new MoneroRpcConnection("http://127.0.0.1:" + server.getAddress().getPort());
+  }
+  
+  public long getNumRequests() {
+    return numRequests.get();
+  }
+  
+  public long getNumBytes() {
+    return numBytes.get();
+  }
+  
+  public void resetMetrics() {
+    numRequests.set(0);
+    numBytes.set(0);
+  }
+  
+  public void stop() {
+    server.stop(0);
+    try {
+      if (client != null) client.close();
+    } catch (IOException e) {
+      throw new MoneroError(e);
+    }
+  }
+  
+  private byte[] record(String path, String method, String contentType, byte[] body) throws IOException {
+    HttpUriRequestBase req = new HttpUriRequestBase(method, URI.create(daemonConnection.getUri() + path));
+    if (body.length > 0) req.setEntity(new ByteArrayEntity(body, contentType == null ? ContentType.DEFAULT_BINARY : ContentType.parse(contentType)));
+    CloseableHttpResponse resp = client.execute(req);
+    try {
+      if (resp.getCode() != 200) return null;
+      byte[] respBody = resp.getEntity() == null ? new byte[0] : EntityUtils.toByteArray(resp.getEntity());
+      DataOutputStream out = new DataOutputStream(new FileOutputStream(getFile(path, body)));
+      try {
+        out.writeUTF(path);
+        out.writeInt(respBody.length);
+        out.write(respBody);
+      } finally {
+        out.close();
+      }
+      return respBody;
+    } finally {
+      resp.close();
+    }
+  }
+  
+  private byte[] replay(String path, byte[] body) throws IOException {
+    File file = getFile(path, body);
+    if (!file.exists()) return lastResponses.get(path);
+    DataInputStream in = new DataInputStream(new FileInputStream(file));
+    try {
+      in.readUTF();
+      byte[] resp = new byte[in.readInt()];
+      in.readFully(resp);
+      lastResponses.put(path, resp);
+      return resp;
+    } finally {
+      in.close();
+    }
+  }
+  
+  private File getFile(String path, byte[] body) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(path.getBytes("UTF-8"));
+      digest.update(body);
+      StringBuilder sb = new StringBuilder();
+      for (byte b : digest.digest()) sb.append(String.format("%02x", b));
+      return new File(dir, sb.toString() + ".bin");
+    } catch (Exception e) {
+      throw new MoneroError(e);
+    }
+  }
+  
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buf = new byte[8192];
+    int n;
+    while ((n = in.read(buf)) != -1) out.write(buf, 0, n);
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,494 @@
+package utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import common.utils.JsonUtils;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import monero.common.MoneroRpcConnection;
+
+/**
+ * Stub monero-wallet-rpc executable which prints the startup handshake and
+ * serves the wallet file methods used to open, close, and check wallets.
+ * 
+ * Also serves a deterministic chain of incoming transfers at heights
+ * HEIGHT_OFFSET mod HEIGHT_MODULUS below STUB_HEIGHT, which is disconnected
+ * from a daemon so there are no pool txs unless an inconsistent tx is served.
+ * 
+ * An inconsistent tx is reported in the pool by get_transfers but with a
+ * confirmed output by incoming_transfers, like a tx confirmed between the two
+ * calls, and is confirmed at INCONSISTENT_TX_HEIGHT by get_transfer_by_txid
+ * after a configured number of inconsistent responses.
+ * 
+ * The height can be advanced past STUB_HEIGHT and incoming txs can be added
+ * at any height with an unlock height, then removed like txs of a re-org.
+ * 
+ * Runs as an executable or in-process with start() and stop().  Its threads
+ * are daemon threads, so a stub started in-process must be stopped for its
+ * http dispatcher to exit.
+ * 
+ * Usage: java utils.WalletRpcStub [--rpc-bind-port PORT]
+ */
+public class WalletRpcStub {
+  
+  public static final long STUB_HEIGHT = 3000;
+  public static final long HEIGHT_MODULUS = 10;
+  public static final long HEIGHT_OFFSET = 3;
+  public static final String INCONSISTENT_TX_HASH = String.format("%064x", 999999999l);
+  public static final long INCONSISTENT_TX_HEIGHT = STUB_HEIGHT - HEIGHT_MODULUS + HEIGHT_OFFSET;
+  
+  private static Map<String, String> passwords = new HashMap<String, String>(); // wallet name -> password, created on first open
+  private static String openWallet;
+  private static List<Map<String, Object>> transfersRequests = new ArrayList<Map<String, Object>>();
+  private static Map<String, String> attributes = new HashMap<String, String>();
+  private static int numSaves;
+  private static volatile long saveDelayMs;
+  private static Map<String, Long> requestDelays = new HashMap<String, Long>(); // method -> delay in ms
+  private static Integer numInconsistentRefetches; // null if no inconsistent tx is served
+  private static int numRefetches;
+  private static long height = STUB_HEIGHT;
+  private static Map<String, long[]> txs = new LinkedHashMap<String, long[]>(); // added tx hash -> [height, unlock height]
+  private static List<Integer> numSubaddresses = new ArrayList<Integer>(Arrays.asList(1)); // number of subaddresses per account
+  private static Map<String, Integer> numRequests = new HashMap<String, Integer>(); // method -> number of requests
+  private static HttpServer server;
+  private static ExecutorService executor;
+  
+  public static void main(String[] args) throws IOException {
+    List<String> argList = Arrays.asList(args);
+    int portIdx = argList.indexOf("--rpc-bind-port");
+    int port = portIdx >= 0 ? Integer.parseInt(argList.get(portIdx + 1)) : 0;
+    start(port);
+    
+    // print handshake like monero-wallet-rpc
+    System.out.println("I Binding on 127.0.0.1 (IPv4):" + server.getAddress().getPort());
+    System.out.println("I Starting wallet RPC server");
+    System.out.flush();
+  }
+  
+  /**
+   * Start serving in this process on an available port.
+   * 
+   * @return the uri of the stub
+   */
+  public static String start() throws IOException {
+    return start(0);
+  }
+  
+  /**
+   * Start serving in this process.
+   * 
+   * @param port is the port to bind to, 0 for an available port
+   * @return the uri of the stub
+   */
+  public static synchronized String start(int port) throws IOException {
+    if (server != null) throw new IllegalStateException("Stub is already started");
+    
+    // serve json rpc
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+    server.createContext("/json_rpc", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        Map<String, Object> req = JsonUtils.toMap(MoneroRpcConnection.MAPPER, new String(readAll(exchange.getRequestBody()), StandardCharsets.UTF_8));
+        long delayMs = "store".equals(req.get("method")) ? saveDelayMs : getRequestDelayMs((String) req.get("method"));
+        if (delayMs > 0) {
+          try { Thread.sleep(delayMs); } // simulate slow disk or wallet without blocking other requests
+          catch (InterruptedException e) { throw new RuntimeException(e); }
+        }
+        Map<String, Object> resp = handleRequest(req);
+        byte[] body = JsonUtils.serialize(resp).getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+      }
+    });
+    executor = Executors.newCachedThreadPool(new ThreadFactory() { // serve requests concurrently
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "WalletRpcStub");
+        thread.setDaemon(true); // daemon thread does not prevent JVM from halting
+        return thread;
+      }
+    });
+    server.setExecutor(executor);
+    server.start();
+    return "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+  
+  /**
+   * Stop serving in this process and close the open wallet.
+   */
+  public static synchronized void stop() {
+    if (server == null) return;
+    server.stop(0);
+    executor.shutdownNow();
+    server = null;
+    executor = null;
+    openWallet = null;
+  }
+  
+  /**
+   * Get the params of get_transfers requests served in this process.
+   * 
+   * @return the params of each get_transfers request
+   */
+  public static synchronized List<Map<String, Object>> getTransfersRequests() {
+    return new ArrayList<Map<String, Object>>(transfersRequests);
+  }
+  
+  /**
+   * Get the number of times the open wallet was saved with store or on close.
+   * 
+   * @return the number of saves served in this process
+   */
+  public static synchronized int getNumSaves() {
+    return numSaves;
+  }
+  
+  /**
+   * Set the time to wait before serving store requests.
+   * 
+   * @param delayMs is the time to wait in milliseconds
+   */
+  public static void setSaveDelayMs(long delayMs) {
+    saveDelayMs = delayMs;
+  }
+  
+  /**
+   * Set the time to wait before serving requests of a method.
+   * 
+   * @param method is the rpc method to delay
+   * @param delayMs is the time to wait in milliseconds
+   */
+  public static synchronized void setRequestDelayMs(String method, long delayMs) {
+    requestDelays.put(method, delayMs);
+  }
+  
+  private static synchronized long getRequestDelayMs(String method) {
+    Long delayMs = requestDelays.get(method);
+    return delayMs == null ? 0 : delayMs;
+  }
+  
+  /**
+   * Serve an inconsistent tx which is re-fetched inconsistently the given
+   * number of times, or stop serving it.
+   * 
+   * @param numInconsistentRefetches is the number of inconsistent re-fetches, null to stop serving the tx
+   */
+  public static synchronized void setInconsistentTx(Integer numInconsistentRefetches) {
+    WalletRpcStub.numInconsistentRefetches = numInconsistentRefetches;
+    numRefetches = 0;
+  }
+  
+  /**
+   * Get the number of get_transfer_by_txid requests for the inconsistent tx.
+   * 
+   * @return the number of re-fetches since the inconsistent tx was set
+   */
+  public static synchronized int getNumRefetches() {
+    return numRefetches;
+  }
+  
+  /**
+   * Set the height of the stub chain.
+   * 
+   * @param height is the height, at least STUB_HEIGHT
+   */
+  public static synchronized void setHeight(long height) {
+    WalletRpcStub.height = height;
+  }
+  
+  /**
+   * Add or move an incoming tx, which is locked until it has 10 confirmations
+   * and the height reaches its unlock height.
+   * 
+   * @param hash is the hash of the tx
+   * @param txHeight is the height of the block the tx is confirmed in
+   * @param unlockHeight is the tx's unlock height, 0 if none
+   */
+  public static synchronized void putTx(String hash, long txHeight, long unlockHeight) {
+    txs.put(hash, new long[] { txHeight, unlockHeight });
+  }
+  
+  /**
+   * Remove an added tx.
+   * 
+   * @param hash is the hash of the tx to remove
+   */
+  public static synchronized void removeTx(String hash) {
+    txs.remove(hash);
+  }
+  
+  /**
+   * Add an account to the open wallet as if created by another client, with
+   * one unspent output to its primary address.
+   * 
+   * @return the index of the added account
+   */
+  public static synchronized int addAccount() {
+    numSubaddresses.add(1);
+    return numSubaddresses.size() - 1;
+  }
+  
+  /**
+   * Add a subaddress to an account as if created by another client.
+   * 
+   * @param accountIdx is the index of the account to add a subaddress to
+   * @return the index of the added subaddress
+   */
+  public static synchronized int addSubaddress(int accountIdx) {
+    numSubaddresses.set(accountIdx, numSubaddresses.get(accountIdx) + 1);
+    return numSubaddresses.get(accountIdx) - 1;
+  }
+  
+  /**
+   * Remove added accounts and subaddresses.
+   */
+  public static synchronized void resetAccounts() {
+    numSubaddresses = new ArrayList<Integer>(Arrays.asList(1));
+  }
+  
+  /**
+   * Get the address of a subaddress served by the stub.
+   * 
+   * @param accountIdx is the subaddress's account index
+   * @param subaddressIdx is the subaddress's index
+   * @return the address of the subaddress
+   */
+  public static synchronized String getAddress(int accountIdx, int subaddressIdx) {
+    return accountIdx == 0 && subaddressIdx == 0 ? "stub-" + openWallet : "stub-" + openWallet + "-" + accountIdx + "-" + subaddressIdx;
+  }
+  
+  /**
+   * Get the number of requests of a method served in this process.
+   * 
+   * @param method is the rpc method
+   * @return the number of requests of the method
+   */
+  public static synchronized int getNumRequests(String method) {
+    Integer count = numRequests.get(method);
+    return count == null ? 0 : count;
+  }
+  
+  /**
+   * Get the number of txs at a height of the stub chain.
+   * 
+   * @param height is the height to get the number of txs at
+   * @return the number of txs at the height
+   */
+  public static int getNumTxs(long height) {
+    return height >= STUB_HEIGHT || height % HEIGHT_MODULUS != HEIGHT_OFFSET ? 0 : (int) (height / HEIGHT_MODULUS % 3) + 1;
+  }
+  
+  @SuppressWarnings("unchecked")
+  private static synchronized Map<String, Object> handleRequest(Map<String, Object> req) {
+    String method = (String) req.get("method");
+    Map<String, Object> params = (Map<String, Object>) req.get("params");
+    Map<String, Object> result = new HashMap<String, Object>();
+    numRequests.put(method, getNumRequests(method) + 1);
+    if (method.equals("get_version")) {
+      result.put("version", 65562);
+      result.put("release", true);
+    } else if (method.equals("open_wallet")) {
+      String name = (String) params.get("filename");
+      String password = (String) params.get("password");
+      if (!passwords.containsKey(name)) passwords.put(name, password);
+      if (!passwords.get(name).equals(password)) return getError(-1, "Failed to open wallet");
+      openWallet = name;
+    } else if (method.equals("close_wallet") || method.equals("store")) {
+      if (openWallet == null) return getError(-13, "No wallet file");
+      if (method.equals("store") || Boolean.TRUE.equals(params == null ? null : params.get("autosave_current"))) numSaves++;
+      if (method.equals("close_wallet")) openWallet = null;
+    } else if (method.equals("get_address")) {
+      if (openWallet == null) return getError(-13, "No wallet file");
+      int accountIdx = params == null || params.get("account_index") == null ? 0 : ((Number) params.get("account_index")).intValue();
+      if (accountIdx >= numSubaddresses.size()) return getError(-2, "account index is out of bound");
+      List<Map<String, Object>> addresses = new ArrayList<Map<String, Object>>();
+      for (int subaddressIdx = 0; subaddressIdx < numSubaddresses.get(accountIdx); subaddressIdx++) {
+        if (params != null && params.get("address_index") != null && !((List<Number>) params.get("address_index")).contains(subaddressIdx)) continue;
+        Map<String, Object> subaddress = new HashMap<String, Object>();
+        subaddress.put("address_index", subaddressIdx);
+        subaddress.put("address", getAddress(accountIdx, subaddressIdx));
+        addresses.add(subaddress);
+      }
+      result.put("address", getAddress(accountIdx, 0));
+      result.put("addresses", addresses);
+    } else if (method.equals("set_attribute")) {
+      if (openWallet == null) return getError(-13, "No wallet file");
+      attributes.put(openWallet + ":" + params.get("key"), (String) params.get("value"));
+    } else if (method.equals("get_attribute")) {
+      if (openWallet == null) return getError(-13, "No wallet file");
+      String value = attributes.get(openWallet + ":" + params.get("key"));
+      if (value == null) return getError(-45, "Attribute not found.");
+      result.put("value", value);
+    } else if (method.equals("get_height")) {
+      result.put("height", height);
+    } else if (method.equals("refresh")) {
+      if (openWallet == null) return getError(-13, "No wallet file");
+      result.put("blocks_fetched", 0);
+      result.put("received_money", false);
+    } else if (method.equals("auto_refresh")) {
+      if (openWallet == null) return getError(-13, "No wallet file");
+    } else if (method.equals("check_reserve_proof")) {
+      if (numInconsistentRefetches == null) return getError(-38, "Failed to connect to daemon"); // pool is only queried while connected
+      return getError(-1, "Failed to check reserve proof");
+    } else if (method.equals("get_transfers")) {
+      if (openWallet == null) return getError(-13, "No wallet file");
+      transfersRequests.add(params);
+      long minHeight = 0;
+      long maxHeight = height - 1;
+      if (Boolean.TRUE.equals(params.get("filter_by_height"))) {
+        if (params.get("min_height") != null) minHeight = ((Number) params.get("min_height")).longValue() + 1; // min_height is exclusive
+        if (params.get("max_height") != null) maxHeight = Math.min(maxHeight, ((Number) params.get("max_height")).longValue());
+      }
+      List<Map<String, Object>> in = new ArrayList<Map<String, Object>>();
+      if (Boolean.TRUE.equals(params.get("in"))) {
+        for (long height = minHeight; height <= maxHeight; height++) {
+          for (int i = 0; i < getNumTxs(height); i++) in.add(getRpcTransfer(height, i));
+        }
+        for (Map.Entry<String, long[]> tx : txs.entrySet()) {
+          long txHeight = tx.getValue()[0];
+          long unlockHeight = tx.getValue()[1];
+          if (txHeight < minHeight || txHeight > maxHeight) continue;
+          Map<String, Object> transfer = getRpcTransfer(txHeight, 0);
+          transfer.put("txid", tx.getKey());
+          transfer.put("confirmations", height - txHeight);
+          transfer.put("unlock_time", unlockHeight);
+          transfer.put("locked", height < txHeight + 10 || height < unlockHeight);
+          in.add(transfer);
+        }
+      }
+      if (!in.isEmpty()) result.put("in", in);
+      if (Boolean.TRUE.equals(params.get("pool")) && numInconsistentRefetches != null) {
+        Map<String, Object> poolTransfer = getRpcTransfer(INCONSISTENT_TX_HEIGHT, 0);
+        poolTransfer.put("txid", INCONSISTENT_TX_HASH);
+        poolTransfer.put("type", "pool");
+        poolTransfer.put("height", 0);
+        poolTransfer.put("confirmations", 0);
+        result.put("pool", Arrays.asList(poolTransfer));
+      }
+    } else if (method.equals("get_accounts")) {
+      if (openWallet == null) return getError(-13, "No wallet file");
+      List<Map<String, Object>> accounts = new ArrayList<Map<String, Object>>();
+      for (int accountIdx = 0; accountIdx < numSubaddresses.size(); accountIdx++) {
+        Map<String, Object> account = new HashMap<String, Object>();
+        account.put("account_index", accountIdx);
+        account.put("balance", 0);
+        account.put("unlocked_balance", 0);
+        account.put("base_address", getAddress(accountIdx, 0));
+        account.put("label", "");
+        account.put("tag", "");
+        accounts.add(account);
+      }
+      result.put("subaddress_accounts", accounts);
+      result.put("total_balance", 0);
+      result.put("total_unlocked_balance", 0);
+    } else if (method.equals("incoming_transfers")) {
+      if (openWallet == null) return getError(-13, "No wallet file");
+      int accountIdx = ((Number) params.get("account_index")).intValue();
+      if (accountIdx > 0 && accountIdx < numSubaddresses.size()) { // added account has an output
+        Map<String, Object> output = new HashMap<String, Object>();
+        output.put("amount", 1000000000000l);
+        output.put("spent", false);
+        output.put("key_image", "");
+        output.put("global_index", 20000 + accountIdx);
+        output.put("tx_hash", String.format("%064x", 888000000l + accountIdx));
+        output.put("unlocked", true);
+        output.put("frozen", false);
+        output.put("block_height", STUB_HEIGHT - 100);
+        Map<String, Object> subaddressIdx = new HashMap<String, Object>();
+        subaddressIdx.put("major", accountIdx);
+        subaddressIdx.put("minor", 0);
+        output.put("subaddr_index", subaddressIdx);
+        result.put("transfers", Arrays.asList(output));
+      } else if (numInconsistentRefetches != null) {
+        Map<String, Object> output = new HashMap<String, Object>(); // confirmed output without block height
+        output.put("amount", 1000000000000l);
+        output.put("spent", false);
+        output.put("key_image", "");
+        output.put("global_index", 12345);
+        output.put("tx_hash", INCONSISTENT_TX_HASH);
+        output.put("unlocked", false);
+        output.put("frozen", false);
+        Map<String, Object> subaddressIdx = new HashMap<String, Object>();
+        subaddressIdx.put("major", 0);
+        subaddressIdx.put("minor", 0);
+        output.put("subaddr_index", subaddressIdx);
+        result.put("transfers", Arrays.asList(output));
+      }
+    } else if (method.equals("get_transfer_by_txid")) {
+      if (openWallet == null) return getError(-13, "No wallet file");
+      if (numInconsistentRefetches == null || !INCONSISTENT_TX_HASH.equals(params.get("txid"))) return getError(-8, "Transaction not found.");
+      numRefetches++;
+      Map<String, Object> transfer = getRpcTransfer(INCONSISTENT_TX_HEIGHT, 0);
+      transfer.put("txid", INCONSISTENT_TX_HASH);
+      if (numRefetches <= numInconsistentRefetches) { // still confirmed without block
+        transfer.remove("height");
+        transfer.remove("timestamp");
+      }
+      result.put("transfer", transfer);
+      result.put("transfers", Arrays.asList(transfer));
+    } else {
+      return getError(-32601, "Method not found");
+    }
+    Map<String, Object> resp = new HashMap<String, Object>();
+    resp.put("id", req.get("id"));
+    resp.put("jsonrpc", "2.0");
+    resp.put("result", result);
+    return resp;
+  }
+  
+  private static Map<String, Object> getRpcTransfer(long height, int idx) {
+    Map<String, Object> transfer = new HashMap<String, Object>();
+    transfer.put("type", "in");
+    transfer.put("txid", String.format("%064x", height * 10 + idx));
+    transfer.put("height", height);
+    transfer.put("timestamp", 1600000000 + height * 120);
+    transfer.put("amount", 1000000000000l + height);
+    transfer.put("fee", 30000000);
+    transfer.put("confirmations", STUB_HEIGHT - height);
+    transfer.put("unlock_time", 0);
+    transfer.put("locked", false);
+    transfer.put("double_spend_seen", false);
+    transfer.put("address", "stub-" + openWallet);
+    Map<String, Object> subaddressIdx = new HashMap<String, Object>();
+    subaddressIdx.put("major", 0);
+    subaddressIdx.put("minor", 0);
+    transfer.put("subaddr_index", subaddressIdx);
+    transfer.put("subaddr_indices", Arrays.asList(subaddressIdx));
+    return transfer;
+  }
+  
+  private static Map<String, Object> getError(int code, String message) {
+    Map<String, Object> error = new HashMap<String, Object>();
+    error.put("code", code);
+    error.put("message", message);
+    Map<String, Object> resp = new HashMap<String, Object>();
+    resp.put("id", "0");
+    resp.put("jsonrpc", "2.0");
+    resp.put("error", error);
+    return resp;
+  }
+  
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buf = new byte[4096];
+    int n;
+    while ((n = in.read(buf)) != -1) out.write(buf, 0, n);
+    return out.toByteArray();
+  }
+}